@@ -24,25 +24,49 @@ package com.github.andrewoma.dexx.collection;
 
 import com.github.andrewoma.dexx.collection.internal.base.AbstractIndexedList;
 import com.github.andrewoma.dexx.collection.internal.builder.AbstractBuilder;
+import com.github.andrewoma.dexx.collection.internal.parallel.ParallelMergeSort;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * {@code ArrayList} is an {@code IndexedList} implementation backed by an array.
  * <p/>
- * <p><b>WARNING:</b> All modifications copy the entire backing array. {@code ArrayLists} should only be
- * used where modifications are infrequent and access times are critical. ArrayList is also compact
- * in memory usage, so may be appropriate for small lists. If there is any doubt regarding access patterns
- * for a {@code List} then use a {@link com.github.andrewoma.dexx.collection.Vector} instead.
+ * <p>Appending to the most recent version of an {@code ArrayList} is amortised O(1): the backing array
+ * is grown with spare capacity that is shared by all versions. Each backing array has an ownership
+ * counter recording how much of it is in use; an append claims the next slot only if no other version
+ * has already claimed it, otherwise the array is copied. Reads are unaffected.
+ * <p/>
+ * <p>{@link #range}, {@link #take}, {@link #drop} and {@link #tail} return views sharing the backing array in O(1).
+ * A view that would use less than a quarter of the backing array is copied instead so that small slices do not
+ * pin large arrays. {@link #compact()} copies a view explicitly.
+ * <p/>
+ * <p><b>WARNING:</b> All other modifications, including appends to older versions, copy the entire list.
+ * {@code ArrayLists} should only be used where modifications are infrequent and access times are critical.
+ * ArrayList is also compact in memory usage, so may be appropriate for small lists. If there is any doubt
+ * regarding access patterns for a {@code List} then use a {@link com.github.andrewoma.dexx.collection.Vector} instead.
  */
-public class ArrayList<E> extends AbstractIndexedList<E> {
+public class ArrayList<E> extends AbstractIndexedList<E> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private static final ArrayList<Object> EMPTY = new ArrayList<Object>();
 
     private final Object[] elements;
+    private final int offset;
+    private final int size;
+
+    // The number of slots of elements in use by any version sharing the array. Null if there is no spare capacity.
+    private final AtomicInteger owner;
 
     @SuppressWarnings("unchecked")
     public static <E> ArrayList<E> empty() {
@@ -80,16 +104,22 @@ public class ArrayList<E> extends AbstractIndexedList<E> {
     }
 
     ArrayList(Object[] elements) {
+        this(elements, 0, elements.length, null);
+    }
+
+    private ArrayList(Object[] elements, int offset, int size, AtomicInteger owner) {
         this.elements = elements;
+        this.offset = offset;
+        this.size = size;
+        this.owner = owner;
     }
 
     @NotNull
     @Override
     public ArrayList<E> set(int i, E elem) {
-        Object old = elements[i];
+        Object old = get(i);
         if (old == elem) return this;
-        int len = elements.length;
-        Object[] newElements = Arrays.copyOf(elements, len);
+        Object[] newElements = Arrays.copyOfRange(elements, offset, offset + size);
         newElements[i] = elem;
         return new ArrayList<E>(newElements);
     }
@@ -97,18 +127,29 @@ public class ArrayList<E> extends AbstractIndexedList<E> {
     @NotNull
     @Override
     public ArrayList<E> append(E elem) {
-        int len = elements.length;
-        Object[] newElements = Arrays.copyOf(elements, len + 1);
-        newElements[len] = elem;
-        return new ArrayList<E>(newElements);
+        // Claim the next slot if this is the latest version sharing the array
+        int end = offset + size;
+        if (owner != null && end < elements.length && owner.compareAndSet(end, end + 1)) {
+            elements[end] = elem;
+            return new ArrayList<E>(elements, offset, size + 1, owner);
+        }
+
+        Object[] newElements = new Object[newCapacity(size + 1)];
+        System.arraycopy(elements, offset, newElements, 0, size);
+        newElements[size] = elem;
+        return new ArrayList<E>(newElements, 0, size + 1, new AtomicInteger(size + 1));
+    }
+
+    private static int newCapacity(int minCapacity) {
+        int capacity = minCapacity + (minCapacity >> 1);
+        return capacity < 0 ? Integer.MAX_VALUE : Math.max(capacity, 4);
     }
 
     @NotNull
     @Override
     public ArrayList<E> prepend(E elem) {
-        int len = elements.length;
-        Object[] newElements = new Object[len + 1];
-        System.arraycopy(elements, 0, newElements, 1, len);
+        Object[] newElements = new Object[size + 1];
+        System.arraycopy(elements, offset, newElements, 1, size);
         newElements[0] = elem;
         return new ArrayList<E>(newElements);
     }
@@ -117,24 +158,20 @@ public class ArrayList<E> extends AbstractIndexedList<E> {
     @Override
     public ArrayList<E> drop(int number) {
         number = Math.max(number, 0);
-        if (number >= elements.length) return empty();
+        if (number >= size) return empty();
 
-        int len = elements.length - number;
-        Object[] newElements = new Object[len];
-        System.arraycopy(elements, number, newElements, 0, len);
-        return new ArrayList<E>(newElements);
+        return slice(number, size);
     }
 
     @NotNull
     @Override
     public ArrayList<E> take(int number) {
-        number = Math.min(number, elements.length);
+        number = Math.min(number, size);
         number = Math.max(number, 0);
 
         if (number == 0) return empty();
 
-        Object[] newElements = Arrays.copyOf(elements, number);
-        return new ArrayList<E>(newElements);
+        return slice(0, number);
     }
 
     @NotNull
@@ -144,51 +181,70 @@ public class ArrayList<E> extends AbstractIndexedList<E> {
 
         from = fromInclusive ? from : from + 1;
         from = Math.max(from, 0);
-        from = Math.min(from, elements.length - 1);
+        from = Math.min(from, size - 1);
 
         to = toInclusive ? to : to - 1;
         to = Math.max(to, 0);
-        to = Math.min(to, elements.length - 1);
+        to = Math.min(to, size - 1);
 
         // From and to are now an inclusive range within bounds
         if (to < from) return empty();
 
-        int len = to - from + 1;
-        Object[] newElements = Arrays.copyOf(elements, len);
-        System.arraycopy(elements, from, newElements, 0, len);
-        return new ArrayList<E>(newElements);
+        return slice(from, to + 1);
+    }
+
+    // Returns a view of [from, until), where 0 <= from < until <= size
+    private ArrayList<E> slice(int from, int until) {
+        int len = until - from;
+        if (len == size) return this;
+
+        if (len < elements.length >>> 2) {
+            return new ArrayList<E>(Arrays.copyOfRange(elements, offset + from, offset + until));
+        }
+
+        return new ArrayList<E>(elements, offset + from, len, owner);
+    }
+
+    /**
+     * Returns a list with the same elements as this list, copying them into a new array if this list is a view
+     * that does not use all of its backing array. Use this when a small view should no longer pin a large array.
+     */
+    @NotNull
+    public ArrayList<E> compact() {
+        if (size == 0) return empty();
+        if (offset == 0 && size == elements.length) return this;
+
+        return new ArrayList<E>(Arrays.copyOfRange(elements, offset, offset + size));
     }
 
     @Override
     @SuppressWarnings("unchecked")
     public E get(int i) {
-        return (E) elements[i];
+        if (i < 0 || i >= size) throw new ArrayIndexOutOfBoundsException(i); // The backing array may be shared
+        return (E) elements[offset + i];
     }
 
     @Nullable
     @Override
     @SuppressWarnings("unchecked")
     public E first() {
-        return elements.length == 0 ? null : (E) elements[0];
+        return size == 0 ? null : (E) elements[offset];
     }
 
     @Nullable
     @Override
     @SuppressWarnings("unchecked")
     public E last() {
-        return elements.length == 0 ? null : (E) elements[elements.length - 1];
+        return size == 0 ? null : (E) elements[offset + size - 1];
     }
 
     @NotNull
     @Override
-    public List<E> tail() {
+    public ArrayList<E> tail() {
         if (isEmpty()) return this;
         if (size() == 1) return empty();
 
-        int len = elements.length - 1;
-        Object[] newElements = new Object[len];
-        System.arraycopy(elements, 1, newElements, 0, len);
-        return new ArrayList<E>(newElements);
+        return slice(1, size);
     }
 
     @NotNull
@@ -196,20 +252,21 @@ public class ArrayList<E> extends AbstractIndexedList<E> {
     @SuppressWarnings("unchecked")
     public Iterator<E> iterator() {
         return new Iterator<E>() {
-            private int current = -1;
+            private int current = offset - 1;
+            private final int last = offset + size - 1;
 
             @Override
             public boolean hasNext() {
-                return current != ArrayList.this.elements.length - 1;
+                return current != last;
             }
 
             @Override
             public E next() {
-                if (current == ArrayList.this.elements.length - 1) {
+                if (current == last) {
                     throw new NoSuchElementException();
                 }
                 current++;
-                return (E) ArrayList.this.elements[current];
+                return (E) elements[current];
             }
 
             @Override
@@ -219,13 +276,75 @@ public class ArrayList<E> extends AbstractIndexedList<E> {
         };
     }
 
+    @NotNull
+    @Override
+    public Spliterator<E> spliterator() {
+        return Spliterators.spliterator(elements, offset, offset + size, Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public Vector<E> sorted(@Nullable Comparator<? super E> comparator) {
+        E[] sorted = (E[]) Arrays.copyOfRange(elements, offset, offset + size);
+        Arrays.sort(sorted, comparator);
+        return Vector.fromArray(sorted);
+    }
+
+    @NotNull
+    @Override
+    public Vector<E> sortedParallel(@Nullable Comparator<? super E> comparator, int threshold) {
+        Object[] sorted = Arrays.copyOfRange(elements, offset, offset + size);
+        ParallelMergeSort.sort(sorted, comparator, threshold);
+        return Vector.fromArray(sorted);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean forEachWhile(@NotNull Predicate<? super E> f) {
+        for (int i = offset, end = offset + size; i < end; i++) {
+            if (!f.invoke((E) elements[i])) return false;
+        }
+        return true;
+    }
+
     @Override
     public int size() {
-        return elements.length;
+        return size;
     }
 
     @Override
     public boolean isEmpty() {
-        return elements.length == 0;
+        return size == 0;
+    }
+
+    @Override
+    public int knownSize() {
+        return size;
+    }
+
+    @NotNull
+    @Override
+    public Object[] toArray() {
+        return Arrays.copyOfRange(elements, offset, offset + size);
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] toArray(E[] array) {
+        if (array.length < size) {
+            return (E[]) Arrays.copyOfRange(elements, offset, offset + size, array.getClass());
+        }
+        System.arraycopy(elements, offset, array, 0, size);
+        return array;
+    }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.ARRAY_LIST, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
     }
 }
@@ -0,0 +1,241 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * {@code Atom} is a mutable reference to an immutable value, typically a persistent collection, that is updated
+ * atomically by applying functions to it.
+ * <p/>
+ * <p>By default, {@link #swap} applies its function to the current value and publishes the result with a
+ * compare-and-set, retrying with the new current value if another thread published first. Under contention this
+ * re-runs functions, so they should be free of side effects.
+ * <p/>
+ * <p>An atom created with {@link #combining} uses flat combining instead. Updaters queue their functions and whichever
+ * thread acquires the combiner lock applies every queued function in turn, publishing the final value once for the
+ * whole batch while the other updaters wait. Functions are never re-run, and a hot atom is published far less often,
+ * at the cost of updaters waiting for each other. Values published directly with {@link #set} or
+ * {@link #compareAndSet} cause the combiner to re-apply its batch.
+ * <p/>
+ * <p>{@link #getMetrics} reports how often updates were applied, retried and combined.
+ */
+public class Atom<T> {
+    private static final int MAX_BATCH_SIZE = 1024;
+
+    private final AtomicReference<T> value;
+    private final ConcurrentLinkedQueue<Request<T>> requests;
+    private final ReentrantLock combiner;
+
+    private final LongAdder updates = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+
+    public Atom(T value) {
+        this(value, false);
+    }
+
+    private Atom(T value, boolean combining) {
+        this.value = new AtomicReference<T>(value);
+        requests = combining ? new ConcurrentLinkedQueue<Request<T>>() : null;
+        combiner = combining ? new ReentrantLock() : null;
+    }
+
+    /**
+     * Returns an atom whose concurrent updates are applied in batches by a single thread.
+     */
+    @NotNull
+    public static <T> Atom<T> combining(T value) {
+        return new Atom<T>(value, true);
+    }
+
+    public T get() {
+        return value.get();
+    }
+
+    public void set(T value) {
+        this.value.set(value);
+    }
+
+    public boolean compareAndSet(T expected, T value) {
+        return this.value.compareAndSet(expected, value);
+    }
+
+    /**
+     * Atomically replaces the value with the result of applying {@code function} to it, returning the new value.
+     * If {@code function} throws, the value is unchanged and the exception is rethrown.
+     */
+    public T swap(@NotNull Function<T, T> function) {
+        return requests == null ? casSwap(function) : combiningSwap(function);
+    }
+
+    private T casSwap(Function<T, T> function) {
+        while (true) {
+            T current = value.get();
+            T updated = function.invoke(current);
+            if (value.compareAndSet(current, updated)) {
+                updates.increment();
+                return updated;
+            }
+            retries.increment();
+        }
+    }
+
+    private T combiningSwap(Function<T, T> function) {
+        Request<T> request = new Request<T>(function, Thread.currentThread());
+        requests.add(request);
+        while (!request.done) {
+            if (combiner.tryLock()) {
+                try {
+                    combine();
+                } finally {
+                    combiner.unlock();
+                }
+                // A request queued while combining may have found the lock held, so wake it to combine
+                Request<T> next = requests.peek();
+                if (next != null) LockSupport.unpark(next.thread);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        if (request.failure != null) {
+            if (request.failure instanceof RuntimeException) throw (RuntimeException) request.failure;
+            if (request.failure instanceof Error) throw (Error) request.failure;
+            throw new RuntimeException(request.failure);
+        }
+        return request.result;
+    }
+
+    // Called holding the combiner lock
+    private void combine() {
+        Object[] batch = new Object[MAX_BATCH_SIZE];
+        int size = 0;
+        for (Request<T> request; size < batch.length && (request = requests.poll()) != null; ) {
+            batch[size++] = request;
+        }
+        if (size == 0) return;
+
+        while (true) {
+            T current = value.get();
+            T updated = current;
+            for (int i = 0; i < size; i++) {
+                Request<T> request = request(batch, i);
+                try {
+                    updated = request.function.invoke(updated);
+                    request.result = updated;
+                    request.failure = null;
+                } catch (Throwable t) {
+                    request.failure = t;
+                }
+            }
+            if (value.compareAndSet(current, updated)) break;
+            retries.increment();
+        }
+
+        batches.increment();
+        for (int i = 0; i < size; i++) {
+            Request<T> request = request(batch, i);
+            if (request.failure == null) updates.increment();
+            request.done = true;
+            LockSupport.unpark(request.thread);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Request<T> request(Object[] batch, int index) {
+        return (Request<T>) batch[index];
+    }
+
+    /**
+     * Returns a snapshot of the atom's counters, which are updated without locking so may be slightly out of date.
+     */
+    @NotNull
+    public Metrics getMetrics() {
+        return new Metrics(updates.sum(), retries.sum(), batches.sum());
+    }
+
+    @Override
+    public String toString() {
+        return "Atom(" + value.get() + ")";
+    }
+
+    private static class Request<T> {
+        final Function<T, T> function;
+        final Thread thread;
+        T result;
+        Throwable failure;
+        volatile boolean done;
+
+        Request(Function<T, T> function, Thread thread) {
+            this.function = function;
+            this.thread = thread;
+        }
+    }
+
+    /**
+     * Counters describing the contention on an {@code Atom}.
+     */
+    public static class Metrics {
+        private final long updates;
+        private final long retries;
+        private final long batches;
+
+        Metrics(long updates, long retries, long batches) {
+            this.updates = updates;
+            this.retries = retries;
+            this.batches = batches;
+        }
+
+        /**
+         * The number of functions successfully applied by {@code swap}.
+         */
+        public long getUpdates() {
+            return updates;
+        }
+
+        /**
+         * The number of times a compare-and-set failed and functions were re-applied.
+         */
+        public long getRetries() {
+            return retries;
+        }
+
+        /**
+         * The number of batches published by a combining atom. The mean batch size is {@code updates / batches}.
+         */
+        public long getBatches() {
+            return batches;
+        }
+
+        @Override
+        public String toString() {
+            return "Metrics(updates=" + updates + ", retries=" + retries + ", batches=" + batches + ")";
+        }
+    }
+}
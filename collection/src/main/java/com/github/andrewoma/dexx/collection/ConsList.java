@@ -27,9 +27,15 @@ import com.github.andrewoma.dexx.collection.internal.builder.AbstractBuilder;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
 
 /**
  * {@code ConsList} is a functional {@link com.github.andrewoma.dexx.collection.LinkedList} implementation
@@ -42,7 +48,9 @@ import java.util.NoSuchElementException;
  * <p>If there is any doubt as to the access patterns for using a {@code List}, use a {@link com.github.andrewoma.dexx.collection.Vector}
  * instead.
  */
-public abstract class ConsList<E> extends AbstractLinkedList<E> {
+public abstract class ConsList<E> extends AbstractLinkedList<E> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private static final ConsList<Object> EMPTY = new Nil<Object>();
 
     @NotNull
@@ -96,6 +104,31 @@ public abstract class ConsList<E> extends AbstractLinkedList<E> {
         return new ConsListIterator<E>(this);
     }
 
+    /**
+     * Returns a {@code Spliterator} that walks the cells directly and splits by copying batches of elements into
+     * arrays, as a linked list can't be divided without traversing it. Sizes are always exact.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     */
+    @NotNull
+    @Override
+    public Spliterator<E> spliterator() {
+        return new ConsListSpliterator<E>(this);
+    }
+
+    @Override
+    public boolean forEachWhile(@NotNull Predicate<? super E> f) {
+        for (ConsList<E> current = this; !current.isEmpty(); current = current.tail()) {
+            if (!f.invoke(current.first())) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int knownSize() {
+        return size();
+    }
+
     @NotNull
     @Override
     public abstract ConsList<E> range(int from, boolean fromInclusive, int to, boolean toInclusive);
@@ -115,6 +148,70 @@ public abstract class ConsList<E> extends AbstractLinkedList<E> {
     @NotNull
     @Override
     public abstract ConsList<E> set(int i, E elem);
+
+    // Subclasses are replaced with the proxy too, so this is package-private rather than private
+    Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.CONS_LIST, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
+}
+
+class ConsListSpliterator<E> implements Spliterator<E> {
+    static final int BATCH_UNIT = 1024;
+    static final int MAX_BATCH = 1 << 25;
+
+    private ConsList<E> current;
+    private int batch = 0;
+
+    ConsListSpliterator(ConsList<E> current) {
+        this.current = current;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        if (current.isEmpty()) return false;
+        action.accept(current.first());
+        current = current.tail();
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        for (ConsList<E> list = current; !list.isEmpty(); list = list.tail()) {
+            action.accept(list.first());
+        }
+        current = ConsList.empty();
+    }
+
+    @Override
+    public Spliterator<E> trySplit() {
+        int size = current.size();
+        if (size <= 1) return null;
+
+        // Grow the batches arithmetically as for the JDK's iterator based spliterators, but never take everything
+        batch = Math.min(Math.min(batch + BATCH_UNIT, MAX_BATCH), size - size / 2);
+        Object[] elements = new Object[batch];
+        ConsList<E> list = current;
+        for (int i = 0; i < elements.length; i++) {
+            elements[i] = list.first();
+            list = list.tail();
+        }
+        current = list;
+        return Spliterators.spliterator(elements, characteristics());
+    }
+
+    @Override
+    public long estimateSize() {
+        return current.size();
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
+    }
 }
 
 class ConsListIterator<E> implements Iterator<E> {
@@ -149,11 +246,18 @@ class ConsListIterator<E> implements Iterator<E> {
  * Nil is the empty list
  */
 class Nil<E> extends ConsList<E> {
+    private static final long serialVersionUID = 1L;
+
     @Override
     public boolean isEmpty() {
         return true;
     }
 
+    @Override
+    public int size() {
+        return 0;
+    }
+
     @Override
     @Nullable
     public E first() {
@@ -212,13 +316,16 @@ class Nil<E> extends ConsList<E> {
  * Cons constructs a new list by prepending a new element to an existing list
  */
 class Cons<E> extends ConsList<E> {
+    private static final long serialVersionUID = 1L;
+
     private E head;
     private ConsList<E> tail;
-
+    private final int size;
 
     Cons(E head, ConsList<E> tail) {
         this.head = head;
         this.tail = tail;
+        this.size = tail.size() + 1;
     }
 
     @Override
@@ -226,6 +333,11 @@ class Cons<E> extends ConsList<E> {
         return false;
     }
 
+    @Override
+    public int size() {
+        return size;
+    }
+
     @Override
     @Nullable
     public E first() {
@@ -241,17 +353,17 @@ class Cons<E> extends ConsList<E> {
     @NotNull
     @Override
     public ConsList<E> set(int i, E elem) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(i));
+        }
+
         // Copy everything up to the index we need to set
         java.util.List<E> before = new ArrayList<E>(i);
         ConsListIterator<E> iterator = (ConsListIterator<E>) iterator();
-        for (int count = 0; count < i && iterator.hasNext(); count++) {
+        for (int count = 0; count < i; count++) {
             before.add(iterator.next());
         }
 
-        if (!iterator.hasNext()) {
-            throw new IndexOutOfBoundsException(String.valueOf(i));
-        }
-
         iterator.next(); // Discard the current value
         ConsList<E> result = iterator.current; // Share the unmodified tail
 
@@ -268,7 +380,7 @@ class Cons<E> extends ConsList<E> {
     @NotNull
     @Override
     public ConsList<E> append(E elem) {
-        java.util.List<E> current = new ArrayList<E>();
+        java.util.List<E> current = new ArrayList<E>(size);
         for (E e : this) {
             current.add(e);
         }
@@ -286,8 +398,10 @@ class Cons<E> extends ConsList<E> {
     @NotNull
     @Override
     public ConsList<E> drop(int number) {
+        if (number >= size) return empty();
+
         ConsListIterator<E> iterator = (ConsListIterator<E>) iterator();
-        for (int count = 0; count < number && iterator.hasNext(); count++) {
+        for (int count = 0; count < number; count++) {
             iterator.next();
         }
 
@@ -297,9 +411,12 @@ class Cons<E> extends ConsList<E> {
     @NotNull
     @Override
     public ConsList<E> take(int number) {
-        java.util.List<E> top = new ArrayList<E>(Math.max(0, number));
+        if (number >= size) return this;
+        if (number <= 0) return empty();
+
+        java.util.List<E> top = new ArrayList<E>(number);
         ConsListIterator<E> iterator = (ConsListIterator<E>) iterator();
-        for (int count = 0; count < number && iterator.hasNext(); count++) {
+        for (int count = 0; count < number; count++) {
             top.add(iterator.next());
         }
 
@@ -322,14 +439,16 @@ class Cons<E> extends ConsList<E> {
 
     @Override
     public E get(int i) {
-        int count = 0;
-        for (E e : this) {
-            if (i == count++) {
-                return e;
-            }
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(i));
         }
 
-        throw new IndexOutOfBoundsException(String.valueOf(i));
+        ConsList<E> current = this;
+        for (int count = 0; count < i; count++) {
+            current = current.tail();
+        }
+
+        return current.first();
     }
 
     @Nullable
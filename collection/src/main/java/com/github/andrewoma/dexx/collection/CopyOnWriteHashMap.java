@@ -0,0 +1,287 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * {@code CopyOnWriteHashMap} is a {@code ConcurrentMap} whose contents are held in persistent
+ * {@link com.github.andrewoma.dexx.collection.HashMap HashMaps}.
+ * <p/>
+ * <p>Reads are wait-free: they read the current root and look up the key. Writes build an updated root and publish it
+ * with a compare-and-set, retrying if another write published first. Writes therefore cost more than for a
+ * {@code ConcurrentHashMap}, but {@link #snapshot} returns an immutable copy of the whole map without copying
+ * any entries.
+ * <p/>
+ * <p>To reduce contention between writers, the map can be split into stripes, each with its own root. Keys hash to a
+ * single stripe, so writes to keys in different stripes do not conflict. A snapshot of a striped map is made in
+ * time proportional to the number of stripes. Each stripe is read atomically, but stripes are read one at a time,
+ * so a snapshot may include a write to one stripe without an earlier write to another.
+ * <p/>
+ * <p>Iterators and the collection views are weakly consistent: they iterate over a snapshot taken when the
+ * iterator is created. Like {@code ConcurrentHashMap}, {@code null} keys and values are not supported, and
+ * {@code setValue} on an entry from the entry set iterator writes the value through to the map.
+ */
+public class CopyOnWriteHashMap<K, V> extends java.util.AbstractMap<K, V> implements ConcurrentMap<K, V> {
+    private final AtomicReferenceArray<HashMap<K, V>> stripes;
+    private java.util.Set<Entry<K, V>> entrySet;
+
+    public CopyOnWriteHashMap() {
+        this(1);
+    }
+
+    /**
+     * Creates a map split into {@code stripes} stripes, rounded up to a power of 2.
+     */
+    public CopyOnWriteHashMap(int stripes) {
+        if (stripes < 1 || stripes > 1 << 16) throw new IllegalArgumentException("stripes must be between 1 and 65536: " + stripes);
+        int length = 1;
+        while (length < stripes) {
+            length <<= 1;
+        }
+        this.stripes = new AtomicReferenceArray<HashMap<K, V>>(length);
+        for (int i = 0; i < this.stripes.length(); i++) {
+            this.stripes.set(i, HashMap.<K, V>empty());
+        }
+    }
+
+    /**
+     * Returns an immutable map of the current contents.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public Map<K, V> snapshot() {
+        if (stripes.length() == 1) return stripes.get(0);
+        HashMap<K, V>[] roots = (HashMap<K, V>[]) new HashMap<?, ?>[stripes.length()];
+        for (int i = 0; i < roots.length; i++) {
+            roots[i] = stripes.get(i);
+        }
+        return new StripedHashMap<K, V>(roots);
+    }
+
+    private int stripe(Object key) {
+        return stripes.length() == 1 ? 0 : StripedHashMap.stripe(key, stripes.length());
+    }
+
+    private static void checkNotNull(Object value) {
+        if (value == null) throw new NullPointerException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        checkNotNull(key);
+        return stripes.get(stripe(key)).get((K) key);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean containsKey(Object key) {
+        checkNotNull(key);
+        return stripes.get(stripe(key)).containsKey((K) key);
+    }
+
+    @Override
+    public int size() {
+        long size = 0;
+        for (int i = 0; i < stripes.length(); i++) {
+            size += stripes.get(i).size();
+        }
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        for (int i = 0; i < stripes.length(); i++) {
+            if (!stripes.get(i).isEmpty()) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public V put(@NotNull K key, @NotNull V value) {
+        checkNotNull(key);
+        checkNotNull(value);
+        int index = stripe(key);
+        while (true) {
+            HashMap<K, V> root = stripes.get(index);
+            V previous = root.get(key);
+            if (previous == value) return previous;
+            if (stripes.compareAndSet(index, root, root.put(key, value))) return previous;
+        }
+    }
+
+    @Override
+    public V putIfAbsent(@NotNull K key, @NotNull V value) {
+        checkNotNull(key);
+        checkNotNull(value);
+        int index = stripe(key);
+        while (true) {
+            HashMap<K, V> root = stripes.get(index);
+            V previous = root.get(key);
+            if (previous != null) return previous;
+            if (stripes.compareAndSet(index, root, root.put(key, value))) return null;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        checkNotNull(key);
+        int index = stripe(key);
+        while (true) {
+            HashMap<K, V> root = stripes.get(index);
+            V previous = root.get((K) key);
+            if (previous == null) return null;
+            if (stripes.compareAndSet(index, root, root.remove((K) key))) return previous;
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean remove(@NotNull Object key, Object value) {
+        checkNotNull(key);
+        if (value == null) return false;
+        int index = stripe(key);
+        while (true) {
+            HashMap<K, V> root = stripes.get(index);
+            if (!value.equals(root.get((K) key))) return false;
+            if (stripes.compareAndSet(index, root, root.remove((K) key))) return true;
+        }
+    }
+
+    @Override
+    public boolean replace(@NotNull K key, @NotNull V oldValue, @NotNull V newValue) {
+        checkNotNull(key);
+        checkNotNull(oldValue);
+        checkNotNull(newValue);
+        int index = stripe(key);
+        while (true) {
+            HashMap<K, V> root = stripes.get(index);
+            if (!oldValue.equals(root.get(key))) return false;
+            if (stripes.compareAndSet(index, root, root.put(key, newValue))) return true;
+        }
+    }
+
+    @Override
+    public V replace(@NotNull K key, @NotNull V value) {
+        checkNotNull(key);
+        checkNotNull(value);
+        int index = stripe(key);
+        while (true) {
+            HashMap<K, V> root = stripes.get(index);
+            V previous = root.get(key);
+            if (previous == null) return null;
+            if (stripes.compareAndSet(index, root, root.put(key, value))) return previous;
+        }
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < stripes.length(); i++) {
+            stripes.set(i, HashMap.<K, V>empty());
+        }
+    }
+
+    @NotNull
+    @Override
+    public java.util.Set<Entry<K, V>> entrySet() {
+        java.util.Set<Entry<K, V>> result = entrySet;
+        return result != null ? result : (entrySet = new EntrySet());
+    }
+
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @NotNull
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            final Iterator<Pair<K, V>> iterator = snapshot().iterator();
+            return new Iterator<Entry<K, V>>() {
+                private K last;
+
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    Pair<K, V> pair = iterator.next();
+                    last = pair.component1();
+                    return new MapEntry(last, pair.component2());
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) throw new IllegalStateException();
+                    CopyOnWriteHashMap.this.remove(last);
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            return CopyOnWriteHashMap.this.size();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            Object value = entry.getKey() == null ? null : get(entry.getKey());
+            return value != null && value.equals(entry.getValue());
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            return entry.getKey() != null && CopyOnWriteHashMap.this.remove(entry.getKey(), entry.getValue());
+        }
+
+        @Override
+        public void clear() {
+            CopyOnWriteHashMap.this.clear();
+        }
+    }
+
+    private class MapEntry extends SimpleEntry<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        MapEntry(K key, V value) {
+            super(key, value);
+        }
+
+        @Override
+        public V setValue(@NotNull V value) {
+            checkNotNull(value);
+            put(getKey(), value);
+            return super.setValue(value);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.base.AbstractLinkedList;
+import com.github.andrewoma.dexx.collection.internal.builder.AbstractBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@code Deque} is a functional {@link com.github.andrewoma.dexx.collection.LinkedList} implementation supporting
+ * efficient access to both ends of the list.
+ * <p/>
+ * <p>It is implemented as a banker's deque: a front {@code ConsList} and a reversed rear {@code ConsList}, along
+ * with their sizes. {@link #prepend(Object)}, {@link #append(Object)}, {@link #first()}, {@link #last()},
+ * {@link #tail()} and {@link #init()} are O(1) amortised and {@link #size()} is O(1). Whenever one side grows to
+ * more than three times the size of the other, the elements are redistributed evenly between them in O(n).
+ * <p/>
+ * <p><b>WARNING:</b> The amortised bounds assume each version is only modified once. Repeatedly modifying an older
+ * version that is just about to rebalance pays for the rebalancing each time. Random access via {@link #get(int)}
+ * and {@link #set(int, Object)} is O(n).
+ */
+public class Deque<E> extends AbstractLinkedList<E> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final Deque<Object> EMPTY = new Deque<Object>(ConsList.empty(), 0, ConsList.empty(), 0);
+    private static final int BALANCE = 3;
+
+    private final ConsList<E> front;
+    private final int frontSize;
+    private final ConsList<E> rear; // Stored in reverse order
+    private final int rearSize;
+
+    @NotNull
+    public static <E> BuilderFactory<E, Deque<E>> factory() {
+        return new BuilderFactory<E, Deque<E>>() {
+            @NotNull
+            @Override
+            public Builder<E, Deque<E>> newBuilder() {
+                return new AbstractBuilder<E, Deque<E>>() {
+                    private final java.util.List<Object> buffer = new ArrayList<Object>();
+
+                    @NotNull
+                    @Override
+                    public Builder<E, Deque<E>> add(E element) {
+                        buffer.add(element);
+                        return this;
+                    }
+
+                    @NotNull
+                    @Override
+                    public Deque<E> doBuild() {
+                        return balanced(buffer.toArray());
+                    }
+                };
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    public static <E> Deque<E> empty() {
+        return (Deque<E>) EMPTY;
+    }
+
+    private Deque(ConsList<E> front, int frontSize, ConsList<E> rear, int rearSize) {
+        this.front = front;
+        this.frontSize = frontSize;
+        this.rear = rear;
+        this.rearSize = rearSize;
+    }
+
+    private static <E> Deque<E> create(ConsList<E> front, int frontSize, ConsList<E> rear, int rearSize) {
+        if (frontSize > BALANCE * rearSize + 1 || rearSize > BALANCE * frontSize + 1) {
+            return balanced(toArray(front, frontSize, rear, rearSize));
+        }
+
+        if (frontSize + rearSize == 0) return empty();
+        return new Deque<E>(front, frontSize, rear, rearSize);
+    }
+
+    // Splits the elements evenly between the front and rear
+    @SuppressWarnings("unchecked")
+    private static <E> Deque<E> balanced(Object[] elements) {
+        if (elements.length == 0) return empty();
+
+        int frontSize = (elements.length + 1) / 2;
+        ConsList<E> front = ConsList.empty();
+        for (int i = frontSize - 1; i >= 0; i--) {
+            front = front.prepend((E) elements[i]);
+        }
+
+        ConsList<E> rear = ConsList.empty();
+        for (int i = frontSize; i < elements.length; i++) {
+            rear = rear.prepend((E) elements[i]);
+        }
+
+        return new Deque<E>(front, frontSize, rear, elements.length - frontSize);
+    }
+
+    private static <E> Object[] toArray(ConsList<E> front, int frontSize, ConsList<E> rear, int rearSize) {
+        Object[] result = new Object[frontSize + rearSize];
+        int i = 0;
+        for (E e : front) {
+            result[i++] = e;
+        }
+
+        i = result.length;
+        for (E e : rear) {
+            result[--i] = e;
+        }
+
+        return result;
+    }
+
+    @Override
+    public int size() {
+        return frontSize + rearSize;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return frontSize + rearSize == 0;
+    }
+
+    @Override
+    public int knownSize() {
+        return size();
+    }
+
+    @NotNull
+    @Override
+    public Deque<E> prepend(E elem) {
+        return create(front.prepend(elem), frontSize + 1, rear, rearSize);
+    }
+
+    @NotNull
+    @Override
+    public Deque<E> append(E elem) {
+        return create(front, frontSize, rear.prepend(elem), rearSize + 1);
+    }
+
+    @Nullable
+    @Override
+    public E first() {
+        // The balance invariant guarantees that if the front is empty the rear has at most one element
+        return frontSize == 0 ? rear.first() : front.first();
+    }
+
+    @Nullable
+    @Override
+    public E last() {
+        return rearSize == 0 ? front.first() : rear.first();
+    }
+
+    @NotNull
+    @Override
+    public Deque<E> tail() {
+        if (frontSize == 0) return empty();
+        return create(front.tail(), frontSize - 1, rear, rearSize);
+    }
+
+    /**
+     * Returns a deque containing all elements except the last. Returns an empty deque if this deque is empty.
+     */
+    @NotNull
+    public Deque<E> init() {
+        if (rearSize == 0) return empty();
+        return create(front, frontSize, rear.tail(), rearSize - 1);
+    }
+
+    @Override
+    public E get(int i) {
+        if (i < 0 || i >= size()) throw new IndexOutOfBoundsException(String.valueOf(i));
+        return i < frontSize ? front.get(i) : rear.get(size() - 1 - i);
+    }
+
+    @NotNull
+    @Override
+    public Deque<E> set(int i, E elem) {
+        if (i < 0 || i >= size()) throw new IndexOutOfBoundsException(String.valueOf(i));
+        if (i < frontSize) {
+            return new Deque<E>(front.set(i, elem), frontSize, rear, rearSize);
+        } else {
+            return new Deque<E>(front, frontSize, rear.set(size() - 1 - i, elem), rearSize);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Deque<E> drop(int number) {
+        if (number <= 0) return this;
+        if (number >= size()) return empty();
+
+        if (number <= frontSize) {
+            return create(front.drop(number), frontSize - number, rear, rearSize);
+        } else {
+            int remaining = size() - number;
+            return create(ConsList.<E>empty(), 0, rear.take(remaining), remaining);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Deque<E> take(int number) {
+        if (number <= 0) return empty();
+        if (number >= size()) return this;
+
+        if (number <= frontSize) {
+            return create(front.take(number), number, ConsList.<E>empty(), 0);
+        } else {
+            int fromRear = number - frontSize;
+            return create(front, frontSize, rear.drop(rearSize - fromRear), fromRear);
+        }
+    }
+
+    @NotNull
+    @Override
+    public Deque<E> range(int from, boolean fromInclusive, int to, boolean toInclusive) {
+        from = fromInclusive ? from : from + 1;
+        to = toInclusive ? to + 1 : to;
+
+        return drop(from).take(to - from);
+    }
+
+    @NotNull
+    @Override
+    public Iterator<E> iterator() {
+        return new DequeIterator<E>(front, rear, rearSize);
+    }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.DEQUE, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
+}
+
+/**
+ * Iterates over the front, then over the rear in reverse
+ */
+class DequeIterator<E> implements Iterator<E> {
+    private final Iterator<E> front;
+    private final ConsList<E> rear;
+    private final int rearSize;
+    private Object[] reversed;
+    private int index;
+
+    DequeIterator(ConsList<E> front, ConsList<E> rear, int rearSize) {
+        this.front = front.iterator();
+        this.rear = rear;
+        this.rearSize = rearSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return front.hasNext() || (reversed == null ? rearSize != 0 : index < reversed.length);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+        if (front.hasNext()) return front.next();
+
+        if (reversed == null) {
+            reversed = new Object[rearSize];
+            index = rearSize;
+            for (E e : rear) {
+                reversed[--index] = e;
+            }
+        }
+
+        if (index >= reversed.length) throw new NoSuchElementException();
+        return (E) reversed[index++];
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -28,7 +28,11 @@ import com.github.andrewoma.dexx.collection.internal.hashmap.CompactHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.Iterator;
+import java.util.Spliterator;
 
 /**
  * {@code DerivedKeyHashMap} is a {@code HashMap} variant where the key for the {@code Map} is derived from the value stored.
@@ -63,7 +67,9 @@ import java.util.Iterator;
  * <p/>
  * <p>As the key is derived from the value, {@code DerivedKeyHashMap} does not support {@code null} values.
  */
-public class DerivedKeyHashMap<K, V> extends AbstractMap<K, V> {
+public class DerivedKeyHashMap<K, V> extends AbstractMap<K, V> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final KeyFunction<K, V> keyFunction;
     private final CompactHashMap<K, V> compactHashMap;
 
@@ -95,6 +101,16 @@ public class DerivedKeyHashMap<K, V> extends AbstractMap<K, V> {
         this.compactHashMap = compactHashMap;
     }
 
+    // Returns a map containing values[0, length), building the trie directly. Later values replace earlier values
+    // with equal keys.
+    static <K, V> DerivedKeyHashMap<K, V> fromValues(KeyFunction<K, V> keyFunction, Object[] values, int length) {
+        return new DerivedKeyHashMap<K, V>(keyFunction, CompactHashMap.<K, V>fromValues(values, length, keyFunction));
+    }
+
+    KeyFunction<K, V> keyFunction() {
+        return keyFunction;
+    }
+
     @Override
     public boolean containsKey(@NotNull K key) {
         return get(key) != null;
@@ -123,6 +139,22 @@ public class DerivedKeyHashMap<K, V> extends AbstractMap<K, V> {
         return compactHashMap.size();
     }
 
+    @Override
+    public int knownSize() {
+        return compactHashMap.size();
+    }
+
+    /**
+     * Returns a {@code Spliterator} that splits by hash trie node. Sizes are always exact.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     */
+    @NotNull
+    @Override
+    public Spliterator<Pair<K, V>> spliterator() {
+        return compactHashMap.spliterator(keyFunction);
+    }
+
     @Override
     public <U> void forEach(@NotNull final Function<Pair<K, V>, U> f) {
         compactHashMap.forEach(new Function<Pair<K, V>, Object>() {
@@ -134,9 +166,22 @@ public class DerivedKeyHashMap<K, V> extends AbstractMap<K, V> {
         }, keyFunction);
     }
 
+    @Override
+    public boolean forEachWhile(@NotNull Predicate<? super Pair<K, V>> f) {
+        return compactHashMap.forEachWhile(f, keyFunction);
+    }
+
     @NotNull
     @Override
     public Iterator<Pair<K, V>> iterator() {
         return compactHashMap.iterator(keyFunction);
     }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.DERIVED_KEY_HASH_MAP, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
 }
@@ -0,0 +1,445 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * {@code DexxCollectors} provides {@link java.util.stream.Collector Collectors} that build dexx collections
+ * from {@code java.util.stream} pipelines.
+ * <p/>
+ * <p>Partial results of parallel streams are combined structurally rather than by re-inserting every element:
+ * vectors are concatenated a leaf block at a time, hash sets and maps are merged trie node by trie node
+ * (sharing any node present on only one side) and sorted maps insert the smaller side into the larger.
+ * <p/>
+ * <p>Requires JDK 1.8 or later at runtime.
+ */
+public class DexxCollectors {
+    private DexxCollectors() {
+    }
+
+    /**
+     * Returns a {@code Collector} that collects the elements into a {@code Vector} in encounter order.
+     */
+    @NotNull
+    public static <T> Collector<T, ?, Vector<T>> toVector() {
+        return new SimpleCollector<T, VectorBuilder<T>, Vector<T>>(
+                new Supplier<VectorBuilder<T>>() {
+                    @Override
+                    public VectorBuilder<T> get() {
+                        return new VectorBuilder<T>();
+                    }
+                },
+                new BiConsumer<VectorBuilder<T>, T>() {
+                    @Override
+                    public void accept(VectorBuilder<T> builder, T element) {
+                        builder.add(element);
+                    }
+                },
+                new BinaryOperator<VectorBuilder<T>>() {
+                    @Override
+                    public VectorBuilder<T> apply(VectorBuilder<T> left, VectorBuilder<T> right) {
+                        return left.addAll(right.build());
+                    }
+                },
+                new java.util.function.Function<VectorBuilder<T>, Vector<T>>() {
+                    @Override
+                    public Vector<T> apply(VectorBuilder<T> builder) {
+                        return builder.build();
+                    }
+                });
+    }
+
+    /**
+     * Returns a {@code Collector} that collects the elements into a {@code HashSet}.
+     */
+    @NotNull
+    public static <T> Collector<T, ?, HashSet<T>> toHashSet() {
+        BinaryOperator<HashSet<T>> union = new BinaryOperator<HashSet<T>>() {
+            @Override
+            public HashSet<T> apply(HashSet<T> left, HashSet<T> right) {
+                return left.union(right);
+            }
+        };
+        return new SimpleCollector<T, Built<T, HashSet<T>>, HashSet<T>>(
+                DexxCollectors.built(HashSet.<T>factory(), union),
+                new BiConsumer<Built<T, HashSet<T>>, T>() {
+                    @Override
+                    public void accept(Built<T, HashSet<T>> built, T element) {
+                        built.add(element);
+                    }
+                },
+                DexxCollectors.<T, HashSet<T>>combineBuilt(),
+                DexxCollectors.<T, HashSet<T>>finishBuilt(),
+                Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns a {@code Collector} that collects the elements into a {@code HashMap}. If a key is mapped more
+     * than once the later value replaces the earlier one.
+     */
+    @NotNull
+    public static <T, K, V> Collector<T, ?, HashMap<K, V>> toHashMap(
+            @NotNull Function<? super T, ? extends K> keyFunction,
+            @NotNull Function<? super T, ? extends V> valueFunction) {
+        return toHashMap(keyFunction, valueFunction, null);
+    }
+
+    /**
+     * Returns a {@code Collector} that collects the elements into a {@code HashMap}. If a key is mapped more
+     * than once the values are combined with {@code merger}, earlier value first. If {@code merger} is null
+     * the later value replaces the earlier one.
+     */
+    @NotNull
+    public static <T, K, V> Collector<T, ?, HashMap<K, V>> toHashMap(
+            @NotNull final Function<? super T, ? extends K> keyFunction,
+            @NotNull final Function<? super T, ? extends V> valueFunction,
+            @Nullable final Fold<V, V> merger) {
+        if (merger == null) {
+            BinaryOperator<HashMap<K, V>> union = new BinaryOperator<HashMap<K, V>>() {
+                @Override
+                public HashMap<K, V> apply(HashMap<K, V> left, HashMap<K, V> right) {
+                    return left.merge(right, null);
+                }
+            };
+            return new SimpleCollector<T, Built<Pair<K, V>, HashMap<K, V>>, HashMap<K, V>>(
+                    DexxCollectors.built(HashMap.<K, V>factory(), union),
+                    new BiConsumer<Built<Pair<K, V>, HashMap<K, V>>, T>() {
+                        @Override
+                        public void accept(Built<Pair<K, V>, HashMap<K, V>> built, T element) {
+                            K key = keyFunction.invoke(element);
+                            built.add(new Pair<K, V>(key, valueFunction.invoke(element)));
+                        }
+                    },
+                    DexxCollectors.<Pair<K, V>, HashMap<K, V>>combineBuilt(),
+                    DexxCollectors.<Pair<K, V>, HashMap<K, V>>finishBuilt());
+        }
+
+        // Merging needs the existing value, so the map is updated as each element arrives
+        return new SimpleCollector<T, Box<HashMap<K, V>>, HashMap<K, V>>(
+                new Supplier<Box<HashMap<K, V>>>() {
+                    @Override
+                    public Box<HashMap<K, V>> get() {
+                        return new Box<HashMap<K, V>>(HashMap.<K, V>empty());
+                    }
+                },
+                new BiConsumer<Box<HashMap<K, V>>, T>() {
+                    @Override
+                    public void accept(Box<HashMap<K, V>> box, T element) {
+                        K key = keyFunction.invoke(element);
+                        V existing = box.value.get(key);
+                        V value = valueFunction.invoke(element);
+                        if (existing != null || box.value.containsKey(key)) {
+                            value = merger.invoke(existing, value);
+                        }
+                        box.value = box.value.put(key, value);
+                    }
+                },
+                new BinaryOperator<Box<HashMap<K, V>>>() {
+                    @Override
+                    public Box<HashMap<K, V>> apply(Box<HashMap<K, V>> left, Box<HashMap<K, V>> right) {
+                        left.value = left.value.merge(right.value, merger);
+                        return left;
+                    }
+                },
+                DexxCollectors.<HashMap<K, V>>unbox());
+    }
+
+    /**
+     * Returns a {@code Collector} that collects the elements into a {@code TreeMap} using the natural ordering
+     * of the keys. If a key is mapped more than once the later value replaces the earlier one.
+     */
+    @NotNull
+    public static <T, K extends Comparable<? super K>, V> Collector<T, ?, TreeMap<K, V>> toTreeMap(
+            @NotNull Function<? super T, ? extends K> keyFunction,
+            @NotNull Function<? super T, ? extends V> valueFunction) {
+        return toTreeMap(keyFunction, valueFunction, null, null);
+    }
+
+    /**
+     * Returns a {@code Collector} that collects the elements into a {@code TreeMap} ordered by {@code comparator},
+     * or the natural ordering of the keys if it is null. If a key is mapped more than once the values are
+     * combined with {@code merger}, earlier value first. If {@code merger} is null the later value replaces the earlier one.
+     */
+    @NotNull
+    public static <T, K, V> Collector<T, ?, TreeMap<K, V>> toTreeMap(
+            @NotNull final Function<? super T, ? extends K> keyFunction,
+            @NotNull final Function<? super T, ? extends V> valueFunction,
+            @Nullable final Fold<V, V> merger,
+            @Nullable final Comparator<? super K> comparator) {
+        return new SimpleCollector<T, Box<TreeMap<K, V>>, TreeMap<K, V>>(
+                new Supplier<Box<TreeMap<K, V>>>() {
+                    @Override
+                    public Box<TreeMap<K, V>> get() {
+                        return new Box<TreeMap<K, V>>(new TreeMap<K, V>(comparator, null));
+                    }
+                },
+                new BiConsumer<Box<TreeMap<K, V>>, T>() {
+                    @Override
+                    public void accept(Box<TreeMap<K, V>> box, T element) {
+                        K key = keyFunction.invoke(element);
+                        V existing = box.value.get(key);
+                        V value = valueFunction.invoke(element);
+                        // A null value does not mean the key is absent, so check before counting it
+                        if (existing != null || box.value.containsKey(key)) {
+                            if (merger != null) value = merger.invoke(existing, value);
+                        } else {
+                            box.size++;
+                        }
+                        box.value = box.value.put(key, value);
+                    }
+                },
+                new BinaryOperator<Box<TreeMap<K, V>>>() {
+                    @Override
+                    public Box<TreeMap<K, V>> apply(Box<TreeMap<K, V>> left, Box<TreeMap<K, V>> right) {
+                        // Insert the smaller side into the larger, keeping the earlier value on the left of the merger
+                        final boolean leftIntoRight = left.size < right.size;
+                        final Box<TreeMap<K, V>> target = leftIntoRight ? right : left;
+                        Box<TreeMap<K, V>> source = leftIntoRight ? left : right;
+                        source.value.forEach(new Function<Pair<K, V>, Object>() {
+                            @Override
+                            public Object invoke(Pair<K, V> pair) {
+                                K key = pair.component1();
+                                V existing = target.value.get(key);
+                                V value = pair.component2();
+                                if (existing == null && !target.value.containsKey(key)) {
+                                    target.size++;
+                                } else if (leftIntoRight) {
+                                    value = merger == null ? existing : merger.invoke(value, existing);
+                                } else if (merger != null) {
+                                    value = merger.invoke(existing, value);
+                                }
+                                target.value = target.value.put(key, value);
+                                return null;
+                            }
+                        });
+                        return target;
+                    }
+                },
+                DexxCollectors.<TreeMap<K, V>>unbox());
+    }
+
+    /**
+     * Returns a {@code Collector} that groups the elements by {@code classifier} into a {@code HashMap}
+     * of {@code Vectors}, preserving encounter order within each group.
+     */
+    @NotNull
+    public static <T, K> Collector<T, ?, HashMap<K, Vector<T>>> groupingBy(@NotNull Function<? super T, ? extends K> classifier) {
+        return groupingBy(classifier, DexxCollectors.<T>toVector());
+    }
+
+    /**
+     * Returns a {@code Collector} that groups the elements by {@code classifier} into a {@code HashMap},
+     * collecting the elements of each group with {@code downstream}.
+     */
+    @NotNull
+    public static <T, K, D> Collector<T, ?, HashMap<K, D>> groupingBy(
+            @NotNull Function<? super T, ? extends K> classifier,
+            @NotNull Collector<? super T, ?, D> downstream) {
+        return grouping(classifier, downstream);
+    }
+
+    private static <T, K, A, D> Collector<T, ?, HashMap<K, D>> grouping(
+            final Function<? super T, ? extends K> classifier,
+            final Collector<? super T, A, D> downstream) {
+        final Supplier<A> supplier = downstream.supplier();
+        final BiConsumer<A, ? super T> accumulator = downstream.accumulator();
+        final BinaryOperator<A> combiner = downstream.combiner();
+        final java.util.function.Function<A, D> finisher = downstream.finisher();
+
+        return new SimpleCollector<T, java.util.HashMap<K, A>, HashMap<K, D>>(
+                new Supplier<java.util.HashMap<K, A>>() {
+                    @Override
+                    public java.util.HashMap<K, A> get() {
+                        return new java.util.HashMap<K, A>();
+                    }
+                },
+                new BiConsumer<java.util.HashMap<K, A>, T>() {
+                    @Override
+                    public void accept(java.util.HashMap<K, A> groups, T element) {
+                        K key = classifier.invoke(element);
+                        A container = groups.get(key);
+                        if (container == null) {
+                            container = supplier.get();
+                            groups.put(key, container);
+                        }
+                        accumulator.accept(container, element);
+                    }
+                },
+                new BinaryOperator<java.util.HashMap<K, A>>() {
+                    @Override
+                    public java.util.HashMap<K, A> apply(java.util.HashMap<K, A> left, java.util.HashMap<K, A> right) {
+                        for (java.util.Map.Entry<K, A> entry : right.entrySet()) {
+                            A container = left.get(entry.getKey());
+                            left.put(entry.getKey(), container == null ? entry.getValue() : combiner.apply(container, entry.getValue()));
+                        }
+                        return left;
+                    }
+                },
+                new java.util.function.Function<java.util.HashMap<K, A>, HashMap<K, D>>() {
+                    @Override
+                    public HashMap<K, D> apply(java.util.HashMap<K, A> groups) {
+                        HashMap<K, D> result = HashMap.empty();
+                        for (java.util.Map.Entry<K, A> entry : groups.entrySet()) {
+                            result = result.put(entry.getKey(), finisher.apply(entry.getValue()));
+                        }
+                        return result;
+                    }
+                });
+    }
+
+    private static <R> java.util.function.Function<Box<R>, R> unbox() {
+        return new java.util.function.Function<Box<R>, R>() {
+            @Override
+            public R apply(Box<R> box) {
+                return box.value;
+            }
+        };
+    }
+
+    private static <E, R> Supplier<Built<E, R>> built(final BuilderFactory<E, R> factory, final BinaryOperator<R> union) {
+        return new Supplier<Built<E, R>>() {
+            @Override
+            public Built<E, R> get() {
+                return new Built<E, R>(factory, union);
+            }
+        };
+    }
+
+    private static <E, R> BinaryOperator<Built<E, R>> combineBuilt() {
+        return new BinaryOperator<Built<E, R>>() {
+            @Override
+            public Built<E, R> apply(Built<E, R> left, Built<E, R> right) {
+                return left.combine(right);
+            }
+        };
+    }
+
+    private static <E, R> java.util.function.Function<Built<E, R>, R> finishBuilt() {
+        return new java.util.function.Function<Built<E, R>, R>() {
+            @Override
+            public R apply(Built<E, R> built) {
+                return built.build();
+            }
+        };
+    }
+
+    private static class SimpleCollector<T, A, R> implements Collector<T, A, R> {
+        private final Supplier<A> supplier;
+        private final BiConsumer<A, T> accumulator;
+        private final BinaryOperator<A> combiner;
+        private final java.util.function.Function<A, R> finisher;
+        private final java.util.Set<Characteristics> characteristics;
+
+        SimpleCollector(Supplier<A> supplier, BiConsumer<A, T> accumulator, BinaryOperator<A> combiner,
+                        java.util.function.Function<A, R> finisher, Characteristics... characteristics) {
+            this.supplier = supplier;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.finisher = finisher;
+            this.characteristics = characteristics.length == 0
+                    ? Collections.<Characteristics>emptySet()
+                    : Collections.unmodifiableSet(EnumSet.copyOf(Arrays.asList(characteristics)));
+        }
+
+        @Override
+        public Supplier<A> supplier() {
+            return supplier;
+        }
+
+        @Override
+        public BiConsumer<A, T> accumulator() {
+            return accumulator;
+        }
+
+        @Override
+        public BinaryOperator<A> combiner() {
+            return combiner;
+        }
+
+        @Override
+        public java.util.function.Function<A, R> finisher() {
+            return finisher;
+        }
+
+        @Override
+        public java.util.Set<Characteristics> characteristics() {
+            return characteristics;
+        }
+    }
+
+    // Mutable holder for a persistent collection that is being accumulated. Sorted maps also track
+    // their size here as the tree does not cache it.
+    private static class Box<R> {
+        R value;
+        int size;
+
+        Box(R value) {
+            this.value = value;
+        }
+    }
+
+    // Accumulates elements in a builder. Partial results are combined with union once built, so elements are
+    // never inserted one at a time. Elements added after a combine go to a new builder.
+    private static class Built<E, R> {
+        private final BuilderFactory<E, R> factory;
+        private final BinaryOperator<R> union;
+        private Builder<E, R> builder;
+        private R value;
+
+        Built(BuilderFactory<E, R> factory, BinaryOperator<R> union) {
+            this.factory = factory;
+            this.union = union;
+            this.builder = factory.newBuilder();
+        }
+
+        void add(E element) {
+            if (builder == null) builder = factory.newBuilder();
+            builder.add(element);
+        }
+
+        R build() {
+            if (builder != null) {
+                R built = builder.build();
+                builder = null;
+                value = value == null ? built : union.apply(value, built);
+            }
+            return value;
+        }
+
+        Built<E, R> combine(Built<E, R> that) {
+            value = union.apply(build(), that.build());
+            return this;
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.hashmap.CompactHashMap;
+import com.github.andrewoma.dexx.collection.internal.hashmap.CompactHashMap.TrieNodes;
+import com.github.andrewoma.dexx.collection.internal.redblack.RedBlackTree;
+import com.github.andrewoma.dexx.collection.internal.redblack.Tree;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static com.github.andrewoma.dexx.collection.DexxOutput.*;
+
+/**
+ * {@code DexxInput} reads collections written by {@link com.github.andrewoma.dexx.collection.DexxOutput}.
+ * <p/>
+ * <p>Collections must be read in the order they were written, with the same
+ * {@link com.github.andrewoma.dexx.collection.ElementCodec ElementCodecs}. Nodes that were shared between collections
+ * when written are shared again when read. Input is read incrementally as each collection is read, so a stream of
+ * many collections is never buffered as a whole. However, every node read is remembered so that later
+ * collections can refer to it.
+ * <p/>
+ * <p>Sorted collections are rebuilt node by node without comparing keys, so they must be read with the comparator
+ * they were written with. A {@code TreeMap} that was constructed with a {@code KeyFunction} is read back as a
+ * {@code TreeMap} without one. Collections written element by element are read back as a {@code HashMap},
+ * {@code HashSet} or {@code Vector}, or as a {@code TreeMap} or {@code TreeSet} when read as sorted.
+ * <p/>
+ * <p>A {@code DexxInput} is not thread safe.
+ */
+public class DexxInput {
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    private final DataInput in;
+    private final ArrayList<Object> nodes = new ArrayList<Object>();
+
+    public DexxInput(@NotNull DataInput in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads from {@code buffer} starting at its current position.
+     */
+    public DexxInput(@NotNull ByteBuffer buffer) {
+        this(new ByteBufferInput(buffer));
+    }
+
+    // The nodes read so far, indexed by id
+    java.util.List<Object> nodes() {
+        return nodes;
+    }
+
+    @NotNull
+    public <K, V> Map<K, V> readMap(@NotNull ElementCodec<K> keyCodec, @NotNull ElementCodec<V> valueCodec) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case HASH_MAP:
+                return readHashMap(keyCodec, valueCodec);
+            case TREE_MAP:
+                return readTreeMap(null, keyCodec, valueCodec);
+            case MAP_ENTRIES:
+                Object[] pairs = readPairs(keyCodec, valueCodec);
+                return HashMap.fromPairs(pairs, pairs.length);
+            default:
+                throw unexpected("map", tag);
+        }
+    }
+
+    @NotNull
+    public <K, V> SortedMap<K, V> readSortedMap(Comparator<? super K> comparator, @NotNull ElementCodec<K> keyCodec, @NotNull ElementCodec<V> valueCodec) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case HASH_MAP:
+                return SortedMaps.copyOfTraversable(comparator, readHashMap(keyCodec, valueCodec));
+            case TREE_MAP:
+                return readTreeMap(comparator, keyCodec, valueCodec);
+            case MAP_ENTRIES:
+                Object[] pairs = readPairs(keyCodec, valueCodec);
+                return new TreeMap<K, V>(comparator, null).withPairs(pairs, pairs.length, false);
+            default:
+                throw unexpected("map", tag);
+        }
+    }
+
+    @NotNull
+    public <E> Set<E> readSet(@NotNull ElementCodec<E> codec) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case HASH_SET:
+                return readHashSet(codec);
+            case TREE_SET:
+                return readTreeSet(null, codec);
+            case SET_ELEMENTS:
+                Object[] elements = readElements(codec);
+                return HashSet.fromElements(elements, elements.length);
+            default:
+                throw unexpected("set", tag);
+        }
+    }
+
+    @NotNull
+    public <E> SortedSet<E> readSortedSet(Comparator<? super E> comparator, @NotNull ElementCodec<E> codec) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case HASH_SET:
+                return SortedSets.copyOfTraversable(comparator, readHashSet(codec));
+            case TREE_SET:
+                return readTreeSet(comparator, codec);
+            case SET_ELEMENTS:
+                Object[] elements = readElements(codec);
+                return new TreeSet<E>(comparator).withElements(elements, elements.length, false);
+            default:
+                throw unexpected("set", tag);
+        }
+    }
+
+    @NotNull
+    public <E> List<E> readList(@NotNull ElementCodec<E> codec) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case VECTOR:
+                return readVector(codec);
+            case CONS_LIST:
+                return readConsList(codec);
+            case LIST_ELEMENTS:
+                return Vector.fromArray(readElements(codec));
+            default:
+                throw unexpected("list", tag);
+        }
+    }
+
+    private static StreamCorruptedException unexpected(String expected, int tag) {
+        return new StreamCorruptedException("Expected a " + expected + " but found tag " + tag);
+    }
+
+    private Object[] readElements(ElementCodec<?> codec) throws IOException {
+        int size = readSize(Integer.MAX_VALUE);
+        Object[] elements = allocate(size);
+        for (int i = 0; i < size; i++) {
+            elements = ensureCapacity(elements, i, size);
+            elements[i] = codec.read(in);
+        }
+        return elements;
+    }
+
+    private <K, V> Object[] readPairs(ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) throws IOException {
+        int size = readSize(Integer.MAX_VALUE);
+        Object[] pairs = allocate(size);
+        for (int i = 0; i < size; i++) {
+            pairs = ensureCapacity(pairs, i, size);
+            K key = keyCodec.read(in);
+            pairs[i] = new Pair<K, V>(key, valueCodec.read(in));
+        }
+        return pairs;
+    }
+
+    // Sizes come from the stream, so arrays are grown as elements arrive rather than trusting the size up front
+    private static Object[] allocate(int size) {
+        return new Object[Math.min(size, MAX_INITIAL_CAPACITY)];
+    }
+
+    private static Object[] ensureCapacity(Object[] array, int index, int size) {
+        if (index < array.length) return array;
+        return Arrays.copyOf(array, (int) Math.min(size, 2L * array.length));
+    }
+
+    private int readSize(int max) throws IOException {
+        int size = readVarInt();
+        if (size < 0 || size > max) throw new StreamCorruptedException("Invalid size " + size);
+        return size;
+    }
+
+    // Reserves an id for a node whose children are about to be read, matching the order ids were assigned when written
+    private int reserve() {
+        nodes.add(null);
+        return nodes.size() - 1;
+    }
+
+    private <T> T reference(Class<T> type) throws IOException {
+        int id = readVarInt();
+        Object node = id < nodes.size() ? nodes.get(id) : null;
+        if (!type.isInstance(node)) {
+            throw new StreamCorruptedException("Invalid reference " + id);
+        }
+        return type.cast(node);
+    }
+
+    private <K, V> HashMap<K, V> readHashMap(ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) throws IOException {
+        KeyFunction<K, Pair<K, V>> keyFunction = HashMap.pairKeyFunction();
+        Object root = readTrieNode(keyCodec, valueCodec, keyFunction);
+        return HashMap.fromCompactHashMap(TrieNodes.fromRoot(root, keyFunction));
+    }
+
+    private <E> HashSet<E> readHashSet(ElementCodec<E> codec) throws IOException {
+        KeyFunction<E, E> keyFunction = HashSet.elementKeyFunction();
+        Object root = readTrieNode(null, codec, keyFunction);
+        return HashSet.fromCompactHashMap(TrieNodes.fromRoot(root, keyFunction));
+    }
+
+    // Trie values are pairs for maps, read with keyCodec and valueCodec, or elements for sets with no keyCodec
+    private Object readTrieNode(ElementCodec<?> keyCodec, ElementCodec<?> valueCodec, KeyFunction<?, ?> keyFunction) throws IOException {
+        int header = readVarInt();
+        switch (header) {
+            case EMPTY:
+                return null;
+            case REFERENCE:
+                return reference(CompactHashMap.class);
+            case LEAF:
+                return readTrieValue(keyCodec, valueCodec);
+            case TRIE: {
+                int id = reserve();
+                int bitmap = in.readInt();
+                int size = readSize(Integer.MAX_VALUE);
+                Object[] children = new Object[readSize(32)];
+                for (int i = 0; i < children.length; i++) {
+                    children[i] = readTrieNode(keyCodec, valueCodec, keyFunction);
+                }
+                Object node = TrieNodes.trie(bitmap, children, size);
+                nodes.set(id, node);
+                return node;
+            }
+            case COLLISION: {
+                int id = reserve();
+                int hash = in.readInt();
+                int size = readSize(Integer.MAX_VALUE);
+                Object[] values = allocate(size);
+                for (int i = 0; i < size; i++) {
+                    values = ensureCapacity(values, i, size);
+                    values[i] = readTrieValue(keyCodec, valueCodec);
+                }
+                Object node = TrieNodes.collision(hash, values, keyFunction);
+                nodes.set(id, node);
+                return node;
+            }
+            default:
+                throw new StreamCorruptedException("Invalid trie node header " + header);
+        }
+    }
+
+    private Object readTrieValue(ElementCodec<?> keyCodec, ElementCodec<?> valueCodec) throws IOException {
+        if (keyCodec == null) {
+            return valueCodec.read(in);
+        }
+        Object key = keyCodec.read(in);
+        return new Pair<Object, Object>(key, valueCodec.read(in));
+    }
+
+    private <K, V> TreeMap<K, V> readTreeMap(Comparator<? super K> comparator, ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) throws IOException {
+        RedBlackTree<K, V> redBlackTree = new TreeMap<K, V>(comparator, null).redBlackTree();
+        return new TreeMap<K, V>(readTreeNode(redBlackTree, keyCodec, valueCodec), redBlackTree);
+    }
+
+    private <E> TreeSet<E> readTreeSet(Comparator<? super E> comparator, ElementCodec<E> codec) throws IOException {
+        RedBlackTree<E, E> redBlackTree = new TreeSet<E>(comparator).redBlackTree();
+        return new TreeSet<E>(readTreeNode(redBlackTree, null, codec), redBlackTree);
+    }
+
+    // Reads keys with keyCodec if it is not null, otherwise the key is derived from the value
+    @SuppressWarnings("unchecked")
+    private <K, V> Tree<K, V> readTreeNode(RedBlackTree<K, V> redBlackTree, ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) throws IOException {
+        int header = readVarInt();
+        switch (header) {
+            case EMPTY:
+                return null;
+            case REFERENCE:
+                return (Tree<K, V>) reference(Tree.class);
+            case RED:
+            case BLACK:
+                int id = reserve();
+                K key = keyCodec == null ? null : keyCodec.read(in);
+                V value = valueCodec.read(in);
+                if (keyCodec == null) key = (K) value;
+                Tree<K, V> left = readTreeNode(redBlackTree, keyCodec, valueCodec);
+                Tree<K, V> right = readTreeNode(redBlackTree, keyCodec, valueCodec);
+                Tree<K, V> node = redBlackTree.node(header == BLACK, key, value, left, right);
+                nodes.set(id, node);
+                return node;
+            default:
+                throw new StreamCorruptedException("Invalid tree node header " + header);
+        }
+    }
+
+    private <E> Vector<E> readVector(ElementCodec<E> codec) throws IOException {
+        int startIndex = readSize(Integer.MAX_VALUE);
+        int endIndex = readSize(Integer.MAX_VALUE);
+        if (endIndex < startIndex) throw new StreamCorruptedException("Invalid vector range " + startIndex + " to " + endIndex);
+        if (startIndex == endIndex) return Vector.empty();
+
+        int depth = readVarInt();
+        if (depth < 1 || depth > 6) throw new StreamCorruptedException("Invalid vector depth " + depth);
+        Object[] root = readVectorNode(depth - 1, codec);
+        return Vector.fromRoot(root, depth, startIndex, endIndex);
+    }
+
+    private Object[] readVectorNode(int level, ElementCodec<?> codec) throws IOException {
+        int header = readVarInt();
+        switch (header) {
+            case EMPTY:
+                return null;
+            case REFERENCE:
+                return reference(Object[].class);
+            case NODE:
+                int id = reserve();
+                Object[] node = new Object[readSize(32)];
+                int bitmap = in.readInt();
+                for (int i = 0; i < node.length; i++) {
+                    if ((bitmap & (1 << i)) != 0) {
+                        node[i] = level == 0 ? codec.read(in) : readVectorNode(level - 1, codec);
+                    }
+                }
+                nodes.set(id, node);
+                return node;
+            default:
+                throw new StreamCorruptedException("Invalid vector node header " + header);
+        }
+    }
+
+    // Reads cells up to the end of the list or a reference to an earlier cell, then builds the list from the tail
+    @SuppressWarnings("unchecked")
+    private <E> ConsList<E> readConsList(ElementCodec<E> codec) throws IOException {
+        int firstId = nodes.size();
+        ArrayList<E> heads = new ArrayList<E>();
+        ConsList<E> tail;
+        while (true) {
+            int header = readVarInt();
+            if (header == EMPTY) {
+                tail = ConsList.empty();
+                break;
+            } else if (header == REFERENCE) {
+                tail = (ConsList<E>) reference(ConsList.class);
+                break;
+            } else if (header == NODE) {
+                reserve();
+                heads.add(codec.read(in));
+            } else {
+                throw new StreamCorruptedException("Invalid list node header " + header);
+            }
+        }
+
+        for (int i = heads.size() - 1; i >= 0; i--) {
+            tail = tail.prepend(heads.get(i));
+            nodes.set(firstId + i, tail);
+        }
+        return tail;
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new StreamCorruptedException("Invalid variable length integer");
+    }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.hashmap.CompactHashMap;
+import com.github.andrewoma.dexx.collection.internal.hashmap.CompactHashMap.TrieNodes;
+import com.github.andrewoma.dexx.collection.internal.redblack.RedBlackTree;
+import com.github.andrewoma.dexx.collection.internal.redblack.Tree;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.IdentityHashMap;
+
+/**
+ * {@code DexxOutput} writes collections in a compact binary format that preserves structural sharing.
+ * <p/>
+ * <p>The nodes of hash tries ({@code HashMap}, {@code HashSet}), red-black trees ({@code TreeMap}, {@code TreeSet}),
+ * {@code Vectors} and {@code ConsLists} are each written once. Any later occurrence of a node, in the same
+ * collection or in another collection written to the same {@code DexxOutput}, is written as a reference to the first.
+ * Writing several versions of a collection therefore costs roughly the size of their combined unique nodes.
+ * Other collections are written element by element.
+ * <p/>
+ * <p>Elements are written with {@link com.github.andrewoma.dexx.collection.ElementCodec ElementCodecs}. The same
+ * codecs must be used to read the collections back with {@link com.github.andrewoma.dexx.collection.DexxInput}.
+ * <p/>
+ * <p>A {@code DexxOutput} remembers every node it has written, so it should be discarded once the related
+ * collections have been written. It is not thread safe.
+ */
+public class DexxOutput {
+    // Collection tags
+    static final int HASH_MAP = 1;
+    static final int TREE_MAP = 2;
+    static final int MAP_ENTRIES = 3;
+    static final int HASH_SET = 4;
+    static final int TREE_SET = 5;
+    static final int SET_ELEMENTS = 6;
+    static final int VECTOR = 7;
+    static final int CONS_LIST = 8;
+    static final int LIST_ELEMENTS = 9;
+
+    // Node headers. Each kind of node is one of EMPTY, REFERENCE or a structure specific header from NODE.
+    static final int EMPTY = 0;
+    static final int REFERENCE = 1;
+    static final int NODE = 2;
+    static final int LEAF = NODE;
+    static final int TRIE = NODE + 1;
+    static final int COLLISION = NODE + 2;
+    static final int RED = NODE;
+    static final int BLACK = NODE + 1;
+
+    private final DataOutput out;
+    private final IdentityHashMap<Object, Integer> nodeIds = new IdentityHashMap<Object, Integer>();
+
+    public DexxOutput(@NotNull DataOutput out) {
+        this.out = out;
+    }
+
+    // Continues a stream read by a DexxInput, so that nodes already read are referenced rather than written again
+    DexxOutput(DataOutput out, java.util.List<Object> nodes) {
+        this.out = out;
+        for (Object node : nodes) {
+            nodeIds.put(node, nodeIds.size());
+        }
+    }
+
+    /**
+     * Writes to {@code buffer} from its current position. A {@code BufferOverflowException} is thrown if the
+     * buffer fills up.
+     */
+    public DexxOutput(@NotNull final ByteBuffer buffer) {
+        this(new DataOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+                buffer.put((byte) b);
+            }
+
+            @Override
+            public void write(@NotNull byte[] b, int off, int len) {
+                buffer.put(b, off, len);
+            }
+        }));
+    }
+
+    public <K, V> void writeMap(@NotNull Map<K, V> map, @NotNull ElementCodec<? super K> keyCodec, @NotNull ElementCodec<? super V> valueCodec) throws IOException {
+        if (map instanceof HashMap) {
+            out.writeByte(HASH_MAP);
+            writeTrie(((HashMap<K, V>) map).compactHashMap(), keyCodec, valueCodec);
+        } else if (map instanceof TreeMap) {
+            TreeMap<K, V> treeMap = (TreeMap<K, V>) map;
+            out.writeByte(TREE_MAP);
+            writeTree(treeMap.tree(), treeMap.redBlackTree(), keyCodec, valueCodec);
+        } else {
+            out.writeByte(MAP_ENTRIES);
+            writeVarInt(map.size());
+            for (Pair<K, V> entry : map) {
+                keyCodec.write(out, entry.component1());
+                valueCodec.write(out, entry.component2());
+            }
+        }
+    }
+
+    public <E> void writeSet(@NotNull Set<E> set, @NotNull ElementCodec<? super E> codec) throws IOException {
+        if (set instanceof HashSet) {
+            out.writeByte(HASH_SET);
+            writeTrie(((HashSet<E>) set).compactHashMap(), null, codec);
+        } else if (set instanceof TreeSet) {
+            TreeSet<E> treeSet = (TreeSet<E>) set;
+            out.writeByte(TREE_SET);
+            writeTree(treeSet.tree(), treeSet.redBlackTree(), null, codec);
+        } else {
+            out.writeByte(SET_ELEMENTS);
+            writeElements(set, codec);
+        }
+    }
+
+    public <E> void writeList(@NotNull List<E> list, @NotNull ElementCodec<? super E> codec) throws IOException {
+        if (list instanceof Vector) {
+            out.writeByte(VECTOR);
+            writeVector((Vector<E>) list, codec);
+        } else if (list instanceof ConsList) {
+            out.writeByte(CONS_LIST);
+            writeConsList((ConsList<E>) list, codec);
+        } else {
+            out.writeByte(LIST_ELEMENTS);
+            writeElements(list, codec);
+        }
+    }
+
+    private <E> void writeElements(Iterable<E> elements, ElementCodec<? super E> codec) throws IOException {
+        writeVarInt(elements.size());
+        for (E element : elements) {
+            codec.write(out, element);
+        }
+    }
+
+    // Writes the header for node, returning true if the node's contents must follow
+    private boolean writeHeader(Object node, int header) throws IOException {
+        Integer id = nodeIds.get(node);
+        if (id != null) {
+            writeVarInt(REFERENCE);
+            writeVarInt(id);
+            return false;
+        }
+        nodeIds.put(node, nodeIds.size());
+        writeVarInt(header);
+        return true;
+    }
+
+    // Trie values are pairs for maps, written with keyCodec and valueCodec, or elements for sets with no keyCodec
+    private void writeTrie(CompactHashMap<?, ?> map, ElementCodec<?> keyCodec, ElementCodec<?> valueCodec) throws IOException {
+        writeTrieNode(TrieNodes.root(map), keyCodec, valueCodec);
+    }
+
+    private void writeTrieNode(Object node, ElementCodec<?> keyCodec, ElementCodec<?> valueCodec) throws IOException {
+        if (node == null) {
+            writeVarInt(EMPTY);
+            return;
+        }
+        switch (TrieNodes.kind(node)) {
+            case TrieNodes.TRIE:
+                if (writeHeader(node, TRIE)) {
+                    out.writeInt(TrieNodes.bitmap(node));
+                    writeVarInt(TrieNodes.size(node));
+                    Object[] children = TrieNodes.children(node);
+                    writeVarInt(children.length);
+                    for (Object child : children) {
+                        writeTrieNode(child, keyCodec, valueCodec);
+                    }
+                }
+                break;
+            case TrieNodes.COLLISION:
+                if (writeHeader(node, COLLISION)) {
+                    out.writeInt(TrieNodes.hash(node));
+                    Object[] values = TrieNodes.values(node);
+                    writeVarInt(values.length);
+                    for (Object value : values) {
+                        writeTrieValue(value, keyCodec, valueCodec);
+                    }
+                }
+                break;
+            default:
+                // Leaves are not shared on their own, only as part of a shared parent
+                writeVarInt(LEAF);
+                writeTrieValue(node, keyCodec, valueCodec);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void writeTrieValue(Object value, ElementCodec<?> keyCodec, ElementCodec<?> valueCodec) throws IOException {
+        if (keyCodec == null) {
+            ((ElementCodec<Object>) valueCodec).write(out, value);
+        } else {
+            Pair<?, ?> pair = (Pair<?, ?>) value;
+            ((ElementCodec<Object>) keyCodec).write(out, pair.component1());
+            ((ElementCodec<Object>) valueCodec).write(out, pair.component2());
+        }
+    }
+
+    // Writes keys with keyCodec if it is not null, otherwise the key is derived from the value
+    private <K, V> void writeTree(Tree<K, V> tree, RedBlackTree<K, V> redBlackTree, ElementCodec<? super K> keyCodec, ElementCodec<? super V> valueCodec) throws IOException {
+        if (tree == null) {
+            writeVarInt(EMPTY);
+            return;
+        }
+        if (writeHeader(tree, tree.isBlack() ? BLACK : RED)) {
+            if (keyCodec != null) {
+                keyCodec.write(out, tree.getKey(redBlackTree.getKeyFunction()));
+            }
+            valueCodec.write(out, tree.getValue());
+            writeTree(tree.getLeft(), redBlackTree, keyCodec, valueCodec);
+            writeTree(tree.getRight(), redBlackTree, keyCodec, valueCodec);
+        }
+    }
+
+    private <E> void writeVector(Vector<E> vector, ElementCodec<? super E> codec) throws IOException {
+        writeVarInt(vector.startIndex());
+        writeVarInt(vector.endIndex());
+        if (vector.isEmpty()) return;
+
+        VectorPointer<E> pointer = vector.stablePointer();
+        writeVarInt(pointer.depth);
+        writeVectorNode(pointer.getDisplay(pointer.depth - 1), pointer.depth - 1, codec);
+    }
+
+    // Slots that are null are skipped using a bitmap, as arrays may be partly filled
+    @SuppressWarnings("unchecked")
+    private <E> void writeVectorNode(Object[] node, int level, ElementCodec<? super E> codec) throws IOException {
+        if (node == null) {
+            writeVarInt(EMPTY);
+            return;
+        }
+        if (writeHeader(node, NODE)) {
+            writeVarInt(node.length);
+            int bitmap = 0;
+            for (int i = 0; i < node.length; i++) {
+                if (node[i] != null) bitmap |= 1 << i;
+            }
+            out.writeInt(bitmap);
+            for (Object child : node) {
+                if (child == null) continue;
+                if (level == 0) {
+                    codec.write(out, (E) child);
+                } else {
+                    writeVectorNode((Object[]) child, level - 1, codec);
+                }
+            }
+        }
+    }
+
+    // Writes cells until the end of the list or a cell that has already been written
+    private <E> void writeConsList(ConsList<E> list, ElementCodec<? super E> codec) throws IOException {
+        for (ConsList<E> cell = list; ; cell = cell.tail()) {
+            if (cell.isEmpty()) {
+                writeVarInt(EMPTY);
+                return;
+            }
+            if (!writeHeader(cell, NODE)) return;
+            codec.write(out, cell.first());
+        }
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.writeByte((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+/**
+ * {@code ElementCodecs} provides codecs for common element types.
+ * <p/>
+ * <p>The codecs do not accept {@code null} elements. Use {@link #nullable(ElementCodec)} for collections that
+ * may contain {@code null}.
+ */
+public class ElementCodecs {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int MAX_INITIAL_CAPACITY = 8192;
+
+    private static final ElementCodec<String> STRINGS = new ElementCodec<String>() {
+        @Override
+        public void write(DataOutput out, String element) throws IOException {
+            byte[] bytes = element.getBytes(UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+
+        @Override
+        public String read(DataInput in) throws IOException {
+            int length = in.readInt();
+            if (length < 0) throw new StreamCorruptedException("Invalid string length " + length);
+            // The length comes from the stream, so read in chunks rather than trusting it up front
+            byte[] bytes = new byte[Math.min(length, MAX_INITIAL_CAPACITY)];
+            for (int read = 0; read < length; ) {
+                if (read == bytes.length) {
+                    bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+                }
+                in.readFully(bytes, read, bytes.length - read);
+                read = bytes.length;
+            }
+            return new String(bytes, UTF_8);
+        }
+    };
+
+    private static final ElementCodec<Integer> INTEGERS = new ElementCodec<Integer>() {
+        @Override
+        public void write(DataOutput out, Integer element) throws IOException {
+            out.writeInt(element);
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+            return in.readInt();
+        }
+    };
+
+    private static final ElementCodec<Long> LONGS = new ElementCodec<Long>() {
+        @Override
+        public void write(DataOutput out, Long element) throws IOException {
+            out.writeLong(element);
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+            return in.readLong();
+        }
+    };
+
+    private static final ElementCodec<Double> DOUBLES = new ElementCodec<Double>() {
+        @Override
+        public void write(DataOutput out, Double element) throws IOException {
+            out.writeDouble(element);
+        }
+
+        @Override
+        public Double read(DataInput in) throws IOException {
+            return in.readDouble();
+        }
+    };
+
+    private static final ElementCodec<Boolean> BOOLEANS = new ElementCodec<Boolean>() {
+        @Override
+        public void write(DataOutput out, Boolean element) throws IOException {
+            out.writeBoolean(element);
+        }
+
+        @Override
+        public Boolean read(DataInput in) throws IOException {
+            return in.readBoolean();
+        }
+    };
+
+    private ElementCodecs() {
+    }
+
+    /**
+     * Returns a codec for strings of any length, encoded as UTF-8.
+     */
+    @NotNull
+    public static ElementCodec<String> strings() {
+        return STRINGS;
+    }
+
+    @NotNull
+    public static ElementCodec<Integer> integers() {
+        return INTEGERS;
+    }
+
+    @NotNull
+    public static ElementCodec<Long> longs() {
+        return LONGS;
+    }
+
+    @NotNull
+    public static ElementCodec<Double> doubles() {
+        return DOUBLES;
+    }
+
+    @NotNull
+    public static ElementCodec<Boolean> booleans() {
+        return BOOLEANS;
+    }
+
+    /**
+     * Returns a codec that accepts {@code null} by writing a marker before each element.
+     */
+    @NotNull
+    public static <E> ElementCodec<E> nullable(@NotNull final ElementCodec<E> codec) {
+        return new ElementCodec<E>() {
+            @Override
+            public void write(DataOutput out, E element) throws IOException {
+                out.writeBoolean(element != null);
+                if (element != null) {
+                    codec.write(out, element);
+                }
+            }
+
+            @Override
+            public E read(DataInput in) throws IOException {
+                return in.readBoolean() ? codec.read(in) : null;
+            }
+        };
+    }
+}
@@ -0,0 +1,622 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.base.AbstractIterable;
+import com.github.andrewoma.dexx.collection.internal.builder.AbstractBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@code FingerTree} is a persistent sequence that maintains a cached {@link Measure} of its elements.
+ * <p/>
+ * <p>It is an implementation of the 2-3 finger tree described by Hinze and Paterson in
+ * <a href="http://www.staff.city.ac.uk/~ross/papers/FingerTree.html">Finger trees: a simple general-purpose data structure</a>.
+ * Access to both ends is amortised O(1), concatenation is O(log min(n1, n2)) and splitting or searching by
+ * accumulated measure is O(log n).
+ * <p/>
+ * <p>Searching and splitting take a predicate on the accumulated measure that must be monotonic: once it is
+ * true for a prefix of the sequence it must remain true for every longer prefix.
+ * <p/>
+ * <p>See {@link com.github.andrewoma.dexx.collection.FingerTreeList} and
+ * {@link com.github.andrewoma.dexx.collection.PriorityQueue} for examples of its use.
+ */
+public class FingerTree<E, M> extends AbstractIterable<E> {
+    private final FingerTreeOps<M> ops;
+    private final FTree<M> root;
+
+    @NotNull
+    public static <E, M> BuilderFactory<E, FingerTree<E, M>> factory(@NotNull final Measure<E, M> measure) {
+        return new BuilderFactory<E, FingerTree<E, M>>() {
+            @NotNull
+            @Override
+            public Builder<E, FingerTree<E, M>> newBuilder() {
+                return new AbstractBuilder<E, FingerTree<E, M>>() {
+                    private FingerTree<E, M> tree = FingerTree.empty(measure);
+
+                    @NotNull
+                    @Override
+                    public Builder<E, FingerTree<E, M>> add(E element) {
+                        tree = tree.append(element);
+                        return this;
+                    }
+
+                    @NotNull
+                    @Override
+                    public FingerTree<E, M> doBuild() {
+                        return tree;
+                    }
+                };
+            }
+        };
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <E, M> FingerTree<E, M> empty(@NotNull Measure<E, M> measure) {
+        return new FingerTree<E, M>(new FingerTreeOps<M>((Measure<Object, M>) measure), FTree.<M>empty());
+    }
+
+    private FingerTree(FingerTreeOps<M> ops, FTree<M> root) {
+        this.ops = ops;
+        this.root = root;
+    }
+
+    private FingerTree<E, M> create(FTree<M> root) {
+        return root == this.root ? this : new FingerTree<E, M>(ops, root);
+    }
+
+    /**
+     * Returns the {@code Measure} used by this tree.
+     */
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public Measure<E, M> getMeasure() {
+        return (Measure<E, M>) ops.measure;
+    }
+
+    /**
+     * Returns the combined measure of all elements in O(1).
+     */
+    public M measure() {
+        return ops.measure(root);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return root.isEmpty();
+    }
+
+    @NotNull
+    public FingerTree<E, M> prepend(E element) {
+        return create(ops.prepend(root, element));
+    }
+
+    @NotNull
+    public FingerTree<E, M> append(E element) {
+        return create(ops.append(root, element));
+    }
+
+    /**
+     * Returns the first element or {@code null} if the tree is empty.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public E first() {
+        return isEmpty() ? null : (E) ops.first(root);
+    }
+
+    /**
+     * Returns the last element or {@code null} if the tree is empty.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public E last() {
+        return isEmpty() ? null : (E) ops.last(root);
+    }
+
+    /**
+     * Returns a tree containing all elements except the first. Returns an empty tree if this tree is empty.
+     */
+    @NotNull
+    public FingerTree<E, M> tail() {
+        return isEmpty() ? this : create(ops.tail(root));
+    }
+
+    /**
+     * Returns a tree containing all elements except the last. Returns an empty tree if this tree is empty.
+     */
+    @NotNull
+    public FingerTree<E, M> init() {
+        return isEmpty() ? this : create(ops.init(root));
+    }
+
+    /**
+     * Returns a tree containing the elements of this tree followed by the elements of {@code other}.
+     * Both trees must use equivalent measures.
+     */
+    @NotNull
+    public FingerTree<E, M> concat(@NotNull FingerTree<E, M> other) {
+        return create(ops.concat(root, FingerTreeOps.EMPTY_DIGIT, other.root));
+    }
+
+    /**
+     * Splits the tree at the first element where {@code predicate} becomes true for the accumulated measure of
+     * the elements up to and including that element. The element is the first of the right hand tree.
+     * If the predicate is never true, the right hand tree is empty.
+     */
+    @NotNull
+    public Pair<FingerTree<E, M>, FingerTree<E, M>> split(@NotNull Predicate<M> predicate) {
+        if (isEmpty()) return new Pair<FingerTree<E, M>, FingerTree<E, M>>(this, this);
+
+        if (!predicate.invoke(measure())) {
+            return new Pair<FingerTree<E, M>, FingerTree<E, M>>(this, create(FTree.<M>empty()));
+        }
+
+        FingerTreeOps.Split<M> split = ops.split(predicate, ops.measure.zero(), root);
+        return new Pair<FingerTree<E, M>, FingerTree<E, M>>(
+                create(split.left), create(ops.prepend(split.right, split.item)));
+    }
+
+    /**
+     * Returns the first element where {@code predicate} becomes true for the accumulated measure of the elements
+     * up to and including that element, or {@code null} if there is no such element. Unlike
+     * {@link #split(Predicate)} no new trees are constructed.
+     */
+    @Nullable
+    @SuppressWarnings("unchecked")
+    public E lookup(@NotNull Predicate<M> predicate) {
+        if (isEmpty() || !predicate.invoke(measure())) return null;
+        return (E) ops.lookup(predicate, ops.measure.zero(), root);
+    }
+
+    @NotNull
+    @Override
+    public Iterator<E> iterator() {
+        return new FingerTreeIterator<E>(root);
+    }
+}
+
+/**
+ * The internal tree representation. Items at the top level are elements; items at deeper levels are
+ * {@code FNodes} of 2 or 3 items from the level above.
+ */
+abstract class FTree<M> {
+    private static final FTree<?> EMPTY = new FEmpty<Object>();
+
+    @SuppressWarnings("unchecked")
+    static <M> FTree<M> empty() {
+        return (FTree<M>) EMPTY;
+    }
+
+    boolean isEmpty() {
+        return false;
+    }
+}
+
+class FEmpty<M> extends FTree<M> {
+    @Override
+    boolean isEmpty() {
+        return true;
+    }
+}
+
+class FSingle<M> extends FTree<M> {
+    final M measure;
+    final Object item;
+
+    FSingle(M measure, Object item) {
+        this.measure = measure;
+        this.item = item;
+    }
+}
+
+class FDeep<M> extends FTree<M> {
+    final M measure;
+    final Object[] prefix; // 1 to 4 items
+    final FTree<M> middle;
+    final Object[] suffix; // 1 to 4 items
+
+    FDeep(M measure, Object[] prefix, FTree<M> middle, Object[] suffix) {
+        this.measure = measure;
+        this.prefix = prefix;
+        this.middle = middle;
+        this.suffix = suffix;
+    }
+}
+
+class FNode<M> {
+    final M measure;
+    final Object[] items; // 2 or 3 items
+
+    FNode(M measure, Object[] items) {
+        this.measure = measure;
+        this.items = items;
+    }
+}
+
+/**
+ * Implements the tree operations. Operations are the same at every level of the tree, with items being
+ * measured according to whether they are elements or nodes.
+ */
+class FingerTreeOps<M> {
+    static final Object[] EMPTY_DIGIT = new Object[0];
+
+    final Measure<Object, M> measure;
+
+    FingerTreeOps(Measure<Object, M> measure) {
+        this.measure = measure;
+    }
+
+    // Elements can never be FNodes as the class is not accessible outside of this package
+    @SuppressWarnings("unchecked")
+    M measure(Object item) {
+        return item instanceof FNode ? ((FNode<M>) item).measure : measure.measure(item);
+    }
+
+    static class Split<M> {
+        final FTree<M> left;
+        final Object item;
+        final FTree<M> right;
+
+        Split(FTree<M> left, Object item, FTree<M> right) {
+            this.left = left;
+            this.item = item;
+            this.right = right;
+        }
+    }
+
+    M measure(FTree<M> tree) {
+        if (tree instanceof FDeep) return ((FDeep<M>) tree).measure;
+        if (tree instanceof FSingle) return ((FSingle<M>) tree).measure;
+        return measure.zero();
+    }
+
+    M measure(Object[] digit, int from, int to) {
+        if (from == to) return measure.zero();
+
+        M result = measure(digit[from]);
+        for (int i = from + 1; i < to; i++) {
+            result = measure.combine(result, measure(digit[i]));
+        }
+        return result;
+    }
+
+    FTree<M> deep(Object[] prefix, FTree<M> middle, Object[] suffix) {
+        M m = measure.combine(measure.combine(measure(prefix, 0, prefix.length), measure(middle)),
+                measure(suffix, 0, suffix.length));
+        return new FDeep<M>(m, prefix, middle, suffix);
+    }
+
+    // As deep, but the prefix may be empty
+    @SuppressWarnings("unchecked")
+    FTree<M> deepLeft(Object[] prefix, FTree<M> middle, Object[] suffix) {
+        if (prefix.length != 0) return deep(prefix, middle, suffix);
+        if (middle.isEmpty()) return toTree(suffix, 0, suffix.length);
+
+        FNode<M> node = (FNode<M>) first(middle);
+        return deep(node.items, tail(middle), suffix);
+    }
+
+    // As deep, but the suffix may be empty
+    @SuppressWarnings("unchecked")
+    FTree<M> deepRight(Object[] prefix, FTree<M> middle, Object[] suffix) {
+        if (suffix.length != 0) return deep(prefix, middle, suffix);
+        if (middle.isEmpty()) return toTree(prefix, 0, prefix.length);
+
+        FNode<M> node = (FNode<M>) last(middle);
+        return deep(prefix, init(middle), node.items);
+    }
+
+    FTree<M> toTree(Object[] items, int from, int to) {
+        FTree<M> result = FTree.empty();
+        for (int i = from; i < to; i++) {
+            result = append(result, items[i]);
+        }
+        return result;
+    }
+
+    FNode<M> node(Object a, Object b) {
+        return new FNode<M>(measure.combine(measure(a), measure(b)), new Object[]{a, b});
+    }
+
+    FNode<M> node(Object a, Object b, Object c) {
+        return new FNode<M>(measure.combine(measure.combine(measure(a), measure(b)), measure(c)), new Object[]{a, b, c});
+    }
+
+    FTree<M> prepend(FTree<M> tree, Object item) {
+        if (tree instanceof FDeep) {
+            FDeep<M> deep = (FDeep<M>) tree;
+            M m = measure.combine(measure(item), deep.measure);
+            Object[] prefix = deep.prefix;
+            if (prefix.length == 4) {
+                FTree<M> middle = prepend(deep.middle, node(prefix[1], prefix[2], prefix[3]));
+                return new FDeep<M>(m, new Object[]{item, prefix[0]}, middle, deep.suffix);
+            }
+
+            Object[] newPrefix = new Object[prefix.length + 1];
+            newPrefix[0] = item;
+            System.arraycopy(prefix, 0, newPrefix, 1, prefix.length);
+            return new FDeep<M>(m, newPrefix, deep.middle, deep.suffix);
+        }
+
+        if (tree instanceof FSingle) {
+            return deep(new Object[]{item}, FTree.<M>empty(), new Object[]{((FSingle<M>) tree).item});
+        }
+
+        return new FSingle<M>(measure(item), item);
+    }
+
+    FTree<M> append(FTree<M> tree, Object item) {
+        if (tree instanceof FDeep) {
+            FDeep<M> deep = (FDeep<M>) tree;
+            M m = measure.combine(deep.measure, measure(item));
+            Object[] suffix = deep.suffix;
+            if (suffix.length == 4) {
+                FTree<M> middle = append(deep.middle, node(suffix[0], suffix[1], suffix[2]));
+                return new FDeep<M>(m, deep.prefix, middle, new Object[]{suffix[3], item});
+            }
+
+            Object[] newSuffix = Arrays.copyOf(suffix, suffix.length + 1);
+            newSuffix[suffix.length] = item;
+            return new FDeep<M>(m, deep.prefix, deep.middle, newSuffix);
+        }
+
+        if (tree instanceof FSingle) {
+            return deep(new Object[]{((FSingle<M>) tree).item}, FTree.<M>empty(), new Object[]{item});
+        }
+
+        return new FSingle<M>(measure(item), item);
+    }
+
+    // The following require a non-empty tree
+
+    Object first(FTree<M> tree) {
+        return tree instanceof FDeep ? ((FDeep<M>) tree).prefix[0] : ((FSingle<M>) tree).item;
+    }
+
+    Object last(FTree<M> tree) {
+        if (tree instanceof FDeep) {
+            Object[] suffix = ((FDeep<M>) tree).suffix;
+            return suffix[suffix.length - 1];
+        }
+        return ((FSingle<M>) tree).item;
+    }
+
+    FTree<M> tail(FTree<M> tree) {
+        if (!(tree instanceof FDeep)) return FTree.empty();
+
+        FDeep<M> deep = (FDeep<M>) tree;
+        return deepLeft(Arrays.copyOfRange(deep.prefix, 1, deep.prefix.length), deep.middle, deep.suffix);
+    }
+
+    FTree<M> init(FTree<M> tree) {
+        if (!(tree instanceof FDeep)) return FTree.empty();
+
+        FDeep<M> deep = (FDeep<M>) tree;
+        return deepRight(deep.prefix, deep.middle, Arrays.copyOf(deep.suffix, deep.suffix.length - 1));
+    }
+
+    FTree<M> concat(FTree<M> left, Object[] items, FTree<M> right) {
+        if (left.isEmpty()) {
+            FTree<M> result = right;
+            for (int i = items.length - 1; i >= 0; i--) {
+                result = prepend(result, items[i]);
+            }
+            return result;
+        }
+
+        if (right.isEmpty()) {
+            FTree<M> result = left;
+            for (Object item : items) {
+                result = append(result, item);
+            }
+            return result;
+        }
+
+        if (left instanceof FSingle) {
+            return prepend(concat(FTree.<M>empty(), items, right), ((FSingle<M>) left).item);
+        }
+
+        if (right instanceof FSingle) {
+            return append(concat(left, items, FTree.<M>empty()), ((FSingle<M>) right).item);
+        }
+
+        FDeep<M> l = (FDeep<M>) left;
+        FDeep<M> r = (FDeep<M>) right;
+        FTree<M> middle = concat(l.middle, nodes(l.suffix, items, r.prefix), r.middle);
+        return deep(l.prefix, middle, r.suffix);
+    }
+
+    // Groups 2 or more items into nodes of 2 or 3
+    private Object[] nodes(Object[] a, Object[] b, Object[] c) {
+        Object[] items = new Object[a.length + b.length + c.length];
+        System.arraycopy(a, 0, items, 0, a.length);
+        System.arraycopy(b, 0, items, a.length, b.length);
+        System.arraycopy(c, 0, items, a.length + b.length, c.length);
+
+        java.util.List<Object> nodes = new ArrayList<Object>(items.length / 3 + 1);
+        int i = 0;
+        int remaining = items.length;
+        while (remaining > 4 || remaining == 3) {
+            nodes.add(node(items[i], items[i + 1], items[i + 2]));
+            i += 3;
+            remaining -= 3;
+        }
+        if (remaining == 4) {
+            nodes.add(node(items[i], items[i + 1]));
+            nodes.add(node(items[i + 2], items[i + 3]));
+        } else if (remaining == 2) {
+            nodes.add(node(items[i], items[i + 1]));
+        }
+
+        return nodes.toArray();
+    }
+
+    // Requires a non-empty tree where predicate is true for accumulated + measure(tree)
+    @SuppressWarnings("unchecked")
+    Split<M> split(Predicate<M> predicate, M accumulated, FTree<M> tree) {
+        if (tree instanceof FSingle) {
+            return new Split<M>(FTree.<M>empty(), ((FSingle<M>) tree).item, FTree.<M>empty());
+        }
+
+        FDeep<M> deep = (FDeep<M>) tree;
+        M afterPrefix = measure.combine(accumulated, measure(deep.prefix, 0, deep.prefix.length));
+        if (predicate.invoke(afterPrefix)) {
+            int i = splitDigit(predicate, accumulated, deep.prefix);
+            return new Split<M>(toTree(deep.prefix, 0, i), deep.prefix[i],
+                    deepLeft(Arrays.copyOfRange(deep.prefix, i + 1, deep.prefix.length), deep.middle, deep.suffix));
+        }
+
+        M afterMiddle = measure.combine(afterPrefix, measure(deep.middle));
+        if (predicate.invoke(afterMiddle)) {
+            Split<M> middle = split(predicate, afterPrefix, deep.middle);
+            FNode<M> node = (FNode<M>) middle.item;
+            M beforeNode = measure.combine(afterPrefix, measure(middle.left));
+            int i = splitDigit(predicate, beforeNode, node.items);
+            return new Split<M>(deepRight(deep.prefix, middle.left, Arrays.copyOf(node.items, i)), node.items[i],
+                    deepLeft(Arrays.copyOfRange(node.items, i + 1, node.items.length), middle.right, deep.suffix));
+        }
+
+        int i = splitDigit(predicate, afterMiddle, deep.suffix);
+        return new Split<M>(deepRight(deep.prefix, deep.middle, Arrays.copyOf(deep.suffix, i)), deep.suffix[i],
+                toTree(deep.suffix, i + 1, deep.suffix.length));
+    }
+
+    // Returns the index of the first item where the predicate becomes true, or the last item if it never does
+    private int splitDigit(Predicate<M> predicate, M accumulated, Object[] items) {
+        for (int i = 0; i < items.length - 1; i++) {
+            accumulated = measure.combine(accumulated, measure(items[i]));
+            if (predicate.invoke(accumulated)) return i;
+        }
+        return items.length - 1;
+    }
+
+    // As split, but only locates the element
+    Object lookup(Predicate<M> predicate, M accumulated, FTree<M> tree) {
+        Object found;
+        while (true) {
+            if (tree instanceof FSingle) {
+                found = ((FSingle<M>) tree).item;
+                break;
+            }
+
+            FDeep<M> deep = (FDeep<M>) tree;
+            Object[] items;
+            M afterPrefix = measure.combine(accumulated, measure(deep.prefix, 0, deep.prefix.length));
+            if (predicate.invoke(afterPrefix)) {
+                items = deep.prefix;
+            } else {
+                M afterMiddle = measure.combine(afterPrefix, measure(deep.middle));
+                if (predicate.invoke(afterMiddle)) {
+                    tree = deep.middle;
+                    accumulated = afterPrefix;
+                    continue;
+                }
+                items = deep.suffix;
+                accumulated = afterMiddle;
+            }
+
+            int i = splitDigit(predicate, accumulated, items);
+            accumulated = measure.combine(accumulated, measure(items, 0, i));
+            found = items[i];
+            break;
+        }
+
+        // Descend through any nodes to the element
+        while (found instanceof FNode) {
+            Object[] items = ((FNode<?>) found).items;
+            int i = splitDigit(predicate, accumulated, items);
+            accumulated = measure.combine(accumulated, measure(items, 0, i));
+            found = items[i];
+        }
+
+        return found;
+    }
+}
+
+/**
+ * Iterates depth first, expanding trees and nodes lazily
+ */
+class FingerTreeIterator<E> implements Iterator<E> {
+    private final java.util.List<Object> stack = new ArrayList<Object>();
+    private Object next;
+    private boolean hasNext;
+
+    FingerTreeIterator(FTree<?> root) {
+        stack.add(root);
+        advance();
+    }
+
+    private void advance() {
+        while (!stack.isEmpty()) {
+            Object top = stack.remove(stack.size() - 1);
+            if (top instanceof FDeep) {
+                FDeep<?> deep = (FDeep<?>) top;
+                pushReversed(deep.suffix);
+                stack.add(deep.middle);
+                pushReversed(deep.prefix);
+            } else if (top instanceof FSingle) {
+                stack.add(((FSingle<?>) top).item);
+            } else if (top instanceof FNode) {
+                pushReversed(((FNode<?>) top).items);
+            } else if (!(top instanceof FEmpty)) {
+                next = top;
+                hasNext = true;
+                return;
+            }
+        }
+        next = null;
+        hasNext = false;
+    }
+
+    private void pushReversed(Object[] items) {
+        for (int i = items.length - 1; i >= 0; i--) {
+            stack.add(items[i]);
+        }
+    }
+
+    @Override
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public E next() {
+        if (!hasNext) throw new NoSuchElementException();
+        Object result = next;
+        advance();
+        return (E) result;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.base.AbstractIndexedList;
+import com.github.andrewoma.dexx.collection.internal.builder.AbstractBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+
+/**
+ * {@code FingerTreeList} is an {@code IndexedList} backed by a {@link com.github.andrewoma.dexx.collection.FingerTree}
+ * measured by size.
+ * <p/>
+ * <p>Access to both ends is amortised O(1), while {@link #get(int)}, {@link #set(int, Object)}, {@link #take(int)},
+ * {@link #drop(int)} and {@link #concat(FingerTreeList)} are O(log n). It is a good choice when lists are frequently
+ * split and concatenated, otherwise {@link com.github.andrewoma.dexx.collection.Vector} is faster in practice.
+ */
+public class FingerTreeList<E> extends AbstractIndexedList<E> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private static final Measure<Object, Integer> SIZE = new Measure<Object, Integer>() {
+        @Override
+        public Integer measure(Object element) {
+            return 1;
+        }
+
+        @Override
+        public Integer zero() {
+            return 0;
+        }
+
+        @Override
+        public Integer combine(Integer left, Integer right) {
+            return left + right;
+        }
+    };
+
+    private static final FingerTreeList<?> EMPTY = new FingerTreeList<Object>(FingerTree.<Object, Integer>empty(SIZE));
+
+    private final FingerTree<E, Integer> tree;
+
+    @NotNull
+    public static <E> BuilderFactory<E, FingerTreeList<E>> factory() {
+        return new BuilderFactory<E, FingerTreeList<E>>() {
+            @NotNull
+            @Override
+            public Builder<E, FingerTreeList<E>> newBuilder() {
+                return new AbstractBuilder<E, FingerTreeList<E>>() {
+                    private FingerTreeList<E> list = FingerTreeList.empty();
+
+                    @NotNull
+                    @Override
+                    public Builder<E, FingerTreeList<E>> add(E element) {
+                        list = list.append(element);
+                        return this;
+                    }
+
+                    @NotNull
+                    @Override
+                    public FingerTreeList<E> doBuild() {
+                        return list;
+                    }
+                };
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    public static <E> FingerTreeList<E> empty() {
+        return (FingerTreeList<E>) EMPTY;
+    }
+
+    private FingerTreeList(FingerTree<E, Integer> tree) {
+        this.tree = tree;
+    }
+
+    private FingerTreeList<E> create(FingerTree<E, Integer> tree) {
+        return tree == this.tree ? this : tree.isEmpty() ? FingerTreeList.<E>empty() : new FingerTreeList<E>(tree);
+    }
+
+    // Splits before the element at index
+    private Pair<FingerTree<E, Integer>, FingerTree<E, Integer>> splitAt(final int index) {
+        return tree.split(new Predicate<Integer>() {
+            @Override
+            public boolean invoke(Integer size) {
+                return size > index;
+            }
+        });
+    }
+
+    private void checkRange(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException(String.valueOf(index));
+    }
+
+    @Override
+    public int size() {
+        return tree.measure();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return tree.isEmpty();
+    }
+
+    @Override
+    public int knownSize() {
+        return size();
+    }
+
+    @Override
+    public E get(final int index) {
+        checkRange(index);
+        return tree.lookup(new Predicate<Integer>() {
+            @Override
+            public boolean invoke(Integer size) {
+                return size > index;
+            }
+        });
+    }
+
+    @NotNull
+    @Override
+    public FingerTreeList<E> set(int index, E elem) {
+        checkRange(index);
+        Pair<FingerTree<E, Integer>, FingerTree<E, Integer>> split = splitAt(index);
+        return create(split.component1().concat(split.component2().tail().prepend(elem)));
+    }
+
+    @NotNull
+    @Override
+    public FingerTreeList<E> append(E elem) {
+        return create(tree.append(elem));
+    }
+
+    @NotNull
+    @Override
+    public FingerTreeList<E> prepend(E elem) {
+        return create(tree.prepend(elem));
+    }
+
+    /**
+     * Returns a list containing the elements of this list followed by the elements of {@code other}.
+     */
+    @NotNull
+    public FingerTreeList<E> concat(@NotNull FingerTreeList<E> other) {
+        return create(tree.concat(other.tree));
+    }
+
+    @Nullable
+    @Override
+    public E first() {
+        return tree.first();
+    }
+
+    @Nullable
+    @Override
+    public E last() {
+        return tree.last();
+    }
+
+    @NotNull
+    @Override
+    public FingerTreeList<E> tail() {
+        return create(tree.tail());
+    }
+
+    /**
+     * Returns a list containing all elements except the last. Returns an empty list if this list is empty.
+     */
+    @NotNull
+    public FingerTreeList<E> init() {
+        return create(tree.init());
+    }
+
+    @NotNull
+    @Override
+    public FingerTreeList<E> take(int number) {
+        if (number <= 0) return empty();
+        if (number >= size()) return this;
+        return create(splitAt(number).component1());
+    }
+
+    @NotNull
+    @Override
+    public FingerTreeList<E> drop(int number) {
+        if (number <= 0) return this;
+        if (number >= size()) return empty();
+        return create(splitAt(number).component2());
+    }
+
+    @NotNull
+    @Override
+    public FingerTreeList<E> range(int from, boolean fromInclusive, int to, boolean toInclusive) {
+        return take(to + (toInclusive ? 1 : 0)).drop(from + (fromInclusive ? 0 : 1));
+    }
+
+    @NotNull
+    @Override
+    public Iterator<E> iterator() {
+        return tree.iterator();
+    }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.FINGER_TREE_LIST, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
+}
@@ -23,12 +23,16 @@
 package com.github.andrewoma.dexx.collection;
 
 import com.github.andrewoma.dexx.collection.internal.base.AbstractMap;
-import com.github.andrewoma.dexx.collection.internal.builder.AbstractSelfBuilder;
+import com.github.andrewoma.dexx.collection.internal.builder.AbstractArrayBuilder;
 import com.github.andrewoma.dexx.collection.internal.hashmap.CompactHashMap;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.Iterator;
+import java.util.Spliterator;
 
 /**
  * {@code HashMap} is an implementation of {@code Map} based on a hash trie.
@@ -36,7 +40,9 @@ import java.util.Iterator;
  * <p>The underlying implementation is a port of Scala's HashMap which is an implementation of a
  * <a href="http://en.wikipedia.org/wiki/Hash_array_mapped_trie">hash array mapped trie.</a>
  */
-public class HashMap<K, V> extends AbstractMap<K, V> {
+public class HashMap<K, V> extends AbstractMap<K, V> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private static final HashMap EMPTY = new HashMap();
 
     private static final KeyFunction keyFunction = new KeyFunction<Object, Pair>() {
@@ -58,12 +64,12 @@ public class HashMap<K, V> extends AbstractMap<K, V> {
             @NotNull
             @Override
             public Builder<Pair<K, V>, HashMap<K, V>> newBuilder() {
-                return new AbstractSelfBuilder<Pair<K, V>, HashMap<K, V>>(HashMap.<K, V>empty()) {
+                return new AbstractArrayBuilder<Pair<K, V>, HashMap<K, V>>(HashMap.<K, V>empty()) {
                     @NotNull
                     @Override
-                    public Builder<Pair<K, V>, HashMap<K, V>> add(Pair<K, V> element) {
-                        result = result.put(element.component1(), element.component2());
-                        return this;
+                    protected HashMap<K, V> doBuild(HashMap<K, V> result, Object[] elements, int size) {
+                        HashMap<K, V> added = fromPairs(elements, size);
+                        return result.isEmpty() ? added : result.merge(added, null);
                     }
                 };
             }
@@ -90,12 +96,47 @@ public class HashMap<K, V> extends AbstractMap<K, V> {
         this.compactHashMap = compactHashMap;
     }
 
+    // Exposes the trie for serialization
+    CompactHashMap<K, Pair<K, V>> compactHashMap() {
+        return compactHashMap;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> KeyFunction<K, Pair<K, V>> pairKeyFunction() {
+        return keyFunction;
+    }
+
+    static <K, V> HashMap<K, V> fromCompactHashMap(CompactHashMap<K, Pair<K, V>> compactHashMap) {
+        return compactHashMap.size() == 0 ? HashMap.<K, V>empty() : new HashMap<K, V>(compactHashMap);
+    }
+
+    // Builds a map from pairs[0, length) in one pass over the trie, reordering pairs in place
+    @SuppressWarnings("unchecked")
+    @NotNull
+    static <K, V> HashMap<K, V> fromPairs(Object[] pairs, int length) {
+        if (length == 0) return empty();
+        return new HashMap<K, V>(CompactHashMap.fromValues(pairs, length, (KeyFunction<K, Pair<K, V>>) keyFunction));
+    }
+
     @NotNull
     @Override
     public HashMap<K, V> put(@NotNull K key, V value) {
         return new HashMap<K, V>(compactHashMap.put(key, new Pair<K, V>(key, value), keyFunction()));
     }
 
+    // Returns the union of this map and that, sharing trie nodes present in only one of them.
+    // Values of keys in both maps are combined with merger, or taken from that if merger is null.
+    @NotNull
+    HashMap<K, V> merge(@NotNull HashMap<K, V> that, @Nullable final Fold<V, V> merger) {
+        Fold<Pair<K, V>, Pair<K, V>> pairMerger = merger == null ? null : new Fold<Pair<K, V>, Pair<K, V>>() {
+            @Override
+            public Pair<K, V> invoke(Pair<K, V> left, Pair<K, V> right) {
+                return new Pair<K, V>(left.component1(), merger.invoke(left.component2(), right.component2()));
+            }
+        };
+        return new HashMap<K, V>(compactHashMap.merge(that.compactHashMap, pairMerger, keyFunction()));
+    }
+
     @Nullable
     @Override
     public V get(@NotNull K key) {
@@ -114,6 +155,27 @@ public class HashMap<K, V> extends AbstractMap<K, V> {
         return compactHashMap.size();
     }
 
+    /**
+     * Returns a {@code Spliterator} that splits by hash trie node. Sizes are always exact.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     */
+    @NotNull
+    @Override
+    public Spliterator<Pair<K, V>> spliterator() {
+        return compactHashMap.valuesSpliterator();
+    }
+
+    @Override
+    public int knownSize() {
+        return compactHashMap.size();
+    }
+
+    @Override
+    protected void copyToArray(Object[] array) {
+        compactHashMap.copyValuesTo(array, 0);
+    }
+
     @Override
     public <U> void forEach(@NotNull final Function<Pair<K, V>, U> f) {
         compactHashMap.forEach(new Function<Pair<K, Pair<K, V>>, Object>() {
@@ -125,6 +187,16 @@ public class HashMap<K, V> extends AbstractMap<K, V> {
         }, keyFunction());
     }
 
+    @Override
+    public boolean forEachWhile(@NotNull final Predicate<? super Pair<K, V>> f) {
+        return compactHashMap.forEachWhile(new Predicate<Pair<K, Pair<K, V>>>() {
+            @Override
+            public boolean invoke(Pair<K, Pair<K, V>> pair) {
+                return f.invoke(pair.component2());
+            }
+        }, keyFunction());
+    }
+
     @NotNull
     @Override
     public Iterator<Pair<K, V>> iterator() {
@@ -154,4 +226,12 @@ public class HashMap<K, V> extends AbstractMap<K, V> {
             throw new UnsupportedOperationException();
         }
     }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.HASH_MAP, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
 }
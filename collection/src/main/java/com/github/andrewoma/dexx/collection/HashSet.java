@@ -24,16 +24,22 @@ package com.github.andrewoma.dexx.collection;
 
 import com.github.andrewoma.dexx.collection.internal.base.AbstractSet;
 import com.github.andrewoma.dexx.collection.internal.base.Iterables;
-import com.github.andrewoma.dexx.collection.internal.builder.AbstractSelfBuilder;
+import com.github.andrewoma.dexx.collection.internal.builder.AbstractArrayBuilder;
 import com.github.andrewoma.dexx.collection.internal.hashmap.CompactHashMap;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.Iterator;
+import java.util.Spliterator;
 
 /**
  * {@code HashSet} is an implementation of {@code Set} backed by a {@code HashMap}.
  */
-public class HashSet<E> extends AbstractSet<E> {
+public class HashSet<E> extends AbstractSet<E> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private static final HashSet EMPTY = new HashSet();
 
     private static final KeyFunction keyFunction = new KeyFunction<Object, Object>() {
@@ -49,12 +55,12 @@ public class HashSet<E> extends AbstractSet<E> {
             @NotNull
             @Override
             public Builder<E, HashSet<E>> newBuilder() {
-                return new AbstractSelfBuilder<E, HashSet<E>>(HashSet.<E>empty()) {
+                return new AbstractArrayBuilder<E, HashSet<E>>(HashSet.<E>empty()) {
                     @NotNull
                     @Override
-                    public Builder<E, HashSet<E>> add(E element) {
-                        result = result.add(element);
-                        return this;
+                    protected HashSet<E> doBuild(HashSet<E> result, Object[] elements, int size) {
+                        HashSet<E> added = fromElements(elements, size);
+                        return result.isEmpty() ? added : result.union(added);
                     }
                 };
             }
@@ -77,6 +83,28 @@ public class HashSet<E> extends AbstractSet<E> {
         this.compactHashMap = compactHashMap;
     }
 
+    // Exposes the trie for serialization
+    CompactHashMap<E, E> compactHashMap() {
+        return compactHashMap;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> KeyFunction<E, E> elementKeyFunction() {
+        return keyFunction;
+    }
+
+    static <E> HashSet<E> fromCompactHashMap(CompactHashMap<E, E> compactHashMap) {
+        return compactHashMap.size() == 0 ? HashSet.<E>empty() : new HashSet<E>(compactHashMap);
+    }
+
+    // Builds a set from elements[0, length) in one pass over the trie, reordering elements in place
+    @SuppressWarnings("unchecked")
+    @NotNull
+    static <E> HashSet<E> fromElements(Object[] elements, int length) {
+        if (length == 0) return empty();
+        return new HashSet<E>(CompactHashMap.fromValues(elements, length, (KeyFunction<E, E>) keyFunction));
+    }
+
     @SuppressWarnings("unchecked")
     private KeyFunction<E, E> keyFunction() {
         return keyFunction;
@@ -94,6 +122,12 @@ public class HashSet<E> extends AbstractSet<E> {
         return new HashSet<E>(compactHashMap.remove(value, keyFunction()));
     }
 
+    // Returns the union of this set and that, sharing trie nodes present in only one of them
+    @NotNull
+    HashSet<E> union(@NotNull HashSet<E> that) {
+        return new HashSet<E>(compactHashMap.merge(that.compactHashMap, null, keyFunction()));
+    }
+
     @Override
     public boolean contains(E value) {
         return compactHashMap.get(value, keyFunction()) != null;
@@ -104,11 +138,42 @@ public class HashSet<E> extends AbstractSet<E> {
         return compactHashMap.size();
     }
 
+    /**
+     * Returns a {@code Spliterator} that splits by hash trie node. Sizes are always exact.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     */
+    @NotNull
+    @Override
+    public Spliterator<E> spliterator() {
+        return compactHashMap.valuesSpliterator();
+    }
+
+    @Override
+    public int knownSize() {
+        return compactHashMap.size();
+    }
+
+    @Override
+    protected void copyToArray(Object[] array) {
+        compactHashMap.copyValuesTo(array, 0);
+    }
+
     @Override
     public <U> void forEach(@NotNull Function<E, U> f) {
         Iterables.forEach(this, f);
     }
 
+    @Override
+    public boolean forEachWhile(@NotNull final Predicate<? super E> f) {
+        return compactHashMap.forEachWhile(new Predicate<Pair<E, E>>() {
+            @Override
+            public boolean invoke(Pair<E, E> pair) {
+                return f.invoke(pair.component1());
+            }
+        }, keyFunction());
+    }
+
     @NotNull
     @Override
     public Iterator<E> iterator() {
@@ -130,4 +195,12 @@ public class HashSet<E> extends AbstractSet<E> {
             }
         };
     }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.HASH_SET, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
 }
\ No newline at end of file
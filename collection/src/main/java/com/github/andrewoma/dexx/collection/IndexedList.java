@@ -23,6 +23,9 @@
 package com.github.andrewoma.dexx.collection;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Comparator;
 
 /**
  * {@code IndexedList} implementations guarantee fast random access to elements via {@link #get(int)}.
@@ -51,4 +54,31 @@ public interface IndexedList<E> extends List<E> {
     @Override
     @NotNull
     IndexedList<E> range(int from, boolean fromInclusive, int to, boolean toInclusive);
+
+    /**
+     * Returns a new {@code Vector} containing the elements of this list sorted by {@code comparator}.
+     * The sort is stable.
+     *
+     * @param comparator the ordering, or {@code null} to use the natural ordering of the elements
+     */
+    @NotNull
+    Vector<E> sorted(@Nullable Comparator<? super E> comparator);
+
+    /**
+     * Returns a new {@code Vector} containing the elements of this list sorted by {@code comparator}
+     * using a fork/join merge sort on the common pool. The sort is stable.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     *
+     * @param comparator the ordering, or {@code null} to use the natural ordering of the elements
+     */
+    @NotNull
+    Vector<E> sortedParallel(@Nullable Comparator<? super E> comparator);
+
+    /**
+     * As {@link #sortedParallel(Comparator)}, where ranges of {@code threshold} elements or fewer are sorted
+     * sequentially.
+     */
+    @NotNull
+    Vector<E> sortedParallel(@Nullable Comparator<? super E> comparator, int threshold);
 }
@@ -29,13 +29,14 @@ import java.util.Iterator;
 /**
  * {@code IndexedLists} is the preferred method of constructing instances of {@code IndexedList}.
  * <p/>
- * <p>{@link com.github.andrewoma.dexx.collection.Vector} is currently constructed in
- * all cases, however this may change in the future.
+ * <p>Lists of up to 4 elements are held in compact implementations that store elements in fields. Larger lists
+ * are constructed as {@link com.github.andrewoma.dexx.collection.Vector Vectors}, and small lists are upgraded
+ * to {@code Vectors} as they grow.
  * <p/>
  * <p>{@code IndexedLists} is preferred for construction as:
  * <ul>
  * <li>It works better in languages that support type inference
- * <li>It allows future optimisations (e.g. small lists might start as arrays and get upgraded to {@code Vectors})
+ * <li>It allows optimisations such as the compact small list implementations above
  * </ul>
  */
 public class IndexedLists {
@@ -45,31 +46,31 @@ public class IndexedLists {
     @NotNull
     @SuppressWarnings("unchecked")
     public static <E> IndexedList<E> of() {
-        return construct();
+        return SmallIndexedList.empty();
     }
 
     @NotNull
     @SuppressWarnings("unchecked")
     public static <E> IndexedList<E> of(E t) {
-        return construct(t);
+        return new SmallIndexedList.One<E>(t);
     }
 
     @NotNull
     @SuppressWarnings("unchecked")
     public static <E> IndexedList<E> of(E e1, E e2) {
-        return construct(e1, e2);
+        return new SmallIndexedList.Two<E>(e1, e2);
     }
 
     @NotNull
     @SuppressWarnings("unchecked")
     public static <E> IndexedList<E> of(E e1, E e2, E e3) {
-        return construct(e1, e2, e3);
+        return new SmallIndexedList.Three<E>(e1, e2, e3);
     }
 
     @NotNull
     @SuppressWarnings("unchecked")
     public static <E> IndexedList<E> of(E e1, E e2, E e3, E e4) {
-        return construct(e1, e2, e3, e4);
+        return new SmallIndexedList.Four<E>(e1, e2, e3, e4);
     }
 
     @NotNull
@@ -111,7 +112,7 @@ public class IndexedLists {
     @NotNull
     @SuppressWarnings("unchecked")
     public static <E> IndexedList<E> of(E e1, E e2, E e3, E e4, E e5, E e6, E e7, E e8, E e9, E e10, E... others) {
-        Builder<E, Vector<E>> builder = Vector.<E>factory().newBuilder();
+        Builder<E, IndexedList<E>> builder = IndexedLists.<E>builder();
         builder.addAll(e1, e2, e3, e4, e5, e6, e7, e8, e9, e10);
         for (E other : others) {
             builder.add(other);
@@ -121,7 +122,7 @@ public class IndexedLists {
     }
 
     private static <E> IndexedList<E> construct(E... es) {
-        Builder<E, Vector<E>> builder = Vector.<E>factory().newBuilder();
+        Builder<E, IndexedList<E>> builder = IndexedLists.<E>builder();
         for (E e : es) {
             builder.add(e);
         }
@@ -130,7 +131,10 @@ public class IndexedLists {
 
     @NotNull
     public static <E> IndexedList<E> copyOf(java.lang.Iterable<E> iterable) {
-        Builder<E, Vector<E>> builder = Vector.<E>factory().newBuilder();
+        if (iterable instanceof java.util.Collection) {
+            return fromArray(((java.util.Collection<?>) iterable).toArray());
+        }
+        Builder<E, IndexedList<E>> builder = IndexedLists.<E>builder();
         for (E e : iterable) {
             builder.add(e);
         }
@@ -139,7 +143,7 @@ public class IndexedLists {
 
     @NotNull
     public static <E> IndexedList<E> copyOf(Iterator<E> iterator) {
-        Builder<E, Vector<E>> builder = Vector.<E>factory().newBuilder();
+        Builder<E, IndexedList<E>> builder = IndexedLists.<E>builder();
         while (iterator.hasNext()) {
             builder.add(iterator.next());
         }
@@ -148,9 +152,18 @@ public class IndexedLists {
 
     @NotNull
     public static <E> IndexedList<E> copyOf(E[] es) {
-        Builder<E, Vector<E>> builder = Vector.<E>factory().newBuilder();
-        for (E e : es) {
-            builder.add(e);
+        return fromArray(es);
+    }
+
+    // Large arrays fill the vector's leaf blocks directly, a block at a time
+    @SuppressWarnings("unchecked")
+    private static <E> IndexedList<E> fromArray(Object[] es) {
+        if (es.length > SmallIndexedList.MAX_SIZE) {
+            return Vector.fromArray(es);
+        }
+        Builder<E, IndexedList<E>> builder = IndexedLists.<E>builder();
+        for (Object e : es) {
+            builder.add((E) e);
         }
         return builder.build();
     }
@@ -158,7 +171,7 @@ public class IndexedLists {
     @NotNull
     public static <E> IndexedList<E> copyOfTraversable(Traversable<E> traversable) {
         @SuppressWarnings("unchecked") final
-        Builder<E, Vector<E>> builder = Vector.<E>factory().newBuilder();
+        Builder<E, IndexedList<E>> builder = IndexedLists.<E>builder();
         traversable.forEach(new Function<E, Object>() {
             @Override
             public Object invoke(E e) {
@@ -173,7 +186,7 @@ public class IndexedLists {
     @NotNull
     @SuppressWarnings("unchecked")
     public static <E> BuilderFactory<E, IndexedList<E>> factory() {
-        return (BuilderFactory) Vector.<E>factory();
+        return SmallIndexedList.factory();
     }
 
     @NotNull
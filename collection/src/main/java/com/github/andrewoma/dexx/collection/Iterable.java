@@ -25,6 +25,7 @@ package com.github.andrewoma.dexx.collection;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Iterator;
+import java.util.stream.Stream;
 
 /**
  * {@code Iterable} defines collections that can be accessed via an {@link java.util.Iterator}.
@@ -32,4 +33,22 @@ import java.util.Iterator;
 public interface Iterable<E> extends Traversable<E>, java.lang.Iterable<E> {
     @NotNull
     Iterator<E> iterator();
+
+    /**
+     * Returns a sequential {@code Stream} of the elements in this collection.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     */
+    @NotNull
+    Stream<E> stream();
+
+    /**
+     * Returns a parallel {@code Stream} of the elements in this collection. The underlying {@code Spliterator}
+     * splits along the structure of the collection and reports exact sizes where the collection knows them, so the
+     * work can be divided evenly between threads.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     */
+    @NotNull
+    Stream<E> parallelStream();
 }
@@ -29,8 +29,9 @@ import java.util.Iterator;
 /**
  * {@code LinkedLists} is the preferred method of constructing instances of {@code LinkedList}.
  * <p/>
- * <p>{@link com.github.andrewoma.dexx.collection.ConsList} is currently constructed in
- * all cases, however this may change in the future.
+ * <p>{@link com.github.andrewoma.dexx.collection.ConsList} is currently constructed by {@code of}, {@code copyOf}
+ * and {@link #factory()}, however this may change in the future. Use {@link #emptyDeque()} or {@link #dequeFactory()}
+ * for a {@link com.github.andrewoma.dexx.collection.Deque} when appending or accessing the end of the list.
  * <p/>
  * <p>{@code LinkedLists} is preferred for construction as:
  * <ul>
@@ -180,4 +181,23 @@ public class LinkedLists {
     public static <E> Builder<E, LinkedList<E>> builder() {
         return LinkedLists.<E>factory().newBuilder();
     }
+
+    /**
+     * Returns an empty {@link Deque}, a {@code LinkedList} supporting O(1) amortised operations at both ends.
+     */
+    @NotNull
+    public static <E> LinkedList<E> emptyDeque() {
+        return Deque.empty();
+    }
+
+    @NotNull
+    @SuppressWarnings("unchecked")
+    public static <E> BuilderFactory<E, LinkedList<E>> dequeFactory() {
+        return (BuilderFactory) Deque.<E>factory();
+    }
+
+    @NotNull
+    public static <E> Builder<E, LinkedList<E>> dequeBuilder() {
+        return LinkedLists.<E>dequeFactory().newBuilder();
+    }
 }
@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * {@code MapLog} is an append-only file of successive versions of a persistent map.
+ * <p/>
+ * <p>Versions are written with a {@link com.github.andrewoma.dexx.collection.DexxOutput} that is kept open for the
+ * life of the log, so appending a version only writes the trie or tree nodes that were copied to produce it.
+ * Each version is written as a frame holding its length and CRC. Concurrent appends are grouped: each append waits
+ * until its frame has been written and forced to disk, but frames queued while another append is forcing are
+ * written together with a single gathering write and force.
+ * <p/>
+ * <p>Opening a log memory maps it and reads the versions in order, keeping the last. A partially written or
+ * corrupt frame at the end of the log (for example, after a crash) is truncated.
+ * <p/>
+ * <p>As the log grows, so does the time to open it and the memory used to remember which nodes have been written.
+ * {@link #compact} replaces the log with one holding only the latest version. It can be run on a background
+ * thread while appends continue, only blocking appends briefly while the compacted log is swapped in.
+ * <p/>
+ * <p>Hashed logs should hold {@code HashMaps} and sorted logs {@code TreeMaps}; other maps are written element
+ * by element on each append. Comparators and key functions are not written (see
+ * {@link com.github.andrewoma.dexx.collection.DexxInput}).
+ */
+public class MapLog<K, V, M extends Map<K, V>> implements Closeable {
+    private static final int MAGIC = 0x44584c47;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final long WINDOW_SIZE = 1L << 30;
+
+    private final File file;
+    private final boolean sorted;
+    private final Comparator<? super K> comparator;
+    private final ElementCodec<K> keyCodec;
+    private final ElementCodec<V> valueCodec;
+
+    private final Object lock = new Object();
+    private volatile M latest;
+
+    // Guarded by lock
+    private FileChannel channel;
+    private Frames frames;
+    private java.util.ArrayList<ByteBuffer> pending = new java.util.ArrayList<ByteBuffer>();
+    private long appended;
+    private long synced;
+    private boolean syncing;
+    private boolean compacting;
+    private boolean closed;
+    private Throwable failure;
+    private long size;
+
+    private MapLog(File file, boolean sorted, Comparator<? super K> comparator, ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) throws IOException {
+        this.file = file;
+        this.sorted = sorted;
+        this.comparator = comparator;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        boolean created = !file.exists();
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            frames = new Frames(recover());
+            if (created) syncDirectory(file);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens or creates a log of maps, typically {@code HashMaps}.
+     */
+    @NotNull
+    public static <K, V> MapLog<K, V, Map<K, V>> open(@NotNull File file, @NotNull ElementCodec<K> keyCodec, @NotNull ElementCodec<V> valueCodec) throws IOException {
+        return new MapLog<K, V, Map<K, V>>(file, false, null, keyCodec, valueCodec);
+    }
+
+    /**
+     * Opens or creates a log of sorted maps ordered by {@code comparator}, or the natural ordering if {@code null}.
+     * The comparator must be the same each time the log is opened.
+     */
+    @NotNull
+    public static <K, V> MapLog<K, V, SortedMap<K, V>> openSorted(@NotNull File file, Comparator<? super K> comparator,
+                                                                 @NotNull ElementCodec<K> keyCodec, @NotNull ElementCodec<V> valueCodec) throws IOException {
+        return new MapLog<K, V, SortedMap<K, V>>(file, true, comparator, keyCodec, valueCodec);
+    }
+
+    /**
+     * Returns the last version appended, or an empty map if none have been.
+     */
+    @NotNull
+    public M latest() {
+        return latest;
+    }
+
+    /**
+     * Returns the number of bytes written to the log.
+     */
+    public long size() {
+        synchronized (lock) {
+            return size;
+        }
+    }
+
+    /**
+     * Appends {@code version}, returning once it has been written and forced to disk. If writing fails, the log
+     * can no longer be appended to and must be reopened.
+     */
+    public void append(@NotNull M version) throws IOException {
+        long sequence;
+        synchronized (lock) {
+            checkWritable();
+            try {
+                pending.add(frames.encode(version, keyCodec, valueCodec));
+            } catch (IOException e) {
+                failure = e;
+                throw e;
+            } catch (RuntimeException e) {
+                failure = e;
+                throw e;
+            }
+            latest = version;
+            sequence = ++appended;
+        }
+        sync(sequence);
+    }
+
+    /**
+     * Rewrites the log to hold only the latest version. Appends may continue while the log is compacted and are
+     * carried over to the compacted log. Does nothing if a compaction is already in progress.
+     */
+    public void compact() throws IOException {
+        M snapshot;
+        synchronized (lock) {
+            checkWritable();
+            if (compacting) return;
+            compacting = true;
+            snapshot = latest;
+        }
+
+        File compacted = new File(file.getPath() + ".compact");
+        FileChannel compactedChannel = null;
+        boolean swapped = false;
+        try {
+            compactedChannel = FileChannel.open(compacted.toPath(), StandardOpenOption.WRITE,
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            writeHeader(compactedChannel);
+            Frames compactedFrames = new Frames(null);
+            write(compactedChannel, compactedFrames.encode(snapshot, keyCodec, valueCodec));
+            compactedChannel.force(false);
+
+            synchronized (lock) {
+                while (syncing) {
+                    await();
+                }
+                checkWritable();
+                // Versions appended since the snapshot share most of their nodes with it, so this write is small
+                if (latest != snapshot) {
+                    write(compactedChannel, compactedFrames.encode(latest, keyCodec, valueCodec));
+                    compactedChannel.force(false);
+                }
+                Files.move(compacted.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                swapped = true;
+
+                channel.close();
+                channel = compactedChannel;
+                frames = compactedFrames;
+                pending = new java.util.ArrayList<ByteBuffer>();
+                synced = appended;
+                size = compactedChannel.position();
+                try {
+                    // Until the directory is forced the rename may not survive a crash, taking later appends with it
+                    syncDirectory(file);
+                } catch (IOException e) {
+                    failure = e;
+                    throw e;
+                } finally {
+                    lock.notifyAll();
+                }
+            }
+        } finally {
+            synchronized (lock) {
+                compacting = false;
+            }
+            if (!swapped) {
+                if (compactedChannel != null) compactedChannel.close();
+                Files.deleteIfExists(compacted.toPath());
+            }
+        }
+    }
+
+    /**
+     * Waits for any appends in progress and closes the log.
+     */
+    @Override
+    public void close() throws IOException {
+        long sequence;
+        boolean failed;
+        synchronized (lock) {
+            if (closed) return;
+            sequence = appended;
+            failed = failure != null;
+        }
+        try {
+            if (!failed) sync(sequence);
+        } finally {
+            synchronized (lock) {
+                closed = true;
+                channel.close();
+                lock.notifyAll();
+            }
+        }
+    }
+
+    // Called with the lock held
+    private void checkWritable() throws IOException {
+        if (closed) throw new IOException("Log is closed");
+        if (failure != null) throw new IOException("Log failed to append and must be reopened", failure);
+    }
+
+    // Called with the lock held
+    private void await() throws InterruptedIOException {
+        try {
+            lock.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    // Writes and forces all pending frames up to sequence, unless another thread is doing so, in which case
+    // waits for it and then writes any frames queued meanwhile as one batch
+    private void sync(long sequence) throws IOException {
+        java.util.ArrayList<ByteBuffer> batch;
+        long batchEnd;
+        FileChannel batchChannel;
+        synchronized (lock) {
+            while (synced < sequence && syncing) {
+                await();
+            }
+            if (synced >= sequence) return;
+            checkWritable();
+            syncing = true;
+            batch = pending;
+            batchEnd = appended;
+            batchChannel = channel;
+            pending = new java.util.ArrayList<ByteBuffer>();
+        }
+
+        long length = 0;
+        IOException error = null;
+        try {
+            ByteBuffer[] buffers = batch.toArray(new ByteBuffer[batch.size()]);
+            for (ByteBuffer buffer : buffers) {
+                length += buffer.remaining();
+            }
+            for (long written = 0; written < length; ) {
+                written += batchChannel.write(buffers);
+            }
+            batchChannel.force(false);
+        } catch (IOException e) {
+            error = e;
+        }
+
+        synchronized (lock) {
+            syncing = false;
+            if (error == null) {
+                synced = batchEnd;
+                size += length;
+            } else {
+                failure = error;
+            }
+            lock.notifyAll();
+        }
+        if (error != null) throw error;
+    }
+
+    // Forces the directory entry for file, making a create or rename durable
+    private static void syncDirectory(File file) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        FileChannel directory = FileChannel.open(parent.toPath(), StandardOpenOption.READ);
+        try {
+            directory.force(true);
+        } finally {
+            directory.close();
+        }
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).put((byte) VERSION);
+        header.position(0);
+        write(channel, header);
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private M read(DexxInput input) throws IOException {
+        return (M) (sorted ? input.readSortedMap(comparator, keyCodec, valueCodec) : input.readMap(keyCodec, valueCodec));
+    }
+
+    @SuppressWarnings("unchecked")
+    private M empty() {
+        return (M) (sorted ? new TreeMap<K, V>(comparator, null) : HashMap.<K, V>empty());
+    }
+
+    // Reads the versions in the log, truncating any incomplete or corrupt frame at the end. Returns the nodes read.
+    private java.util.List<Object> recover() throws IOException {
+        long length = channel.size();
+        latest = empty();
+        if (length < HEADER_SIZE) {
+            channel.truncate(0);
+            writeHeader(channel);
+            channel.force(false);
+            size = HEADER_SIZE;
+            return null;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        channel.read(header, 0);
+        if (header.getInt(0) != MAGIC) throw new StreamCorruptedException("Not a map log: " + file);
+        if (header.get(4) != VERSION) throw new StreamCorruptedException("Unsupported map log version " + header.get(4));
+
+        ByteBufferInput frameInput = new ByteBufferInput(ByteBuffer.allocate(0));
+        DexxInput input = new DexxInput(frameInput);
+        CRC32 crc = new CRC32();
+        ByteBuffer window = null;
+        long windowStart = 0;
+        long position = HEADER_SIZE;
+        while (position + FRAME_HEADER_SIZE <= length) {
+            if (window == null || position + FRAME_HEADER_SIZE > windowStart + window.capacity()) {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, length - position));
+            }
+            int frameLength = window.getInt((int) (position - windowStart));
+            int checksum = window.getInt((int) (position - windowStart) + 4);
+            long end = position + FRAME_HEADER_SIZE + frameLength;
+            // Zero lengths are treated as the end as file systems may extend files with zeros after a crash
+            if (frameLength <= 0 || end > length) break;
+            if (end > windowStart + window.capacity()) {
+                windowStart = position;
+                window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(Math.max(WINDOW_SIZE, end - position), length - position));
+            }
+
+            ByteBuffer frame = window.duplicate();
+            frame.limit((int) (end - windowStart));
+            frame.position((int) (position - windowStart) + FRAME_HEADER_SIZE);
+            crc.reset();
+            crc.update(frame.duplicate());
+            if ((int) crc.getValue() != checksum) break;
+
+            frameInput.reset(frame);
+            latest = read(input);
+            if (frameInput.remaining() != 0) throw new StreamCorruptedException("Frame at " + position + " was not fully read");
+            position = end;
+        }
+
+        if (position < length) channel.truncate(position);
+        channel.position(position);
+        size = position;
+        return input.nodes();
+    }
+
+    // Encodes versions as frames, sharing a DexxOutput between frames so that each node is only written once
+    private static class Frames {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DexxOutput output;
+
+        Frames(java.util.List<Object> nodes) {
+            DataOutputStream out = new DataOutputStream(bytes);
+            output = nodes == null ? new DexxOutput(out) : new DexxOutput(out, nodes);
+        }
+
+        <K, V> ByteBuffer encode(Map<K, V> version, ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) throws IOException {
+            bytes.reset();
+            bytes.write(new byte[FRAME_HEADER_SIZE]);
+            output.writeMap(version, keyCodec, valueCodec);
+
+            ByteBuffer frame = ByteBuffer.wrap(bytes.toByteArray());
+            CRC32 crc = new CRC32();
+            crc.update(frame.array(), FRAME_HEADER_SIZE, frame.capacity() - FRAME_HEADER_SIZE);
+            frame.putInt(0, frame.capacity() - FRAME_HEADER_SIZE);
+            frame.putInt(4, (int) crc.getValue());
+            return frame;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * {@code MappedFile} is a read-only view of a file written by {@link com.github.andrewoma.dexx.collection.MappedMaps}.
+ * <p/>
+ * <p>The file is mapped in segments as a single {@code MappedByteBuffer} is limited to 2GB. The writer never lets an
+ * index entry or record cross a segment boundary, so each can be read from a single segment using absolute reads
+ * or a duplicate of the segment, which keeps concurrent readers independent.
+ * <p/>
+ * <p>Layout: a header of magic, version, kind and size, then for hashed files an array of key hash codes
+ * in ascending order, then an array of record offsets, then the records. Each record is a key followed by its value.
+ */
+class MappedFile {
+    static final int MAGIC = 0x44584d4d;
+    static final int VERSION = 1;
+    static final int HASHED = 1;
+    static final int SORTED = 2;
+    static final int HEADER_SIZE = 16;
+
+    static final int SEGMENT_SHIFT = 30;
+    static final long SEGMENT_SIZE = 1L << SEGMENT_SHIFT;
+
+    private final ByteBuffer[] segments;
+    private final int kind;
+    private final int size;
+
+    private MappedFile(ByteBuffer[] segments) throws IOException {
+        this.segments = segments;
+        if (segments.length == 0 || segments[0].limit() < HEADER_SIZE || getInt(0) != MAGIC) {
+            throw new StreamCorruptedException("Not a mapped map file");
+        }
+        if (segments[0].get(4) != VERSION) throw new StreamCorruptedException("Unsupported version " + segments[0].get(4));
+        kind = segments[0].get(5);
+        size = getInt(8);
+    }
+
+    static MappedFile open(File file, int expectedKind) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            long length = channel.size();
+            ByteBuffer[] segments = new ByteBuffer[(int) ((length + SEGMENT_SIZE - 1) >>> SEGMENT_SHIFT)];
+            for (int i = 0; i < segments.length; i++) {
+                long position = (long) i << SEGMENT_SHIFT;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+            }
+            MappedFile mappedFile = new MappedFile(segments);
+            if (mappedFile.kind != expectedKind) {
+                throw new StreamCorruptedException(expectedKind == HASHED ? "Not a hashed map file" : "Not a sorted map file");
+            }
+            return mappedFile;
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    static long hashesStart() {
+        return HEADER_SIZE;
+    }
+
+    static long offsetsStart(int kind, int size) {
+        return kind == HASHED ? align(HEADER_SIZE + 4L * size) : HEADER_SIZE;
+    }
+
+    static long recordsStart(int kind, int size) {
+        return offsetsStart(kind, size) + 8L * size;
+    }
+
+    private static long align(long position) {
+        return (position + 7) & ~7L;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int getInt(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getInt((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    long getLong(long position) {
+        return segments[(int) (position >>> SEGMENT_SHIFT)].getLong((int) (position & (SEGMENT_SIZE - 1)));
+    }
+
+    DataInput input(long position) {
+        ByteBuffer buffer = segments[(int) (position >>> SEGMENT_SHIFT)].duplicate();
+        buffer.position((int) (position & (SEGMENT_SIZE - 1)));
+        return new ByteBufferInput(buffer);
+    }
+
+    <K> K readKey(long position, ElementCodec<K> keyCodec) {
+        try {
+            return keyCodec.read(input(position));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    <K, V> Pair<K, V> readPair(long position, ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+        try {
+            DataInput in = input(position);
+            K key = keyCodec.read(in);
+            return new Pair<K, V>(key, valueCodec.read(in));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.base.AbstractMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only map over a hashed {@link com.github.andrewoma.dexx.collection.MappedFile}. Lookups binary search the
+ * hash codes and then decode the keys of the entries with matching hash codes.
+ * Updates decode every entry into an in-memory {@link com.github.andrewoma.dexx.collection.HashMap} and apply the
+ * change to that, leaving the file untouched.
+ */
+class MappedHashMap<K, V> extends AbstractMap<K, V> {
+    private final MappedFile file;
+    private final ElementCodec<K> keyCodec;
+    private final ElementCodec<V> valueCodec;
+    private final long offsetsStart;
+
+    MappedHashMap(MappedFile file, ElementCodec<K> keyCodec, ElementCodec<V> valueCodec) {
+        this.file = file;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        offsetsStart = MappedFile.offsetsStart(MappedFile.HASHED, file.size());
+    }
+
+    private int hash(int index) {
+        return file.getInt(MappedFile.hashesStart() + 4L * index);
+    }
+
+    private long offset(int index) {
+        return file.getLong(offsetsStart + 8L * index);
+    }
+
+    // Returns the input positioned at the value for key, or null if the key is absent
+    private DataInput find(K key) {
+        int hash = key.hashCode();
+        int low = 0;
+        int high = file.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (hash(mid) < hash) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        try {
+            for (int i = low; i < file.size() && hash(i) == hash; i++) {
+                DataInput in = file.input(offset(i));
+                if (key.equals(keyCodec.read(in))) return in;
+            }
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public V get(@NotNull K key) {
+        DataInput in = find(key);
+        if (in == null) return null;
+        try {
+            return valueCodec.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean containsKey(@NotNull K key) {
+        return find(key) != null;
+    }
+
+    @NotNull
+    @Override
+    public Map<K, V> put(@NotNull K key, V value) {
+        return Maps.copyOfTraversable(this).put(key, value);
+    }
+
+    @NotNull
+    @Override
+    public Map<K, V> remove(@NotNull K key) {
+        return containsKey(key) ? Maps.copyOfTraversable(this).remove(key) : this;
+    }
+
+    @Override
+    public int size() {
+        return file.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return file.size() == 0;
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Pair<K, V>> iterator() {
+        return new Iterator<Pair<K, V>>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < file.size();
+            }
+
+            @Override
+            public Pair<K, V> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return file.readPair(offset(index++), keyCodec, valueCodec);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
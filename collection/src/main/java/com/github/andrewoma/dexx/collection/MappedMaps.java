@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import static com.github.andrewoma.dexx.collection.MappedFile.*;
+
+/**
+ * {@code MappedMaps} writes maps to files that can be opened as memory mapped maps.
+ * <p/>
+ * <p>Opening a file only maps it, so it is close to instant regardless of size and the entries stay off-heap in the
+ * page cache. Keys and values are decoded with the given {@link com.github.andrewoma.dexx.collection.ElementCodec ElementCodecs}
+ * on each lookup or iteration, so lookups are slower than for an in-memory map and decoded elements are not shared.
+ * <p/>
+ * <p>Hashed files are looked up by the {@code hashCode} of the key, which must therefore be the same in the
+ * writing and reading JVMs (as it is for strings and boxed primitives). Sorted files must be opened with the
+ * comparator they were written with. The files are never modified: {@code put} and {@code remove} return an
+ * in-memory copy with the change applied, decoding every entry to do so. Decoding failures are thrown as
+ * {@code UncheckedIOException}.
+ */
+public class MappedMaps {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private MappedMaps() {
+    }
+
+    /**
+     * Writes {@code map} to {@code file} in a layout that can be opened with {@link #open}.
+     */
+    public static <K, V> void write(@NotNull File file, @NotNull Map<K, V> map,
+                                    @NotNull ElementCodec<? super K> keyCodec, @NotNull ElementCodec<? super V> valueCodec) throws IOException {
+        Object[] pairs = toArray(map);
+        Arrays.sort(pairs, new Comparator<Object>() {
+            @Override
+            public int compare(Object o1, Object o2) {
+                return Integer.compare(hash(o1), hash(o2));
+            }
+        });
+        write(file, HASHED, pairs, keyCodec, valueCodec);
+    }
+
+    /**
+     * Writes {@code map} to {@code file} in key order so that it can be opened with {@link #openSorted}.
+     */
+    public static <K, V> void writeSorted(@NotNull File file, @NotNull SortedMap<K, V> map,
+                                          @NotNull ElementCodec<? super K> keyCodec, @NotNull ElementCodec<? super V> valueCodec) throws IOException {
+        write(file, SORTED, toArray(map), keyCodec, valueCodec);
+    }
+
+    /**
+     * Opens a file written by {@link #write} as a read-only map.
+     */
+    @NotNull
+    public static <K, V> Map<K, V> open(@NotNull File file, @NotNull ElementCodec<K> keyCodec, @NotNull ElementCodec<V> valueCodec) throws IOException {
+        return new MappedHashMap<K, V>(MappedFile.open(file, HASHED), keyCodec, valueCodec);
+    }
+
+    /**
+     * Opens a file written by {@link #writeSorted} as a read-only sorted map. {@code comparator} must order keys
+     * the same way as the map that was written, with {@code null} meaning natural ordering.
+     */
+    @NotNull
+    public static <K, V> SortedMap<K, V> openSorted(@NotNull File file, Comparator<? super K> comparator,
+                                                    @NotNull ElementCodec<K> keyCodec, @NotNull ElementCodec<V> valueCodec) throws IOException {
+        MappedFile mappedFile = MappedFile.open(file, SORTED);
+        return new MappedSortedMap<K, V>(mappedFile, comparator, keyCodec, valueCodec, 0, mappedFile.size());
+    }
+
+    private static <K, V> Object[] toArray(Map<K, V> map) {
+        Object[] pairs = new Object[map.size()];
+        int i = 0;
+        for (Pair<K, V> pair : map) {
+            pairs[i++] = pair;
+        }
+        return pairs;
+    }
+
+    private static int hash(Object pair) {
+        return ((Pair<?, ?>) pair).component1().hashCode();
+    }
+
+    // Records are written after the space reserved for the header and index, which are written last once the
+    // record offsets are known
+    @SuppressWarnings("unchecked")
+    private static <K, V> void write(File file, int kind, Object[] pairs,
+                                     ElementCodec<? super K> keyCodec, ElementCodec<? super V> valueCodec) throws IOException {
+        int size = pairs.length;
+        long[] offsets = new long[size];
+        FileOutputStream fileOut = new FileOutputStream(file);
+        try {
+            FileChannel channel = fileOut.getChannel();
+            long position = recordsStart(kind, size);
+            channel.position(position);
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            DataOutputStream recordOut = new DataOutputStream(record);
+            for (int i = 0; i < size; i++) {
+                Pair<K, V> pair = (Pair<K, V>) pairs[i];
+                record.reset();
+                keyCodec.write(recordOut, pair.component1());
+                valueCodec.write(recordOut, pair.component2());
+                recordOut.flush();
+
+                int length = record.size();
+                if (length > SEGMENT_SIZE) throw new IOException("Entry exceeds " + SEGMENT_SIZE + " bytes: " + pair.component1());
+                long remaining = SEGMENT_SIZE - (position & (SEGMENT_SIZE - 1));
+                if (length > remaining) {
+                    for (long j = 0; j < remaining; j++) {
+                        out.write(0);
+                    }
+                    position += remaining;
+                }
+                offsets[i] = position;
+                record.writeTo(out);
+                position += length;
+            }
+            out.flush();
+
+            channel.position(0);
+            DataOutputStream index = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+            index.writeInt(MAGIC);
+            index.writeByte(VERSION);
+            index.writeByte(kind);
+            index.writeShort(0);
+            index.writeInt(size);
+            index.writeInt(0);
+            if (kind == HASHED) {
+                for (Object pair : pairs) {
+                    index.writeInt(hash(pair));
+                }
+                for (long i = hashesStart() + 4L * size; i < offsetsStart(kind, size); i++) {
+                    index.writeByte(0);
+                }
+            }
+            for (long offset : offsets) {
+                index.writeLong(offset);
+            }
+            index.flush();
+        } finally {
+            fileOut.close();
+        }
+    }
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.base.AbstractSortedMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only sorted map over the entries {@code [from, to)} of a sorted {@link com.github.andrewoma.dexx.collection.MappedFile}.
+ * Lookups binary search the entries, decoding only the keys compared. Ranges, {@code take} and {@code drop} narrow
+ * the window without reading any entries. Updates decode the window into an in-memory
+ * {@link com.github.andrewoma.dexx.collection.TreeMap} and apply the change to that, leaving the file untouched.
+ */
+class MappedSortedMap<K, V> extends AbstractSortedMap<K, V> {
+    private final MappedFile file;
+    private final Comparator<? super K> comparator;
+    private final ElementCodec<K> keyCodec;
+    private final ElementCodec<V> valueCodec;
+    private final long offsetsStart;
+    private final int from;
+    private final int to;
+
+    MappedSortedMap(MappedFile file, Comparator<? super K> comparator, ElementCodec<K> keyCodec, ElementCodec<V> valueCodec, int from, int to) {
+        this.file = file;
+        this.comparator = comparator;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.from = from;
+        this.to = to;
+        offsetsStart = MappedFile.offsetsStart(MappedFile.SORTED, file.size());
+    }
+
+    private MappedSortedMap<K, V> window(int from, int to) {
+        return from == this.from && to == this.to ? this : new MappedSortedMap<K, V>(file, comparator, keyCodec, valueCodec, from, Math.max(from, to));
+    }
+
+    private long offset(int index) {
+        return file.getLong(offsetsStart + 8L * index);
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(K k1, K k2) {
+        return comparator != null ? comparator.compare(k1, k2) : ((Comparable<K>) k1).compareTo(k2);
+    }
+
+    // Returns the index of the first entry with a key greater than key, or greater than or equal to key if inclusive
+    private int search(K key, boolean inclusive) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            int c = compare(file.readKey(offset(mid), keyCodec), key);
+            if (c < 0 || (c == 0 && !inclusive)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // Returns the input positioned at the value for key, or null if the key is absent
+    private DataInput find(K key) {
+        int index = search(key, true);
+        if (index == to) return null;
+        try {
+            DataInput in = file.input(offset(index));
+            return compare(keyCodec.read(in), key) == 0 ? in : null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public V get(@NotNull K key) {
+        DataInput in = find(key);
+        if (in == null) return null;
+        try {
+            return valueCodec.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public boolean containsKey(@NotNull K key) {
+        return find(key) != null;
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<K, V> put(@NotNull K key, V value) {
+        return SortedMaps.copyOfTraversable(comparator, this).put(key, value);
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<K, V> remove(@NotNull K key) {
+        return containsKey(key) ? SortedMaps.copyOfTraversable(comparator, this).remove(key) : this;
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<K, V> from(@NotNull K key, boolean inclusive) {
+        return window(search(key, inclusive), to);
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<K, V> to(@NotNull K key, boolean inclusive) {
+        return window(from, search(key, !inclusive));
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<K, V> range(@NotNull K from, boolean fromInclusive, @NotNull K to, boolean toInclusive) {
+        return window(search(from, fromInclusive), search(to, !toInclusive));
+    }
+
+    @Override
+    public Comparator<? super K> comparator() {
+        return comparator;
+    }
+
+    @Override
+    public Pair<K, V> first() {
+        return from == to ? null : file.readPair(offset(from), keyCodec, valueCodec);
+    }
+
+    @Override
+    public Pair<K, V> last() {
+        return from == to ? null : file.readPair(offset(to - 1), keyCodec, valueCodec);
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<K, V> drop(int number) {
+        return window(from + Math.max(0, Math.min(number, size())), to);
+    }
+
+    @NotNull
+    @Override
+    public SortedMap<K, V> take(int number) {
+        return window(from, from + Math.max(0, Math.min(number, size())));
+    }
+
+    @Override
+    public int size() {
+        return to - from;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return from == to;
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Pair<K, V>> iterator() {
+        return new Iterator<Pair<K, V>>() {
+            private int index = from;
+
+            @Override
+            public boolean hasNext() {
+                return index < to;
+            }
+
+            @Override
+            public Pair<K, V> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return file.readPair(offset(index++), keyCodec, valueCodec);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -24,6 +24,7 @@ package com.github.andrewoma.dexx.collection;
 
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Arrays;
 import java.util.Iterator;
 
 /**
@@ -92,48 +93,45 @@ public class Maps {
 
     @NotNull
     public static <K, V> Map<K, V> copyOf(java.lang.Iterable<Pair<K, V>> iterable) {
-        HashMap<K, V> result = HashMap.empty();
-        for (Pair<K, V> pair : iterable) {
-            result = result.put(pair.component1(), pair.component2());
-        }
-
-        return result;
+        return Maps.<K, V>builder().addAll(iterable).build();
     }
 
     @NotNull
     public static <K, V> Map<K, V> copyOf(Iterator<Pair<K, V>> iterator) {
-        HashMap<K, V> result = HashMap.empty();
-        while (iterator.hasNext()) {
-            Pair<K, V> pair = iterator.next();
-            result = result.put(pair.component1(), pair.component2());
-        }
-
-        return result;
+        return Maps.<K, V>builder().addAll(iterator).build();
     }
 
     @NotNull
     public static <K, V> Map<K, V> copyOf(Pair<K, V>[] pairs) {
-        HashMap<K, V> result = HashMap.empty();
-        for (Pair<K, V> pair : pairs) {
-            result = result.put(pair.component1(), pair.component2());
-        }
-        return result;
+        return HashMap.fromPairs(pairs.clone(), pairs.length);
     }
 
+    /**
+     * Returns a map containing the entries of a {@code java.util.Map}. The entries are copied into an array sized
+     * from the source and the hash trie is then built in a single pass.
+     */
     @NotNull
-    public static <K, V> Map<K, V> copyOfTraversable(Traversable<Pair<K, V>> traversable) {
-        @SuppressWarnings("unchecked")
-        final HashMap<K, V>[] result = new HashMap[1];
-        result[0] = HashMap.empty();
-        traversable.forEach(new Function<Pair<K, V>, Object>() {
-            @Override
-            public Object invoke(Pair<K, V> pair) {
-                result[0] = result[0].put(pair.component1(), pair.component2());
-                return null;
+    public static <K, V> Map<K, V> copyOf(java.util.Map<K, V> map) {
+        Object[] pairs = pairsOf(map);
+        return HashMap.fromPairs(pairs, pairs.length);
+    }
+
+    // Copies the entries of map into an array of pairs, allowing for concurrent maps that change size while copying
+    static <K, V> Object[] pairsOf(java.util.Map<K, V> map) {
+        Object[] pairs = new Object[map.size()];
+        int size = 0;
+        for (java.util.Map.Entry<K, V> entry : map.entrySet()) {
+            if (size == pairs.length) {
+                pairs = Arrays.copyOf(pairs, Math.max(16, size * 2));
             }
-        });
+            pairs[size++] = new Pair<K, V>(entry.getKey(), entry.getValue());
+        }
+        return size == pairs.length ? pairs : Arrays.copyOf(pairs, size);
+    }
 
-        return result[0];
+    @NotNull
+    public static <K, V> Map<K, V> copyOfTraversable(Traversable<Pair<K, V>> traversable) {
+        return Maps.<K, V>builder().addAll(traversable).build();
     }
 
     @NotNull
@@ -22,10 +22,14 @@
 
 package com.github.andrewoma.dexx.collection;
 
+import java.io.Serializable;
+
 /**
  * {@code Pair} is a generic container for two components of specified types.
  */
-public class Pair<C1, C2> {
+public class Pair<C1, C2> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final C1 component1;
     private final C2 component2;
 
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.base.AbstractIterable;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Comparator;
+import java.util.Iterator;
+
+/**
+ * {@code PriorityQueue} is a persistent priority queue backed by a {@link com.github.andrewoma.dexx.collection.FingerTree}
+ * measured by the least element according to its ordering.
+ * <p/>
+ * <p>{@link #first()} is O(1), while {@link #insert(Object)} is amortised O(1) and {@link #removeFirst()} and
+ * {@link #merge(PriorityQueue)} are O(log n). Elements of equal priority are removed in insertion order.
+ * <p/>
+ * <p>Iteration is in insertion order, not priority order. Null elements are not permitted.
+ */
+public class PriorityQueue<E> extends AbstractIterable<E> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final FingerTree<E, E> tree;
+    private final int size;
+
+    @NotNull
+    public static <E extends Comparable<? super E>> PriorityQueue<E> empty() {
+        return empty(null);
+    }
+
+    /**
+     * Returns an empty queue ordered by {@code comparator}, where the least element has the highest priority.
+     *
+     * @param comparator the ordering, or {@code null} to use the natural ordering of the elements
+     */
+    @NotNull
+    public static <E> PriorityQueue<E> empty(@Nullable Comparator<? super E> comparator) {
+        return new PriorityQueue<E>(FingerTree.empty(new LeastMeasure<E>(comparator)), 0);
+    }
+
+    private PriorityQueue(FingerTree<E, E> tree, int size) {
+        this.tree = tree;
+        this.size = size;
+    }
+
+    @Nullable
+    public Comparator<? super E> comparator() {
+        return ((LeastMeasure<E>) tree.getMeasure()).comparator;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int knownSize() {
+        return size;
+    }
+
+    @NotNull
+    public PriorityQueue<E> insert(@NotNull E element) {
+        if (element == null) throw new NullPointerException("Null elements are not permitted");
+        return new PriorityQueue<E>(tree.append(element), size + 1);
+    }
+
+    /**
+     * Returns the element with the highest priority, or {@code null} if the queue is empty.
+     */
+    @Nullable
+    public E first() {
+        return tree.measure();
+    }
+
+    /**
+     * Returns a queue without the element returned by {@link #first()}. Returns an empty queue if this queue is empty.
+     */
+    @NotNull
+    public PriorityQueue<E> removeFirst() {
+        if (isEmpty()) return this;
+
+        final E least = tree.measure();
+        final LeastMeasure<E> measure = (LeastMeasure<E>) tree.getMeasure();
+        Pair<FingerTree<E, E>, FingerTree<E, E>> split = tree.split(new Predicate<E>() {
+            @Override
+            public boolean invoke(E accumulated) {
+                return accumulated != null && measure.compare(accumulated, least) <= 0;
+            }
+        });
+
+        return new PriorityQueue<E>(split.component1().concat(split.component2().tail()), size - 1);
+    }
+
+    /**
+     * Returns a queue containing the elements of both queues. Both queues must have the same ordering.
+     */
+    @NotNull
+    public PriorityQueue<E> merge(@NotNull PriorityQueue<E> other) {
+        return new PriorityQueue<E>(tree.concat(other.tree), size + other.size);
+    }
+
+    @NotNull
+    @Override
+    public Iterator<E> iterator() {
+        return tree.iterator();
+    }
+
+    /**
+     * Measures a sequence by its least element, preferring the leftmost of equal elements
+     */
+    private static class LeastMeasure<E> implements Measure<E, E> {
+        private final Comparator<? super E> comparator;
+
+        LeastMeasure(Comparator<? super E> comparator) {
+            this.comparator = comparator;
+        }
+
+        @SuppressWarnings("unchecked")
+        int compare(E e1, E e2) {
+            return comparator == null ? ((Comparable<? super E>) e1).compareTo(e2) : comparator.compare(e1, e2);
+        }
+
+        @Override
+        public E measure(E element) {
+            return element;
+        }
+
+        @Override
+        public E zero() {
+            return null;
+        }
+
+        @Override
+        public E combine(E left, E right) {
+            if (left == null) return right;
+            if (right == null) return left;
+            return compare(left, right) <= 0 ? left : right;
+        }
+    }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.PRIORITY_QUEUE, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * {@code SerializationProxy} is the serialized form of all dexx collections.
+ * <p/>
+ * <p>Collections write a proxy in their place that records the kind of collection, any comparator or key function,
+ * the size and then the elements in iteration order. Maps write keys and values directly rather than pairs.
+ * On reading, the proxy rebuilds the collection with its bulk builder, which is O(n) for hashed and sorted
+ * collections as the elements of sorted collections are already in order.
+ */
+final class SerializationProxy implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private static final int MAX_INITIAL_CAPACITY = 1024;
+
+    static final byte HASH_MAP = 1;
+    static final byte DERIVED_KEY_HASH_MAP = 2;
+    static final byte TREE_MAP = 3;
+    static final byte HASH_SET = 4;
+    static final byte TREE_SET = 5;
+    static final byte VECTOR = 6;
+    static final byte ARRAY_LIST = 7;
+    static final byte SMALL_INDEXED_LIST = 8;
+    static final byte FINGER_TREE_LIST = 9;
+    static final byte CONS_LIST = 10;
+    static final byte DEQUE = 11;
+    static final byte PRIORITY_QUEUE = 12;
+
+    private transient byte kind;
+    private transient Object collection;
+
+    SerializationProxy(byte kind, Object collection) {
+        this.kind = kind;
+        this.collection = collection;
+    }
+
+    static InvalidObjectException proxyRequired() {
+        return new InvalidObjectException("Serialization proxy required");
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.writeByte(kind);
+        switch (kind) {
+            case HASH_MAP:
+                writePairs(out, (Map<?, ?>) collection);
+                break;
+            case DERIVED_KEY_HASH_MAP: {
+                DerivedKeyHashMap<?, ?> map = (DerivedKeyHashMap<?, ?>) collection;
+                out.writeObject(map.keyFunction());
+                writeElements(out, map.size(), map.values());
+                break;
+            }
+            case TREE_MAP: {
+                TreeMap<?, ?> map = (TreeMap<?, ?>) collection;
+                KeyFunction<?, ?> keyFunction = map.redBlackTree().getKeyFunction();
+                out.writeObject(map.comparator());
+                out.writeObject(keyFunction);
+                if (keyFunction == null) {
+                    writePairs(out, map);
+                } else {
+                    writeElements(out, map.size(), map.values());
+                }
+                break;
+            }
+            case TREE_SET:
+                out.writeObject(((TreeSet<?>) collection).comparator());
+                writeElements(out, (Traversable<?>) collection);
+                break;
+            case PRIORITY_QUEUE:
+                out.writeObject(((PriorityQueue<?>) collection).comparator());
+                writeElements(out, (Traversable<?>) collection);
+                break;
+            default:
+                writeElements(out, (Traversable<?>) collection);
+        }
+    }
+
+    private static void writePairs(ObjectOutputStream out, Map<?, ?> map) throws IOException {
+        out.writeInt(map.size());
+        for (Pair<?, ?> pair : map) {
+            out.writeObject(pair.component1());
+            out.writeObject(pair.component2());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E> void writeElements(ObjectOutputStream out, Traversable<E> elements) throws IOException {
+        writeElements(out, elements.size(), (java.lang.Iterable<E>) elements);
+    }
+
+    private static void writeElements(ObjectOutputStream out, int size, java.lang.Iterable<?> elements) throws IOException {
+        out.writeInt(size);
+        for (Object element : elements) {
+            out.writeObject(element);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        kind = in.readByte();
+        switch (kind) {
+            case HASH_MAP: {
+                Object[] pairs = readPairs(in);
+                collection = HashMap.fromPairs(pairs, pairs.length);
+                break;
+            }
+            case DERIVED_KEY_HASH_MAP: {
+                KeyFunction<Object, Object> keyFunction = (KeyFunction<Object, Object>) in.readObject();
+                Object[] values = readElements(in);
+                collection = DerivedKeyHashMap.fromValues(keyFunction, values, values.length);
+                break;
+            }
+            case TREE_MAP: {
+                Comparator<Object> comparator = (Comparator<Object>) in.readObject();
+                KeyFunction<Object, Object> keyFunction = (KeyFunction<Object, Object>) in.readObject();
+                Object[] pairs;
+                if (keyFunction == null) {
+                    pairs = readPairs(in);
+                } else {
+                    pairs = readElements(in);
+                    for (int i = 0; i < pairs.length; i++) {
+                        pairs[i] = new Pair<Object, Object>(keyFunction.key(pairs[i]), pairs[i]);
+                    }
+                }
+                collection = new TreeMap<Object, Object>(comparator, keyFunction).withPairs(pairs, pairs.length, true);
+                break;
+            }
+            case HASH_SET: {
+                Object[] elements = readElements(in);
+                collection = HashSet.fromElements(elements, elements.length);
+                break;
+            }
+            case TREE_SET: {
+                Comparator<Object> comparator = (Comparator<Object>) in.readObject();
+                Object[] elements = readElements(in);
+                collection = new TreeSet<Object>(comparator).withElements(elements, elements.length, true);
+                break;
+            }
+            case VECTOR:
+                collection = Vector.fromArray(readElements(in));
+                break;
+            case ARRAY_LIST:
+                collection = new ArrayList<Object>(readElements(in));
+                break;
+            case SMALL_INDEXED_LIST:
+                collection = readElements(in, SmallIndexedList.<Object>factory().newBuilder());
+                break;
+            case FINGER_TREE_LIST:
+                collection = readElements(in, FingerTreeList.<Object>factory().newBuilder());
+                break;
+            case CONS_LIST: {
+                Object[] elements = readElements(in);
+                ConsList<Object> list = ConsList.empty();
+                for (int i = elements.length - 1; i >= 0; i--) {
+                    list = list.prepend(elements[i]);
+                }
+                collection = list;
+                break;
+            }
+            case DEQUE:
+                collection = readElements(in, Deque.<Object>factory().newBuilder());
+                break;
+            case PRIORITY_QUEUE: {
+                PriorityQueue<Object> queue = PriorityQueue.empty((Comparator<Object>) in.readObject());
+                for (Object element : readElements(in)) {
+                    queue = queue.insert(element);
+                }
+                collection = queue;
+                break;
+            }
+            default:
+                throw new InvalidObjectException("Unknown collection kind " + kind);
+        }
+    }
+
+    private static Object[] readPairs(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        int size = readSize(in);
+        Object[] pairs = allocate(size);
+        for (int i = 0; i < size; i++) {
+            pairs = ensureCapacity(pairs, i, size);
+            Object key = in.readObject();
+            pairs[i] = new Pair<Object, Object>(key, in.readObject());
+        }
+        return pairs;
+    }
+
+    private static Object[] readElements(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        int size = readSize(in);
+        Object[] elements = allocate(size);
+        for (int i = 0; i < size; i++) {
+            elements = ensureCapacity(elements, i, size);
+            elements[i] = in.readObject();
+        }
+        return elements;
+    }
+
+    private static <R> R readElements(ObjectInputStream in, Builder<Object, R> builder) throws IOException, ClassNotFoundException {
+        int size = readSize(in);
+        for (int i = 0; i < size; i++) {
+            builder.add(in.readObject());
+        }
+        return builder.build();
+    }
+
+    // Sizes come from the stream, so arrays are grown as elements arrive rather than trusting the size up front
+    private static Object[] allocate(int size) {
+        return new Object[Math.min(size, MAX_INITIAL_CAPACITY)];
+    }
+
+    private static Object[] ensureCapacity(Object[] array, int index, int size) {
+        if (index < array.length) return array;
+        return Arrays.copyOf(array, (int) Math.min(size, 2L * array.length));
+    }
+
+    private static int readSize(ObjectInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) throw new InvalidObjectException("Invalid size " + size);
+        return size;
+    }
+
+    private Object readResolve() throws ObjectStreamException {
+        return collection;
+    }
+}
@@ -128,45 +128,22 @@ public class Sets {
 
     @NotNull
     public static <E> Set<E> copyOf(java.lang.Iterable<E> iterable) {
-        HashSet<E> result = HashSet.empty();
-        for (E e : iterable) {
-            result = result.add(e);
-        }
-        return result;
+        return Sets.<E>builder().addAll(iterable).build();
     }
 
     @NotNull
     public static <E> Set<E> copyOf(Iterator<E> iterator) {
-        HashSet<E> result = HashSet.empty();
-        while (iterator.hasNext()) {
-            result = result.add(iterator.next());
-        }
-        return result;
+        return Sets.<E>builder().addAll(iterator).build();
     }
 
     @NotNull
     public static <E> Set<E> copyOf(E[] es) {
-        HashSet<E> result = HashSet.empty();
-        for (E e : es) {
-            result = result.add(e);
-        }
-        return result;
+        return HashSet.fromElements(es.clone(), es.length);
     }
 
     @NotNull
     public static <E> Set<E> copyOfTraversable(Traversable<E> traversable) {
-        @SuppressWarnings("unchecked")
-        final HashSet<E>[] result = new HashSet[1];
-        result[0] = HashSet.empty();
-        traversable.forEach(new Function<E, Object>() {
-            @Override
-            public Object invoke(E e) {
-                result[0] = result[0].add(e);
-                return null;
-            }
-        });
-
-        return result[0];
+        return Sets.<E>builder().addAll(traversable).build();
     }
 
     @NotNull
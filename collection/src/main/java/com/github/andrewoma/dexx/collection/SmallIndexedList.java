@@ -0,0 +1,474 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.base.AbstractIndexedList;
+import com.github.andrewoma.dexx.collection.internal.builder.AbstractBuilder;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@code SmallIndexedList} holds lists of up to {@link #MAX_SIZE} elements in fields, avoiding the
+ * overhead of a {@code Vector} for very short lists. Growing beyond {@link #MAX_SIZE} promotes the list to a
+ * {@code Vector}.
+ */
+abstract class SmallIndexedList<E> extends AbstractIndexedList<E> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    static final int MAX_SIZE = 4;
+
+    private static final SmallIndexedList<?> EMPTY = new Empty<Object>();
+
+    @SuppressWarnings("unchecked")
+    @NotNull
+    static <E> SmallIndexedList<E> empty() {
+        return (SmallIndexedList<E>) EMPTY;
+    }
+
+    @NotNull
+    static <E> BuilderFactory<E, IndexedList<E>> factory() {
+        return new BuilderFactory<E, IndexedList<E>>() {
+            @NotNull
+            @Override
+            public Builder<E, IndexedList<E>> newBuilder() {
+                return new SmallIndexedListBuilder<E>();
+            }
+        };
+    }
+
+    protected IndexOutOfBoundsException outOfBounds(int index) {
+        return new IndexOutOfBoundsException(String.valueOf(index));
+    }
+
+    @NotNull
+    @Override
+    public IndexedList<E> take(int n) {
+        if (n <= 0)
+            return empty();
+        else if (n < size())
+            return slice(0, n);
+        else
+            return this;
+    }
+
+    @NotNull
+    @Override
+    public IndexedList<E> drop(int n) {
+        if (n <= 0)
+            return this;
+        else if (n < size())
+            return slice(n, size());
+        else
+            return empty();
+    }
+
+    @NotNull
+    @Override
+    public IndexedList<E> tail() {
+        return drop(1);
+    }
+
+    @NotNull
+    @Override
+    public IndexedList<E> range(int from, boolean fromInclusive, int to, boolean toInclusive) {
+        return take(to + (toInclusive ? 1 : 0)).drop(from + (fromInclusive ? 0 : 1));
+    }
+
+    @NotNull
+    private IndexedList<E> slice(int from, int until) {
+        switch (until - from) {
+            case 1:
+                return new One<E>(get(from));
+            case 2:
+                return new Two<E>(get(from), get(from + 1));
+            case 3:
+                return new Three<E>(get(from), get(from + 1), get(from + 2));
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    @Nullable
+    @Override
+    public E first() {
+        return isEmpty() ? null : get(0);
+    }
+
+    @Nullable
+    @Override
+    public E last() {
+        return isEmpty() ? null : get(size() - 1);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @NotNull
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size();
+            }
+
+            @Override
+            public E next() {
+                if (index >= size()) throw new NoSuchElementException();
+                return get(index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public int knownSize() {
+        return size();
+    }
+
+    @Override
+    protected void copyToArray(Object[] array) {
+        for (int i = 0; i < size(); i++) {
+            array[i] = get(i);
+        }
+    }
+
+    static class Empty<E> extends SmallIndexedList<E> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public int size() {
+            return 0;
+        }
+
+        @Override
+        public E get(int i) {
+            throw outOfBounds(i);
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> set(int i, E elem) {
+            throw outOfBounds(i);
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> append(E elem) {
+            return new One<E>(elem);
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> prepend(E elem) {
+            return new One<E>(elem);
+        }
+    }
+
+    static class One<E> extends SmallIndexedList<E> {
+        private static final long serialVersionUID = 1L;
+
+        private final E e1;
+
+        One(E e1) {
+            this.e1 = e1;
+        }
+
+        @Override
+        public int size() {
+            return 1;
+        }
+
+        @Override
+        public E get(int i) {
+            if (i == 0) return e1;
+            throw outOfBounds(i);
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> set(int i, E elem) {
+            if (i == 0) return new One<E>(elem);
+            throw outOfBounds(i);
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> append(E elem) {
+            return new Two<E>(e1, elem);
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> prepend(E elem) {
+            return new Two<E>(elem, e1);
+        }
+    }
+
+    static class Two<E> extends SmallIndexedList<E> {
+        private static final long serialVersionUID = 1L;
+
+        private final E e1;
+        private final E e2;
+
+        Two(E e1, E e2) {
+            this.e1 = e1;
+            this.e2 = e2;
+        }
+
+        @Override
+        public int size() {
+            return 2;
+        }
+
+        @Override
+        public E get(int i) {
+            switch (i) {
+                case 0:
+                    return e1;
+                case 1:
+                    return e2;
+                default:
+                    throw outOfBounds(i);
+            }
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> set(int i, E elem) {
+            switch (i) {
+                case 0:
+                    return new Two<E>(elem, e2);
+                case 1:
+                    return new Two<E>(e1, elem);
+                default:
+                    throw outOfBounds(i);
+            }
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> append(E elem) {
+            return new Three<E>(e1, e2, elem);
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> prepend(E elem) {
+            return new Three<E>(elem, e1, e2);
+        }
+    }
+
+    static class Three<E> extends SmallIndexedList<E> {
+        private static final long serialVersionUID = 1L;
+
+        private final E e1;
+        private final E e2;
+        private final E e3;
+
+        Three(E e1, E e2, E e3) {
+            this.e1 = e1;
+            this.e2 = e2;
+            this.e3 = e3;
+        }
+
+        @Override
+        public int size() {
+            return 3;
+        }
+
+        @Override
+        public E get(int i) {
+            switch (i) {
+                case 0:
+                    return e1;
+                case 1:
+                    return e2;
+                case 2:
+                    return e3;
+                default:
+                    throw outOfBounds(i);
+            }
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> set(int i, E elem) {
+            switch (i) {
+                case 0:
+                    return new Three<E>(elem, e2, e3);
+                case 1:
+                    return new Three<E>(e1, elem, e3);
+                case 2:
+                    return new Three<E>(e1, e2, elem);
+                default:
+                    throw outOfBounds(i);
+            }
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> append(E elem) {
+            return new Four<E>(e1, e2, e3, elem);
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> prepend(E elem) {
+            return new Four<E>(elem, e1, e2, e3);
+        }
+    }
+
+    static class Four<E> extends SmallIndexedList<E> {
+        private static final long serialVersionUID = 1L;
+
+        private final E e1;
+        private final E e2;
+        private final E e3;
+        private final E e4;
+
+        Four(E e1, E e2, E e3, E e4) {
+            this.e1 = e1;
+            this.e2 = e2;
+            this.e3 = e3;
+            this.e4 = e4;
+        }
+
+        @Override
+        public int size() {
+            return 4;
+        }
+
+        @Override
+        public E get(int i) {
+            switch (i) {
+                case 0:
+                    return e1;
+                case 1:
+                    return e2;
+                case 2:
+                    return e3;
+                case 3:
+                    return e4;
+                default:
+                    throw outOfBounds(i);
+            }
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> set(int i, E elem) {
+            switch (i) {
+                case 0:
+                    return new Four<E>(elem, e2, e3, e4);
+                case 1:
+                    return new Four<E>(e1, elem, e3, e4);
+                case 2:
+                    return new Four<E>(e1, e2, elem, e4);
+                case 3:
+                    return new Four<E>(e1, e2, e3, elem);
+                default:
+                    throw outOfBounds(i);
+            }
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> append(E elem) {
+            return new VectorBuilder<E>().add(e1).add(e2).add(e3).add(e4).add(elem).build();
+        }
+
+        @NotNull
+        @Override
+        public IndexedList<E> prepend(E elem) {
+            return new VectorBuilder<E>().add(elem).add(e1).add(e2).add(e3).add(e4).build();
+        }
+    }
+
+    // Subclasses are replaced with the proxy too, so this is package-private rather than private
+    Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.SMALL_INDEXED_LIST, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
+}
+
+/**
+ * Buffers up to {@link SmallIndexedList#MAX_SIZE} elements, switching to a {@code VectorBuilder} once exceeded.
+ */
+class SmallIndexedListBuilder<E> extends AbstractBuilder<E, IndexedList<E>> {
+    private final Object[] buffer = new Object[SmallIndexedList.MAX_SIZE];
+    private int size = 0;
+    private VectorBuilder<E> vectorBuilder;
+
+    @NotNull
+    @Override
+    public Builder<E, IndexedList<E>> add(E element) {
+        if (vectorBuilder != null) {
+            vectorBuilder.add(element);
+        } else if (size < buffer.length) {
+            buffer[size++] = element;
+        } else {
+            vectorBuilder = new VectorBuilder<E>();
+            vectorBuilder.addAll(buffer, 0, size);
+            vectorBuilder.add(element);
+        }
+        return this;
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public IndexedList<E> doBuild() {
+        if (vectorBuilder != null) return vectorBuilder.build();
+
+        switch (size) {
+            case 0:
+                return SmallIndexedList.empty();
+            case 1:
+                return new SmallIndexedList.One<E>((E) buffer[0]);
+            case 2:
+                return new SmallIndexedList.Two<E>((E) buffer[0], (E) buffer[1]);
+            case 3:
+                return new SmallIndexedList.Three<E>((E) buffer[0], (E) buffer[1], (E) buffer[2]);
+            default:
+                return new SmallIndexedList.Four<E>((E) buffer[0], (E) buffer[1], (E) buffer[2], (E) buffer[3]);
+        }
+    }
+}
@@ -159,48 +159,43 @@ public class SortedMaps {
 
     @NotNull
     public static <K, V> SortedMap<K, V> copyOf(Comparator<? super K> comparator, java.lang.Iterable<Pair<K, V>> iterable) {
-        SortedMap<K, V> result = new TreeMap<K, V>(comparator, null);
-        for (Pair<K, V> pair : iterable) {
-            result = result.put(pair.component1(), pair.component2());
-        }
-
-        return result;
+        return SortedMaps.<K, V>builder(comparator).addAll(iterable).build();
     }
 
     @NotNull
     public static <K, V> SortedMap<K, V> copyOf(Comparator<? super K> comparator, Iterator<Pair<K, V>> iterator) {
-        SortedMap<K, V> result = new TreeMap<K, V>(comparator, null);
-        while (iterator.hasNext()) {
-            Pair<K, V> pair = iterator.next();
-            result = result.put(pair.component1(), pair.component2());
-        }
-
-        return result;
+        return SortedMaps.<K, V>builder(comparator).addAll(iterator).build();
     }
 
     @NotNull
     public static <K, V> SortedMap<K, V> copyOf(Comparator<? super K> comparator, Pair<K, V>[] pairs) {
-        SortedMap<K, V> result = new TreeMap<K, V>(comparator, null);
-        for (Pair<K, V> pair : pairs) {
-            result = result.put(pair.component1(), pair.component2());
-        }
-        return result;
+        return new TreeMap<K, V>(comparator, null).withPairs(pairs.clone(), pairs.length, false);
+    }
+
+    @NotNull
+    public static <K extends Comparable<? super K>, V> SortedMap<K, V> copyOf(java.util.Map<K, V> map) {
+        return copyOf(null, map);
+    }
+
+    /**
+     * Returns a sorted map containing the entries of a {@code java.util.Map}. If the source is a
+     * {@code java.util.SortedMap} with the same comparator, its entries are already in order and the tree is
+     * built in O(n) without comparing keys.
+     */
+    @NotNull
+    public static <K, V> SortedMap<K, V> copyOf(Comparator<? super K> comparator, java.util.Map<K, V> map) {
+        Object[] pairs = Maps.pairsOf(map);
+        boolean sorted = map instanceof java.util.SortedMap && sameOrdering(comparator, ((java.util.SortedMap<K, V>) map).comparator());
+        return new TreeMap<K, V>(comparator, null).withPairs(pairs, pairs.length, sorted);
+    }
+
+    static boolean sameOrdering(Comparator<?> c1, Comparator<?> c2) {
+        return c1 == null ? c2 == null : c1.equals(c2);
     }
 
     @NotNull
     public static <K, V> SortedMap<K, V> copyOfTraversable(Comparator<? super K> comparator, Traversable<Pair<K, V>> traversable) {
-        @SuppressWarnings("unchecked")
-        final SortedMap<K, V>[] result = new TreeMap[1];
-        result[0] = new TreeMap<K, V>(comparator, null);
-        traversable.forEach(new Function<Pair<K, V>, Object>() {
-            @Override
-            public Object invoke(Pair<K, V> pair) {
-                result[0] = result[0].put(pair.component1(), pair.component2());
-                return null;
-            }
-        });
-
-        return result[0];
+        return SortedMaps.<K, V>builder(comparator).addAll(traversable).build();
     }
 
     @NotNull
@@ -218,41 +218,27 @@ public class SortedSets {
 
     @NotNull
     public static <E> SortedSet<E> copyOf(Comparator<? super E> comparator, E[] es) {
-        return construct(comparator, es);
+        return new TreeSet<E>(comparator).withElements(es.clone(), es.length, false);
     }
 
     @NotNull
     public static <E> SortedSet<E> copyOf(Comparator<? super E> comparator, java.lang.Iterable<E> iterable) {
-        SortedSet<E> set = new TreeSet<E>(comparator);
-        for (E e : iterable) {
-            set = set.add(e);
+        if (iterable instanceof java.util.SortedSet && SortedMaps.sameOrdering(comparator, ((java.util.SortedSet<E>) iterable).comparator())) {
+            // Already in order without duplicates, so the tree can be built without comparing elements
+            Object[] elements = ((java.util.SortedSet<E>) iterable).toArray();
+            return new TreeSet<E>(comparator).withElements(elements, elements.length, true);
         }
-        return set;
+        return SortedSets.<E>builder(comparator).addAll(iterable).build();
     }
 
     @NotNull
     public static <E> SortedSet<E> copyOf(Comparator<? super E> comparator, Iterator<E> iterator) {
-        SortedSet<E> set = new TreeSet<E>(comparator);
-        while (iterator.hasNext()) {
-            set = set.add(iterator.next());
-        }
-        return set;
+        return SortedSets.<E>builder(comparator).addAll(iterator).build();
     }
 
     @NotNull
     public static <E> SortedSet<E> copyOf(Comparator<? super E> comparator, Traversable<E> traversable) {
-        @SuppressWarnings("unchecked")
-        final SortedSet<E>[] set = new TreeSet[1];
-        set[0] = new TreeSet<E>(comparator);
-        traversable.forEach(new Function<E, Object>() {
-            @Override
-            public Object invoke(E e) {
-                set[0] = set[0].add(e);
-                return null;
-            }
-        });
-
-        return set[0];
+        return SortedSets.<E>builder(comparator).addAll(traversable).build();
     }
 
     @NotNull
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.base.AbstractMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * {@code StripedHashMap} is an immutable map made up of {@code HashMaps} that each hold the keys hashing to one
+ * stripe. It is the snapshot of a striped {@link com.github.andrewoma.dexx.collection.CopyOnWriteHashMap}.
+ * Updates copy the array of stripes and update a single stripe.
+ */
+class StripedHashMap<K, V> extends AbstractMap<K, V> {
+    private final HashMap<K, V>[] stripes;
+    private final int size;
+
+    StripedHashMap(HashMap<K, V>[] stripes) {
+        this.stripes = stripes;
+        int size = 0;
+        for (HashMap<K, V> stripe : stripes) {
+            size += stripe.size();
+        }
+        this.size = size;
+    }
+
+    // Spreads the hash with a different function to the trie's so that keys in a stripe are spread across the trie
+    static int stripe(Object key, int stripes) {
+        int h = key.hashCode() * 0x9e3779b9;
+        return (h ^ (h >>> 16)) & (stripes - 1);
+    }
+
+    private StripedHashMap<K, V> with(int index, HashMap<K, V> stripe) {
+        if (stripe == stripes[index]) return this;
+        HashMap<K, V>[] updated = stripes.clone();
+        updated[index] = stripe;
+        return new StripedHashMap<K, V>(updated);
+    }
+
+    @Override
+    public boolean containsKey(@NotNull K key) {
+        return stripes[stripe(key, stripes.length)].containsKey(key);
+    }
+
+    @Override
+    public V get(@NotNull K key) {
+        return stripes[stripe(key, stripes.length)].get(key);
+    }
+
+    @NotNull
+    @Override
+    public Map<K, V> put(@NotNull K key, V value) {
+        int index = stripe(key, stripes.length);
+        return with(index, stripes[index].put(key, value));
+    }
+
+    @NotNull
+    @Override
+    public Map<K, V> remove(@NotNull K key) {
+        int index = stripe(key, stripes.length);
+        return with(index, stripes[index].remove(key));
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @NotNull
+    @Override
+    public Iterator<Pair<K, V>> iterator() {
+        return new Iterator<Pair<K, V>>() {
+            private int index = 0;
+            private Iterator<Pair<K, V>> current = stripes[0].iterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext()) {
+                    if (index + 1 >= stripes.length) return false;
+                    current = stripes[++index].iterator();
+                }
+                return true;
+            }
+
+            @Override
+            public Pair<K, V> next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -23,8 +23,10 @@
 package com.github.andrewoma.dexx.collection;
 
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * {@code Traversable} is the root of the collection hierarchy.
@@ -40,6 +42,30 @@ public interface Traversable<E> {
     @SuppressWarnings("NullableProblems")
     <U> void forEach(@NotNull Function<E, U> f);
 
+    /**
+     * Applies {@code f} to each element in turn until it returns {@code false}. Unlike {@link #forEach(Function)},
+     * this allows iteration to stop early without throwing an exception.
+     *
+     * @return {@code true} if {@code f} was applied to every element
+     */
+    boolean forEachWhile(@NotNull Predicate<? super E> f);
+
+    /**
+     * Returns the first element matching {@code predicate}, or {@code null} if there is no such element.
+     */
+    @Nullable
+    E find(@NotNull Predicate<? super E> predicate);
+
+    /**
+     * Returns {@code true} if any element matches {@code predicate}.
+     */
+    boolean exists(@NotNull Predicate<? super E> predicate);
+
+    /**
+     * Returns {@code true} if every element matches {@code predicate}, including when there are no elements.
+     */
+    boolean forAll(@NotNull Predicate<? super E> predicate);
+
     /**
      * Returns the size of the collection.
      * <p/>
@@ -48,6 +74,13 @@ public interface Traversable<E> {
      */
     int size();
 
+    /**
+     * Returns the size of the collection if it can be determined without traversal, otherwise {@code -1}.
+     * This allows generic code to presize buffers without paying for {@link #size()} on collections where it is
+     * expensive.
+     */
+    int knownSize();
+
     /**
      * Returns true if this collection is empty.
      */
@@ -106,4 +139,115 @@ public interface Traversable<E> {
      */
     @NotNull
     E[] toArray(E[] array);
+
+    /**
+     * Folds the elements in encounter order into an {@code int}, starting with {@code initial}, without boxing the accumulator.
+     */
+    int foldInt(int initial, @NotNull IntFold<? super E> f);
+
+    /**
+     * Folds the elements in encounter order into a {@code long}, starting with {@code initial}, without boxing the accumulator.
+     */
+    long foldLong(long initial, @NotNull LongFold<? super E> f);
+
+    /**
+     * Folds the elements in encounter order into a {@code double}, starting with {@code initial}, without boxing the accumulator.
+     */
+    double foldDouble(double initial, @NotNull DoubleFold<? super E> f);
+
+    /**
+     * Returns the sum of {@code f} applied to each element, or 0 if this collection is empty.
+     */
+    int sumInt(@NotNull IntFunction<? super E> f);
+
+    /**
+     * Returns the sum of {@code f} applied to each element, or 0 if this collection is empty.
+     */
+    long sumLong(@NotNull LongFunction<? super E> f);
+
+    /**
+     * Returns the sum of {@code f} applied to each element, or 0 if this collection is empty.
+     */
+    double sumDouble(@NotNull DoubleFunction<? super E> f);
+
+    /**
+     * Returns the maximum of {@code f} applied to each element.
+     *
+     * @throws java.util.NoSuchElementException if this collection is empty
+     */
+    int maxInt(@NotNull IntFunction<? super E> f);
+
+    /**
+     * Returns the maximum of {@code f} applied to each element.
+     *
+     * @throws java.util.NoSuchElementException if this collection is empty
+     */
+    long maxLong(@NotNull LongFunction<? super E> f);
+
+    /**
+     * Returns the maximum of {@code f} applied to each element.
+     *
+     * @throws java.util.NoSuchElementException if this collection is empty
+     */
+    double maxDouble(@NotNull DoubleFunction<? super E> f);
+
+    /**
+     * Returns the minimum of {@code f} applied to each element.
+     *
+     * @throws java.util.NoSuchElementException if this collection is empty
+     */
+    int minInt(@NotNull IntFunction<? super E> f);
+
+    /**
+     * Returns the minimum of {@code f} applied to each element.
+     *
+     * @throws java.util.NoSuchElementException if this collection is empty
+     */
+    long minLong(@NotNull LongFunction<? super E> f);
+
+    /**
+     * Returns the minimum of {@code f} applied to each element.
+     *
+     * @throws java.util.NoSuchElementException if this collection is empty
+     */
+    double minDouble(@NotNull DoubleFunction<? super E> f);
+
+    /**
+     * Folds the elements in parallel in the common fork/join pool.
+     *
+     * @see #parallelFold(Object, Fold, Fold, ForkJoinPool, int)
+     */
+    <A> A parallelFold(A identity, @NotNull Fold<A, ? super E> accumulator, @NotNull Fold<A, A> combiner);
+
+    /**
+     * Folds the elements in parallel. The collection is split along its internal structure until pieces are at or
+     * below {@code threshold} elements. Each piece is folded sequentially starting from {@code identity}, and the
+     * results of adjacent pieces are merged with {@code combiner} in encounter order.
+     * <p/>
+     * <p>{@code identity} must be an identity for {@code combiner}, and {@code combiner} must be associative.
+     * Requires JDK 1.8 or later at runtime.
+     */
+    <A> A parallelFold(A identity, @NotNull Fold<A, ? super E> accumulator, @NotNull Fold<A, A> combiner,
+                       @NotNull ForkJoinPool pool, int threshold);
+
+    /**
+     * Applies {@code f} to each element in parallel in the common fork/join pool.
+     *
+     * @see #parallelForEach(Function, ForkJoinPool, int)
+     */
+    <U> void parallelForEach(@NotNull Function<E, U> f);
+
+    /**
+     * Applies {@code f} to each element in parallel, splitting the collection as for
+     * {@link #parallelFold(Object, Fold, Fold, ForkJoinPool, int)}. There is no guarantee about the order in which
+     * elements are visited or the thread that visits them, so {@code f} must be thread safe.
+     */
+    <U> void parallelForEach(@NotNull Function<E, U> f, @NotNull ForkJoinPool pool, int threshold);
+
+    /**
+     * Returns a lazy {@link View} of this collection. Transformations on the view are fused into a single pass
+     * over this collection when a terminal operation is called.
+     */
+    @NotNull
+    View<E> view();
 }
@@ -22,9 +22,10 @@
 
 package com.github.andrewoma.dexx.collection;
 
+import com.github.andrewoma.dexx.collection.internal.adapter.SortedMapAdapter;
 import com.github.andrewoma.dexx.collection.internal.base.AbstractIterable;
 import com.github.andrewoma.dexx.collection.internal.base.AbstractSortedMap;
-import com.github.andrewoma.dexx.collection.internal.builder.AbstractSelfBuilder;
+import com.github.andrewoma.dexx.collection.internal.builder.AbstractArrayBuilder;
 import com.github.andrewoma.dexx.collection.internal.redblack.DefaultTreeFactory;
 import com.github.andrewoma.dexx.collection.internal.redblack.DerivedKeyFactory;
 import com.github.andrewoma.dexx.collection.internal.redblack.RedBlackTree;
@@ -33,8 +34,13 @@ import com.github.andrewoma.dexx.collection.internal.redblack.TreeFactory;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.Spliterator;
 
 /**
  * {@code TreeMap} is an implementation of {@code SortedMap} based on a
@@ -44,7 +50,9 @@ import java.util.Iterator;
  * to provide modest memory saving per node. See {@link com.github.andrewoma.dexx.collection.DerivedKeyHashMap}
  * for an example of using a key function.
  */
-public class TreeMap<K, V> extends AbstractSortedMap<K, V> {
+public class TreeMap<K, V> extends AbstractSortedMap<K, V> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final Tree<K, V> tree;
     private final RedBlackTree<K, V> redBlackTree;
 
@@ -59,12 +67,11 @@ public class TreeMap<K, V> extends AbstractSortedMap<K, V> {
             @NotNull
             @Override
             public Builder<Pair<K, V>, TreeMap<K, V>> newBuilder() {
-                return new AbstractSelfBuilder<Pair<K, V>, TreeMap<K, V>>(new TreeMap<K, V>(ordering, keyFunction)) {
+                return new AbstractArrayBuilder<Pair<K, V>, TreeMap<K, V>>(new TreeMap<K, V>(ordering, keyFunction)) {
                     @NotNull
                     @Override
-                    public Builder<Pair<K, V>, TreeMap<K, V>> add(Pair<K, V> element) {
-                        result = result.put(element.component1(), element.component2());
-                        return this;
+                    protected TreeMap<K, V> doBuild(TreeMap<K, V> result, Object[] elements, int size) {
+                        return result.plusPairs(elements, size);
                     }
                 };
             }
@@ -82,11 +89,72 @@ public class TreeMap<K, V> extends AbstractSortedMap<K, V> {
         redBlackTree = new RedBlackTree<K, V>(factory, ordering, keyFunction);
     }
 
-    private TreeMap(Tree<K, V> tree, RedBlackTree<K, V> redBlackTree) {
+    TreeMap(Tree<K, V> tree, RedBlackTree<K, V> redBlackTree) {
         this.tree = tree;
         this.redBlackTree = redBlackTree;
     }
 
+    // Exposes the tree for serialization
+    Tree<K, V> tree() {
+        return tree;
+    }
+
+    RedBlackTree<K, V> redBlackTree() {
+        return redBlackTree;
+    }
+
+    // Returns a map with the same ordering containing only pairs[0, length), building the tree in O(n) once sorted.
+    // If sorted is true, the pairs must already be in strictly ascending key order. Later pairs replace earlier
+    // pairs with equal keys.
+    @SuppressWarnings("unchecked")
+    @NotNull
+    TreeMap<K, V> withPairs(Object[] pairs, int length, boolean sorted) {
+        if (!sorted) {
+            Arrays.sort(pairs, 0, length, new Comparator<Object>() {
+                @Override
+                public int compare(Object o1, Object o2) {
+                    return redBlackTree.compare(((Pair<K, V>) o1).component1(), ((Pair<K, V>) o2).component1());
+                }
+            });
+        }
+        Object[] keys = new Object[length];
+        Object[] values = new Object[length];
+        for (int i = 0; i < length; i++) {
+            Pair<K, V> pair = (Pair<K, V>) pairs[i];
+            keys[i] = pair.component1();
+            values[i] = pair.component2();
+        }
+        if (!sorted) {
+            length = redBlackTree.distinctSorted(keys, values, length);
+        }
+        return new TreeMap<K, V>(redBlackTree.fromSorted(keys, values, length), redBlackTree);
+    }
+
+    // Returns this map with pairs[0, length) added, merging them once sorted with the existing entries and rebuilding
+    // the tree in O(n). Later pairs replace earlier pairs and existing entries with equal keys.
+    @SuppressWarnings("unchecked")
+    @NotNull
+    TreeMap<K, V> plusPairs(Object[] pairs, int length) {
+        TreeMap<K, V> added = withPairs(pairs, length, false);
+        if (tree == null) return added;
+        if (added.tree == null) return this;
+
+        Object[] left = toArray();
+        Object[] right = added.toArray();
+        Object[] merged = new Object[left.length + right.length];
+        int i = 0, j = 0, n = 0;
+        while (i < left.length && j < right.length) {
+            int c = redBlackTree.compare(((Pair<K, V>) left[i]).component1(), ((Pair<K, V>) right[j]).component1());
+            if (c == 0) i++;
+            merged[n++] = c < 0 ? left[i++] : right[j++];
+        }
+        System.arraycopy(left, i, merged, n, left.length - i);
+        n += left.length - i;
+        System.arraycopy(right, j, merged, n, right.length - j);
+        n += right.length - j;
+        return withPairs(merged, n, true);
+    }
+
     @Override
     public boolean containsKey(@NotNull K key) {
         return redBlackTree.contains(tree, key);
@@ -108,6 +176,33 @@ public class TreeMap<K, V> extends AbstractSortedMap<K, V> {
         return RedBlackTree.count(tree);
     }
 
+    /**
+     * Returns a {@code Spliterator} that splits by subtree. The size is exact until the first split.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     */
+    @NotNull
+    @Override
+    public Spliterator<Pair<K, V>> spliterator() {
+        return redBlackTree.spliterator(tree);
+    }
+
+    @NotNull
+    @Override
+    public Object[] toArray() {
+        return redBlackTree.toArray(tree, true);
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public Pair<K, V>[] toArray(Pair<K, V>[] array) {
+        Object[] pairs = redBlackTree.toArray(tree, true);
+        if (array.length < pairs.length) return (Pair<K, V>[]) Arrays.copyOf(pairs, pairs.length, array.getClass());
+        System.arraycopy(pairs, 0, array, 0, pairs.length);
+        return array;
+    }
+
     @Override
     public boolean isEmpty() {
         return redBlackTree.isEmpty(tree);
@@ -129,6 +224,11 @@ public class TreeMap<K, V> extends AbstractSortedMap<K, V> {
         redBlackTree.forEach(tree, f);
     }
 
+    @Override
+    public boolean forEachWhile(@NotNull Predicate<? super Pair<K, V>> f) {
+        return redBlackTree.forEachWhile(tree, f);
+    }
+
     @Nullable
     @Override
     public Pair<K, V> first() {
@@ -203,5 +303,18 @@ public class TreeMap<K, V> extends AbstractSortedMap<K, V> {
     protected TreeMap<K, V> slice(int from, int until) {
         return new TreeMap<K, V>(redBlackTree.slice(tree, from, until), redBlackTree);
     }
-}
 
+    @NotNull
+    @Override
+    public java.util.SortedMap<K, V> asSortedMap() {
+        return new SortedMapAdapter<K, V>(this, redBlackTree, tree);
+    }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.TREE_MAP, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
+}
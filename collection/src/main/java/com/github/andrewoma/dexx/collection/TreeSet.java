@@ -22,21 +22,29 @@
 
 package com.github.andrewoma.dexx.collection;
 
+import com.github.andrewoma.dexx.collection.internal.adapter.SortedSetAdapter;
 import com.github.andrewoma.dexx.collection.internal.base.AbstractSortedSet;
-import com.github.andrewoma.dexx.collection.internal.builder.AbstractSelfBuilder;
+import com.github.andrewoma.dexx.collection.internal.builder.AbstractArrayBuilder;
 import com.github.andrewoma.dexx.collection.internal.redblack.DerivedKeyFactory;
 import com.github.andrewoma.dexx.collection.internal.redblack.RedBlackTree;
 import com.github.andrewoma.dexx.collection.internal.redblack.Tree;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.Iterator;
+import java.util.Spliterator;
 
 /**
  * {@code TreeSet} is an implementation of {@code SortedSet} backed by a {@code TreeMap}.
  */
-public class TreeSet<E> extends AbstractSortedSet<E> {
+public class TreeSet<E> extends AbstractSortedSet<E> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private final Tree<E, E> tree;
     private final RedBlackTree<E, E> redBlackTree;
 
@@ -48,12 +56,11 @@ public class TreeSet<E> extends AbstractSortedSet<E> {
             @NotNull
             @Override
             public Builder<E, TreeSet<E>> newBuilder() {
-                return new AbstractSelfBuilder<E, TreeSet<E>>(new TreeSet<E>(ordering)) {
+                return new AbstractArrayBuilder<E, TreeSet<E>>(new TreeSet<E>(ordering)) {
                     @NotNull
                     @Override
-                    public Builder<E, TreeSet<E>> add(E element) {
-                        result = result.add(element);
-                        return this;
+                    protected TreeSet<E> doBuild(TreeSet<E> result, Object[] elements, int size) {
+                        return result.plusElements(elements, size);
                     }
                 };
             }
@@ -75,11 +82,58 @@ public class TreeSet<E> extends AbstractSortedSet<E> {
         redBlackTree = new RedBlackTree<E, E>(new DerivedKeyFactory(), ordering, new IdentityKeyFunction<E>());
     }
 
-    private TreeSet(Tree<E, E> tree, RedBlackTree<E, E> redBlackTree) {
+    TreeSet(Tree<E, E> tree, RedBlackTree<E, E> redBlackTree) {
         this.tree = tree;
         this.redBlackTree = redBlackTree;
     }
 
+    // Exposes the tree for serialization
+    Tree<E, E> tree() {
+        return tree;
+    }
+
+    RedBlackTree<E, E> redBlackTree() {
+        return redBlackTree;
+    }
+
+    // Returns a set with the same ordering containing only elements[0, length), building the tree in O(n) once
+    // sorted. If sorted is true, the elements must already be in strictly ascending order. Later elements replace
+    // earlier equal elements.
+    @SuppressWarnings("unchecked")
+    @NotNull
+    TreeSet<E> withElements(Object[] elements, int length, boolean sorted) {
+        if (!sorted) {
+            Arrays.sort(elements, 0, length, (Comparator<Object>) redBlackTree.getOrdering());
+            length = redBlackTree.distinctSorted(elements, elements, length);
+        }
+        return new TreeSet<E>(redBlackTree.fromSorted(elements, elements, length), redBlackTree);
+    }
+
+    // Returns this set with elements[0, length) added, merging them once sorted with the existing elements and
+    // rebuilding the tree in O(n). Later elements replace earlier and existing equal elements.
+    @SuppressWarnings("unchecked")
+    @NotNull
+    TreeSet<E> plusElements(Object[] elements, int length) {
+        TreeSet<E> added = withElements(elements, length, false);
+        if (tree == null) return added;
+        if (added.tree == null) return this;
+
+        Object[] left = toArray();
+        Object[] right = added.toArray();
+        Object[] merged = new Object[left.length + right.length];
+        int i = 0, j = 0, n = 0;
+        while (i < left.length && j < right.length) {
+            int c = redBlackTree.compare((E) left[i], (E) right[j]);
+            if (c == 0) i++;
+            merged[n++] = c < 0 ? left[i++] : right[j++];
+        }
+        System.arraycopy(left, i, merged, n, left.length - i);
+        n += left.length - i;
+        System.arraycopy(right, j, merged, n, right.length - j);
+        n += right.length - j;
+        return withElements(merged, n, true);
+    }
+
     @Override
     public Comparator<? super E> comparator() {
         return redBlackTree.getOrdering();
@@ -107,6 +161,33 @@ public class TreeSet<E> extends AbstractSortedSet<E> {
         return RedBlackTree.count(tree);
     }
 
+    /**
+     * Returns a {@code Spliterator} that splits by subtree. The size is exact until the first split.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     */
+    @NotNull
+    @Override
+    public Spliterator<E> spliterator() {
+        return redBlackTree.valuesSpliterator(tree);
+    }
+
+    @NotNull
+    @Override
+    public Object[] toArray() {
+        return redBlackTree.toArray(tree, false);
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public E[] toArray(E[] array) {
+        Object[] values = redBlackTree.toArray(tree, false);
+        if (array.length < values.length) return (E[]) Arrays.copyOf(values, values.length, array.getClass());
+        System.arraycopy(values, 0, array, 0, values.length);
+        return array;
+    }
+
     @Nullable
     @Override
     public E first() {
@@ -119,6 +200,31 @@ public class TreeSet<E> extends AbstractSortedSet<E> {
         return tree != null ? redBlackTree.greatest(tree).getValue() : null;
     }
 
+    @Override
+    public <U> void forEach(@NotNull Function<E, U> f) {
+        redBlackTree.forEachValue(tree, f);
+    }
+
+    @Override
+    public boolean forEachWhile(@NotNull Predicate<? super E> f) {
+        return redBlackTree.forEachValueWhile(tree, f);
+    }
+
+    @Override
+    public int foldInt(int initial, @NotNull IntFold<? super E> f) {
+        return redBlackTree.foldValuesInt(tree, initial, f);
+    }
+
+    @Override
+    public long foldLong(long initial, @NotNull LongFold<? super E> f) {
+        return redBlackTree.foldValuesLong(tree, initial, f);
+    }
+
+    @Override
+    public double foldDouble(double initial, @NotNull DoubleFold<? super E> f) {
+        return redBlackTree.foldValuesDouble(tree, initial, f);
+    }
+
     @NotNull
     @Override
     public Iterator<E> iterator() {
@@ -154,4 +260,18 @@ public class TreeSet<E> extends AbstractSortedSet<E> {
     public SortedSet<E> range(@NotNull E from, boolean fromInclusive, @NotNull E to, boolean toInclusive) {
         return new TreeSet<E>(redBlackTree.range(tree, from, fromInclusive, to, toInclusive), redBlackTree);
     }
-}
\ No newline at end of file
+
+    @NotNull
+    @Override
+    public java.util.SortedSet<E> asSortedSet() {
+        return new SortedSetAdapter<E>(this, redBlackTree, tree);
+    }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.TREE_SET, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
+}
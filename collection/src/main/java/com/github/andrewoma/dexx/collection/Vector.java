@@ -31,12 +31,19 @@
 package com.github.andrewoma.dexx.collection;
 
 import com.github.andrewoma.dexx.collection.internal.base.AbstractIndexedList;
-import com.github.andrewoma.dexx.collection.internal.builder.AbstractBuilder;
+import com.github.andrewoma.dexx.collection.internal.parallel.ParallelMergeSort;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
  * Vector is a general-purpose, immutable data structure.
@@ -49,7 +56,9 @@ import java.util.NoSuchElementException;
  * <p>See Scala's <a href="http://www.scala-lang.org/docu/files/collections-api/collections_15.html">documentation</a>
  * for more information on the implementation.
  */
-public class Vector<E> extends AbstractIndexedList<E> {
+public class Vector<E> extends AbstractIndexedList<E> implements Serializable {
+    private static final long serialVersionUID = 1L;
+
     private static final Vector EMPTY = new Vector(0, 0, 0);
     protected final VectorPointer<E> pointer = new VectorPointer<E>();
 
@@ -87,18 +96,128 @@ public class Vector<E> extends AbstractIndexedList<E> {
         return endIndex - startIndex;
     }
 
-    private void initIterator(VectorIterator<E> s) {
+    @NotNull
+    @Override
+    public Iterator<E> iterator() {
+        return iterator(startIndex, endIndex);
+    }
+
+    // Iterates over the internal index range [from, until), where startIndex <= from < until <= endIndex
+    VectorIterator<E> iterator(int from, int until) {
+        VectorIterator<E> s = new VectorIterator<E>(from, until);
         s.initFrom(pointer);
         if (dirty) s.stabilize(focus);
-        if (s.depth > 1) s.gotoPos(startIndex, startIndex ^ focus);
+        if (s.depth > 1) s.gotoPos(from, from ^ focus);
+        return s;
     }
 
+    /**
+     * Returns a {@code Spliterator} that splits on the boundaries of the underlying 32-way trie so that each
+     * half shares as few nodes as possible with the other. Sizes are always exact.
+     * <p/>
+     * <p>Requires JDK 1.8 or later at runtime.
+     */
     @NotNull
     @Override
-    public Iterator<E> iterator() {
-        VectorIterator<E> s = new VectorIterator<E>(startIndex, endIndex);
-        initIterator(s);
-        return s;
+    public Spliterator<E> spliterator() {
+        return new VectorSpliterator<E>(this, startIndex, endIndex);
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public Vector<E> sorted(@Nullable Comparator<? super E> comparator) {
+        E[] elements = (E[]) toArray();
+        Arrays.sort(elements, comparator);
+        return fromArray(elements);
+    }
+
+    @NotNull
+    @Override
+    public Vector<E> sortedParallel(@Nullable Comparator<? super E> comparator) {
+        return sortedParallel(comparator, ParallelMergeSort.DEFAULT_THRESHOLD);
+    }
+
+    @NotNull
+    @Override
+    public Vector<E> sortedParallel(@Nullable Comparator<? super E> comparator, int threshold) {
+        Object[] elements = toArray();
+        ParallelMergeSort.sort(elements, comparator, threshold);
+        return fromArray(elements);
+    }
+
+    @Override
+    public boolean forEachWhile(@NotNull Predicate<? super E> f) {
+        return isEmpty() || iterator(startIndex, endIndex).forEachWhile(f);
+    }
+
+    @Override
+    public int knownSize() {
+        return size();
+    }
+
+    @Override
+    public int foldInt(int initial, @NotNull IntFold<? super E> f) {
+        return isEmpty() ? initial : iterator(startIndex, endIndex).foldInt(initial, f);
+    }
+
+    @Override
+    public long foldLong(long initial, @NotNull LongFold<? super E> f) {
+        return isEmpty() ? initial : iterator(startIndex, endIndex).foldLong(initial, f);
+    }
+
+    @Override
+    public double foldDouble(double initial, @NotNull DoubleFold<? super E> f) {
+        return isEmpty() ? initial : iterator(startIndex, endIndex).foldDouble(initial, f);
+    }
+
+    // Copies the elements a leaf block at a time
+    @Override
+    protected void copyToArray(Object[] array) {
+        if (!isEmpty()) {
+            iterator(startIndex, endIndex).copyTo(array, 0);
+        }
+    }
+
+    // Appends the elements to the builder a leaf block at a time
+    void appendTo(VectorBuilder<E> builder) {
+        if (!isEmpty()) {
+            iterator(startIndex, endIndex).appendTo(builder);
+        }
+    }
+
+    int startIndex() {
+        return startIndex;
+    }
+
+    int endIndex() {
+        return endIndex;
+    }
+
+    // Returns the depth and root node of the trie for serialization. If the vector is dirty, the focused path
+    // is stabilised into fresh arrays first, as for iteration.
+    VectorPointer<E> stablePointer() {
+        VectorPointer<E> result = new VectorPointer<E>();
+        result.initFrom(pointer);
+        if (dirty) result.stabilize(focus);
+        return result;
+    }
+
+    // Rebuilds a vector from the root node of a trie with the given depth, focused on the first element
+    static <E> Vector<E> fromRoot(Object[] root, int depth, int startIndex, int endIndex) {
+        if (startIndex == endIndex) return empty();
+        Vector<E> result = new Vector<E>(startIndex, endIndex, startIndex);
+        result.pointer.depth = depth;
+        result.pointer.setDisplay(depth - 1, root);
+        if (depth > 1) result.pointer.gotoPos(startIndex, 1 << (5 * (depth - 1)));
+        return result;
+    }
+
+    // Builds a vector from the array by filling leaf blocks directly
+    static <E> Vector<E> fromArray(Object[] elements) {
+        VectorBuilder<E> builder = new VectorBuilder<E>();
+        builder.addAll(elements, 0, elements.length);
+        return builder.build();
     }
 
 // TODO: check performance of foreach/map etc. should override or not?
@@ -556,6 +675,14 @@ public class Vector<E> extends AbstractIndexedList<E> {
         s.cleanRightEdge(cutIndex - shift);
         return s;
     }
+
+    private Object writeReplace() {
+        return new SerializationProxy(SerializationProxy.VECTOR, this);
+    }
+
+    private void readObject(ObjectInputStream in) throws InvalidObjectException {
+        throw SerializationProxy.proxyRequired();
+    }
 }
 
 class VectorIterator<E> extends VectorPointer<E> implements Iterator<E> {
@@ -578,6 +705,20 @@ class VectorIterator<E> extends VectorPointer<E> implements Iterator<E> {
         return _hasNext;
     }
 
+    // Moves to the start of the next leaf block once the current one is used up, or ends the iteration
+    private void nextBlock() {
+        if (blockIndex + lo < endIndex) {
+            int newBlockIndex = blockIndex + 32;
+            gotoNextBlockStart(newBlockIndex, blockIndex ^ newBlockIndex);
+
+            blockIndex = newBlockIndex;
+            endLo = Math.min(endIndex - blockIndex, 32);
+            lo = 0;
+        } else {
+            _hasNext = false;
+        }
+    }
+
     @Override
     public E next() {
         if (!_hasNext) throw new NoSuchElementException("reached iterator end");
@@ -587,530 +728,174 @@ class VectorIterator<E> extends VectorPointer<E> implements Iterator<E> {
         lo += 1;
 
         if (lo == endLo) {
-            if (blockIndex + lo < endIndex) {
-                int newBlockIndex = blockIndex + 32;
-                gotoNextBlockStart(newBlockIndex, blockIndex ^ newBlockIndex);
-
-                blockIndex = newBlockIndex;
-                endLo = Math.min(endIndex - blockIndex, 32);
-                lo = 0;
-            } else {
-                _hasNext = false;
-            }
+            nextBlock();
         }
 
         return res;
     }
 
     @Override
-    public void remove() {
-        throw new UnsupportedOperationException();
-    }
-}
-
-
-class VectorPointer<E> {
-    int depth = 0;
-    Object[] display0 = null;
-    Object[] display1 = null;
-    Object[] display2 = null;
-    Object[] display3 = null;
-    Object[] display4 = null;
-    Object[] display5 = null;
-
-    // used
-    public void initFrom(VectorPointer<E> that) {
-        initFrom(that, that.depth);
-    }
-
-    public void initFrom(VectorPointer<E> that, int depth) {
-        this.depth = depth;
-
-        switch (depth - 1) {
-            case -1:
-                break;
-            case 0:
-                display0 = that.display0;
-                break;
-            case 1:
-                display1 = that.display1;
-                display0 = that.display0;
-                break;
-            case 2:
-                display2 = that.display2;
-                display1 = that.display1;
-                display0 = that.display0;
-                break;
-            case 3:
-                display3 = that.display3;
-                display2 = that.display2;
-                display1 = that.display1;
-                display0 = that.display0;
-                break;
-            case 4:
-                display4 = that.display4;
-                display3 = that.display3;
-                display2 = that.display2;
-                display1 = that.display1;
-                display0 = that.display0;
-                break;
-            case 5:
-                display5 = that.display5;
-                display4 = that.display4;
-                display3 = that.display3;
-                display2 = that.display2;
-                display1 = that.display1;
-                display0 = that.display0;
-                break;
-            default:
+    @SuppressWarnings("unchecked")
+    public void forEachRemaining(Consumer<? super E> action) {
+        while (_hasNext) {
+            for (int i = lo; i < endLo; i++) {
+                action.accept((E) display0[i]);
+            }
+            lo = endLo;
+            nextBlock();
         }
     }
 
-
-    // requires structure is at pos oldIndex = xor ^ index
+    // Applies f to the remaining elements a leaf block at a time until it returns false
     @SuppressWarnings("unchecked")
-    public E getElem(int index, int xor) {
-        if (xor < (1 << 5)) { // level = 0
-            return (E) display0[index & 31];
-        } else if (xor < (1 << 10)) { // level = 1
-            return (E) ((Object[]) display1[(index >> 5) & 31])[index & 31];
-        } else if (xor < (1 << 15)) { // level = 2
-            return (E) ((Object[]) ((Object[]) display2[(index >> 10) & 31])[(index >> 5) & 31])[index & 31];
-        } else if (xor < (1 << 20)) { // level = 3
-            return (E) ((Object[]) ((Object[]) ((Object[]) display3[(index >> 15) & 31])[(index >> 10) & 31])[(index >> 5) & 31])[index & 31];
-        } else if (xor < (1 << 25)) { // level = 4
-            return (E) ((Object[]) ((Object[]) ((Object[]) ((Object[]) display4[(index >> 20) & 31])[(index >> 15) & 31])[(index >> 10) & 31])[(index >> 5) & 31])[index & 31];
-        } else if (xor < (1 << 30)) { // level = 5
-            return (E) ((Object[]) ((Object[]) ((Object[]) ((Object[]) ((Object[]) display5[(index >> 25) & 31])[(index >> 20) & 31])[(index >> 15) & 31])[(index >> 10) & 31])[(index >> 5) & 31])[index & 31];
-        } else { // level = 6
-            throw new IllegalArgumentException();
+    public boolean forEachWhile(Predicate<? super E> f) {
+        while (_hasNext) {
+            for (int i = lo; i < endLo; i++) {
+                if (!f.invoke((E) display0[i])) {
+                    lo = i + 1;
+                    return false;
+                }
+            }
+            lo = endLo;
+            nextBlock();
         }
+        return true;
     }
 
-    // go to specific position
-    // requires structure is at pos oldIndex = xor ^ index,
-    // ensures structure is at pos index
-    public void gotoPos(int index, int xor) {
-        //noinspection StatementWithEmptyBody
-        if (xor < (1 << 5)) { // level = 0 (could maybe removed)
-        } else if (xor < (1 << 10)) { // level = 1
-            display0 = (Object[]) display1[(index >> 5) & 31];
-        } else if (xor < (1 << 15)) { // level = 2
-            display1 = (Object[]) display2[(index >> 10) & 31];
-            display0 = (Object[]) display1[(index >> 5) & 31];
-        } else if (xor < (1 << 20)) { // level = 3
-            display2 = (Object[]) display3[(index >> 15) & 31];
-            display1 = (Object[]) display2[(index >> 10) & 31];
-            display0 = (Object[]) display1[(index >> 5) & 31];
-        } else if (xor < (1 << 25)) { // level = 4
-            display3 = (Object[]) display4[(index >> 20) & 31];
-            display2 = (Object[]) display3[(index >> 15) & 31];
-            display1 = (Object[]) display2[(index >> 10) & 31];
-            display0 = (Object[]) display1[(index >> 5) & 31];
-        } else if (xor < (1 << 30)) { // level = 5
-            display4 = (Object[]) display5[(index >> 25) & 31];
-            display3 = (Object[]) display4[(index >> 20) & 31];
-            display2 = (Object[]) display3[(index >> 15) & 31];
-            display1 = (Object[]) display2[(index >> 10) & 31];
-            display0 = (Object[]) display1[(index >> 5) & 31];
-        } else { // level = 6
-            throw new IllegalArgumentException();
+    // Folds the remaining elements a leaf block at a time
+    @SuppressWarnings("unchecked")
+    public int foldInt(int result, IntFold<? super E> f) {
+        while (_hasNext) {
+            for (int i = lo; i < endLo; i++) {
+                result = f.invoke(result, (E) display0[i]);
+            }
+            lo = endLo;
+            nextBlock();
         }
+        return result;
     }
 
-
-    // USED BY ITERATOR
-    // xor: oldIndex ^ index
-    public void gotoNextBlockStart(int index, int xor) { // goto block start pos
-        if (xor < (1 << 10)) { // level = 1
-            display0 = (Object[]) display1[(index >> 5) & 31];
-        } else if (xor < (1 << 15)) { // level = 2
-            display1 = (Object[]) display2[(index >> 10) & 31];
-            display0 = (Object[]) display1[0];
-        } else if (xor < (1 << 20)) { // level = 3
-            display2 = (Object[]) display3[(index >> 15) & 31];
-            display1 = (Object[]) display2[0];
-            display0 = (Object[]) display1[0];
-        } else if (xor < (1 << 25)) { // level = 4
-            display3 = (Object[]) display4[(index >> 20) & 31];
-            display2 = (Object[]) display3[0];
-            display1 = (Object[]) display2[0];
-            display0 = (Object[]) display1[0];
-        } else if (xor < (1 << 30)) { // level = 5
-            display4 = (Object[]) display5[(index >> 25) & 31];
-            display3 = (Object[]) display4[0];
-            display2 = (Object[]) display3[0];
-            display1 = (Object[]) display2[0];
-            display0 = (Object[]) display1[0];
-        } else { // level = 6
-            throw new IllegalArgumentException();
+    // Folds the remaining elements a leaf block at a time
+    @SuppressWarnings("unchecked")
+    public long foldLong(long result, LongFold<? super E> f) {
+        while (_hasNext) {
+            for (int i = lo; i < endLo; i++) {
+                result = f.invoke(result, (E) display0[i]);
+            }
+            lo = endLo;
+            nextBlock();
         }
+        return result;
     }
 
-    // USED BY BUILDER
-    // xor: oldIndex ^ index
-    public void gotoNextBlockStartWritable(int index, int xor) { // goto block start pos
-        if (xor < (1 << 10)) { // level = 1
-            if (depth == 1) {
-                display1 = new Object[32];
-                display1[0] = display0;
-                depth += 1;
-            }
-            display0 = new Object[32];
-            display1[(index >> 5) & 31] = display0;
-        } else if (xor < (1 << 15)) { // level = 2
-            if (depth == 2) {
-                display2 = new Object[32];
-                display2[0] = display1;
-                depth += 1;
-            }
-            display0 = new Object[32];
-            display1 = new Object[32];
-            display1[(index >> 5) & 31] = display0;
-            display2[(index >> 10) & 31] = display1;
-        } else if (xor < (1 << 20)) { // level = 3
-            if (depth == 3) {
-                display3 = new Object[32];
-                display3[0] = display2;
-                depth += 1;
-            }
-            display0 = new Object[32];
-            display1 = new Object[32];
-            display2 = new Object[32];
-            display1[(index >> 5) & 31] = display0;
-            display2[(index >> 10) & 31] = display1;
-            display3[(index >> 15) & 31] = display2;
-        } else if (xor < (1 << 25)) { // level = 4
-            if (depth == 4) {
-                display4 = new Object[32];
-                display4[0] = display3;
-                depth += 1;
-            }
-            display0 = new Object[32];
-            display1 = new Object[32];
-            display2 = new Object[32];
-            display3 = new Object[32];
-            display1[(index >> 5) & 31] = display0;
-            display2[(index >> 10) & 31] = display1;
-            display3[(index >> 15) & 31] = display2;
-            display4[(index >> 20) & 31] = display3;
-        } else if (xor < (1 << 30)) { // level = 5
-            if (depth == 5) {
-                display5 = new Object[32];
-                display5[0] = display4;
-                depth += 1;
+    // Folds the remaining elements a leaf block at a time
+    @SuppressWarnings("unchecked")
+    public double foldDouble(double result, DoubleFold<? super E> f) {
+        while (_hasNext) {
+            for (int i = lo; i < endLo; i++) {
+                result = f.invoke(result, (E) display0[i]);
             }
-            display0 = new Object[32];
-            display1 = new Object[32];
-            display2 = new Object[32];
-            display3 = new Object[32];
-            display4 = new Object[32];
-            display1[(index >> 5) & 31] = display0;
-            display2[(index >> 10) & 31] = display1;
-            display3[(index >> 15) & 31] = display2;
-            display4[(index >> 20) & 31] = display3;
-            display5[(index >> 25) & 31] = display4;
-        } else { // level = 6
-            throw new IllegalArgumentException();
+            lo = endLo;
+            nextBlock();
         }
+        return result;
     }
 
-    // STUFF BELOW USED BY APPEND / UPDATE
-    public Object[] copyOf(Object[] a) {
-        Object[] b = new Object[a.length];
-        System.arraycopy(a, 0, b, 0, a.length);
-        return b;
-    }
-
-    public Object[] nullSlotAndCopy(Object[] array, int index) {
-        Object x = array[index];
-        array[index] = null;
-        return copyOf((Object[]) x);
+    // Copies the remaining elements into dest starting at pos, returning the position after the last element copied
+    public int copyTo(Object[] dest, int pos) {
+        while (_hasNext) {
+            int length = endLo - lo;
+            System.arraycopy(display0, lo, dest, pos, length);
+            pos += length;
+            lo = endLo;
+            nextBlock();
+        }
+        return pos;
     }
 
-    // make sure there is no aliasing
-    // requires structure is at pos index
-    // ensures structure is clean and at pos index and writable at all levels except 0
-    public void stabilize(int index) {
-        switch (depth - 1) {
-            case 5:
-                display5 = copyOf(display5);
-                display4 = copyOf(display4);
-                display3 = copyOf(display3);
-                display2 = copyOf(display2);
-                display1 = copyOf(display1);
-                display5[(index >> 25) & 31] = display4;
-                display4[(index >> 20) & 31] = display3;
-                display3[(index >> 15) & 31] = display2;
-                display2[(index >> 10) & 31] = display1;
-                display1[(index >> 5) & 31] = display0;
-                break;
-            case 4:
-                display4 = copyOf(display4);
-                display3 = copyOf(display3);
-                display2 = copyOf(display2);
-                display1 = copyOf(display1);
-                display4[(index >> 20) & 31] = display3;
-                display3[(index >> 15) & 31] = display2;
-                display2[(index >> 10) & 31] = display1;
-                display1[(index >> 5) & 31] = display0;
-                break;
-            case 3:
-                display3 = copyOf(display3);
-                display2 = copyOf(display2);
-                display1 = copyOf(display1);
-                display3[(index >> 15) & 31] = display2;
-                display2[(index >> 10) & 31] = display1;
-                display1[(index >> 5) & 31] = display0;
-                break;
-            case 2:
-                display2 = copyOf(display2);
-                display1 = copyOf(display1);
-                display2[(index >> 10) & 31] = display1;
-                display1[(index >> 5) & 31] = display0;
-                break;
-            case 1:
-                display1 = copyOf(display1);
-                display1[(index >> 5) & 31] = display0;
-                break;
-            case 0:
-                break;
+    // Appends the remaining elements to builder a leaf block at a time
+    public void appendTo(VectorBuilder<E> builder) {
+        while (_hasNext) {
+            builder.addAll(display0, lo, endLo);
+            lo = endLo;
+            nextBlock();
         }
     }
 
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
 
-    /// USED IN UPDATE AND APPEND BACK
-    // prepare for writing at an existing position
+/**
+ * Splits a vector's internal index range at the highest level trie boundary that lies within it,
+ * picking the boundary closest to the midpoint. Ranges within a single leaf block are not split further.
+ */
+class VectorSpliterator<E> implements Spliterator<E> {
+    private final Vector<E> vector;
+    private int index;
+    private int fence;
+    private VectorIterator<E> iterator;
 
-    // requires structure is clean and at pos oldIndex = xor ^ newIndex,
-    // ensures structure is dirty and at pos newIndex and writable at level 0
-    public void gotoPosWritable0(int newIndex) {
-        switch (depth - 1) {
-            case 5:
-                display5 = copyOf(display5);
-                display4 = nullSlotAndCopy(display5, (newIndex >> 25) & 31);
-                display3 = nullSlotAndCopy(display4, (newIndex >> 20) & 31);
-                display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
-                display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
-                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-                break;
-            case 4:
-                display4 = copyOf(display4);
-                display3 = nullSlotAndCopy(display4, (newIndex >> 20) & 31);
-                display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
-                display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
-                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-                break;
-            case 3:
-                display3 = copyOf(display3);
-                display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
-                display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
-                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-                break;
-            case 2:
-                display2 = copyOf(display2);
-                display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
-                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-                break;
-            case 1:
-                display1 = copyOf(display1);
-                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-                break;
-            case 0:
-                display0 = copyOf(display0);
-                break;
-            default:
-        }
+    VectorSpliterator(Vector<E> vector, int index, int fence) {
+        this.vector = vector;
+        this.index = index;
+        this.fence = fence;
     }
 
-    // requires structure is dirty and at pos oldIndex,
-    // ensures structure is dirty and at pos newIndex and writable at level 0
-    public void gotoPosWritable1(int oldIndex, int newIndex, int xor) {
-        if (xor < (1 << 5)) { // level = 0
-            display0 = copyOf(display0);
-        } else if (xor < (1 << 10)) { // level = 1
-            display1 = copyOf(display1);
-            display1[(oldIndex >> 5) & 31] = display0;
-            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-        } else if (xor < (1 << 15)) { // level = 2
-            display1 = copyOf(display1);
-            display2 = copyOf(display2);
-            display1[(oldIndex >> 5) & 31] = display0;
-            display2[(oldIndex >> 10) & 31] = display1;
-            display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
-            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-        } else if (xor < (1 << 20)) { // level = 3
-            display1 = copyOf(display1);
-            display2 = copyOf(display2);
-            display3 = copyOf(display3);
-            display1[(oldIndex >> 5) & 31] = display0;
-            display2[(oldIndex >> 10) & 31] = display1;
-            display3[(oldIndex >> 15) & 31] = display2;
-            display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
-            display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
-            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-        } else if (xor < (1 << 25)) { // level = 4
-            display1 = copyOf(display1);
-            display2 = copyOf(display2);
-            display3 = copyOf(display3);
-            display4 = copyOf(display4);
-            display1[(oldIndex >> 5) & 31] = display0;
-            display2[(oldIndex >> 10) & 31] = display1;
-            display3[(oldIndex >> 15) & 31] = display2;
-            display4[(oldIndex >> 20) & 31] = display3;
-            display3 = nullSlotAndCopy(display4, (newIndex >> 20) & 31);
-            display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
-            display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
-            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-        } else if (xor < (1 << 30)) { // level = 5
-            display1 = copyOf(display1);
-            display2 = copyOf(display2);
-            display3 = copyOf(display3);
-            display4 = copyOf(display4);
-            display5 = copyOf(display5);
-            display1[(oldIndex >> 5) & 31] = display0;
-            display2[(oldIndex >> 10) & 31] = display1;
-            display3[(oldIndex >> 15) & 31] = display2;
-            display4[(oldIndex >> 20) & 31] = display3;
-            display5[(oldIndex >> 25) & 31] = display4;
-            display4 = nullSlotAndCopy(display5, (newIndex >> 25) & 31);
-            display3 = nullSlotAndCopy(display4, (newIndex >> 20) & 31);
-            display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
-            display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
-            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
-        } else { // level = 6
-            throw new IllegalArgumentException();
+    private VectorIterator<E> iterator() {
+        if (iterator == null) {
+            iterator = vector.iterator(index, fence);
         }
+        return iterator;
     }
 
-    // USED IN DROP
-    public Object[] copyRange(Object[] array, int oldLeft, int newLeft) {
-        Object[] elems = new Object[32];
-        System.arraycopy(array, oldLeft, elems, newLeft, 32 - Math.max(newLeft, oldLeft));
-        return elems;
-    }
-
-    // USED IN APPEND
-    // create a new block at the bottom level (and possibly nodes on its path) and prepares for writing
-    // requires structure is clean and at pos oldIndex,
-    // ensures structure is dirty and at pos newIndex and writable at level 0
-    public void gotoFreshPosWritable0(int oldIndex, int newIndex, int xor) { // goto block start pos
-        //noinspection StatementWithEmptyBody
-        if (xor < (1 << 5)) { // level = 0
-        } else if (xor < (1 << 10)) { // level = 1
-            if (depth == 1) {
-                display1 = new Object[32];
-                display1[(oldIndex >> 5) & 31] = display0;
-                depth += 1;
-            }
-            display0 = new Object[32];
-        } else if (xor < (1 << 15)) { // level = 2
-            if (depth == 2) {
-                display2 = new Object[32];
-                display2[(oldIndex >> 10) & 31] = display1;
-                depth += 1;
-            }
-            display1 = (Object[]) display2[(newIndex >> 10) & 31];
-            if (display1 == null) display1 = new Object[32];
-            display0 = new Object[32];
-        } else if (xor < (1 << 20)) { // level = 3
-            if (depth == 3) {
-                display3 = new Object[32];
-                display3[(oldIndex >> 15) & 31] = display2;
-                display2 = new Object[32];
-                display1 = new Object[32];
-                depth += 1;
-            }
-            display2 = (Object[]) display3[(newIndex >> 15) & 31];
-            if (display2 == null) display2 = new Object[32];
-            display1 = (Object[]) display2[(newIndex >> 10) & 31];
-            if (display1 == null) display1 = new Object[32];
-            display0 = new Object[32];
-        } else if (xor < (1 << 25)) { // level = 4
-            if (depth == 4) {
-                display4 = new Object[32];
-                display4[(oldIndex >> 20) & 31] = display3;
-                display3 = new Object[32];
-                display2 = new Object[32];
-                display1 = new Object[32];
-                depth += 1;
-            }
-            display3 = (Object[]) display4[(newIndex >> 20) & 31];
-            if (display3 == null) display3 = new Object[32];
-            display2 = (Object[]) display3[(newIndex >> 15) & 31];
-            if (display2 == null) display2 = new Object[32];
-            display1 = (Object[]) display2[(newIndex >> 10) & 31];
-            if (display1 == null) display1 = new Object[32];
-            display0 = new Object[32];
-        } else if (xor < (1 << 30)) { // level = 5
-            if (depth == 5) {
-                display5 = new Object[32];
-                display5[(oldIndex >> 25) & 31] = display4;
-                display4 = new Object[32];
-                display3 = new Object[32];
-                display2 = new Object[32];
-                display1 = new Object[32];
-                depth += 1;
-            }
-            display4 = (Object[]) display5[(newIndex >> 25) & 31];
-            if (display4 == null) display4 = new Object[32];
-            display3 = (Object[]) display4[(newIndex >> 20) & 31];
-            if (display3 == null) display3 = new Object[32];
-            display2 = (Object[]) display3[(newIndex >> 15) & 31];
-            if (display2 == null) display2 = new Object[32];
-            display1 = (Object[]) display2[(newIndex >> 10) & 31];
-            if (display1 == null) display1 = new Object[32];
-            display0 = new Object[32];
-        } else { // level = 6
-            throw new IllegalArgumentException();
-        }
+    @Override
+    public boolean tryAdvance(Consumer<? super E> action) {
+        if (index >= fence) return false;
+        E next = iterator().next();
+        index++;
+        action.accept(next);
+        return true;
     }
 
-    // requires structure is dirty and at pos oldIndex,
-    // ensures structure is dirty and at pos newIndex and writable at level 0
-    public void gotoFreshPosWritable1(int oldIndex, int newIndex, int xor) {
-        stabilize(oldIndex);
-        gotoFreshPosWritable0(oldIndex, newIndex, xor);
+    @Override
+    public void forEachRemaining(Consumer<? super E> action) {
+        if (index >= fence) return;
+        VectorIterator<E> remaining = iterator();
+        index = fence;
+        remaining.forEachRemaining(action);
     }
-}
 
-class VectorBuilder<E> extends AbstractBuilder<E, Vector<E>> {
-    private final VectorPointer<E> pointer = new VectorPointer<E>();
+    @Override
+    public Spliterator<E> trySplit() {
+        if (fence - index < 2) return null;
+        int xor = index ^ (fence - 1);
+        if (xor < (1 << 5)) return null; // Within a single leaf block
 
-    int blockIndex = 0;
-    int lo = 0;
+        int shift = ((31 - Integer.numberOfLeadingZeros(xor)) / 5) * 5;
+        int blockSize = 1 << shift;
+        int mid = index + ((fence - index) >>> 1);
 
-    // possible alternative: start with display0 = null, blockIndex = -32, lo = 32
-    // to avoid allocating initial array if the result will be empty anyways
+        int split = (mid + (blockSize >>> 1)) & ~(blockSize - 1);
+        if (split <= index) split += blockSize;
+        if (split >= fence) split -= blockSize;
+        if (split <= index || split >= fence) return null;
 
-    VectorBuilder() {
-        pointer.display0 = new Object[32];
-        pointer.depth = 1;
+        VectorSpliterator<E> prefix = new VectorSpliterator<E>(vector, index, split);
+        index = split;
+        iterator = null; // Repositioned lazily from the new index
+        return prefix;
     }
 
-    @NotNull
     @Override
-    public VectorBuilder<E> add(E elem) {
-        if (lo >= pointer.display0.length) {
-            int newBlockIndex = blockIndex + 32;
-            pointer.gotoNextBlockStartWritable(newBlockIndex, blockIndex ^ newBlockIndex);
-            blockIndex = newBlockIndex;
-            lo = 0;
-        }
-        pointer.display0[lo] = elem;
-        lo += 1;
-        return this;
+    public long estimateSize() {
+        return fence - index;
     }
 
-    @NotNull
     @Override
-    public Vector<E> doBuild() {
-        int size = blockIndex + lo;
-        if (size == 0)
-            return Vector.empty();
-        Vector<E> s = new Vector<E>(0, size, 0); // should focus front or back?
-        s.pointer.initFrom(pointer);
-        if (pointer.depth > 1) s.pointer.gotoPos(0, size - 1); // we're currently focused to size - 1, not size!
-        return s;
+    public int characteristics() {
+        return ORDERED | SIZED | SUBSIZED | IMMUTABLE;
     }
-}
\ No newline at end of file
+}
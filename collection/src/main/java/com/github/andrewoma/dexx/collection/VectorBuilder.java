@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import com.github.andrewoma.dexx.collection.internal.builder.AbstractBuilder;
+import org.jetbrains.annotations.NotNull;
+
+class VectorBuilder<E> extends AbstractBuilder<E, Vector<E>> {
+    private final VectorPointer<E> pointer = new VectorPointer<E>();
+
+    int blockIndex = 0;
+    int lo = 0;
+
+    // possible alternative: start with display0 = null, blockIndex = -32, lo = 32
+    // to avoid allocating initial array if the result will be empty anyways
+
+    VectorBuilder() {
+        pointer.display0 = new Object[32];
+        pointer.depth = 1;
+    }
+
+    @NotNull
+    @Override
+    public VectorBuilder<E> add(E elem) {
+        if (lo >= pointer.display0.length) {
+            int newBlockIndex = blockIndex + 32;
+            pointer.gotoNextBlockStartWritable(newBlockIndex, blockIndex ^ newBlockIndex);
+            blockIndex = newBlockIndex;
+            lo = 0;
+        }
+        pointer.display0[lo] = elem;
+        lo += 1;
+        return this;
+    }
+
+    // Adds elements[from, to) a leaf block at a time
+    public VectorBuilder<E> addAll(Object[] elements, int from, int to) {
+        while (from < to) {
+            if (lo >= pointer.display0.length) {
+                int newBlockIndex = blockIndex + 32;
+                pointer.gotoNextBlockStartWritable(newBlockIndex, blockIndex ^ newBlockIndex);
+                blockIndex = newBlockIndex;
+                lo = 0;
+            }
+            int length = Math.min(pointer.display0.length - lo, to - from);
+            System.arraycopy(elements, from, pointer.display0, lo, length);
+            lo += length;
+            from += length;
+        }
+        return this;
+    }
+
+    // Adds the elements of vector a leaf block at a time
+    public VectorBuilder<E> addAll(Vector<E> vector) {
+        vector.appendTo(this);
+        return this;
+    }
+
+    @NotNull
+    @Override
+    public Vector<E> doBuild() {
+        int size = blockIndex + lo;
+        if (size == 0)
+            return Vector.empty();
+        Vector<E> s = new Vector<E>(0, size, 0); // should focus front or back?
+        s.pointer.initFrom(pointer);
+        if (pointer.depth > 1) s.pointer.gotoPos(0, size - 1); // we're currently focused to size - 1, not size!
+        return s;
+    }
+}
@@ -0,0 +1,532 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+class VectorPointer<E> {
+    int depth = 0;
+    Object[] display0 = null;
+    Object[] display1 = null;
+    Object[] display2 = null;
+    Object[] display3 = null;
+    Object[] display4 = null;
+    Object[] display5 = null;
+
+    // used
+    public void initFrom(VectorPointer<E> that) {
+        initFrom(that, that.depth);
+    }
+
+    Object[] getDisplay(int level) {
+        switch (level) {
+            case 0:
+                return display0;
+            case 1:
+                return display1;
+            case 2:
+                return display2;
+            case 3:
+                return display3;
+            case 4:
+                return display4;
+            case 5:
+                return display5;
+            default:
+                throw new IllegalArgumentException(String.valueOf(level));
+        }
+    }
+
+    void setDisplay(int level, Object[] display) {
+        switch (level) {
+            case 0:
+                display0 = display;
+                break;
+            case 1:
+                display1 = display;
+                break;
+            case 2:
+                display2 = display;
+                break;
+            case 3:
+                display3 = display;
+                break;
+            case 4:
+                display4 = display;
+                break;
+            case 5:
+                display5 = display;
+                break;
+            default:
+                throw new IllegalArgumentException(String.valueOf(level));
+        }
+    }
+
+    public void initFrom(VectorPointer<E> that, int depth) {
+        this.depth = depth;
+
+        switch (depth - 1) {
+            case -1:
+                break;
+            case 0:
+                display0 = that.display0;
+                break;
+            case 1:
+                display1 = that.display1;
+                display0 = that.display0;
+                break;
+            case 2:
+                display2 = that.display2;
+                display1 = that.display1;
+                display0 = that.display0;
+                break;
+            case 3:
+                display3 = that.display3;
+                display2 = that.display2;
+                display1 = that.display1;
+                display0 = that.display0;
+                break;
+            case 4:
+                display4 = that.display4;
+                display3 = that.display3;
+                display2 = that.display2;
+                display1 = that.display1;
+                display0 = that.display0;
+                break;
+            case 5:
+                display5 = that.display5;
+                display4 = that.display4;
+                display3 = that.display3;
+                display2 = that.display2;
+                display1 = that.display1;
+                display0 = that.display0;
+                break;
+            default:
+        }
+    }
+
+
+    // requires structure is at pos oldIndex = xor ^ index
+    @SuppressWarnings("unchecked")
+    public E getElem(int index, int xor) {
+        if (xor < (1 << 5)) { // level = 0
+            return (E) display0[index & 31];
+        } else if (xor < (1 << 10)) { // level = 1
+            return (E) ((Object[]) display1[(index >> 5) & 31])[index & 31];
+        } else if (xor < (1 << 15)) { // level = 2
+            return (E) ((Object[]) ((Object[]) display2[(index >> 10) & 31])[(index >> 5) & 31])[index & 31];
+        } else if (xor < (1 << 20)) { // level = 3
+            return (E) ((Object[]) ((Object[]) ((Object[]) display3[(index >> 15) & 31])[(index >> 10) & 31])[(index >> 5) & 31])[index & 31];
+        } else if (xor < (1 << 25)) { // level = 4
+            return (E) ((Object[]) ((Object[]) ((Object[]) ((Object[]) display4[(index >> 20) & 31])[(index >> 15) & 31])[(index >> 10) & 31])[(index >> 5) & 31])[index & 31];
+        } else if (xor < (1 << 30)) { // level = 5
+            return (E) ((Object[]) ((Object[]) ((Object[]) ((Object[]) ((Object[]) display5[(index >> 25) & 31])[(index >> 20) & 31])[(index >> 15) & 31])[(index >> 10) & 31])[(index >> 5) & 31])[index & 31];
+        } else { // level = 6
+            throw new IllegalArgumentException();
+        }
+    }
+
+    // go to specific position
+    // requires structure is at pos oldIndex = xor ^ index,
+    // ensures structure is at pos index
+    public void gotoPos(int index, int xor) {
+        //noinspection StatementWithEmptyBody
+        if (xor < (1 << 5)) { // level = 0 (could maybe removed)
+        } else if (xor < (1 << 10)) { // level = 1
+            display0 = (Object[]) display1[(index >> 5) & 31];
+        } else if (xor < (1 << 15)) { // level = 2
+            display1 = (Object[]) display2[(index >> 10) & 31];
+            display0 = (Object[]) display1[(index >> 5) & 31];
+        } else if (xor < (1 << 20)) { // level = 3
+            display2 = (Object[]) display3[(index >> 15) & 31];
+            display1 = (Object[]) display2[(index >> 10) & 31];
+            display0 = (Object[]) display1[(index >> 5) & 31];
+        } else if (xor < (1 << 25)) { // level = 4
+            display3 = (Object[]) display4[(index >> 20) & 31];
+            display2 = (Object[]) display3[(index >> 15) & 31];
+            display1 = (Object[]) display2[(index >> 10) & 31];
+            display0 = (Object[]) display1[(index >> 5) & 31];
+        } else if (xor < (1 << 30)) { // level = 5
+            display4 = (Object[]) display5[(index >> 25) & 31];
+            display3 = (Object[]) display4[(index >> 20) & 31];
+            display2 = (Object[]) display3[(index >> 15) & 31];
+            display1 = (Object[]) display2[(index >> 10) & 31];
+            display0 = (Object[]) display1[(index >> 5) & 31];
+        } else { // level = 6
+            throw new IllegalArgumentException();
+        }
+    }
+
+
+    // USED BY ITERATOR
+    // xor: oldIndex ^ index
+    public void gotoNextBlockStart(int index, int xor) { // goto block start pos
+        if (xor < (1 << 10)) { // level = 1
+            display0 = (Object[]) display1[(index >> 5) & 31];
+        } else if (xor < (1 << 15)) { // level = 2
+            display1 = (Object[]) display2[(index >> 10) & 31];
+            display0 = (Object[]) display1[0];
+        } else if (xor < (1 << 20)) { // level = 3
+            display2 = (Object[]) display3[(index >> 15) & 31];
+            display1 = (Object[]) display2[0];
+            display0 = (Object[]) display1[0];
+        } else if (xor < (1 << 25)) { // level = 4
+            display3 = (Object[]) display4[(index >> 20) & 31];
+            display2 = (Object[]) display3[0];
+            display1 = (Object[]) display2[0];
+            display0 = (Object[]) display1[0];
+        } else if (xor < (1 << 30)) { // level = 5
+            display4 = (Object[]) display5[(index >> 25) & 31];
+            display3 = (Object[]) display4[0];
+            display2 = (Object[]) display3[0];
+            display1 = (Object[]) display2[0];
+            display0 = (Object[]) display1[0];
+        } else { // level = 6
+            throw new IllegalArgumentException();
+        }
+    }
+
+    // USED BY BUILDER
+    // xor: oldIndex ^ index
+    public void gotoNextBlockStartWritable(int index, int xor) { // goto block start pos
+        if (xor < (1 << 10)) { // level = 1
+            if (depth == 1) {
+                display1 = new Object[32];
+                display1[0] = display0;
+                depth += 1;
+            }
+            display0 = new Object[32];
+            display1[(index >> 5) & 31] = display0;
+        } else if (xor < (1 << 15)) { // level = 2
+            if (depth == 2) {
+                display2 = new Object[32];
+                display2[0] = display1;
+                depth += 1;
+            }
+            display0 = new Object[32];
+            display1 = new Object[32];
+            display1[(index >> 5) & 31] = display0;
+            display2[(index >> 10) & 31] = display1;
+        } else if (xor < (1 << 20)) { // level = 3
+            if (depth == 3) {
+                display3 = new Object[32];
+                display3[0] = display2;
+                depth += 1;
+            }
+            display0 = new Object[32];
+            display1 = new Object[32];
+            display2 = new Object[32];
+            display1[(index >> 5) & 31] = display0;
+            display2[(index >> 10) & 31] = display1;
+            display3[(index >> 15) & 31] = display2;
+        } else if (xor < (1 << 25)) { // level = 4
+            if (depth == 4) {
+                display4 = new Object[32];
+                display4[0] = display3;
+                depth += 1;
+            }
+            display0 = new Object[32];
+            display1 = new Object[32];
+            display2 = new Object[32];
+            display3 = new Object[32];
+            display1[(index >> 5) & 31] = display0;
+            display2[(index >> 10) & 31] = display1;
+            display3[(index >> 15) & 31] = display2;
+            display4[(index >> 20) & 31] = display3;
+        } else if (xor < (1 << 30)) { // level = 5
+            if (depth == 5) {
+                display5 = new Object[32];
+                display5[0] = display4;
+                depth += 1;
+            }
+            display0 = new Object[32];
+            display1 = new Object[32];
+            display2 = new Object[32];
+            display3 = new Object[32];
+            display4 = new Object[32];
+            display1[(index >> 5) & 31] = display0;
+            display2[(index >> 10) & 31] = display1;
+            display3[(index >> 15) & 31] = display2;
+            display4[(index >> 20) & 31] = display3;
+            display5[(index >> 25) & 31] = display4;
+        } else { // level = 6
+            throw new IllegalArgumentException();
+        }
+    }
+
+    // STUFF BELOW USED BY APPEND / UPDATE
+    public Object[] copyOf(Object[] a) {
+        Object[] b = new Object[a.length];
+        System.arraycopy(a, 0, b, 0, a.length);
+        return b;
+    }
+
+    public Object[] nullSlotAndCopy(Object[] array, int index) {
+        Object x = array[index];
+        array[index] = null;
+        return copyOf((Object[]) x);
+    }
+
+    // make sure there is no aliasing
+    // requires structure is at pos index
+    // ensures structure is clean and at pos index and writable at all levels except 0
+    public void stabilize(int index) {
+        switch (depth - 1) {
+            case 5:
+                display5 = copyOf(display5);
+                display4 = copyOf(display4);
+                display3 = copyOf(display3);
+                display2 = copyOf(display2);
+                display1 = copyOf(display1);
+                display5[(index >> 25) & 31] = display4;
+                display4[(index >> 20) & 31] = display3;
+                display3[(index >> 15) & 31] = display2;
+                display2[(index >> 10) & 31] = display1;
+                display1[(index >> 5) & 31] = display0;
+                break;
+            case 4:
+                display4 = copyOf(display4);
+                display3 = copyOf(display3);
+                display2 = copyOf(display2);
+                display1 = copyOf(display1);
+                display4[(index >> 20) & 31] = display3;
+                display3[(index >> 15) & 31] = display2;
+                display2[(index >> 10) & 31] = display1;
+                display1[(index >> 5) & 31] = display0;
+                break;
+            case 3:
+                display3 = copyOf(display3);
+                display2 = copyOf(display2);
+                display1 = copyOf(display1);
+                display3[(index >> 15) & 31] = display2;
+                display2[(index >> 10) & 31] = display1;
+                display1[(index >> 5) & 31] = display0;
+                break;
+            case 2:
+                display2 = copyOf(display2);
+                display1 = copyOf(display1);
+                display2[(index >> 10) & 31] = display1;
+                display1[(index >> 5) & 31] = display0;
+                break;
+            case 1:
+                display1 = copyOf(display1);
+                display1[(index >> 5) & 31] = display0;
+                break;
+            case 0:
+                break;
+        }
+    }
+
+
+    /// USED IN UPDATE AND APPEND BACK
+    // prepare for writing at an existing position
+
+    // requires structure is clean and at pos oldIndex = xor ^ newIndex,
+    // ensures structure is dirty and at pos newIndex and writable at level 0
+    public void gotoPosWritable0(int newIndex) {
+        switch (depth - 1) {
+            case 5:
+                display5 = copyOf(display5);
+                display4 = nullSlotAndCopy(display5, (newIndex >> 25) & 31);
+                display3 = nullSlotAndCopy(display4, (newIndex >> 20) & 31);
+                display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
+                display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
+                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+                break;
+            case 4:
+                display4 = copyOf(display4);
+                display3 = nullSlotAndCopy(display4, (newIndex >> 20) & 31);
+                display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
+                display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
+                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+                break;
+            case 3:
+                display3 = copyOf(display3);
+                display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
+                display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
+                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+                break;
+            case 2:
+                display2 = copyOf(display2);
+                display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
+                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+                break;
+            case 1:
+                display1 = copyOf(display1);
+                display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+                break;
+            case 0:
+                display0 = copyOf(display0);
+                break;
+            default:
+        }
+    }
+
+    // requires structure is dirty and at pos oldIndex,
+    // ensures structure is dirty and at pos newIndex and writable at level 0
+    public void gotoPosWritable1(int oldIndex, int newIndex, int xor) {
+        if (xor < (1 << 5)) { // level = 0
+            display0 = copyOf(display0);
+        } else if (xor < (1 << 10)) { // level = 1
+            display1 = copyOf(display1);
+            display1[(oldIndex >> 5) & 31] = display0;
+            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+        } else if (xor < (1 << 15)) { // level = 2
+            display1 = copyOf(display1);
+            display2 = copyOf(display2);
+            display1[(oldIndex >> 5) & 31] = display0;
+            display2[(oldIndex >> 10) & 31] = display1;
+            display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
+            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+        } else if (xor < (1 << 20)) { // level = 3
+            display1 = copyOf(display1);
+            display2 = copyOf(display2);
+            display3 = copyOf(display3);
+            display1[(oldIndex >> 5) & 31] = display0;
+            display2[(oldIndex >> 10) & 31] = display1;
+            display3[(oldIndex >> 15) & 31] = display2;
+            display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
+            display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
+            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+        } else if (xor < (1 << 25)) { // level = 4
+            display1 = copyOf(display1);
+            display2 = copyOf(display2);
+            display3 = copyOf(display3);
+            display4 = copyOf(display4);
+            display1[(oldIndex >> 5) & 31] = display0;
+            display2[(oldIndex >> 10) & 31] = display1;
+            display3[(oldIndex >> 15) & 31] = display2;
+            display4[(oldIndex >> 20) & 31] = display3;
+            display3 = nullSlotAndCopy(display4, (newIndex >> 20) & 31);
+            display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
+            display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
+            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+        } else if (xor < (1 << 30)) { // level = 5
+            display1 = copyOf(display1);
+            display2 = copyOf(display2);
+            display3 = copyOf(display3);
+            display4 = copyOf(display4);
+            display5 = copyOf(display5);
+            display1[(oldIndex >> 5) & 31] = display0;
+            display2[(oldIndex >> 10) & 31] = display1;
+            display3[(oldIndex >> 15) & 31] = display2;
+            display4[(oldIndex >> 20) & 31] = display3;
+            display5[(oldIndex >> 25) & 31] = display4;
+            display4 = nullSlotAndCopy(display5, (newIndex >> 25) & 31);
+            display3 = nullSlotAndCopy(display4, (newIndex >> 20) & 31);
+            display2 = nullSlotAndCopy(display3, (newIndex >> 15) & 31);
+            display1 = nullSlotAndCopy(display2, (newIndex >> 10) & 31);
+            display0 = nullSlotAndCopy(display1, (newIndex >> 5) & 31);
+        } else { // level = 6
+            throw new IllegalArgumentException();
+        }
+    }
+
+    // USED IN DROP
+    public Object[] copyRange(Object[] array, int oldLeft, int newLeft) {
+        Object[] elems = new Object[32];
+        System.arraycopy(array, oldLeft, elems, newLeft, 32 - Math.max(newLeft, oldLeft));
+        return elems;
+    }
+
+    // USED IN APPEND
+    // create a new block at the bottom level (and possibly nodes on its path) and prepares for writing
+    // requires structure is clean and at pos oldIndex,
+    // ensures structure is dirty and at pos newIndex and writable at level 0
+    public void gotoFreshPosWritable0(int oldIndex, int newIndex, int xor) { // goto block start pos
+        //noinspection StatementWithEmptyBody
+        if (xor < (1 << 5)) { // level = 0
+        } else if (xor < (1 << 10)) { // level = 1
+            if (depth == 1) {
+                display1 = new Object[32];
+                display1[(oldIndex >> 5) & 31] = display0;
+                depth += 1;
+            }
+            display0 = new Object[32];
+        } else if (xor < (1 << 15)) { // level = 2
+            if (depth == 2) {
+                display2 = new Object[32];
+                display2[(oldIndex >> 10) & 31] = display1;
+                depth += 1;
+            }
+            display1 = (Object[]) display2[(newIndex >> 10) & 31];
+            if (display1 == null) display1 = new Object[32];
+            display0 = new Object[32];
+        } else if (xor < (1 << 20)) { // level = 3
+            if (depth == 3) {
+                display3 = new Object[32];
+                display3[(oldIndex >> 15) & 31] = display2;
+                display2 = new Object[32];
+                display1 = new Object[32];
+                depth += 1;
+            }
+            display2 = (Object[]) display3[(newIndex >> 15) & 31];
+            if (display2 == null) display2 = new Object[32];
+            display1 = (Object[]) display2[(newIndex >> 10) & 31];
+            if (display1 == null) display1 = new Object[32];
+            display0 = new Object[32];
+        } else if (xor < (1 << 25)) { // level = 4
+            if (depth == 4) {
+                display4 = new Object[32];
+                display4[(oldIndex >> 20) & 31] = display3;
+                display3 = new Object[32];
+                display2 = new Object[32];
+                display1 = new Object[32];
+                depth += 1;
+            }
+            display3 = (Object[]) display4[(newIndex >> 20) & 31];
+            if (display3 == null) display3 = new Object[32];
+            display2 = (Object[]) display3[(newIndex >> 15) & 31];
+            if (display2 == null) display2 = new Object[32];
+            display1 = (Object[]) display2[(newIndex >> 10) & 31];
+            if (display1 == null) display1 = new Object[32];
+            display0 = new Object[32];
+        } else if (xor < (1 << 30)) { // level = 5
+            if (depth == 5) {
+                display5 = new Object[32];
+                display5[(oldIndex >> 25) & 31] = display4;
+                display4 = new Object[32];
+                display3 = new Object[32];
+                display2 = new Object[32];
+                display1 = new Object[32];
+                depth += 1;
+            }
+            display4 = (Object[]) display5[(newIndex >> 25) & 31];
+            if (display4 == null) display4 = new Object[32];
+            display3 = (Object[]) display4[(newIndex >> 20) & 31];
+            if (display3 == null) display3 = new Object[32];
+            display2 = (Object[]) display3[(newIndex >> 15) & 31];
+            if (display2 == null) display2 = new Object[32];
+            display1 = (Object[]) display2[(newIndex >> 10) & 31];
+            if (display1 == null) display1 = new Object[32];
+            display0 = new Object[32];
+        } else { // level = 6
+            throw new IllegalArgumentException();
+        }
+    }
+
+    // requires structure is dirty and at pos oldIndex,
+    // ensures structure is dirty and at pos newIndex and writable at level 0
+    public void gotoFreshPosWritable1(int oldIndex, int newIndex, int xor) {
+        stabilize(oldIndex);
+        gotoFreshPosWritable0(oldIndex, newIndex, xor);
+    }
+}
@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@code VersionedStore} holds numbered versions of an immutable value, typically a persistent
+ * {@code TreeMap} or {@code HashMap}, for multi-version concurrency control.
+ * <p/>
+ * <p>Each commit publishes a new value with the next version number. Readers {@link #pin} a version to get a
+ * consistent snapshot for as long as they need it, without locking and without blocking commits. The store retains
+ * the last {@code history} versions for {@link #asOf} queries, along with any older versions that are still pinned.
+ * An older version is released once it is no longer pinned, leaving its unshared nodes to be garbage collected.
+ * As successive values of a persistent collection share structure, the memory retained is proportional to the
+ * changes between the versions retained rather than to their total size.
+ * <p/>
+ * <p>Commits are serialized, so concurrent writers are safe, but each commit is applied to whichever version is
+ * latest when it runs. Use {@link #update} to derive a commit from the latest version atomically.
+ */
+public class VersionedStore<T> {
+    private final int history;
+    private final ConcurrentSkipListMap<Long, Version<T>> versions = new ConcurrentSkipListMap<Long, Version<T>>();
+    private volatile Version<T> latest;
+
+    /**
+     * Creates a store with {@code initial} as version 0, retaining the last {@code history} versions.
+     */
+    public VersionedStore(T initial, int history) {
+        if (history < 1) throw new IllegalArgumentException("history must be at least 1: " + history);
+        this.history = history;
+        latest = new Version<T>(0, initial);
+        versions.put(0L, latest);
+    }
+
+    /**
+     * Returns the latest version number.
+     */
+    public long version() {
+        return latest.number;
+    }
+
+    /**
+     * Returns the value of the latest version.
+     */
+    public T get() {
+        return latest.value;
+    }
+
+    /**
+     * Returns the value of {@code version}, or {@code null} if it has been released or not yet committed.
+     */
+    @Nullable
+    public T asOf(long version) {
+        Version<T> result = versions.get(version);
+        return result == null || result.isReleased() ? null : result.value;
+    }
+
+    /**
+     * Returns the number of versions retained, including pinned versions outside of the history.
+     */
+    public int retained() {
+        return versions.size();
+    }
+
+    /**
+     * Publishes {@code value} as a new version, returning its number.
+     */
+    public synchronized long commit(T value) {
+        Version<T> committed = new Version<T>(latest.number + 1, value);
+        versions.put(committed.number, committed);
+        latest = committed;
+        for (Version<T> version : versions.headMap(committed.number - history, true).values()) {
+            release(version);
+        }
+        return committed.number;
+    }
+
+    /**
+     * Commits the result of applying {@code function} to the latest value, returning the new version number.
+     */
+    public synchronized long update(@NotNull Function<T, T> function) {
+        return commit(function.invoke(latest.value));
+    }
+
+    /**
+     * Pins the latest version. The version is retained until the snapshot is closed.
+     */
+    @NotNull
+    public Snapshot<T> pin() {
+        while (true) {
+            // The latest version can only have been released if a commit overtook us, so try the new latest
+            Version<T> version = latest;
+            if (version.pin()) return new Snapshot<T>(this, version);
+        }
+    }
+
+    /**
+     * Pins {@code version}, returning {@code null} if it has been released or not yet committed.
+     */
+    @Nullable
+    public Snapshot<T> pin(long version) {
+        Version<T> result = versions.get(version);
+        return result != null && result.pin() ? new Snapshot<T>(this, result) : null;
+    }
+
+    private void unpin(Version<T> version) {
+        if (version.unpin() == 0 && version.number <= latest.number - history) {
+            release(version);
+        }
+    }
+
+    private void release(Version<T> version) {
+        if (version.release()) {
+            versions.remove(version.number, version);
+        }
+    }
+
+    private static class Version<T> {
+        final long number;
+        final T value;
+        // The number of pins, or -1 once released
+        private final AtomicInteger readers = new AtomicInteger();
+
+        Version(long number, T value) {
+            this.number = number;
+            this.value = value;
+        }
+
+        boolean pin() {
+            while (true) {
+                int count = readers.get();
+                if (count < 0) return false;
+                if (readers.compareAndSet(count, count + 1)) return true;
+            }
+        }
+
+        int unpin() {
+            return readers.decrementAndGet();
+        }
+
+        boolean release() {
+            return readers.compareAndSet(0, -1);
+        }
+
+        boolean isReleased() {
+            return readers.get() < 0;
+        }
+    }
+
+    /**
+     * A pinned version of a {@code VersionedStore}. Closing the snapshot unpins the version, which may then be
+     * released. A snapshot is not thread safe, but separate snapshots may be used from different threads.
+     */
+    public static class Snapshot<T> implements Closeable {
+        private final VersionedStore<T> store;
+        private final Version<T> version;
+        private boolean closed;
+
+        Snapshot(VersionedStore<T> store, Version<T> version) {
+            this.store = store;
+            this.version = version;
+        }
+
+        public long version() {
+            return version.number;
+        }
+
+        public T get() {
+            return version.value;
+        }
+
+        @Override
+        public void close() {
+            if (closed) return;
+            closed = true;
+            store.unpin(version);
+        }
+
+        @Override
+        public String toString() {
+            return "Snapshot(version=" + version.number + ", " + version.value + ")";
+        }
+    }
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * {@code View} is a lazy pipeline of transformations over a {@link com.github.andrewoma.dexx.collection.Traversable}.
+ * <p/>
+ * <p>Transformations such as {@link #map(Function)} and {@link #filter(Predicate)} do no work when called. Instead,
+ * terminal operations such as {@link #to(Builder)}, {@link #fold(Object, Fold)} and {@link #count()} push each element
+ * of the source through the whole pipeline in a single pass, without building intermediate collections.
+ * Operations such as {@link #take(int)} and {@link #first()} stop the pass as soon as no more elements are required.
+ * <p/>
+ * <p>Views are re-evaluated each time a terminal operation is called, so a view reflects any changes to a mutable
+ * source. Functions passed to a view should be free of side effects.
+ */
+public abstract class View<E> {
+    /**
+     * Pushes the elements of this view to {@code sink} until it returns {@code false}.
+     *
+     * @return {@code false} if the pass was stopped early
+     */
+    protected abstract boolean push(@NotNull Predicate<? super E> sink);
+
+    /**
+     * Returns a view of the elements of {@code source}.
+     */
+    @NotNull
+    public static <E> View<E> of(@NotNull final Traversable<E> source) {
+        return new View<E>() {
+            @Override
+            protected boolean push(@NotNull final Predicate<? super E> sink) {
+                return source.forEachWhile(sink);
+            }
+        };
+    }
+
+    @NotNull
+    public <R> View<R> map(@NotNull final Function<? super E, ? extends R> f) {
+        final View<E> parent = this;
+        return new View<R>() {
+            @Override
+            protected boolean push(@NotNull final Predicate<? super R> sink) {
+                return parent.push(new Predicate<E>() {
+                    @Override
+                    public boolean invoke(E element) {
+                        return sink.invoke(f.invoke(element));
+                    }
+                });
+            }
+        };
+    }
+
+    @NotNull
+    public View<E> filter(@NotNull final Predicate<? super E> predicate) {
+        final View<E> parent = this;
+        return new View<E>() {
+            @Override
+            protected boolean push(@NotNull final Predicate<? super E> sink) {
+                return parent.push(new Predicate<E>() {
+                    @Override
+                    public boolean invoke(E element) {
+                        return !predicate.invoke(element) || sink.invoke(element);
+                    }
+                });
+            }
+        };
+    }
+
+    @NotNull
+    public <R> View<R> flatMap(@NotNull final Function<? super E, ? extends Traversable<R>> f) {
+        final View<E> parent = this;
+        return new View<R>() {
+            @Override
+            protected boolean push(@NotNull final Predicate<? super R> sink) {
+                return parent.push(new Predicate<E>() {
+                    @Override
+                    public boolean invoke(E element) {
+                        return f.invoke(element).forEachWhile(sink);
+                    }
+                });
+            }
+        };
+    }
+
+    @NotNull
+    public View<E> takeWhile(@NotNull final Predicate<? super E> predicate) {
+        final View<E> parent = this;
+        return new View<E>() {
+            @Override
+            protected boolean push(@NotNull final Predicate<? super E> sink) {
+                return parent.push(new Predicate<E>() {
+                    @Override
+                    public boolean invoke(E element) {
+                        return predicate.invoke(element) && sink.invoke(element);
+                    }
+                });
+            }
+        };
+    }
+
+    @NotNull
+    public View<E> dropWhile(@NotNull final Predicate<? super E> predicate) {
+        final View<E> parent = this;
+        return new View<E>() {
+            @Override
+            protected boolean push(@NotNull final Predicate<? super E> sink) {
+                final boolean[] dropping = new boolean[]{true};
+                return parent.push(new Predicate<E>() {
+                    @Override
+                    public boolean invoke(E element) {
+                        if (dropping[0]) {
+                            if (predicate.invoke(element)) return true;
+                            dropping[0] = false;
+                        }
+                        return sink.invoke(element);
+                    }
+                });
+            }
+        };
+    }
+
+    @NotNull
+    public View<E> take(final int number) {
+        final View<E> parent = this;
+        return new View<E>() {
+            @Override
+            protected boolean push(@NotNull final Predicate<? super E> sink) {
+                if (number <= 0) return true;
+
+                final int[] count = new int[]{0};
+                return parent.push(new Predicate<E>() {
+                    @Override
+                    public boolean invoke(E element) {
+                        count[0]++;
+                        return sink.invoke(element) && count[0] < number;
+                    }
+                });
+            }
+        };
+    }
+
+    @NotNull
+    public View<E> drop(final int number) {
+        final View<E> parent = this;
+        return new View<E>() {
+            @Override
+            protected boolean push(@NotNull final Predicate<? super E> sink) {
+                final int[] count = new int[]{0};
+                return parent.push(new Predicate<E>() {
+                    @Override
+                    public boolean invoke(E element) {
+                        return count[0]++ < number || sink.invoke(element);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Returns a view pairing each element with its index in this view.
+     */
+    @NotNull
+    public View<Pair<E, Integer>> zipWithIndex() {
+        final View<E> parent = this;
+        return new View<Pair<E, Integer>>() {
+            @Override
+            protected boolean push(@NotNull final Predicate<? super Pair<E, Integer>> sink) {
+                final int[] index = new int[]{0};
+                return parent.push(new Predicate<E>() {
+                    @Override
+                    public boolean invoke(E element) {
+                        return sink.invoke(new Pair<E, Integer>(element, index[0]++));
+                    }
+                });
+            }
+        };
+    }
+
+    // Terminal operations
+
+    @NotNull
+    public <R> R to(@NotNull final Builder<E, R> builder) {
+        push(new Predicate<E>() {
+            @Override
+            public boolean invoke(E element) {
+                builder.add(element);
+                return true;
+            }
+        });
+        return builder.build();
+    }
+
+    public <A> A fold(A initial, @NotNull final Fold<A, ? super E> f) {
+        final Object[] accumulator = new Object[]{initial};
+        push(new Predicate<E>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public boolean invoke(E element) {
+                accumulator[0] = f.invoke((A) accumulator[0], element);
+                return true;
+            }
+        });
+
+        @SuppressWarnings("unchecked")
+        A result = (A) accumulator[0];
+        return result;
+    }
+
+    public <U> void forEach(@NotNull final Function<? super E, U> f) {
+        push(new Predicate<E>() {
+            @Override
+            public boolean invoke(E element) {
+                f.invoke(element);
+                return true;
+            }
+        });
+    }
+
+    public int count() {
+        final int[] count = new int[]{0};
+        push(new Predicate<E>() {
+            @Override
+            public boolean invoke(E element) {
+                count[0]++;
+                return true;
+            }
+        });
+        return count[0];
+    }
+
+    /**
+     * Returns the first element of this view, or {@code null} if it is empty.
+     */
+    @Nullable
+    public E first() {
+        final Object[] first = new Object[]{null};
+        push(new Predicate<E>() {
+            @Override
+            public boolean invoke(E element) {
+                first[0] = element;
+                return false;
+            }
+        });
+
+        @SuppressWarnings("unchecked")
+        E result = (E) first[0];
+        return result;
+    }
+
+    @NotNull
+    public IndexedList<E> toIndexedList() {
+        return to(IndexedLists.<E>builder());
+    }
+}
@@ -22,9 +22,8 @@
 
 package com.github.andrewoma.dexx.collection.internal.adapter;
 
-import com.github.andrewoma.dexx.collection.Function;
+import com.github.andrewoma.dexx.collection.Predicate;
 import com.github.andrewoma.dexx.collection.Traversable;
-import com.github.andrewoma.dexx.collection.internal.base.Break;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
@@ -43,40 +42,21 @@ public class Adapters {
         return true;
     }
 
-    @SuppressWarnings("unchecked")
     public static <E> boolean contains(@NotNull Traversable<E> traversable, final Object o) {
-        try {
-            traversable.forEach(new Function<E, Object>() {
-                @Override
-                public Object invoke(E e) {
-                    if (e.equals(o)) {
-                        throw Break.instance;
-                    }
-                    return null;
-                }
-            });
-            return false;
-        } catch (Break e) {
-            return true;
-        }
-    }
-
-    @SuppressWarnings("unchecked")
-    public static <T, E> T[] toArray(@NotNull Traversable<E> traversable, T[] a) {
-        // Estimate size of array; be prepared to see more or fewer elements
-        int size = traversable.size();
-        final T[] result = a.length >= size ? a : (T[]) java.lang.reflect.Array.newInstance(a.getClass().getComponentType(), size);
-        final int[] count = new int[]{0};
-
-        traversable.forEach(new Function<E, Object>() {
+        return traversable.exists(new Predicate<E>() {
             @Override
-            public Object invoke(E e) {
-                result[count[0]] = (T) e;
-                count[0] = count[0] + 1;
-                return null;
+            public boolean invoke(E e) {
+                return equal(e, o);
             }
         });
+    }
+
+    public static boolean equal(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
 
-        return result;
+    @SuppressWarnings("unchecked")
+    public static <T, E> T[] toArray(@NotNull Traversable<E> traversable, T[] a) {
+        return (T[]) traversable.toArray((E[]) a);
     }
 }
@@ -22,18 +22,21 @@
 
 package com.github.andrewoma.dexx.collection.internal.adapter;
 
+import com.github.andrewoma.dexx.collection.Function;
 import com.github.andrewoma.dexx.collection.List;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.AbstractList;
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
  *
  */
 public class ListAdapater<E> extends AbstractList<E> {
-    private List<E> list;
+    private final List<E> list;
 
     public ListAdapater(List<E> list) {
         this.list = list;
@@ -112,4 +115,34 @@ public class ListAdapater<E> extends AbstractList<E> {
     public E get(int index) {
         return list.get(index);
     }
+
+    @Override
+    public void forEach(final Consumer<? super E> action) {
+        list.forEach(new Function<E, Object>() {
+            @Override
+            public Object invoke(E element) {
+                action.accept(element);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return list.spliterator();
+    }
+
+    // Compares with iterators as the default uses a ListIterator, which calls get(index) on each step
+    @Override
+    public boolean equals(Object o) {
+        if (o == this) return true;
+        if (!(o instanceof java.util.List)) return false;
+
+        Iterator<E> i1 = iterator();
+        Iterator<?> i2 = ((java.util.List<?>) o).iterator();
+        while (i1.hasNext() && i2.hasNext()) {
+            if (!Adapters.equal(i1.next(), i2.next())) return false;
+        }
+        return !(i1.hasNext() || i2.hasNext());
+    }
 }
@@ -25,7 +25,7 @@ package com.github.andrewoma.dexx.collection.internal.adapter;
 import com.github.andrewoma.dexx.collection.Function;
 import com.github.andrewoma.dexx.collection.Map;
 import com.github.andrewoma.dexx.collection.Pair;
-import com.github.andrewoma.dexx.collection.internal.base.MappedIterable;
+import com.github.andrewoma.dexx.collection.Predicate;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.AbstractCollection;
@@ -33,13 +33,21 @@ import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
 /**
- *
+ * Adapts a {@code Map} to {@code java.util.Map}. The key, value and entry views are created once per adapter and
+ * read straight through to the underlying map. Lookups and {@link #forEach(BiConsumer)} do not allocate entries.
  */
 public class MapAdapter<K, V> extends java.util.AbstractMap<K, V> {
     private final Map<K, V> map;
 
+    private Set<K> keySet;
+    private Collection<V> values;
+    private Set<Entry<K, V>> entrySet;
+
     public MapAdapter(Map<K, V> map) {
         this.map = map;
     }
@@ -67,9 +75,13 @@ public class MapAdapter<K, V> extends java.util.AbstractMap<K, V> {
     }
 
     @Override
-    @SuppressWarnings("unchecked")
-    public boolean containsValue(Object value) {
-        return Adapters.contains(map.values(), value);
+    public boolean containsValue(final Object value) {
+        return map.exists(new Predicate<Pair<K, V>>() {
+            @Override
+            public boolean invoke(Pair<K, V> pair) {
+                return Adapters.equal(pair.component2(), value);
+            }
+        });
     }
 
     @Override
@@ -84,6 +96,23 @@ public class MapAdapter<K, V> extends java.util.AbstractMap<K, V> {
         }
     }
 
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        V value = get(key);
+        return value != null || containsKey(key) ? value : defaultValue;
+    }
+
+    @Override
+    public void forEach(final BiConsumer<? super K, ? super V> action) {
+        map.forEach(new Function<Pair<K, V>, Object>() {
+            @Override
+            public Object invoke(Pair<K, V> pair) {
+                action.accept(pair.component1(), pair.component2());
+                return null;
+            }
+        });
+    }
+
     @Override
     public V put(K key, V value) {
         throw new UnsupportedOperationException();
@@ -107,268 +136,383 @@ public class MapAdapter<K, V> extends java.util.AbstractMap<K, V> {
     @NotNull
     @Override
     public Set<K> keySet() {
-        return new AbstractSet<K>() {
-            @Override
-            public int size() {
-                return map.size();
-            }
+        Set<K> result = keySet;
+        if (result == null) {
+            result = new KeySet();
+            keySet = result;
+        }
+        return result;
+    }
 
-            @Override
-            public boolean isEmpty() {
-                return map.isEmpty();
-            }
+    @NotNull
+    @Override
+    public Collection<V> values() {
+        Collection<V> result = values;
+        if (result == null) {
+            result = new Values();
+            values = result;
+        }
+        return result;
+    }
 
-            @Override
-            public boolean contains(Object o) {
-                return containsKey(o);
-            }
+    @NotNull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> result = entrySet;
+        if (result == null) {
+            result = new EntrySet();
+            entrySet = result;
+        }
+        return result;
+    }
 
-            @NotNull
-            @Override
-            public Iterator<K> iterator() {
-                return map.keys().iterator();
-            }
+    private class KeySet extends AbstractSet<K> {
+        @Override
+        public int size() {
+            return map.size();
+        }
 
-            @NotNull
-            @Override
-            public Object[] toArray() {
-                return map.keys().toArray();
-            }
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
 
-            @NotNull
-            @Override
-            public <T> T[] toArray(@NotNull T[] a) {
-                return Adapters.toArray(map.keys(), a);
-            }
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
 
-            @Override
-            public boolean add(K k) {
-                throw new UnsupportedOperationException();
-            }
+        @NotNull
+        @Override
+        public Iterator<K> iterator() {
+            return map.keys().iterator();
+        }
 
-            @Override
-            public boolean remove(Object o) {
-                throw new UnsupportedOperationException();
-            }
+        @Override
+        public void forEach(final Consumer<? super K> action) {
+            map.forEach(new Function<Pair<K, V>, Object>() {
+                @Override
+                public Object invoke(Pair<K, V> pair) {
+                    action.accept(pair.component1());
+                    return null;
+                }
+            });
+        }
 
-            @Override
-            public boolean containsAll(@NotNull Collection<?> c) {
-                return Adapters.containsAll(map.keys(), c);
-            }
+        @Override
+        public Spliterator<K> spliterator() {
+            return new MappedSpliterator<K, Pair<K, V>>(map.spliterator(), Spliterator.DISTINCT | Spliterator.NONNULL, new Function<Pair<K, V>, K>() {
+                @Override
+                public K invoke(Pair<K, V> pair) {
+                    return pair.component1();
+                }
+            });
+        }
 
-            @Override
-            public boolean addAll(@NotNull Collection<? extends K> c) {
-                throw new UnsupportedOperationException();
-            }
+        @NotNull
+        @Override
+        public Object[] toArray() {
+            return map.keys().toArray();
+        }
 
-            @Override
-            public boolean retainAll(@NotNull Collection<?> c) {
-                throw new UnsupportedOperationException();
-            }
+        @NotNull
+        @Override
+        public <T> T[] toArray(@NotNull T[] a) {
+            return Adapters.toArray(map.keys(), a);
+        }
 
-            @Override
-            public boolean removeAll(@NotNull Collection<?> c) {
-                throw new UnsupportedOperationException();
-            }
+        @Override
+        public boolean add(K k) {
+            throw new UnsupportedOperationException();
+        }
 
-            @Override
-            public void clear() {
-                throw new UnsupportedOperationException();
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean containsAll(@NotNull Collection<?> c) {
+            for (Object o : c) {
+                if (!containsKey(o)) return false;
             }
-        };
+            return true;
+        }
+
+        @Override
+        public boolean addAll(@NotNull Collection<? extends K> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean retainAll(@NotNull Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeAll(@NotNull Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
     }
 
-    @NotNull
-    @Override
-    public Collection<V> values() {
-        return new AbstractCollection<V>() {
-            @Override
-            public int size() {
-                return map.size();
-            }
+    private class Values extends AbstractCollection<V> {
+        @Override
+        public int size() {
+            return map.size();
+        }
 
-            @Override
-            public boolean isEmpty() {
-                return map.isEmpty();
-            }
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
 
-            @Override
-            public boolean contains(Object o) {
-                return containsValue(o);
-            }
+        @Override
+        public boolean contains(Object o) {
+            return containsValue(o);
+        }
 
-            @NotNull
-            @Override
-            public Iterator<V> iterator() {
-                return map.values().iterator();
-            }
+        @NotNull
+        @Override
+        public Iterator<V> iterator() {
+            return map.values().iterator();
+        }
 
-            @NotNull
-            @Override
-            public Object[] toArray() {
-                return map.values().toArray();
-            }
+        @Override
+        public void forEach(final Consumer<? super V> action) {
+            map.forEach(new Function<Pair<K, V>, Object>() {
+                @Override
+                public Object invoke(Pair<K, V> pair) {
+                    action.accept(pair.component2());
+                    return null;
+                }
+            });
+        }
 
-            @NotNull
-            @Override
-            public <T> T[] toArray(@NotNull T[] a) {
-                return Adapters.toArray(map.values(), a);
-            }
+        @Override
+        public Spliterator<V> spliterator() {
+            return new MappedSpliterator<V, Pair<K, V>>(map.spliterator(), 0, new Function<Pair<K, V>, V>() {
+                @Override
+                public V invoke(Pair<K, V> pair) {
+                    return pair.component2();
+                }
+            });
+        }
 
-            @Override
-            public boolean add(V v) {
-                throw new UnsupportedOperationException();
-            }
+        @NotNull
+        @Override
+        public Object[] toArray() {
+            return map.values().toArray();
+        }
 
-            @Override
-            public boolean remove(Object o) {
-                throw new UnsupportedOperationException();
-            }
+        @NotNull
+        @Override
+        public <T> T[] toArray(@NotNull T[] a) {
+            return Adapters.toArray(map.values(), a);
+        }
 
-            @Override
-            public boolean containsAll(@NotNull Collection<?> c) {
-                return Adapters.containsAll(map.values(), c);
-            }
+        @Override
+        public boolean add(V v) {
+            throw new UnsupportedOperationException();
+        }
 
-            @Override
-            public boolean addAll(@NotNull Collection<? extends V> c) {
-                throw new UnsupportedOperationException();
-            }
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
 
-            @Override
-            public boolean removeAll(@NotNull Collection<?> c) {
-                throw new UnsupportedOperationException();
+        @Override
+        public boolean containsAll(@NotNull Collection<?> c) {
+            for (Object o : c) {
+                if (!containsValue(o)) return false;
             }
+            return true;
+        }
 
-            @Override
-            public boolean retainAll(@NotNull Collection<?> c) {
-                throw new UnsupportedOperationException();
-            }
+        @Override
+        public boolean addAll(@NotNull Collection<? extends V> c) {
+            throw new UnsupportedOperationException();
+        }
 
-            @Override
-            public void clear() {
-                throw new UnsupportedOperationException();
-            }
-        };
+        @Override
+        public boolean removeAll(@NotNull Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean retainAll(@NotNull Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
     }
 
-    @NotNull
-    @Override
-    public Set<Entry<K, V>> entrySet() {
-        return new AbstractSet<Entry<K, V>>() {
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        private final Function<Pair<K, V>, Entry<K, V>> toEntry = new Function<Pair<K, V>, Entry<K, V>>() {
             @Override
-            public int size() {
-                return map.size();
+            public Entry<K, V> invoke(Pair<K, V> pair) {
+                return new PairEntry<K, V>(pair);
             }
+        };
 
-            @Override
-            public boolean isEmpty() {
-                return map.isEmpty();
-            }
+        @Override
+        public int size() {
+            return map.size();
+        }
 
-            @Override
-            public boolean contains(Object o) {
-                try {
-                    @SuppressWarnings("unchecked")
-                    Entry<K, V> entry = (Entry<K, V>) o;
-                    Pair<K, V> pair = new Pair<K, V>(entry.getKey(), entry.getValue());
-                    return Adapters.contains(map, pair);
-                } catch (ClassCastException e) {
-                    return false;
+        @Override
+        public boolean isEmpty() {
+            return map.isEmpty();
+        }
+
+        // Looks the key up rather than scanning the entries
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            Object key = entry.getKey();
+            return containsKey(key) && Adapters.equal(get(key), entry.getValue());
+        }
+
+        @NotNull
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            final Iterator<Pair<K, V>> iterator = map.iterator();
+            return new Iterator<Entry<K, V>>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
                 }
-            }
 
-            @NotNull
-            @Override
-            public Iterator<Entry<K, V>> iterator() {
-                return getEntries().iterator();
-            }
+                @Override
+                public Entry<K, V> next() {
+                    return new PairEntry<K, V>(iterator.next());
+                }
 
-            private MappedIterable<Entry<K, V>, Pair<K, V>> getEntries() {
-                return new MappedIterable<Entry<K, V>, Pair<K, V>>(map, new Function<Pair<K, V>, Entry<K, V>>() {
-                    @Override
-                    public Entry<K, V> invoke(final Pair<K, V> pair) {
-                        return new Entry<K, V>() {
-                            @Override
-                            public K getKey() {
-                                return pair.component1();
-                            }
-
-                            @Override
-                            public V getValue() {
-                                return pair.component2();
-                            }
-
-                            @Override
-                            public V setValue(@NotNull V value) {
-                                throw new UnsupportedOperationException();
-                            }
-
-                            @Override
-                            public boolean equals(Object o) {
-                                if (!(o instanceof Entry))
-                                    return false;
-
-                                Entry e = (Entry) o;
-                                return !(getKey() != null ? !getKey().equals(e.getKey()) : e.getKey() != null)
-                                        && !(getValue() != null ? !getValue().equals(e.getValue()) : e.getValue() != null);
-                            }
-
-                            @Override
-                            public int hashCode() {
-                                return (getKey() == null ? 0 : getKey().hashCode()) ^ (getValue() == null ? 0 : getValue().hashCode());
-                            }
-
-                            @Override
-                            public String toString() {
-                                return getKey() + "=" + getValue();
-                            }
-                        };
-                    }
-                });
-            }
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
 
-            @NotNull
-            @Override
-            public Object[] toArray() {
-                return getEntries().toArray();
-            }
+        @Override
+        public void forEach(final Consumer<? super Entry<K, V>> action) {
+            map.forEach(new Function<Pair<K, V>, Object>() {
+                @Override
+                public Object invoke(Pair<K, V> pair) {
+                    action.accept(new PairEntry<K, V>(pair));
+                    return null;
+                }
+            });
+        }
 
-            @NotNull
-            @Override
-            public <T> T[] toArray(@NotNull T[] a) {
-                return Adapters.toArray(getEntries(), a);
-            }
+        @Override
+        public Spliterator<Entry<K, V>> spliterator() {
+            return new MappedSpliterator<Entry<K, V>, Pair<K, V>>(map.spliterator(), Spliterator.DISTINCT | Spliterator.NONNULL, toEntry);
+        }
 
-            @Override
-            public boolean add(Entry<K, V> kvEntry) {
-                throw new UnsupportedOperationException();
+        @NotNull
+        @Override
+        public Object[] toArray() {
+            Object[] result = map.toArray();
+            for (int i = 0; i < result.length; i++) {
+                @SuppressWarnings("unchecked")
+                Pair<K, V> pair = (Pair<K, V>) result[i];
+                result[i] = new PairEntry<K, V>(pair);
             }
+            return result;
+        }
 
-            @Override
-            public boolean remove(Object o) {
-                throw new UnsupportedOperationException();
-            }
+        @Override
+        public boolean add(Entry<K, V> kvEntry) {
+            throw new UnsupportedOperationException();
+        }
 
-            @Override
-            public boolean addAll(@NotNull Collection<? extends Entry<K, V>> c) {
-                throw new UnsupportedOperationException();
-            }
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
 
-            @Override
-            public boolean retainAll(@NotNull Collection<?> c) {
-                throw new UnsupportedOperationException();
-            }
+        @Override
+        public boolean addAll(@NotNull Collection<? extends Entry<K, V>> c) {
+            throw new UnsupportedOperationException();
+        }
 
+        @Override
+        public boolean retainAll(@NotNull Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean removeAll(@NotNull Collection<?> c) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
+
+/**
+ * Maps the elements of a {@code Spliterator} with {@code f}, splitting wherever the underlying spliterator does.
+ * {@code SORTED} is dropped as the mapped elements are no longer ordered by the underlying comparator, and
+ * {@code DISTINCT} and {@code NONNULL} are only kept if they are in {@code preserved}.
+ */
+class MappedSpliterator<R, T> implements Spliterator<R> {
+    private final Spliterator<T> spliterator;
+    private final int preserved;
+    private final Function<T, R> f;
+
+    MappedSpliterator(Spliterator<T> spliterator, int preserved, Function<T, R> f) {
+        this.spliterator = spliterator;
+        this.preserved = preserved;
+        this.f = f;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super R> action) {
+        return spliterator.tryAdvance(new Consumer<T>() {
             @Override
-            public boolean removeAll(@NotNull Collection<?> c) {
-                throw new UnsupportedOperationException();
+            public void accept(T t) {
+                action.accept(f.invoke(t));
             }
+        });
+    }
 
+    @Override
+    public void forEachRemaining(final Consumer<? super R> action) {
+        spliterator.forEachRemaining(new Consumer<T>() {
             @Override
-            public void clear() {
-                throw new UnsupportedOperationException();
+            public void accept(T t) {
+                action.accept(f.invoke(t));
             }
-        };
+        });
+    }
+
+    @Override
+    public Spliterator<R> trySplit() {
+        Spliterator<T> prefix = spliterator.trySplit();
+        return prefix == null ? null : new MappedSpliterator<R, T>(prefix, preserved, f);
+    }
+
+    @Override
+    public long estimateSize() {
+        return spliterator.estimateSize();
+    }
+
+    @Override
+    public int characteristics() {
+        int mask = ~(Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL) | preserved;
+        return spliterator.characteristics() & mask;
     }
 }
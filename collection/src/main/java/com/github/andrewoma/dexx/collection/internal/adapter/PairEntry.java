@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.internal.adapter;
+
+import com.github.andrewoma.dexx.collection.Pair;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * An immutable {@code Map.Entry} over a {@code Pair}. Entries are only created when a caller asks for them,
+ * and are safe to retain.
+ */
+final class PairEntry<K, V> implements java.util.Map.Entry<K, V> {
+    private final Pair<K, V> pair;
+
+    PairEntry(Pair<K, V> pair) {
+        this.pair = pair;
+    }
+
+    @Override
+    public K getKey() {
+        return pair.component1();
+    }
+
+    @Override
+    public V getValue() {
+        return pair.component2();
+    }
+
+    @Override
+    public V setValue(@NotNull V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof java.util.Map.Entry))
+            return false;
+
+        java.util.Map.Entry e = (java.util.Map.Entry) o;
+        return Adapters.equal(getKey(), e.getKey()) && Adapters.equal(getValue(), e.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return (getKey() == null ? 0 : getKey().hashCode()) ^ (getValue() == null ? 0 : getValue().hashCode());
+    }
+
+    @Override
+    public String toString() {
+        return getKey() + "=" + getValue();
+    }
+}
@@ -22,17 +22,20 @@
 
 package com.github.andrewoma.dexx.collection.internal.adapter;
 
+import com.github.andrewoma.dexx.collection.Function;
 import com.github.andrewoma.dexx.collection.Set;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Collection;
 import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
 
 /**
- *
+ * Adapts a {@code Set} to {@code java.util.Set}. {@code contains} is a hashed or sorted lookup in the underlying set.
  */
 public class SetAdapater<E> extends java.util.AbstractSet<E> {
-    private Set<E> set;
+    private final Set<E> set;
 
     public SetAdapater(Set<E> set) {
         this.set = set;
@@ -49,8 +52,15 @@ public class SetAdapater<E> extends java.util.AbstractSet<E> {
     }
 
     @Override
+    @SuppressWarnings("unchecked")
     public boolean contains(Object o) {
-        return Adapters.contains(set, o);
+        try {
+            return set.contains((E) o);
+        } catch (ClassCastException e) {
+            return false;
+        } catch (NullPointerException e) {
+            return false;
+        }
     }
 
     @NotNull
@@ -83,7 +93,26 @@ public class SetAdapater<E> extends java.util.AbstractSet<E> {
 
     @Override
     public boolean containsAll(@NotNull Collection<?> c) {
-        return Adapters.containsAll(set, c);
+        for (Object o : c) {
+            if (!contains(o)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public void forEach(final Consumer<? super E> action) {
+        set.forEach(new Function<E, Object>() {
+            @Override
+            public Object invoke(E element) {
+                action.accept(element);
+                return null;
+            }
+        });
+    }
+
+    @Override
+    public Spliterator<E> spliterator() {
+        return set.spliterator();
     }
 
     @Override
@@ -24,6 +24,8 @@ package com.github.andrewoma.dexx.collection.internal.adapter;
 
 import com.github.andrewoma.dexx.collection.Pair;
 import com.github.andrewoma.dexx.collection.SortedMap;
+import com.github.andrewoma.dexx.collection.internal.redblack.RedBlackTree;
+import com.github.andrewoma.dexx.collection.internal.redblack.Tree;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Comparator;
@@ -33,11 +35,22 @@ import java.util.NoSuchElementException;
  *
  */
 public class SortedMapAdapter<K, V> extends MapAdapter<K, V> implements java.util.SortedMap<K, V> {
-    private SortedMap<K, V> map;
+    private final SortedMap<K, V> map;
+    private final TreeWindow<K, V> window;
 
     public SortedMapAdapter(SortedMap<K, V> map) {
         super(map);
         this.map = map;
+        this.window = null;
+    }
+
+    /**
+     * Creates an adapter for a map backed by the given tree. Sub maps are then windows over the tree rather than copies.
+     */
+    public SortedMapAdapter(SortedMap<K, V> map, RedBlackTree<K, V> redBlackTree, Tree<K, V> tree) {
+        super(map);
+        this.map = map;
+        this.window = new TreeWindow<K, V>(redBlackTree, tree);
     }
 
     @SuppressWarnings("NullableProblems") // JetBrains annotation doesn't match the spec
@@ -49,18 +62,21 @@ public class SortedMapAdapter<K, V> extends MapAdapter<K, V> implements java.uti
     @NotNull
     @Override
     public java.util.SortedMap<K, V> subMap(@NotNull K fromKey, @NotNull K toKey) {
+        if (window != null) return new SortedMapWindow<K, V>(window).subMap(fromKey, toKey);
         return new SortedMapAdapter<K, V>(map.range(fromKey, true, toKey, false));
     }
 
     @NotNull
     @Override
     public java.util.SortedMap<K, V> headMap(@NotNull K toKey) {
+        if (window != null) return new SortedMapWindow<K, V>(window).headMap(toKey);
         return new SortedMapAdapter<K, V>(map.to(toKey, false));
     }
 
     @NotNull
     @Override
     public java.util.SortedMap<K, V> tailMap(@NotNull K fromKey) {
+        if (window != null) return new SortedMapWindow<K, V>(window).tailMap(fromKey);
         return new SortedMapAdapter<K, V>(map.from(fromKey, true));
     }
 
@@ -0,0 +1,328 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.internal.adapter;
+
+import com.github.andrewoma.dexx.collection.Pair;
+import com.github.andrewoma.dexx.collection.internal.redblack.RedBlackTree;
+import com.github.andrewoma.dexx.collection.internal.redblack.Tree;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * A read-only {@code java.util.SortedMap} over a window of a red-black tree. {@code subMap}, {@code headMap} and
+ * {@code tailMap} return narrower windows over the same tree instead of building new trees, and iteration starts
+ * by seeking to the first key in the window.
+ */
+public class SortedMapWindow<K, V> extends java.util.AbstractMap<K, V> implements java.util.SortedMap<K, V> {
+    private final TreeWindow<K, V> window;
+
+    private Set<K> keySet;
+    private Collection<V> values;
+    private Set<Entry<K, V>> entrySet;
+
+    public SortedMapWindow(RedBlackTree<K, V> redBlackTree, Tree<K, V> tree) {
+        this(new TreeWindow<K, V>(redBlackTree, tree));
+    }
+
+    SortedMapWindow(TreeWindow<K, V> window) {
+        this.window = window;
+    }
+
+    @Override
+    public int size() {
+        return window.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return window.isEmpty();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return lookup(key) != null;
+    }
+
+    @Override
+    public V get(Object key) {
+        Tree<K, V> node = lookup(key);
+        return node == null ? null : node.getValue();
+    }
+
+    @Override
+    public V getOrDefault(Object key, V defaultValue) {
+        Tree<K, V> node = lookup(key);
+        return node == null ? defaultValue : node.getValue();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Tree<K, V> lookup(Object key) {
+        try {
+            return window.lookup((K) key);
+        } catch (ClassCastException e) {
+            return null;
+        } catch (NullPointerException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public void forEach(BiConsumer<? super K, ? super V> action) {
+        Iterator<Pair<K, V>> iterator = pairs();
+        while (iterator.hasNext()) {
+            Pair<K, V> pair = iterator.next();
+            action.accept(pair.component1(), pair.component2());
+        }
+    }
+
+    private Iterator<Pair<K, V>> pairs() {
+        return window.redBlackTree.iterator(window.tree, window.hasFrom, window.from, window.fromInclusive, window.hasUntil, window.until, window.untilInclusive);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public V remove(Object key) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void putAll(@NotNull java.util.Map<? extends K, ? extends V> m) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @SuppressWarnings("NullableProblems") // JetBrains annotation doesn't match the spec
+    @Override
+    public Comparator<? super K> comparator() {
+        return window.redBlackTree.getOrdering();
+    }
+
+    @NotNull
+    @Override
+    public java.util.SortedMap<K, V> subMap(@NotNull K fromKey, @NotNull K toKey) {
+        return new SortedMapWindow<K, V>(window.narrow(true, fromKey, true, true, toKey, false));
+    }
+
+    @NotNull
+    @Override
+    public java.util.SortedMap<K, V> headMap(@NotNull K toKey) {
+        return new SortedMapWindow<K, V>(window.narrow(false, null, false, true, toKey, false));
+    }
+
+    @NotNull
+    @Override
+    public java.util.SortedMap<K, V> tailMap(@NotNull K fromKey) {
+        return new SortedMapWindow<K, V>(window.narrow(true, fromKey, true, false, null, false));
+    }
+
+    @Override
+    public K firstKey() {
+        Tree<K, V> first = window.first();
+        if (first == null) throw new NoSuchElementException("Empty map");
+        return first.getKey(window.redBlackTree.getKeyFunction());
+    }
+
+    @Override
+    public K lastKey() {
+        Tree<K, V> last = window.last();
+        if (last == null) throw new NoSuchElementException("Empty map");
+        return last.getKey(window.redBlackTree.getKeyFunction());
+    }
+
+    @NotNull
+    @Override
+    public Set<K> keySet() {
+        Set<K> result = keySet;
+        if (result == null) {
+            result = new KeySet();
+            keySet = result;
+        }
+        return result;
+    }
+
+    @NotNull
+    @Override
+    public Collection<V> values() {
+        Collection<V> result = values;
+        if (result == null) {
+            result = new Values();
+            values = result;
+        }
+        return result;
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        Set<Entry<K, V>> result = entrySet;
+        if (result == null) {
+            result = new EntrySet();
+            entrySet = result;
+        }
+        return result;
+    }
+
+    private class KeySet extends AbstractSet<K> {
+        @Override
+        public int size() {
+            return window.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return window.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return containsKey(o);
+        }
+
+        @NotNull
+        @Override
+        public Iterator<K> iterator() {
+            return window.redBlackTree.keysIterator(window.tree, window.hasFrom, window.from, window.fromInclusive, window.hasUntil, window.until, window.untilInclusive);
+        }
+
+        @Override
+        public boolean add(K k) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class Values extends AbstractCollection<V> {
+        @Override
+        public int size() {
+            return window.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return window.isEmpty();
+        }
+
+        @NotNull
+        @Override
+        public Iterator<V> iterator() {
+            return window.redBlackTree.valuesIterator(window.tree, window.hasFrom, window.from, window.fromInclusive, window.hasUntil, window.until, window.untilInclusive);
+        }
+
+        @Override
+        public boolean add(V v) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override
+        public int size() {
+            return window.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return window.isEmpty();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry)) return false;
+            Entry<?, ?> entry = (Entry<?, ?>) o;
+            Tree<K, V> node = lookup(entry.getKey());
+            return node != null && Adapters.equal(node.getValue(), entry.getValue());
+        }
+
+        @NotNull
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            final Iterator<Pair<K, V>> iterator = pairs();
+            return new Iterator<Entry<K, V>>() {
+                @Override
+                public boolean hasNext() {
+                    return iterator.hasNext();
+                }
+
+                @Override
+                public Entry<K, V> next() {
+                    return new PairEntry<K, V>(iterator.next());
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public boolean add(Entry<K, V> kvEntry) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void clear() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -23,6 +23,8 @@
 package com.github.andrewoma.dexx.collection.internal.adapter;
 
 import com.github.andrewoma.dexx.collection.SortedSet;
+import com.github.andrewoma.dexx.collection.internal.redblack.RedBlackTree;
+import com.github.andrewoma.dexx.collection.internal.redblack.Tree;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Comparator;
@@ -32,11 +34,22 @@ import java.util.NoSuchElementException;
  *
  */
 public class SortedSetAdapter<E> extends SetAdapater<E> implements java.util.SortedSet<E> {
-    private SortedSet<E> set;
+    private final SortedSet<E> set;
+    private final TreeWindow<E, E> window;
 
     public SortedSetAdapter(SortedSet<E> set) {
         super(set);
         this.set = set;
+        this.window = null;
+    }
+
+    /**
+     * Creates an adapter for a set backed by the given tree. Sub sets are then windows over the tree rather than copies.
+     */
+    public SortedSetAdapter(SortedSet<E> set, RedBlackTree<E, E> redBlackTree, Tree<E, E> tree) {
+        super(set);
+        this.set = set;
+        this.window = new TreeWindow<E, E>(redBlackTree, tree);
     }
 
     @NotNull
@@ -48,18 +61,21 @@ public class SortedSetAdapter<E> extends SetAdapater<E> implements java.util.Sor
     @NotNull
     @Override
     public java.util.SortedSet<E> subSet(E fromElement, E toElement) {
+        if (window != null) return new SortedSetWindow<E>(window).subSet(fromElement, toElement);
         return new SortedSetAdapter<E>(set.range(fromElement, true, toElement, false));
     }
 
     @NotNull
     @Override
     public java.util.SortedSet<E> headSet(E toElement) {
+        if (window != null) return new SortedSetWindow<E>(window).headSet(toElement);
         return new SortedSetAdapter<E>(set.to(toElement, false));
     }
 
     @NotNull
     @Override
     public java.util.SortedSet<E> tailSet(E fromElement) {
+        if (window != null) return new SortedSetWindow<E>(window).tailSet(fromElement);
         return new SortedSetAdapter<E>(set.from(fromElement, true));
     }
 
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.internal.adapter;
+
+import com.github.andrewoma.dexx.collection.internal.redblack.RedBlackTree;
+import com.github.andrewoma.dexx.collection.internal.redblack.Tree;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A read-only {@code java.util.SortedSet} over a window of a red-black tree. {@code subSet}, {@code headSet} and
+ * {@code tailSet} return narrower windows over the same tree instead of building new trees, and iteration starts
+ * by seeking to the first element in the window.
+ */
+public class SortedSetWindow<E> extends AbstractSet<E> implements java.util.SortedSet<E> {
+    private final TreeWindow<E, E> window;
+
+    public SortedSetWindow(RedBlackTree<E, E> redBlackTree, Tree<E, E> tree) {
+        this(new TreeWindow<E, E>(redBlackTree, tree));
+    }
+
+    SortedSetWindow(TreeWindow<E, E> window) {
+        this.window = window;
+    }
+
+    @Override
+    public int size() {
+        return window.size();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return window.isEmpty();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean contains(Object o) {
+        try {
+            return window.lookup((E) o) != null;
+        } catch (ClassCastException e) {
+            return false;
+        } catch (NullPointerException e) {
+            return false;
+        }
+    }
+
+    @NotNull
+    @Override
+    public Iterator<E> iterator() {
+        return window.redBlackTree.keysIterator(window.tree, window.hasFrom, window.from, window.fromInclusive, window.hasUntil, window.until, window.untilInclusive);
+    }
+
+    @Override
+    public boolean add(E e) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean addAll(@NotNull Collection<? extends E> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean retainAll(@NotNull Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public boolean removeAll(@NotNull Collection<?> c) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void clear() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Comparator<? super E> comparator() {
+        return window.redBlackTree.getOrdering();
+    }
+
+    @NotNull
+    @Override
+    public java.util.SortedSet<E> subSet(E fromElement, E toElement) {
+        return new SortedSetWindow<E>(window.narrow(true, fromElement, true, true, toElement, false));
+    }
+
+    @NotNull
+    @Override
+    public java.util.SortedSet<E> headSet(E toElement) {
+        return new SortedSetWindow<E>(window.narrow(false, null, false, true, toElement, false));
+    }
+
+    @NotNull
+    @Override
+    public java.util.SortedSet<E> tailSet(E fromElement) {
+        return new SortedSetWindow<E>(window.narrow(true, fromElement, true, false, null, false));
+    }
+
+    @Override
+    public E first() {
+        Tree<E, E> first = window.first();
+        if (first == null) throw new NoSuchElementException("Empty set");
+        return first.getValue();
+    }
+
+    @Override
+    public E last() {
+        Tree<E, E> last = window.last();
+        if (last == null) throw new NoSuchElementException("Empty set");
+        return last.getValue();
+    }
+}
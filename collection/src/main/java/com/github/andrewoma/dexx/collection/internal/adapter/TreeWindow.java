@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.internal.adapter;
+
+import com.github.andrewoma.dexx.collection.internal.redblack.RedBlackTree;
+import com.github.andrewoma.dexx.collection.internal.redblack.Tree;
+
+/**
+ * A window over a red-black tree between two keys. As in {@code java.util.TreeMap}'s sub maps, each bound has a flag
+ * saying whether it is present, so a null key is a bound like any other for comparators that accept nulls.
+ * Narrowing a window shares the tree rather than copying it. The size is counted on first use, visiting only the
+ * nodes inside the window.
+ */
+class TreeWindow<K, V> {
+    final RedBlackTree<K, V> redBlackTree;
+    final Tree<K, V> tree;
+    final boolean hasFrom;
+    final K from;
+    final boolean fromInclusive;
+    final boolean hasUntil;
+    final K until;
+    final boolean untilInclusive;
+    private int size = -1;
+
+    TreeWindow(RedBlackTree<K, V> redBlackTree, Tree<K, V> tree) {
+        this(redBlackTree, tree, false, null, false, false, null, false);
+    }
+
+    TreeWindow(RedBlackTree<K, V> redBlackTree, Tree<K, V> tree, boolean hasFrom, K from, boolean fromInclusive,
+               boolean hasUntil, K until, boolean untilInclusive) {
+        this.redBlackTree = redBlackTree;
+        this.tree = tree;
+        this.hasFrom = hasFrom;
+        this.from = from;
+        this.fromInclusive = fromInclusive;
+        this.hasUntil = hasUntil;
+        this.until = until;
+        this.untilInclusive = untilInclusive;
+    }
+
+    int size() {
+        int result = size;
+        if (result < 0) {
+            result = redBlackTree.count(tree, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+            size = result;
+        }
+        return result;
+    }
+
+    boolean isEmpty() {
+        return size == 0 || first() == null;
+    }
+
+    Tree<K, V> first() {
+        return redBlackTree.smallest(tree, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+    }
+
+    Tree<K, V> last() {
+        return redBlackTree.greatest(tree, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+    }
+
+    Tree<K, V> lookup(K key) {
+        return redBlackTree.isInRange(key, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive) ? redBlackTree.lookup(tree, key) : null;
+    }
+
+    /**
+     * Returns the intersection of this window with the given bounds, which must lie within this window.
+     * Like the dexx range methods, a lower bound above the upper bound gives an empty window.
+     */
+    TreeWindow<K, V> narrow(boolean hasNewFrom, K newFrom, boolean newFromInclusive,
+                            boolean hasNewUntil, K newUntil, boolean newUntilInclusive) {
+        if (hasNewFrom) checkInRange(newFrom, newFromInclusive);
+        if (hasNewUntil) checkInRange(newUntil, newUntilInclusive);
+
+        K lower = from;
+        boolean lowerInclusive = fromInclusive;
+        if (hasNewFrom) {
+            int cmp = hasFrom ? redBlackTree.compare(newFrom, from) : 1;
+            lowerInclusive = cmp > 0 ? newFromInclusive : lowerInclusive && newFromInclusive;
+            lower = newFrom;
+        }
+
+        K upper = until;
+        boolean upperInclusive = untilInclusive;
+        if (hasNewUntil) {
+            int cmp = hasUntil ? redBlackTree.compare(newUntil, until) : -1;
+            upperInclusive = cmp < 0 ? newUntilInclusive : upperInclusive && newUntilInclusive;
+            upper = newUntil;
+        }
+
+        return new TreeWindow<K, V>(redBlackTree, tree, hasFrom || hasNewFrom, lower, lowerInclusive,
+                hasUntil || hasNewUntil, upper, upperInclusive);
+    }
+
+    private void checkInRange(K key, boolean inclusive) {
+        // As with java.util.TreeMap, compare the key with itself so the comparator rejects keys it can't order
+        redBlackTree.compare(key, key);
+        // Only an exclusive bound may sit on an exclusive bound of this window
+        boolean inRange = inclusive
+                ? redBlackTree.isInRange(key, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive)
+                : redBlackTree.isInRange(key, hasFrom, from, true, hasUntil, until, true);
+        if (!inRange) {
+            throw new IllegalArgumentException("key out of range");
+        }
+    }
+}
@@ -22,10 +22,56 @@
 
 package com.github.andrewoma.dexx.collection.internal.base;
 
+import com.github.andrewoma.dexx.collection.Builder;
 import com.github.andrewoma.dexx.collection.IndexedList;
+import com.github.andrewoma.dexx.collection.Vector;
+import com.github.andrewoma.dexx.collection.internal.parallel.ParallelMergeSort;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Spliterator;
 
 /**
  *
  */
 public abstract class AbstractIndexedList<E> extends AbstractList<E> implements IndexedList<E> {
+    @NotNull
+    @Override
+    public Spliterator<E> spliterator() {
+        return new IndexedListSpliterator<E>(this, 0, size());
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public Vector<E> sorted(@Nullable Comparator<? super E> comparator) {
+        E[] elements = (E[]) toArray();
+        Arrays.sort(elements, comparator);
+        return toVector(elements);
+    }
+
+    @NotNull
+    @Override
+    public Vector<E> sortedParallel(@Nullable Comparator<? super E> comparator) {
+        return sortedParallel(comparator, ParallelMergeSort.DEFAULT_THRESHOLD);
+    }
+
+    @NotNull
+    @Override
+    @SuppressWarnings("unchecked")
+    public Vector<E> sortedParallel(@Nullable Comparator<? super E> comparator, int threshold) {
+        Object[] elements = toArray();
+        ParallelMergeSort.sort(elements, comparator, threshold);
+        return toVector((E[]) elements);
+    }
+
+    private Vector<E> toVector(E[] elements) {
+        Builder<E, Vector<E>> builder = Vector.<E>factory().newBuilder();
+        for (E element : elements) {
+            builder.add(element);
+        }
+        return builder.build();
+    }
 }
@@ -23,8 +23,14 @@
 package com.github.andrewoma.dexx.collection.internal.base;
 
 import com.github.andrewoma.dexx.collection.Function;
+import com.github.andrewoma.dexx.collection.Predicate;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
 public abstract class AbstractIterable<E> extends AbstractTraversable<E> implements com.github.andrewoma.dexx.collection.Iterable<E> {
     @SuppressWarnings("NullableProblems")
     @Override
@@ -33,4 +39,49 @@ public abstract class AbstractIterable<E> extends AbstractTraversable<E> impleme
             f.invoke(next);
         }
     }
+
+    @Override
+    public boolean forEachWhile(@NotNull Predicate<? super E> f) {
+        for (E next : this) {
+            if (!f.invoke(next)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns an iterator based {@code Spliterator}, sized if {@link #knownSize()} is known. Subclasses should
+     * override this to split along their own structure.
+     */
+    @NotNull
+    @Override
+    public Spliterator<E> spliterator() {
+        int size = knownSize();
+        return size < 0 ? Spliterators.spliteratorUnknownSize(iterator(), spliteratorCharacteristics())
+                : Spliterators.spliterator(iterator(), size, spliteratorCharacteristics());
+    }
+
+    /**
+     * The characteristics reported by the default {@link #spliterator()}.
+     */
+    protected int spliteratorCharacteristics() {
+        return Spliterator.IMMUTABLE;
+    }
+
+    @NotNull
+    @Override
+    public Stream<E> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    @NotNull
+    @Override
+    public Stream<E> parallelStream() {
+        return StreamSupport.stream(spliterator(), true);
+    }
+
+    @NotNull
+    @Override
+    protected Spliterator<E> parallelSpliterator() {
+        return spliterator();
+    }
 }
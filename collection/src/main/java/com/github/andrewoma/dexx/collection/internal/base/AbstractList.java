@@ -28,9 +28,15 @@ import com.github.andrewoma.dexx.collection.internal.adapter.ListAdapater;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.Iterator;
+import java.util.Spliterator;
 
 public abstract class AbstractList<E> extends AbstractIterable<E> implements List<E> {
 
+    @Override
+    protected int spliteratorCharacteristics() {
+        return Spliterator.ORDERED | Spliterator.IMMUTABLE;
+    }
+
     @Override
     public int indexOf(E elem) {
         int index = 0;
@@ -66,6 +72,9 @@ public abstract class AbstractList<E> extends AbstractIterable<E> implements Lis
         if (!(other instanceof List))
             return false;
 
+        if (size() != ((List) other).size())
+            return false;
+
         Iterator<E> iterator = iterator();
         Iterator otherIterator = ((List) other).iterator();
 
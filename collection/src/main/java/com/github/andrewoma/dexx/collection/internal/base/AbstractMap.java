@@ -29,7 +29,14 @@ import com.github.andrewoma.dexx.collection.Pair;
 import com.github.andrewoma.dexx.collection.internal.adapter.MapAdapter;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Spliterator;
+
 public abstract class AbstractMap<K, V> extends AbstractIterable<Pair<K, V>> implements Map<K, V> {
+    @Override
+    protected int spliteratorCharacteristics() {
+        return Spliterator.DISTINCT | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+    }
+
     @NotNull
     @Override
     public com.github.andrewoma.dexx.collection.Iterable<K> keys() {
@@ -26,10 +26,17 @@ import com.github.andrewoma.dexx.collection.Set;
 import com.github.andrewoma.dexx.collection.internal.adapter.SetAdapater;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Spliterator;
+
 /**
  *
  */
 public abstract class AbstractSet<E> extends AbstractIterable<E> implements Set<E> {
+    @Override
+    protected int spliteratorCharacteristics() {
+        return Spliterator.DISTINCT | Spliterator.IMMUTABLE;
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public boolean equals(Object o) {
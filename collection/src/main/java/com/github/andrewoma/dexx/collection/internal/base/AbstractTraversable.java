@@ -23,31 +23,47 @@
 package com.github.andrewoma.dexx.collection.internal.base;
 
 import com.github.andrewoma.dexx.collection.Builder;
+import com.github.andrewoma.dexx.collection.DoubleFold;
+import com.github.andrewoma.dexx.collection.DoubleFunction;
+import com.github.andrewoma.dexx.collection.Fold;
 import com.github.andrewoma.dexx.collection.Function;
 import com.github.andrewoma.dexx.collection.HashSet;
 import com.github.andrewoma.dexx.collection.IndexedList;
+import com.github.andrewoma.dexx.collection.IndexedLists;
+import com.github.andrewoma.dexx.collection.IntFold;
+import com.github.andrewoma.dexx.collection.IntFunction;
+import com.github.andrewoma.dexx.collection.LongFold;
+import com.github.andrewoma.dexx.collection.LongFunction;
+import com.github.andrewoma.dexx.collection.Predicate;
 import com.github.andrewoma.dexx.collection.Set;
 import com.github.andrewoma.dexx.collection.SortedSet;
 import com.github.andrewoma.dexx.collection.Traversable;
 import com.github.andrewoma.dexx.collection.TreeSet;
-import com.github.andrewoma.dexx.collection.Vector;
+import com.github.andrewoma.dexx.collection.View;
+import com.github.andrewoma.dexx.collection.internal.parallel.ParallelFold;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
 
 public abstract class AbstractTraversable<E> implements Traversable<E> {
     @Override
     public int size() {
-        final int[] result = {0};
-        forEach(new Function<E, Object>() {
-            @Override
-            public Object invoke(E parameter) {
-                return result[0]++;
-            }
-        });
-        return result[0];
+        return foldInt(0, COUNT);
     }
 
+    private static final IntFold<Object> COUNT = new IntFold<Object>() {
+        @Override
+        public int invoke(int accumulator, Object element) {
+            return accumulator + 1;
+        }
+    };
+
     @NotNull
     public String makeString(@NotNull String separator) {
         return makeString(separator, "", "", -1, "");
@@ -58,25 +74,22 @@ public abstract class AbstractTraversable<E> implements Traversable<E> {
         final StringBuilder buffer = new StringBuilder(prefix);
         final int[] count = {0};
 
-        try {
-            forEach(new Function<E, Object>() {
-                @Override
-                public Object invoke(E element) {
-                    int current = count[0] + 1;
-                    count[0] = current;
-
-                    if (current > 1) buffer.append(separator);
+        forEachWhile(new Predicate<E>() {
+            @Override
+            public boolean invoke(E element) {
+                int current = count[0] + 1;
+                count[0] = current;
 
-                    if (limit < 0 || current <= limit) {
-                        buffer.append(element == null ? "null" : element.toString());
-                    } else throw Break.instance;
+                if (current > 1) buffer.append(separator);
 
-                    return null;
+                if (limit < 0 || current <= limit) {
+                    buffer.append(element == null ? "null" : element.toString());
+                    return true;
                 }
-            });
-        } catch (Break e) {
-            // Fall through
-        }
+
+                return false;
+            }
+        });
 
         if (limit >= 0 && count[0] > limit) buffer.append(truncated);
         buffer.append(postfix);
@@ -112,60 +125,370 @@ public abstract class AbstractTraversable<E> implements Traversable<E> {
     @NotNull
     @Override
     public IndexedList<E> toIndexedList() {
-        return to(Vector.<E>factory().newBuilder());
+        return to(IndexedLists.<E>builder());
     }
 
     @Override
     public boolean isEmpty() {
+        return forEachWhile(new Predicate<E>() {
+            @Override
+            public boolean invoke(E element) {
+                return false;
+            }
+        });
+    }
+
+    /**
+     * Implements {@code forEachWhile} in terms of {@code forEach}, breaking out with an exception.
+     * Implementations should override this with a native implementation where possible.
+     */
+    @Override
+    public boolean forEachWhile(@NotNull final Predicate<? super E> f) {
         try {
             forEach(new Function<E, Object>() {
                 @Override
-                public Object invoke(E parameter) {
-                    throw Break.instance;
+                public Object invoke(E element) {
+                    if (!f.invoke(element)) throw Break.instance;
+                    return null;
                 }
             });
+            return true;
         } catch (Break e) {
             return false;
         }
+    }
+
+    @Nullable
+    @Override
+    public E find(@NotNull final Predicate<? super E> predicate) {
+        final Object[] found = {null};
+        forEachWhile(new Predicate<E>() {
+            @Override
+            public boolean invoke(E element) {
+                if (predicate.invoke(element)) {
+                    found[0] = element;
+                    return false;
+                }
+                return true;
+            }
+        });
 
-        return true;
+        @SuppressWarnings("unchecked")
+        E result = (E) found[0];
+        return result;
     }
 
-    @NotNull
     @Override
-    public Object[] toArray() {
-        final Object[] result = new Object[size()];
-        final int[] count = new int[]{0};
-        forEach(new Function<E, Object>() {
+    public boolean exists(@NotNull final Predicate<? super E> predicate) {
+        return !forEachWhile(new Predicate<E>() {
             @Override
-            public Object invoke(E parameter) {
-                result[count[0]] = parameter;
-                count[0] = count[0] + 1;
-                return null;
+            public boolean invoke(E element) {
+                return !predicate.invoke(element);
             }
         });
+    }
 
+    @Override
+    public boolean forAll(@NotNull final Predicate<? super E> predicate) {
+        return forEachWhile(predicate);
+    }
+
+    @Override
+    public int knownSize() {
+        return -1;
+    }
+
+    @NotNull
+    @Override
+    public Object[] toArray() {
+        int size = knownSize();
+        if (size < 0) {
+            return collect();
+        }
+        Object[] result = new Object[size];
+        copyToArray(result);
         return result;
     }
 
     @NotNull
     @Override
+    @SuppressWarnings("unchecked")
     public E[] toArray(E[] array) {
-        // Estimate size of array; be prepared to see more or fewer elements
-        int size = size();
-        @SuppressWarnings("unchecked")
-        final E[] result = array.length >= size ? array : (E[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), size);
+        int size = knownSize();
+        if (size < 0) {
+            Object[] elements = collect();
+            E[] result = array.length >= elements.length ? array : (E[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), elements.length);
+            System.arraycopy(elements, 0, result, 0, elements.length);
+            return result;
+        }
+        E[] result = array.length >= size ? array : (E[]) java.lang.reflect.Array.newInstance(array.getClass().getComponentType(), size);
+        copyToArray(result);
+        return result;
+    }
+
+    /**
+     * Copies the elements into {@code array} starting from index 0. Only called when {@link #knownSize()} is
+     * non-negative and {@code array} has room for that many elements. Subclasses can override this to copy directly
+     * from their underlying structure.
+     */
+    protected void copyToArray(final Object[] array) {
+        forEachWhile(new Predicate<E>() {
+            private int index = 0;
 
-        final int[] count = new int[]{0};
-        forEach(new Function<E, Object>() {
             @Override
-            public Object invoke(E parameter) {
-                result[count[0]] = parameter;
-                count[0] = count[0] + 1;
-                return null;
+            public boolean invoke(E element) {
+                array[index++] = element;
+                return true;
             }
         });
+    }
 
-        return result;
+    // Collects the elements in a single pass when the size isn't known in advance
+    private Object[] collect() {
+        Collector<E> collector = new Collector<E>();
+        forEachWhile(collector);
+        return collector.size == collector.elements.length ? collector.elements : Arrays.copyOf(collector.elements, collector.size);
+    }
+
+    private static class Collector<E> implements Predicate<E> {
+        private Object[] elements = new Object[16];
+        private int size = 0;
+
+        @Override
+        public boolean invoke(E element) {
+            if (size == elements.length) {
+                elements = Arrays.copyOf(elements, size + (size >> 1));
+            }
+            elements[size++] = element;
+            return true;
+        }
+    }
+
+    /**
+     * Folds via {@code forEachWhile}, keeping the accumulator in a primitive field. Implementations with direct access
+     * to their elements should override this to loop over them without allocating.
+     */
+    @Override
+    public int foldInt(int initial, @NotNull IntFold<? super E> f) {
+        IntAccumulator<E> accumulator = new IntAccumulator<E>(initial, f);
+        forEachWhile(accumulator);
+        return accumulator.result;
+    }
+
+    /**
+     * Folds via {@code forEachWhile}, keeping the accumulator in a primitive field. Implementations with direct access
+     * to their elements should override this to loop over them without allocating.
+     */
+    @Override
+    public long foldLong(long initial, @NotNull LongFold<? super E> f) {
+        LongAccumulator<E> accumulator = new LongAccumulator<E>(initial, f);
+        forEachWhile(accumulator);
+        return accumulator.result;
+    }
+
+    /**
+     * Folds via {@code forEachWhile}, keeping the accumulator in a primitive field. Implementations with direct access
+     * to their elements should override this to loop over them without allocating.
+     */
+    @Override
+    public double foldDouble(double initial, @NotNull DoubleFold<? super E> f) {
+        DoubleAccumulator<E> accumulator = new DoubleAccumulator<E>(initial, f);
+        forEachWhile(accumulator);
+        return accumulator.result;
+    }
+
+    @Override
+    public int sumInt(@NotNull final IntFunction<? super E> f) {
+        return foldInt(0, new IntFold<E>() {
+            @Override
+            public int invoke(int accumulator, E element) {
+                return accumulator + f.invoke(element);
+            }
+        });
+    }
+
+    @Override
+    public long sumLong(@NotNull final LongFunction<? super E> f) {
+        return foldLong(0L, new LongFold<E>() {
+            @Override
+            public long invoke(long accumulator, E element) {
+                return accumulator + f.invoke(element);
+            }
+        });
+    }
+
+    @Override
+    public double sumDouble(@NotNull final DoubleFunction<? super E> f) {
+        return foldDouble(0.0, new DoubleFold<E>() {
+            @Override
+            public double invoke(double accumulator, E element) {
+                return accumulator + f.invoke(element);
+            }
+        });
+    }
+
+    @Override
+    public int maxInt(@NotNull final IntFunction<? super E> f) {
+        checkNotEmpty();
+        return foldInt(Integer.MIN_VALUE, new IntFold<E>() {
+            @Override
+            public int invoke(int accumulator, E element) {
+                return Math.max(accumulator, f.invoke(element));
+            }
+        });
+    }
+
+    @Override
+    public long maxLong(@NotNull final LongFunction<? super E> f) {
+        checkNotEmpty();
+        return foldLong(Long.MIN_VALUE, new LongFold<E>() {
+            @Override
+            public long invoke(long accumulator, E element) {
+                return Math.max(accumulator, f.invoke(element));
+            }
+        });
+    }
+
+    @Override
+    public double maxDouble(@NotNull final DoubleFunction<? super E> f) {
+        checkNotEmpty();
+        return foldDouble(Double.NEGATIVE_INFINITY, new DoubleFold<E>() {
+            @Override
+            public double invoke(double accumulator, E element) {
+                return Math.max(accumulator, f.invoke(element));
+            }
+        });
+    }
+
+    @Override
+    public int minInt(@NotNull final IntFunction<? super E> f) {
+        checkNotEmpty();
+        return foldInt(Integer.MAX_VALUE, new IntFold<E>() {
+            @Override
+            public int invoke(int accumulator, E element) {
+                return Math.min(accumulator, f.invoke(element));
+            }
+        });
+    }
+
+    @Override
+    public long minLong(@NotNull final LongFunction<? super E> f) {
+        checkNotEmpty();
+        return foldLong(Long.MAX_VALUE, new LongFold<E>() {
+            @Override
+            public long invoke(long accumulator, E element) {
+                return Math.min(accumulator, f.invoke(element));
+            }
+        });
+    }
+
+    @Override
+    public double minDouble(@NotNull final DoubleFunction<? super E> f) {
+        checkNotEmpty();
+        return foldDouble(Double.POSITIVE_INFINITY, new DoubleFold<E>() {
+            @Override
+            public double invoke(double accumulator, E element) {
+                return Math.min(accumulator, f.invoke(element));
+            }
+        });
+    }
+
+    private void checkNotEmpty() {
+        if (isEmpty()) throw new NoSuchElementException("Empty " + getClass().getSimpleName());
+    }
+
+    private static class IntAccumulator<E> implements Predicate<E> {
+        private final IntFold<? super E> f;
+        private int result;
+
+        IntAccumulator(int initial, IntFold<? super E> f) {
+            this.result = initial;
+            this.f = f;
+        }
+
+        @Override
+        public boolean invoke(E element) {
+            result = f.invoke(result, element);
+            return true;
+        }
+    }
+
+    private static class LongAccumulator<E> implements Predicate<E> {
+        private final LongFold<? super E> f;
+        private long result;
+
+        LongAccumulator(long initial, LongFold<? super E> f) {
+            this.result = initial;
+            this.f = f;
+        }
+
+        @Override
+        public boolean invoke(E element) {
+            result = f.invoke(result, element);
+            return true;
+        }
+    }
+
+    private static class DoubleAccumulator<E> implements Predicate<E> {
+        private final DoubleFold<? super E> f;
+        private double result;
+
+        DoubleAccumulator(double initial, DoubleFold<? super E> f) {
+            this.result = initial;
+            this.f = f;
+        }
+
+        @Override
+        public boolean invoke(E element) {
+            result = f.invoke(result, element);
+            return true;
+        }
+    }
+
+    @Override
+    public <A> A parallelFold(A identity, @NotNull Fold<A, ? super E> accumulator, @NotNull Fold<A, A> combiner) {
+        return parallelFold(identity, accumulator, combiner, ForkJoinPool.commonPool(), ParallelFold.DEFAULT_THRESHOLD);
+    }
+
+    @Override
+    public <A> A parallelFold(A identity, @NotNull Fold<A, ? super E> accumulator, @NotNull Fold<A, A> combiner,
+                              @NotNull ForkJoinPool pool, int threshold) {
+        return ParallelFold.fold(parallelSpliterator(), identity, accumulator, combiner, pool, threshold);
+    }
+
+    @Override
+    public <U> void parallelForEach(@NotNull Function<E, U> f) {
+        parallelForEach(f, ForkJoinPool.commonPool(), ParallelFold.DEFAULT_THRESHOLD);
+    }
+
+    @Override
+    public <U> void parallelForEach(@NotNull final Function<E, U> f, @NotNull ForkJoinPool pool, int threshold) {
+        parallelFold(null, new Fold<Object, E>() {
+            @Override
+            public Object invoke(Object accumulator, E element) {
+                f.invoke(element);
+                return null;
+            }
+        }, new Fold<Object, Object>() {
+            @Override
+            public Object invoke(Object left, Object right) {
+                return null;
+            }
+        }, pool, threshold);
+    }
+
+    /**
+     * Returns the {@code Spliterator} used to divide the collection for parallel operations. By default the
+     * elements are copied into an array. Subclasses should override this to split along their own structure.
+     */
+    @NotNull
+    protected Spliterator<E> parallelSpliterator() {
+        return Spliterators.spliterator(toArray(), Spliterator.ORDERED | Spliterator.IMMUTABLE);
+    }
+
+    @NotNull
+    @Override
+    public View<E> view() {
+        return View.of(this);
     }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.internal.builder;
+
+import com.github.andrewoma.dexx.collection.Traversable;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * A builder that buffers elements in an array and adds them to the result in bulk. This suits collections that can
+ * be built in bulk more cheaply than by adding elements one at a time.
+ * <p/>
+ * <p>The buffer is flushed into the result once it holds as many elements as the result, so the builder holds memory
+ * in proportion to the number of distinct elements rather than the number added, while each element is still
+ * flushed a constant number of times on average.
+ */
+public abstract class AbstractArrayBuilder<E, R extends Traversable<?>> extends AbstractBuilder<E, R> {
+    private static final int MIN_FLUSH_SIZE = 1024;
+
+    private R result;
+    private Object[] elements = new Object[16];
+    private int size = 0;
+    private int flushSize = MIN_FLUSH_SIZE;
+
+    protected AbstractArrayBuilder(R empty) {
+        this.result = empty;
+    }
+
+    @NotNull
+    @Override
+    public AbstractArrayBuilder<E, R> add(E element) {
+        if (size == flushSize) flush();
+        ensureCapacity(size + 1);
+        elements[size++] = element;
+        return this;
+    }
+
+    @NotNull
+    @Override
+    public AbstractArrayBuilder<E, R> addAll(@NotNull Iterable<E> elements) {
+        if (elements instanceof Collection) {
+            // The collection already holds its elements, so buffering them all at once does not add to the bound
+            Object[] array = ((Collection<?>) elements).toArray();
+            if (size == 0 && array.getClass() == Object[].class) {
+                this.elements = array;
+                size = array.length;
+            } else {
+                ensureCapacity(size + array.length);
+                System.arraycopy(array, 0, this.elements, size, array.length);
+                size += array.length;
+            }
+            if (size >= flushSize) flush();
+        } else {
+            super.addAll(elements);
+        }
+        return this;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(capacity, Math.max(16, elements.length * 2)));
+        }
+    }
+
+    private void flush() {
+        result = doBuild(result, elements, size);
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        flushSize = Math.max(MIN_FLUSH_SIZE, result.size());
+    }
+
+    @NotNull
+    @Override
+    public R doBuild() {
+        R built = size == 0 ? result : doBuild(result, elements, size);
+        result = null;
+        elements = null;
+        return built;
+    }
+
+    /**
+     * Returns {@code result} with {@code elements[0, size)} added, later elements replacing earlier equal ones.
+     * The array belongs to the builder and may be modified.
+     */
+    @NotNull
+    protected abstract R doBuild(R result, Object[] elements, int size);
+}
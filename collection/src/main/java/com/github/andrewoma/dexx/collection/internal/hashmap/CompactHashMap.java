@@ -30,14 +30,18 @@
 
 package com.github.andrewoma.dexx.collection.internal.hashmap;
 
+import com.github.andrewoma.dexx.collection.Fold;
 import com.github.andrewoma.dexx.collection.Function;
 import com.github.andrewoma.dexx.collection.KeyFunction;
 import com.github.andrewoma.dexx.collection.Pair;
+import com.github.andrewoma.dexx.collection.Predicate;
 
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 import java.util.Stack;
+import java.util.function.Consumer;
 
 /**
  *
@@ -61,6 +65,31 @@ public class CompactHashMap<K, V> {
     public <U> void forEach(Function<Pair<K, V>, U> f, KeyFunction<K, V> keyFunction) {
     }
 
+    public boolean forEachWhile(Predicate<? super Pair<K, V>> f, KeyFunction<K, V> keyFunction) {
+        return true;
+    }
+
+    /**
+     * Returns a {@code Spliterator} over the values that splits by trie node.
+     */
+    public Spliterator<V> valuesSpliterator() {
+        return new CompactHashMapSpliterator<K, V, V>(null, new Object[]{this}, 0, 1, size());
+    }
+
+    /**
+     * Returns a {@code Spliterator} over the key/value pairs that splits by trie node.
+     */
+    public Spliterator<Pair<K, V>> spliterator(KeyFunction<K, V> keyFunction) {
+        return new CompactHashMapSpliterator<K, V, Pair<K, V>>(keyFunction, new Object[]{this}, 0, 1, size());
+    }
+
+    /**
+     * Copies the values into {@code dest} starting at {@code pos}, returning the position after the last value copied.
+     */
+    public int copyValuesTo(Object[] dest, int pos) {
+        return pos;
+    }
+
     public V get(K key, KeyFunction<K, V> keyFunction) {
         return get0(key, computeHash(key), 0, keyFunction);
     }
@@ -74,11 +103,57 @@ public class CompactHashMap<K, V> {
         return removed0(key, computeHash(key), 0, keyFunction);
     }
 
+    /**
+     * Builds a map from {@code values[0, length)} by partitioning on each 5 bit slice of the hash in turn, rather
+     * than inserting the values one at a time. Later values replace earlier values with equal keys.
+     * {@code values} is reordered in place.
+     */
+    @SuppressWarnings("unchecked")
+    public static <K, V> CompactHashMap<K, V> fromValues(Object[] values, int length, KeyFunction<K, V> keyFunction) {
+        if (length == 0) return empty();
+        int[] hashes = new int[length];
+        for (int i = 0; i < length; i++) {
+            hashes[i] = improve(keyFunction.key((V) values[i]).hashCode());
+        }
+        return new CompactHashMapBuilder<K, V>(values, hashes, length, keyFunction).build(0, length, 0);
+    }
+
+    /**
+     * Returns the union of this map and {@code that}. Trie nodes present on only one side are shared rather
+     * than re-inserted. Values of keys present in both are resolved with {@code merger.invoke(thisValue, thatValue)},
+     * or taken from {@code that} if {@code merger} is null.
+     */
+    public CompactHashMap<K, V> merge(CompactHashMap<K, V> that, Fold<V, V> merger, KeyFunction<K, V> keyFunction) {
+        return merged0(that, 0, merger, keyFunction);
+    }
+
+    protected CompactHashMap<K, V> merged0(CompactHashMap<K, V> that, int level, Fold<V, V> merger, KeyFunction<K, V> keyFunction) {
+        return that;
+    }
+
+    // Inserts the entries of this leaf into target, resolving conflicts with this on the left if thisIsLeft
+    protected CompactHashMap<K, V> insertedInto(CompactHashMap<K, V> target, int level, boolean thisIsLeft, Fold<V, V> merger, KeyFunction<K, V> keyFunction) {
+        return target;
+    }
+
+    protected static <K, V> CompactHashMap<K, V> inserted(CompactHashMap<K, V> target, K key, int hash, V value, int level, boolean valueIsLeft, Fold<V, V> merger, KeyFunction<K, V> keyFunction) {
+        V existing = target.get0(key, hash, level, keyFunction);
+        if (existing != null) {
+            if (merger == null) {
+                value = valueIsLeft ? existing : value;
+            } else {
+                value = valueIsLeft ? merger.invoke(value, existing) : merger.invoke(existing, value);
+            }
+            if (value == existing) return target;
+        }
+        return target.updated0(key, hash, level, value, null, keyFunction);
+    }
+
     protected int elemHashCode(K key) {
         return key.hashCode();
     }
 
-    protected final int improve(int hashCode) {
+    protected static int improve(int hashCode) {
         int h = hashCode + ~(hashCode << 9);
         h = h ^ (h >>> 14);
         h = h + (h << 4);
@@ -145,6 +220,182 @@ public class CompactHashMap<K, V> {
             return new HashMap1<K, V>(key, computeHash(key), value, null);
         }
     }
+
+    /**
+     * Exposes the nodes of a {@code CompactHashMap} so that a trie can be written out and rebuilt node by node,
+     * keeping nodes shared between versions shared. A node is either a trie node, a collision node or a leaf. Leaves
+     * within a trie are stored as the values themselves.
+     */
+    public static final class TrieNodes {
+        public static final int LEAF = 0;
+        public static final int TRIE = 1;
+        public static final int COLLISION = 2;
+
+        private TrieNodes() {
+        }
+
+        /**
+         * Returns the root node of the map, or null if the map is empty.
+         */
+        public static Object root(CompactHashMap<?, ?> map) {
+            if (map.size() == 0) return null;
+            return CompactHashMap.unwrap(map);
+        }
+
+        public static int kind(Object node) {
+            if (node instanceof HashTrieMap) return TRIE;
+            if (node instanceof HashMapCollision1) return COLLISION;
+            return LEAF;
+        }
+
+        public static int bitmap(Object trie) {
+            return ((HashTrieMap<?, ?>) trie).getBitmap();
+        }
+
+        public static int size(Object trie) {
+            return ((HashTrieMap<?, ?>) trie).size();
+        }
+
+        public static Object[] children(Object trie) {
+            return ((HashTrieMap<?, ?>) trie).getElems();
+        }
+
+        public static int hash(Object collision) {
+            return ((HashMapCollision1<?, ?>) collision).hash;
+        }
+
+        public static Object[] values(Object collision) {
+            ListMap<?, ?> kvs = ((HashMapCollision1<?, ?>) collision).kvs;
+            Object[] values = new Object[kvs.size()];
+            int i = 0;
+            for (Pair<?, ?> kv : kvs) {
+                values[i++] = kv.component2();
+            }
+            return values;
+        }
+
+        /**
+         * Creates a trie node from children previously returned by {@link #children(Object)}, rebuilt with this class.
+         */
+        public static Object trie(int bitmap, Object[] children, int size) {
+            return new HashTrieMap<Object, Object>(bitmap, children, size);
+        }
+
+        public static <K, V> Object collision(int hash, Object[] values, KeyFunction<K, V> keyFunction) {
+            ListMap<K, V> kvs = ListMap.empty();
+            for (Object value : values) {
+                @SuppressWarnings("unchecked")
+                V v = (V) value;
+                kvs = kvs.put(keyFunction.key(v), v);
+            }
+            return new HashMapCollision1<K, V>(hash, kvs);
+        }
+
+        /**
+         * Returns the map with the given root node, where a null root is the empty map.
+         */
+        @SuppressWarnings("unchecked")
+        public static <K, V> CompactHashMap<K, V> fromRoot(Object root, KeyFunction<K, V> keyFunction) {
+            if (root == null) return CompactHashMap.empty();
+            if (root instanceof CompactHashMap) return (CompactHashMap<K, V>) root;
+            V value = (V) root;
+            K key = keyFunction.key(value);
+            return new HashMap1<K, V>(key, CompactHashMap.improve(key.hashCode()), value, null);
+        }
+    }
+}
+
+/**
+ * Builds a trie bottom up from an array of values. Each node radix sorts its slice of the array into the 32 child
+ * slots using the next 5 bits of the hash, so the whole build is linear in the number of values for each level.
+ */
+class CompactHashMapBuilder<K, V> {
+    private final Object[] values;
+    private final int[] hashes;
+    private final Object[] valuesScratch;
+    private final int[] hashesScratch;
+    private final KeyFunction<K, V> keyFunction;
+
+    CompactHashMapBuilder(Object[] values, int[] hashes, int length, KeyFunction<K, V> keyFunction) {
+        this.values = values;
+        this.hashes = hashes;
+        this.valuesScratch = new Object[length];
+        this.hashesScratch = new int[length];
+        this.keyFunction = keyFunction;
+    }
+
+    @SuppressWarnings("unchecked")
+    CompactHashMap<K, V> build(int from, int to, int level) {
+        if (to - from == 1) {
+            V value = (V) values[from];
+            return new HashMap1<K, V>(keyFunction.key(value), hashes[from], value, null);
+        }
+
+        if (isSingleHash(from, to)) {
+            return collision(from, to);
+        }
+
+        // Counting sort the slice by the 5 bits of the hash for this level
+        int[] ends = new int[32];
+        for (int i = from; i < to; i++) {
+            ends[(hashes[i] >>> level) & 0x1f]++;
+        }
+        int bitmap = 0;
+        int width = 0;
+        int end = from;
+        for (int i = 0; i < 32; i++) {
+            if (ends[i] != 0) {
+                bitmap |= 1 << i;
+                width++;
+            }
+            end += ends[i];
+            ends[i] = end;
+        }
+        for (int i = to - 1; i >= from; i--) {
+            int pos = --ends[(hashes[i] >>> level) & 0x1f];
+            valuesScratch[pos] = values[i];
+            hashesScratch[pos] = hashes[i];
+        }
+        System.arraycopy(valuesScratch, from, values, from, to - from);
+        System.arraycopy(hashesScratch, from, hashes, from, to - from);
+
+        // ends[i] is now the start of slot i
+        Object[] elems = new Object[width];
+        int size = 0;
+        int j = 0;
+        for (int i = 0; i < 32; i++) {
+            if ((bitmap & (1 << i)) != 0) {
+                int start = ends[i];
+                int stop = i == 31 ? to : ends[i + 1];
+                CompactHashMap<K, V> elem = build(start, stop, level + 5);
+                elems[j++] = CompactHashMap.unwrap(elem);
+                size += elem.size();
+            }
+        }
+        return new HashTrieMap<K, V>(bitmap, elems, size);
+    }
+
+    private boolean isSingleHash(int from, int to) {
+        int hash = hashes[from];
+        for (int i = from + 1; i < to; i++) {
+            if (hashes[i] != hash) return false;
+        }
+        return true;
+    }
+
+    @SuppressWarnings("unchecked")
+    private CompactHashMap<K, V> collision(int from, int to) {
+        ListMap<K, V> kvs = ListMap.empty();
+        for (int i = from; i < to; i++) {
+            V value = (V) values[i];
+            kvs = kvs.put(keyFunction.key(value), value);
+        }
+        if (kvs.size() == 1) {
+            Pair<K, V> kv = kvs.iterator().next();
+            return new HashMap1<K, V>(kv.component1(), hashes[from], kv.component2(), null);
+        }
+        return new HashMapCollision1<K, V>(hashes[from], kvs);
+    }
 }
 
 class HashMap1<K, V> extends CompactHashMap<K, V> {
@@ -191,11 +442,32 @@ class HashMap1<K, V> extends CompactHashMap<K, V> {
         return hash == this.hash && key.equals(this.key) ? CompactHashMap.<K, V>empty() : this;
     }
 
+    @Override
+    protected CompactHashMap<K, V> merged0(CompactHashMap<K, V> that, int level, Fold<V, V> merger, KeyFunction<K, V> keyFunction) {
+        return that.size() == 0 ? this : insertedInto(that, level, true, merger, keyFunction);
+    }
+
+    @Override
+    protected CompactHashMap<K, V> insertedInto(CompactHashMap<K, V> target, int level, boolean thisIsLeft, Fold<V, V> merger, KeyFunction<K, V> keyFunction) {
+        return inserted(target, key, hash, value, level, thisIsLeft, merger, keyFunction);
+    }
+
     @Override
     public <U> void forEach(Function<Pair<K, V>, U> f, KeyFunction<K, V> keyFunction) {
         f.invoke(new Pair<K, V>(key, value));
     }
 
+    @Override
+    public boolean forEachWhile(Predicate<? super Pair<K, V>> f, KeyFunction<K, V> keyFunction) {
+        return f.invoke(new Pair<K, V>(key, value));
+    }
+
+    @Override
+    public int copyValuesTo(Object[] dest, int pos) {
+        dest[pos] = value;
+        return pos + 1;
+    }
+
     private Pair<K, V> ensureKv() {
         if (kv == null) {
             kv = new Pair<K, V>(key, value);
@@ -210,8 +482,8 @@ class HashMap1<K, V> extends CompactHashMap<K, V> {
 }
 
 class HashMapCollision1<K, V> extends CompactHashMap<K, V> {
-    private final int hash;
-    private final ListMap<K, V> kvs;
+    final int hash;
+    final ListMap<K, V> kvs;
 
     HashMapCollision1(int hash, ListMap<K, V> kvs) {
         this.hash = hash;
@@ -254,6 +526,19 @@ class HashMapCollision1<K, V> extends CompactHashMap<K, V> {
         }
     }
 
+    @Override
+    protected CompactHashMap<K, V> merged0(CompactHashMap<K, V> that, int level, Fold<V, V> merger, KeyFunction<K, V> keyFunction) {
+        return that.size() == 0 ? this : insertedInto(that, level, true, merger, keyFunction);
+    }
+
+    @Override
+    protected CompactHashMap<K, V> insertedInto(CompactHashMap<K, V> target, int level, boolean thisIsLeft, Fold<V, V> merger, KeyFunction<K, V> keyFunction) {
+        for (Pair<K, V> kv : kvs) {
+            target = inserted(target, kv.component1(), hash, kv.component2(), level, thisIsLeft, merger, keyFunction);
+        }
+        return target;
+    }
+
     @Override
     public <U> void forEach(Function<Pair<K, V>, U> f, KeyFunction<K, V> keyFunction) {
         for (Pair<K, V> kv : kvs) {
@@ -261,6 +546,22 @@ class HashMapCollision1<K, V> extends CompactHashMap<K, V> {
         }
     }
 
+    @Override
+    public boolean forEachWhile(Predicate<? super Pair<K, V>> f, KeyFunction<K, V> keyFunction) {
+        for (Pair<K, V> kv : kvs) {
+            if (!f.invoke(kv)) return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int copyValuesTo(Object[] dest, int pos) {
+        for (Pair<K, V> kv : kvs) {
+            dest[pos++] = kv.component2();
+        }
+        return pos;
+    }
+
     @Override
     public Iterator<Pair<K, V>> iterator(KeyFunction<K, V> kf) {
         return kvs.iterator();
@@ -269,7 +570,7 @@ class HashMapCollision1<K, V> extends CompactHashMap<K, V> {
 
 class HashTrieMap<K, V> extends CompactHashMap<K, V> {
     private final int bitmap;
-    private final Object[] elems;
+    final Object[] elems;
     private final int size;
 
     HashTrieMap(int bitmap, Object[] elems, int size) {
@@ -287,6 +588,10 @@ class HashTrieMap<K, V> extends CompactHashMap<K, V> {
         return elems;
     }
 
+    int getBitmap() {
+        return bitmap;
+    }
+
     CompactHashMap<K, V> getElem(int index, KeyFunction<K, V> keyFunction) {
         return wrap(elems[index], keyFunction);
     }
@@ -332,6 +637,38 @@ class HashTrieMap<K, V> extends CompactHashMap<K, V> {
         }
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    protected CompactHashMap<K, V> merged0(CompactHashMap<K, V> that, int level, Fold<V, V> merger, KeyFunction<K, V> keyFunction) {
+        if (!(that instanceof HashTrieMap)) {
+            return that.insertedInto(this, level, false, merger, keyFunction);
+        }
+
+        HashTrieMap<K, V> other = (HashTrieMap<K, V>) that;
+        int bitmapNew = bitmap | other.bitmap;
+        Object[] elemsNew = new Object[Integer.bitCount(bitmapNew)];
+        int sizeNew = 0;
+        int i = 0;
+        int j = 0;
+        for (int k = 0; k < elemsNew.length; k++) {
+            int mask = Integer.lowestOneBit(bitmapNew);
+            bitmapNew ^= mask;
+            Object elem;
+            if ((bitmap & mask) != 0 && (other.bitmap & mask) != 0) {
+                CompactHashMap<K, V> sub = getElem(i++, keyFunction).merged0(other.getElem(j++, keyFunction), level + 5, merger, keyFunction);
+                elem = unwrap(sub);
+            } else if ((bitmap & mask) != 0) {
+                elem = elems[i++]; // Shared as is
+            } else {
+                elem = other.elems[j++];
+            }
+            elemsNew[k] = elem;
+            sizeNew += elem instanceof CompactHashMap ? ((CompactHashMap<K, V>) elem).size() : 1;
+        }
+
+        return new HashTrieMap<K, V>(bitmap | other.bitmap, elemsNew, sizeNew);
+    }
+
     @Override
     protected CompactHashMap<K, V> removed0(K key, int hash, int level, KeyFunction<K, V> keyFunction) {
         int index = (hash >>> level) & 0x1f;
@@ -387,6 +724,33 @@ class HashTrieMap<K, V> extends CompactHashMap<K, V> {
         }
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean forEachWhile(Predicate<? super Pair<K, V>> f, KeyFunction<K, V> keyFunction) {
+        for (Object elem : elems) {
+            if (elem instanceof CompactHashMap) {
+                if (!((CompactHashMap<K, V>) elem).forEachWhile(f, keyFunction)) return false;
+            } else {
+                V value = (V) elem;
+                if (!f.invoke(new Pair<K, V>(keyFunction.key(value), value))) return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int copyValuesTo(Object[] dest, int pos) {
+        for (Object elem : elems) {
+            if (elem instanceof CompactHashMap) {
+                pos = ((CompactHashMap<K, V>) elem).copyValuesTo(dest, pos);
+            } else {
+                dest[pos++] = elem;
+            }
+        }
+        return pos;
+    }
+
     @Override
     public Iterator<Pair<K, V>> iterator(KeyFunction<K, V> kf) {
         return new CompactHashMapIterator<K, V>(elems, kf);
@@ -476,3 +840,125 @@ class CompactHashMapIterator<K, V> implements Iterator<Pair<K, V>> {
     }
 }
 
+/**
+ * Splits a range of the elements of a trie node in half, descending into the child when only one is left.
+ * Elements are either nested maps or the values of unwrapped {@code HashMap1}s. If a key function is supplied,
+ * key/value pairs are returned rather than values.
+ */
+class CompactHashMapSpliterator<K, V, R> implements Spliterator<R> {
+    private final KeyFunction<K, V> kf;
+    private Object[] elems;
+    private int index;
+    private int fence;
+    private long size;
+    private Spliterator<R> current;
+
+    CompactHashMapSpliterator(KeyFunction<K, V> kf, Object[] elems, int index, int fence, long size) {
+        this.kf = kf;
+        this.elems = elems;
+        this.index = index;
+        this.fence = fence;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private R result(Object value) {
+        return kf == null ? (R) value : (R) new Pair<K, V>(kf.key((V) value), (V) value);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public boolean tryAdvance(Consumer<? super R> action) {
+        while (true) {
+            if (current != null) {
+                if (current.tryAdvance(action)) {
+                    size--;
+                    return true;
+                }
+                current = null;
+            }
+            if (index >= fence) return false;
+
+            Object elem = elems[index++];
+            if (elem instanceof HashTrieMap) {
+                HashTrieMap<K, V> node = (HashTrieMap<K, V>) elem;
+                current = new CompactHashMapSpliterator<K, V, R>(kf, node.elems, 0, node.elems.length, node.size());
+            } else if (elem instanceof CompactHashMap) {
+                Object[] values = values((CompactHashMap<K, V>) elem);
+                current = new CompactHashMapSpliterator<K, V, R>(kf, values, 0, values.length, values.length);
+            } else {
+                size--;
+                action.accept(result(elem));
+                return true;
+            }
+        }
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super R> action) {
+        if (current != null) {
+            current.forEachRemaining(action);
+            current = null;
+        }
+        for (; index < fence; index++) {
+            forEach(elems[index], action);
+        }
+        size = 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void forEach(Object elem, Consumer<? super R> action) {
+        if (elem instanceof HashTrieMap) {
+            for (Object child : ((HashTrieMap<K, V>) elem).elems) {
+                forEach(child, action);
+            }
+        } else if (elem instanceof HashMapCollision1) {
+            for (Pair<K, V> kv : ((HashMapCollision1<K, V>) elem).kvs) {
+                action.accept(result(kv.component2()));
+            }
+        } else if (elem instanceof HashMap1) {
+            action.accept(result(((HashMap1<K, V>) elem).value));
+        } else if (!(elem instanceof CompactHashMap)) {
+            action.accept(result(elem));
+        }
+    }
+
+    private static <K, V> Object[] values(CompactHashMap<K, V> map) {
+        Object[] values = new Object[map.size()];
+        map.copyValuesTo(values, 0);
+        return values;
+    }
+
+    @Override
+    public Spliterator<R> trySplit() {
+        if (current != null) return null;
+
+        if (fence - index == 1 && elems[index] instanceof HashTrieMap) {
+            elems = ((HashTrieMap<?, ?>) elems[index]).elems;
+            index = 0;
+            fence = elems.length;
+        }
+        if (fence - index < 2) return null;
+
+        int mid = (index + fence) >>> 1;
+        long prefixSize = 0;
+        for (int i = index; i < mid; i++) {
+            Object elem = elems[i];
+            prefixSize += elem instanceof CompactHashMap ? ((CompactHashMap<?, ?>) elem).size() : 1;
+        }
+        CompactHashMapSpliterator<K, V, R> prefix = new CompactHashMapSpliterator<K, V, R>(kf, elems, index, mid, prefixSize);
+        index = mid;
+        size -= prefixSize;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.DISTINCT | Spliterator.IMMUTABLE | Spliterator.NONNULL;
+    }
+}
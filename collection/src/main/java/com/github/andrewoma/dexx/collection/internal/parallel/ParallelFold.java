@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.internal.parallel;
+
+import com.github.andrewoma.dexx.collection.Fold;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+/**
+ * A fork/join fold over a {@code Spliterator}.
+ * <p/>
+ * <p>The spliterator is split while its estimated size exceeds the threshold, so the work is divided along
+ * whatever boundaries the spliterator uses (trie nodes, subtrees, leaf blocks etc.). Each piece is folded
+ * sequentially from the identity and the results are combined in encounter order.
+ * <p/>
+ * <p>Requires JDK 1.8 or later at runtime.
+ */
+public class ParallelFold {
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private ParallelFold() {
+    }
+
+    /**
+     * Folds the elements of {@code spliterator} in {@code pool}.
+     *
+     * @param identity    the initial value for each piece. It must be an identity for {@code combiner}.
+     * @param accumulator adds an element to a piece's result
+     * @param combiner    combines the results of two adjacent pieces
+     * @param threshold   the estimated size at or below which a piece is folded sequentially
+     */
+    public static <E, A> A fold(@NotNull Spliterator<E> spliterator, A identity, @NotNull Fold<A, ? super E> accumulator,
+                                @NotNull Fold<A, A> combiner, @NotNull ForkJoinPool pool, int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        return pool.invoke(new FoldTask<E, A>(spliterator, identity, accumulator, combiner, threshold));
+    }
+
+    private static class FoldTask<E, A> extends RecursiveTask<A> {
+        private static final long serialVersionUID = 1L;
+
+        private final Spliterator<E> spliterator;
+        private final A identity;
+        private final Fold<A, ? super E> accumulator;
+        private final Fold<A, A> combiner;
+        private final int threshold;
+
+        FoldTask(Spliterator<E> spliterator, A identity, Fold<A, ? super E> accumulator, Fold<A, A> combiner, int threshold) {
+            this.spliterator = spliterator;
+            this.identity = identity;
+            this.accumulator = accumulator;
+            this.combiner = combiner;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected A compute() {
+            Spliterator<E> prefix;
+            if (spliterator.estimateSize() <= threshold || (prefix = spliterator.trySplit()) == null) {
+                return sequential();
+            }
+
+            FoldTask<E, A> left = new FoldTask<E, A>(prefix, identity, accumulator, combiner, threshold);
+            left.fork();
+            A right = compute();
+            return combiner.invoke(left.join(), right);
+        }
+
+        private A sequential() {
+            Accumulator<E, A> result = new Accumulator<E, A>(identity, accumulator);
+            spliterator.forEachRemaining(result);
+            return result.value;
+        }
+    }
+
+    private static class Accumulator<E, A> implements Consumer<E> {
+        private final Fold<A, ? super E> accumulator;
+        private A value;
+
+        Accumulator(A identity, Fold<A, ? super E> accumulator) {
+            this.value = identity;
+            this.accumulator = accumulator;
+        }
+
+        @Override
+        public void accept(E element) {
+            value = accumulator.invoke(value, element);
+        }
+    }
+}
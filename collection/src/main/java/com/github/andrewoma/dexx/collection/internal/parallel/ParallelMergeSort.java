@@ -0,0 +1,213 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.internal.parallel;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A stable fork/join merge sort for object arrays.
+ * <p/>
+ * <p>Ranges at or below the threshold are sorted sequentially with {@link Arrays#sort(Object[], int, int, Comparator)}.
+ * Larger ranges are split in half, both halves sorted in parallel and then merged, splitting large merges
+ * by binary search so that the final passes are parallel too.
+ * <p/>
+ * <p>Requires JDK 1.8 or later at runtime.
+ */
+public class ParallelMergeSort {
+    public static final int DEFAULT_THRESHOLD = 8192;
+
+    @SuppressWarnings("unchecked")
+    private static final Comparator<Object> NATURAL_ORDER = new Comparator<Object>() {
+        @Override
+        public int compare(Object o1, Object o2) {
+            return ((Comparable<Object>) o1).compareTo(o2);
+        }
+    };
+
+    private ParallelMergeSort() {
+    }
+
+    /**
+     * Sorts {@code elements} in place using the common fork/join pool.
+     *
+     * @param comparator the ordering, or {@code null} for the natural ordering of the elements
+     * @param threshold  the range size at or below which sorting and merging are sequential
+     */
+    @SuppressWarnings("unchecked")
+    public static void sort(@NotNull Object[] elements, @Nullable Comparator<?> comparator, int threshold) {
+        if (threshold < 1) throw new IllegalArgumentException("threshold must be positive: " + threshold);
+
+        Comparator<Object> ordering = comparator == null ? NATURAL_ORDER : (Comparator<Object>) comparator;
+        if (elements.length <= threshold) {
+            Arrays.sort(elements, ordering);
+            return;
+        }
+
+        Object[] buffer = new Object[elements.length];
+        ForkJoinPool.commonPool().invoke(new Sorter(elements, buffer, 0, elements.length, ordering, threshold));
+    }
+
+    /**
+     * Sorts {@code elements[from, to)}, leaving the result in {@code elements}. {@code buffer} is scratch space
+     * for the same range.
+     */
+    private static class Sorter extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] elements;
+        private final Object[] buffer;
+        private final int from;
+        private final int to;
+        private final Comparator<Object> ordering;
+        private final int threshold;
+
+        Sorter(Object[] elements, Object[] buffer, int from, int to, Comparator<Object> ordering, int threshold) {
+            this.elements = elements;
+            this.buffer = buffer;
+            this.from = from;
+            this.to = to;
+            this.ordering = ordering;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= threshold) {
+                Arrays.sort(elements, from, to, ordering);
+                return;
+            }
+
+            int mid = (from + to) >>> 1;
+            invokeAll(new Sorter(elements, buffer, from, mid, ordering, threshold),
+                    new Sorter(elements, buffer, mid, to, ordering, threshold));
+
+            if (ordering.compare(elements[mid - 1], elements[mid]) <= 0) return; // Already in order
+
+            System.arraycopy(elements, from, buffer, from, to - from);
+            new Merger(buffer, from, mid, mid, to, elements, from, ordering, threshold).compute();
+        }
+    }
+
+    /**
+     * Merges the sorted runs {@code source[leftFrom, leftTo)} and {@code source[rightFrom, rightTo)} into
+     * {@code dest} starting at {@code destFrom}. Equal elements from the left run are placed first.
+     */
+    private static class Merger extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Object[] source;
+        private final int leftFrom;
+        private final int leftTo;
+        private final int rightFrom;
+        private final int rightTo;
+        private final Object[] dest;
+        private final int destFrom;
+        private final Comparator<Object> ordering;
+        private final int threshold;
+
+        Merger(Object[] source, int leftFrom, int leftTo, int rightFrom, int rightTo, Object[] dest, int destFrom,
+               Comparator<Object> ordering, int threshold) {
+            this.source = source;
+            this.leftFrom = leftFrom;
+            this.leftTo = leftTo;
+            this.rightFrom = rightFrom;
+            this.rightTo = rightTo;
+            this.dest = dest;
+            this.destFrom = destFrom;
+            this.ordering = ordering;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            int leftSize = leftTo - leftFrom;
+            int rightSize = rightTo - rightFrom;
+
+            if (leftSize + rightSize <= threshold || leftSize == 0 || rightSize == 0) {
+                merge();
+                return;
+            }
+
+            // Split the larger run at its midpoint and find the matching split in the other run
+            int leftSplit, rightSplit;
+            if (leftSize >= rightSize) {
+                leftSplit = (leftFrom + leftTo) >>> 1;
+                rightSplit = lowerBound(source[leftSplit], rightFrom, rightTo);
+            } else {
+                rightSplit = (rightFrom + rightTo) >>> 1;
+                leftSplit = upperBound(source[rightSplit], leftFrom, leftTo);
+            }
+
+            int destSplit = destFrom + (leftSplit - leftFrom) + (rightSplit - rightFrom);
+            invokeAll(new Merger(source, leftFrom, leftSplit, rightFrom, rightSplit, dest, destFrom, ordering, threshold),
+                    new Merger(source, leftSplit, leftTo, rightSplit, rightTo, dest, destSplit, ordering, threshold));
+        }
+
+        private void merge() {
+            int l = leftFrom;
+            int r = rightFrom;
+            int d = destFrom;
+            while (l < leftTo && r < rightTo) {
+                if (ordering.compare(source[l], source[r]) <= 0) {
+                    dest[d++] = source[l++];
+                } else {
+                    dest[d++] = source[r++];
+                }
+            }
+            if (l < leftTo) System.arraycopy(source, l, dest, d, leftTo - l);
+            if (r < rightTo) System.arraycopy(source, r, dest, d, rightTo - r);
+        }
+
+        // First index in [from, to) whose element is not less than key
+        private int lowerBound(Object key, int from, int to) {
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                if (ordering.compare(source[mid], key) < 0) {
+                    from = mid + 1;
+                } else {
+                    to = mid;
+                }
+            }
+            return from;
+        }
+
+        // First index in [from, to) whose element is greater than key
+        private int upperBound(Object key, int from, int to) {
+            while (from < to) {
+                int mid = (from + to) >>> 1;
+                if (ordering.compare(source[mid], key) <= 0) {
+                    from = mid + 1;
+                } else {
+                    to = mid;
+                }
+            }
+            return from;
+        }
+    }
+}
@@ -30,17 +30,23 @@
 
 package com.github.andrewoma.dexx.collection.internal.redblack;
 
+import com.github.andrewoma.dexx.collection.DoubleFold;
 import com.github.andrewoma.dexx.collection.Function;
+import com.github.andrewoma.dexx.collection.IntFold;
 import com.github.andrewoma.dexx.collection.KeyFunction;
+import com.github.andrewoma.dexx.collection.LongFold;
 import com.github.andrewoma.dexx.collection.Pair;
+import com.github.andrewoma.dexx.collection.Predicate;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.Spliterator;
 
 
 public class RedBlackTree<K, V> {
@@ -79,6 +85,10 @@ public class RedBlackTree<K, V> {
         return ordering == DEFAULT_COMPARATOR ? null : ordering;
     }
 
+    public int compare(K k1, K k2) {
+        return ordering.compare(k1, k2);
+    }
+
     public boolean isEmpty(Tree<K, V> tree) {
         return tree == null;
     }
@@ -108,6 +118,77 @@ public class RedBlackTree<K, V> {
         return tree == null ? 0 : tree.count();
     }
 
+    /**
+     * Returns the number of nodes with keys between {@code from} and {@code until}. A bound is only applied if its
+     * {@code has} flag is set, so a null key can be a bound. Subtrees wholly outside the bounds are skipped without
+     * being visited.
+     */
+    public int count(Tree<K, V> tree, boolean hasFrom, K from, boolean fromInclusive, boolean hasUntil, K until, boolean untilInclusive) {
+        if (tree == null) return 0;
+        if (!hasFrom && !hasUntil) return tree.count();
+        if (hasFrom && !isAtOrAfter(tree, from, fromInclusive)) return count(tree.getRight(), hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+        if (hasUntil && !isAtOrBefore(tree, until, untilInclusive)) return count(tree.getLeft(), hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+        return 1 + count(tree.getLeft(), hasFrom, from, fromInclusive, false, null, false)
+                + count(tree.getRight(), false, null, false, hasUntil, until, untilInclusive);
+    }
+
+    /**
+     * Returns the node with the smallest key between {@code from} and {@code until}, or null if there are none.
+     */
+    public Tree<K, V> smallest(Tree<K, V> tree, boolean hasFrom, K from, boolean fromInclusive, boolean hasUntil, K until, boolean untilInclusive) {
+        Tree<K, V> result = null;
+        while (tree != null) {
+            if (!hasFrom || isAtOrAfter(tree, from, fromInclusive)) {
+                result = tree;
+                tree = tree.getLeft();
+            } else {
+                tree = tree.getRight();
+            }
+        }
+        return result == null || !hasUntil || isAtOrBefore(result, until, untilInclusive) ? result : null;
+    }
+
+    /**
+     * Returns the node with the greatest key between {@code from} and {@code until}, or null if there are none.
+     */
+    public Tree<K, V> greatest(Tree<K, V> tree, boolean hasFrom, K from, boolean fromInclusive, boolean hasUntil, K until, boolean untilInclusive) {
+        Tree<K, V> result = null;
+        while (tree != null) {
+            if (!hasUntil || isAtOrBefore(tree, until, untilInclusive)) {
+                result = tree;
+                tree = tree.getRight();
+            } else {
+                tree = tree.getLeft();
+            }
+        }
+        return result == null || !hasFrom || isAtOrAfter(result, from, fromInclusive) ? result : null;
+    }
+
+    /**
+     * Returns true if {@code key} is between {@code from} and {@code until}, applying only the bounds that are set.
+     */
+    public boolean isInRange(K key, boolean hasFrom, K from, boolean fromInclusive, boolean hasUntil, K until, boolean untilInclusive) {
+        if (hasFrom) {
+            int cmp = ordering.compare(key, from);
+            if (cmp < 0 || (cmp == 0 && !fromInclusive)) return false;
+        }
+        if (hasUntil) {
+            int cmp = ordering.compare(key, until);
+            if (cmp > 0 || (cmp == 0 && !untilInclusive)) return false;
+        }
+        return true;
+    }
+
+    boolean isAtOrAfter(Tree<K, V> tree, K from, boolean inclusive) {
+        int cmp = ordering.compare(tree.getKey(kf), from);
+        return cmp > 0 || (cmp == 0 && inclusive);
+    }
+
+    boolean isAtOrBefore(Tree<K, V> tree, K until, boolean inclusive) {
+        int cmp = ordering.compare(tree.getKey(kf), until);
+        return cmp < 0 || (cmp == 0 && inclusive);
+    }
+
     public Tree<K, V> update(Tree<K, V> tree, K k, V v, boolean overwrite) {
         return blacken(upd(tree, k, v, overwrite));
     }
@@ -116,6 +197,58 @@ public class RedBlackTree<K, V> {
         return blacken(del(tree, k));
     }
 
+    /**
+     * Creates a single node without rebalancing, for rebuilding a tree whose shape is already known to be valid.
+     */
+    public Tree<K, V> node(boolean isBlack, K key, V value, Tree<K, V> left, Tree<K, V> right) {
+        return mkTree(isBlack, key, value, left, right);
+    }
+
+    /**
+     * Builds a tree in O(n) from {@code length} keys and values in strictly ascending key order, without comparing
+     * keys. Every level is black except the deepest, which is red if it is incomplete. {@code keys} is not used by
+     * trees with derived keys.
+     */
+    public Tree<K, V> fromSorted(Object[] keys, Object[] values, int length) {
+        return length == 0 ? null : buildSorted(0, 0, length - 1, redLevel(length), keys, values);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Tree<K, V> buildSorted(int level, int lo, int hi, int redLevel, Object[] keys, Object[] values) {
+        if (hi < lo) return null;
+        int mid = (lo + hi) >>> 1;
+        Tree<K, V> left = buildSorted(level + 1, lo, mid - 1, redLevel, keys, values);
+        Tree<K, V> right = buildSorted(level + 1, mid + 1, hi, redLevel, keys, values);
+        return mkTree(level != redLevel, (K) keys[mid], (V) values[mid], left, right);
+    }
+
+    // The depth of the deepest level of a balanced binary tree of the given size
+    private static int redLevel(int size) {
+        int level = 0;
+        for (int m = size - 1; m >= 0; m = m / 2 - 1) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Keeps only the last of each run of equal keys in {@code keys[0, length)} and the matching {@code values},
+     * returning the new length. The keys must already be sorted. {@code keys} and {@code values} may be the same array.
+     */
+    @SuppressWarnings("unchecked")
+    public int distinctSorted(Object[] keys, Object[] values, int length) {
+        if (length == 0) return 0;
+        int last = 0;
+        for (int i = 1; i < length; i++) {
+            if (ordering.compare((K) keys[last], (K) keys[i]) != 0) {
+                last++;
+            }
+            keys[last] = keys[i];
+            values[last] = values[i];
+        }
+        return last + 1;
+    }
+
     public Tree<K, V> range(Tree<K, V> tree, K from, boolean fromInclusive, K until, boolean untilInclusive) {
         return blacken(doRange(tree, from, fromInclusive, until, untilInclusive));
     }
@@ -166,6 +299,83 @@ public class RedBlackTree<K, V> {
         }
     }
 
+    public <U> void forEachValue(Tree<K, V> tree, Function<V, U> f) {
+        while (tree != null) {
+            forEachValue(tree.getLeft(), f);
+            f.invoke(tree.getValue());
+            tree = tree.getRight();
+        }
+    }
+
+    public boolean forEachValueWhile(Tree<K, V> tree, Predicate<? super V> f) {
+        while (tree != null) {
+            if (!forEachValueWhile(tree.getLeft(), f) || !f.invoke(tree.getValue())) return false;
+            tree = tree.getRight();
+        }
+        return true;
+    }
+
+    public boolean forEachWhile(Tree<K, V> tree, Predicate<? super Pair<K, V>> f) {
+        if (tree == null) return true;
+        return forEachWhile(tree.getLeft(), f)
+                && f.invoke(new Pair<K, V>(tree.getKey(kf), tree.getValue()))
+                && forEachWhile(tree.getRight(), f);
+    }
+
+    public int foldValuesInt(Tree<K, V> tree, int result, IntFold<? super V> f) {
+        while (tree != null) {
+            result = f.invoke(foldValuesInt(tree.getLeft(), result, f), tree.getValue());
+            tree = tree.getRight();
+        }
+        return result;
+    }
+
+    public long foldValuesLong(Tree<K, V> tree, long result, LongFold<? super V> f) {
+        while (tree != null) {
+            result = f.invoke(foldValuesLong(tree.getLeft(), result, f), tree.getValue());
+            tree = tree.getRight();
+        }
+        return result;
+    }
+
+    public double foldValuesDouble(Tree<K, V> tree, double result, DoubleFold<? super V> f) {
+        while (tree != null) {
+            result = f.invoke(foldValuesDouble(tree.getLeft(), result, f), tree.getValue());
+            tree = tree.getRight();
+        }
+        return result;
+    }
+
+    /**
+     * Returns the values, or the key/value pairs if {@code pairs} is true, in order. Trees do not store their sizes,
+     * so rather than counting first the array is filled in one in-order traversal, growing as needed.
+     */
+    @SuppressWarnings("unchecked")
+    public Object[] toArray(Tree<K, V> tree, boolean pairs) {
+        int depth = 0;
+        for (Tree<K, V> node = tree; node != null; node = node.getLeft()) {
+            depth++;
+        }
+        if (depth == 0) return new Object[0];
+
+        // Start at about the size of a complete tree with this depth
+        Object[] result = new Object[1 << Math.min(depth - 1, 16)];
+        Tree<K, V>[] stack = (Tree<K, V>[]) new Tree<?, ?>[Math.max(depth, 16)];
+        int size = 0;
+        int top = 0;
+        while (tree != null || top > 0) {
+            for (; tree != null; tree = tree.getLeft()) {
+                if (top == stack.length) stack = Arrays.copyOf(stack, top * 2);
+                stack[top++] = tree;
+            }
+            tree = stack[--top];
+            if (size == result.length) result = Arrays.copyOf(result, size * 2);
+            result[size++] = pairs ? new Pair<K, V>(tree.getKey(kf), tree.getValue()) : tree.getValue();
+            tree = tree.getRight();
+        }
+        return size == result.length ? result : Arrays.copyOf(result, size);
+    }
+
     //        def foreach[K, V, U](tree: Tree[K, V], f: ((K, V)) => U): Unit = if (tree ne null) {
 //        if (tree.left ne null) foreach(tree.left, f)
 //        f((tree.key, tree.value))
@@ -180,15 +390,52 @@ public class RedBlackTree<K, V> {
 //        }
 
     public Iterator<Pair<K, V>> iterator(Tree<K, V> tree) {
-        return new EntriesIterator<K, V>(tree);
+        return new TreeIterator.EntriesIterator<K, V>(tree);
     }
 
     public Iterator<K> keysIterator(Tree<K, V> tree) {
-        return new KeysIterator<K, V>(tree, kf);
+        return new TreeIterator.KeysIterator<K, V>(tree, kf);
     }
 
     public Iterator<V> valuesIterator(Tree<K, V> tree) {
-        return new ValuesIterator<K, V>(tree);
+        return new TreeIterator.ValuesIterator<K, V>(tree);
+    }
+
+    /**
+     * Returns an iterator over the pairs with keys between {@code from} and {@code until}, applying only the bounds
+     * that are set. The first pair is found in O(log n).
+     */
+    public Iterator<Pair<K, V>> iterator(Tree<K, V> tree, boolean hasFrom, K from, boolean fromInclusive, boolean hasUntil, K until, boolean untilInclusive) {
+        return new TreeIterator.EntriesIterator<K, V>(tree, this, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+    }
+
+    public Iterator<K> keysIterator(Tree<K, V> tree, boolean hasFrom, K from, boolean fromInclusive, boolean hasUntil, K until, boolean untilInclusive) {
+        return new TreeIterator.KeysIterator<K, V>(tree, this, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+    }
+
+    public Iterator<V> valuesIterator(Tree<K, V> tree, boolean hasFrom, K from, boolean fromInclusive, boolean hasUntil, K until, boolean untilInclusive) {
+        return new TreeIterator.ValuesIterator<K, V>(tree, this, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+    }
+
+    /**
+     * Returns a {@code Spliterator} over the values that splits by subtree. The values are reported as sorted by
+     * the key ordering, so this is only suitable where the values are the keys.
+     */
+    @SuppressWarnings("unchecked")
+    public Spliterator<V> valuesSpliterator(Tree<K, V> tree) {
+        return new TreeSpliterator<K, V, V>(tree, false, kf, (Comparator<? super V>) getOrdering());
+    }
+
+    /**
+     * Returns a {@code Spliterator} over the key/value pairs that splits by subtree.
+     */
+    public Spliterator<Pair<K, V>> spliterator(Tree<K, V> tree) {
+        return new TreeSpliterator<K, V, Pair<K, V>>(tree, true, kf, new Comparator<Pair<K, V>>() {
+            @Override
+            public int compare(Pair<K, V> o1, Pair<K, V> o2) {
+                return ordering.compare(o1.component1(), o2.component1());
+            }
+        });
     }
 
     private boolean isRedTree(Tree<?, ?> tree) {
@@ -44,22 +44,63 @@ abstract class TreeIterator<K, V, R> implements Iterator<R> {
     private int index = 0;
     private Tree<K, V> next;
 
-    @SuppressWarnings("unchecked")
+    // Upper bound for iterators over a window of the tree, only applied if hasUntil is set
+    private final RedBlackTree<K, V> redBlackTree;
+    private final boolean hasUntil;
+    private final K until;
+    private final boolean untilInclusive;
+
     protected TreeIterator(Tree<K, V> tree) {
+        this(tree, null, false, null, false, false, null, false);
+    }
+
+    /**
+     * Iterates over the keys in the window between {@code from} and {@code until}, applying only the bounds that are set.
+     * The start is found by descending from the root, so no nodes before the window are visited.
+     */
+    @SuppressWarnings("unchecked")
+    protected TreeIterator(Tree<K, V> tree, RedBlackTree<K, V> redBlackTree, boolean hasFrom, K from, boolean fromInclusive,
+                           boolean hasUntil, K until, boolean untilInclusive) {
+        this.redBlackTree = redBlackTree;
+        this.hasUntil = hasUntil;
+        this.until = until;
+        this.untilInclusive = untilInclusive;
+
         if (tree != null) {
             /*
             * According to "Ralf Hinze. Constructing red-black trees" [http://www.cs.ox.ac.uk/ralf.hinze/publications/#P5]
             * the maximum height of a red-black tree is 2*log_2(n + 2) - 2.
             *
-            * According to {@see Integer#numberOfLeadingZeros} ceil(log_2(n)) = (32 - Integer.numberOfLeadingZeros(n - 1))
-            *
-            * We also don't store the deepest nodes in the path so the maximum path length is further reduced by one.
+            * Every path from the root to a leaf has the same number of black nodes, and no red node has a red child,
+            * so the height is also at most twice the number of black nodes on any one path. Counting the black nodes
+            * down the left spine is O(log n), where counting all of the nodes would be O(n).
             */
+            int blackHeight = 0;
+            for (Tree<K, V> t = tree; t != null; t = t.getLeft()) {
+                if (t.isBlack()) blackHeight++;
+            }
+            path = new Tree[2 * blackHeight + 1];
+        }
 
-            int maximumHeight = 2 * (32 - Integer.numberOfLeadingZeros(tree.count() + 2 - 1)) - 2 - 1;
-            path = new Tree[maximumHeight];
+        if (!hasFrom) {
+            next = findNext(tree);
+        } else {
+            // Push each node at or after from whose left subtree is descended into; the last one pushed is the start
+            while (tree != null) {
+                if (redBlackTree.isAtOrAfter(tree, from, fromInclusive)) {
+                    pushPath(tree);
+                    tree = tree.getLeft();
+                } else {
+                    tree = tree.getRight();
+                }
+            }
+            next = popPath();
         }
-        next = findNext(tree);
+        next = bounded(next);
+    }
+
+    private Tree<K, V> bounded(Tree<K, V> tree) {
+        return tree == null || !hasUntil || redBlackTree.isAtOrBefore(tree, until, untilInclusive) ? tree : null;
     }
 
     protected abstract R nextResult(Tree<K, V> tree);
@@ -73,7 +114,7 @@ abstract class TreeIterator<K, V, R> implements Iterator<R> {
             throw new NoSuchElementException("next on empty iterator");
 
         Tree<K, V> tree = next;
-        next = findNext(tree.getRight());
+        next = bounded(findNext(tree.getRight()));
         return nextResult(tree);
     }
 
@@ -123,41 +164,56 @@ abstract class TreeIterator<K, V, R> implements Iterator<R> {
         index -= 1;
         return path[index];
     }
-}
 
-class EntriesIterator<K, V> extends TreeIterator<K, V, Pair<K, V>> {
-    public EntriesIterator(Tree<K, V> tree) {
-        super(tree);
-    }
+    static class EntriesIterator<K, V> extends TreeIterator<K, V, Pair<K, V>> {
+        public EntriesIterator(Tree<K, V> tree) {
+            super(tree);
+        }
+
+        EntriesIterator(Tree<K, V> tree, RedBlackTree<K, V> redBlackTree, boolean hasFrom, K from, boolean fromInclusive,
+                        boolean hasUntil, K until, boolean untilInclusive) {
+            super(tree, redBlackTree, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+        }
 
-    @Override
-    protected Pair<K, V> nextResult(Tree<K, V> tree) {
-        return new Pair<K, V>(tree.getKey(null), tree.getValue());
+        @Override
+        protected Pair<K, V> nextResult(Tree<K, V> tree) {
+            return new Pair<K, V>(tree.getKey(null), tree.getValue());
+        }
     }
-}
 
-class KeysIterator<K, V> extends TreeIterator<K, V, K> {
-    private final KeyFunction<K, V> kf;
+    static class KeysIterator<K, V> extends TreeIterator<K, V, K> {
+        private final KeyFunction<K, V> kf;
 
-    KeysIterator(Tree<K, V> tree, KeyFunction<K, V> kf) {
-        super(tree);
-        this.kf = kf;
-    }
+        KeysIterator(Tree<K, V> tree, KeyFunction<K, V> kf) {
+            super(tree);
+            this.kf = kf;
+        }
 
-    @Override
-    protected K nextResult(Tree<K, V> tree) {
-        return tree.getKey(kf);
-    }
-}
+        KeysIterator(Tree<K, V> tree, RedBlackTree<K, V> redBlackTree, boolean hasFrom, K from, boolean fromInclusive,
+                     boolean hasUntil, K until, boolean untilInclusive) {
+            super(tree, redBlackTree, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+            this.kf = redBlackTree.getKeyFunction();
+        }
 
-class ValuesIterator<K, V> extends TreeIterator<K, V, V> {
-    ValuesIterator(Tree<K, V> tree) {
-        super(tree);
+        @Override
+        protected K nextResult(Tree<K, V> tree) {
+            return tree.getKey(kf);
+        }
     }
 
-    @Override
-    protected V nextResult(Tree<K, V> tree) {
-        return tree.getValue();
+    static class ValuesIterator<K, V> extends TreeIterator<K, V, V> {
+        ValuesIterator(Tree<K, V> tree) {
+            super(tree);
+        }
+
+        ValuesIterator(Tree<K, V> tree, RedBlackTree<K, V> redBlackTree, boolean hasFrom, K from, boolean fromInclusive,
+                       boolean hasUntil, K until, boolean untilInclusive) {
+            super(tree, redBlackTree, hasFrom, from, fromInclusive, hasUntil, until, untilInclusive);
+        }
+
+        @Override
+        protected V nextResult(Tree<K, V> tree) {
+            return tree.getValue();
+        }
     }
 }
-
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.internal.redblack;
+
+import com.github.andrewoma.dexx.collection.KeyFunction;
+import com.github.andrewoma.dexx.collection.Pair;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * A {@code Spliterator} that divides a tree by subtree.
+ * <p/>
+ * <p>The remaining elements are held as a stack of nodes, the next to visit on top. Each node is followed by
+ * its right subtree unless that subtree has been split off. Splitting hands the elements up to and including the
+ * deepest node with a right subtree to the prefix, leaving that right subtree here. For a new spliterator this
+ * divides the tree at the root.
+ * <p/>
+ * <p>Sizes are exact. Trees do not store their sizes, so the size of a new spliterator is counted on first use.
+ * Splitting counts only the right subtree that stays here, so a full split costs about half a traversal per level
+ * of splitting. If the first split comes before the size is known, the prefix is counted from its stack instead,
+ * so the whole tree is never counted as well.
+ */
+class TreeSpliterator<K, V, R> implements Spliterator<R> {
+    private final boolean pairs;
+    private final KeyFunction<K, V> kf;
+    private final Comparator<? super R> comparator;
+
+    private Tree<K, V>[] nodes;
+    private boolean[] withRight;
+    private int top = 0;
+
+    private Tree<K, V> root; // Non-null until the size has been calculated
+    private long taken;
+    private long size;
+
+    @SuppressWarnings("unchecked")
+    TreeSpliterator(Tree<K, V> tree, boolean pairs, KeyFunction<K, V> kf, Comparator<? super R> comparator) {
+        this.pairs = pairs;
+        this.kf = kf;
+        this.comparator = comparator;
+        this.root = tree;
+        this.nodes = (Tree<K, V>[]) new Tree<?, ?>[16];
+        this.withRight = new boolean[16];
+        pushLeft(tree);
+    }
+
+    private TreeSpliterator(TreeSpliterator<K, V, R> other, int from, long size) {
+        this.pairs = other.pairs;
+        this.kf = other.kf;
+        this.comparator = other.comparator;
+        this.nodes = Arrays.copyOfRange(other.nodes, from, Math.max(other.top, from + 16));
+        this.withRight = Arrays.copyOfRange(other.withRight, from, Math.max(other.top, from + 16));
+        this.top = other.top - from;
+        this.size = size;
+    }
+
+    private void push(Tree<K, V> node, boolean right) {
+        if (top == nodes.length) {
+            nodes = Arrays.copyOf(nodes, top * 2);
+            withRight = Arrays.copyOf(withRight, top * 2);
+        }
+        nodes[top] = node;
+        withRight[top++] = right;
+    }
+
+    private void pushLeft(Tree<K, V> tree) {
+        for (; tree != null; tree = tree.getLeft()) {
+            push(tree, true);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private R result(Tree<K, V> tree) {
+        return !pairs ? (R) tree.getValue() : (R) new Pair<K, V>(tree.getKey(kf), tree.getValue());
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super R> action) {
+        if (top == 0) return false;
+
+        Tree<K, V> node = nodes[--top];
+        nodes[top] = null;
+        if (withRight[top]) pushLeft(node.getRight());
+        if (root != null) {
+            taken++;
+        } else {
+            size--;
+        }
+        action.accept(result(node));
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super R> action) {
+        while (top > 0) {
+            Tree<K, V> node = nodes[--top];
+            nodes[top] = null;
+            action.accept(result(node));
+            if (withRight[top]) forEach(node.getRight(), action);
+        }
+        root = null;
+        size = 0;
+    }
+
+    private void forEach(Tree<K, V> tree, Consumer<? super R> action) {
+        while (tree != null) {
+            forEach(tree.getLeft(), action);
+            action.accept(result(tree));
+            tree = tree.getRight();
+        }
+    }
+
+    @Override
+    public Spliterator<R> trySplit() {
+        int split = 0;
+        while (split < top && (!withRight[split] || nodes[split].getRight() == null)) {
+            split++;
+        }
+        if (split == top) return null;
+
+        // The nodes below the split are single elements as they have no right subtree to visit
+        Tree<K, V> right = nodes[split].getRight();
+        long remaining = split + RedBlackTree.count(right);
+        long prefixSize;
+        if (root != null) {
+            prefixSize = top - split;
+            for (int i = split + 1; i < top; i++) {
+                if (withRight[i]) prefixSize += RedBlackTree.count(nodes[i].getRight());
+            }
+            root = null;
+        } else {
+            prefixSize = size - remaining;
+        }
+
+        TreeSpliterator<K, V, R> prefix = new TreeSpliterator<K, V, R>(this, split, prefixSize);
+        prefix.withRight[0] = false;
+
+        Arrays.fill(nodes, split, top, null);
+        top = split;
+        pushLeft(right);
+
+        size = remaining;
+        return prefix;
+    }
+
+    @Override
+    public long estimateSize() {
+        if (root != null) {
+            size = RedBlackTree.count(root) - taken;
+            root = null;
+        }
+        return size;
+    }
+
+    @Override
+    public int characteristics() {
+        return Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.IMMUTABLE
+                | Spliterator.SIZED | Spliterator.SUBSIZED | (pairs ? Spliterator.NONNULL : 0);
+    }
+
+    @Override
+    public Comparator<? super R> getComparator() {
+        return comparator;
+    }
+}
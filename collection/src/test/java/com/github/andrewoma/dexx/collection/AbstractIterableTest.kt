@@ -74,6 +74,43 @@ abstract class AbstractIterableTest() : AbstractTraversableTest() {
         i.remove()
     }
 
+    // Splits recursively, checking that the pieces cover the elements in order and that exact sizes are exact
+    private fun drain(spliterator: Spliterator<Int>, depth: Int, into: MutableList<Int>) {
+        val exact = spliterator.exactSizeIfKnown
+        val before = into.size
+        val prefix = if (depth < 16) spliterator.trySplit() else null
+        if (prefix != null) {
+            drain(prefix, depth + 1, into)
+            drain(spliterator, depth + 1, into)
+        } else {
+            spliterator.tryAdvance { into.add(it) }
+            spliterator.forEachRemaining { into.add(it) }
+        }
+        if (exact >= 0) assertEquals(exact, (into.size - before).toLong())
+    }
+
+    @Test fun spliteratorSplitsInOrder() {
+        for (size in listOf(0, 1, 2, 33, 1057, maxSize)) {
+            var builder = factory<Int>().newBuilder()
+            for (i in 1..size) builder = builder.add(i)
+            val iterable = builder.build()
+
+            val actual = arrayListOf<Int>()
+            drain(iterable.spliterator(), 0, actual)
+            assertEquals(iterable.iterator().asSequence().toList(), actual)
+        }
+    }
+
+    @Test fun streams() {
+        var builder = factory<Int>().newBuilder()
+        for (i in 1..maxSize) builder = builder.add(i)
+        val iterable = builder.build()
+
+        assertEquals(iterable.iterator().asSequence().toList(), iterable.stream().collect(java.util.stream.Collectors.toList<Int>()))
+        assertEquals(iterable.iterator().asSequence().toList(), iterable.parallelStream().collect(java.util.stream.Collectors.toList<Int>()))
+        assertEquals(maxSize.toLong(), iterable.parallelStream().count())
+    }
+
     @Test fun iterator() {
         assertEquals(setOf(1, 2, 3, 4), build(1, 2, 3, 4).iterator().asSequence().toSet())
     }
@@ -25,6 +25,7 @@ package com.github.andrewoma.dexx.collection
 import com.github.andrewoma.dexx.collection.internal.builder.AbstractBuilder
 import org.junit.Test
 import java.util.*
+import java.util.concurrent.ForkJoinPool
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertNull
@@ -159,6 +160,39 @@ abstract class AbstractMapTest(val supportsNullValues: Boolean = true) : Abstrac
         assertEquals(pairs, actual)
     }
 
+    @Test fun forEachWhileWithCollisions() {
+        val pairs = setOf(CollidingKey(1, 1) to "A", CollidingKey(1, 2) to "B", CollidingKey(2, 3) to "C", CollidingKey(2, 4) to "D")
+        val map = buildMap(*pairs.toTypedArray())
+        val actual = hashSetOf<kotlin.Pair<CollidingKey, String>>()
+        assertTrue(map.forEachWhile { actual.add(kotlin.Pair(it!!.component1()!!, it.component2()!!)); true })
+        assertEquals(pairs, actual)
+
+        var count = 0
+        assertFalse(map.forEachWhile { count++; count < 3 })
+        assertEquals(3, count)
+    }
+
+    @Test fun mapSpliteratorAndParallelFold() {
+        var map = buildMap<Int, Int>()
+        for (i in 1..2000) map = map.put(i, i * 2)
+
+        val pool = ForkJoinPool(2)
+        try {
+            val pairs = map.parallelFold(listOf<Pair<Int, Int>>(), Fold<kotlin.collections.List<Pair<Int, Int>>, Pair<Int, Int>> { acc, e -> acc!! + e!! },
+                    Fold<kotlin.collections.List<Pair<Int, Int>>, kotlin.collections.List<Pair<Int, Int>>> { l, r -> l!! + r!! }, pool, 16)
+            assertEquals(map.iterator().asSequence().toList(), pairs)
+        } finally {
+            pool.shutdown()
+        }
+
+        val spliterator = map.spliterator()
+        val prefix = spliterator.trySplit()
+        val split = arrayListOf<Pair<Int, Int>>()
+        prefix?.forEachRemaining { split.add(it) }
+        spliterator.forEachRemaining { split.add(it) }
+        assertEquals(map.iterator().asSequence().toList(), split)
+    }
+
     @Test fun putRemoveCollisions() {
         var map = buildMap(CollidingKey(1, 1) to "A", CollidingKey(1, 2) to "B", CollidingKey(2, 3) to "C", CollidingKey(2, 4) to "D")
         map = map.remove(CollidingKey(1, 1)).remove(CollidingKey(1, 2)).remove(CollidingKey(2, 3)).remove(CollidingKey(2, 4))
@@ -24,6 +24,9 @@ package com.github.andrewoma.dexx.collection
 
 import org.junit.Test
 import java.util.*
+import java.util.concurrent.ForkJoinPool
+import java.util.concurrent.atomic.AtomicInteger
+import java.util.concurrent.atomic.AtomicLong
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertTrue
@@ -88,6 +91,90 @@ abstract class AbstractTraversableTest() {
         assertEquals(expected, actual)
     }
 
+    @Test fun forEachWhileVisitsAll() {
+        val actual = hashSetOf<Int>()
+        assertTrue(build(1, 2, 3).forEachWhile { actual.add(it!!); true })
+        assertEquals(setOf(1, 2, 3), actual)
+    }
+
+    @Test fun forEachWhileEmpty() {
+        assertTrue(build<Int>().forEachWhile { fail("Shouldn't be called") })
+    }
+
+    @Test fun forEachWhileStops() {
+        var builder = factory<Int>().newBuilder()
+        for (i in 1..maxSize) builder = builder.add(i)
+        var count = 0
+        assertFalse(builder.build().forEachWhile { count++; count < 10 })
+        assertEquals(10, count)
+    }
+
+    @Test fun find() {
+        val traversable = build(1, 2, 3, 4)
+        assertEquals(toList(traversable).first { it!! > 2 }, traversable.find { it!! > 2 })
+        assertEquals(null, traversable.find { it!! > 4 })
+    }
+
+    @Test fun existsAndForAll() {
+        val traversable = build(1, 2, 3, 4)
+        assertTrue(traversable.exists { it == 3 })
+        assertFalse(traversable.exists { it == 5 })
+        assertTrue(traversable.forAll { it!! < 5 })
+        assertFalse(traversable.forAll { it!! < 4 })
+        assertFalse(build<Int>().exists { true })
+        assertTrue(build<Int>().forAll { false })
+    }
+
+    @Test fun toArrayMatchesTraversal() {
+        for (size in listOf(0, 1, 5, 33, maxSize)) {
+            var builder = factory<Int>().newBuilder()
+            for (i in 1..size) builder = builder.add(i)
+            val traversable = builder.build()
+            assertEquals(toList(traversable).toList(), traversable.toArray().toList())
+        }
+    }
+
+    @Test fun knownSize() {
+        val traversable = build(1, 2, 3)
+        assertTrue(traversable.knownSize() == -1 || traversable.knownSize() == 3)
+        assertTrue(build<Int>().knownSize() <= 0)
+    }
+
+    private fun buildRange(size: Int): Traversable<Int> {
+        var builder = factory<Int>().newBuilder()
+        for (i in 1..size) builder = builder.add(i)
+        return builder.build()
+    }
+
+    @Test fun parallelFoldSum() {
+        val traversable = buildRange(maxSize)
+        val sum = traversable.parallelFold(0L, Fold<Long, Int> { acc, e -> acc!! + e!! }, Fold<Long, Long> { l, r -> l!! + r!! })
+        assertEquals(maxSize.toLong() * (maxSize + 1) / 2, sum)
+    }
+
+    @Test fun parallelFoldPreservesEncounterOrder() {
+        val pool = ForkJoinPool(4)
+        try {
+            for (size in listOf(0, 1, 33, maxSize)) {
+                val traversable = buildRange(size)
+                val result = traversable.parallelFold(listOf<Int>(), Fold<kotlin.collections.List<Int>, Int> { acc, e -> acc!! + e!! },
+                        Fold<kotlin.collections.List<Int>, kotlin.collections.List<Int>> { l, r -> l!! + r!! }, pool, 16)
+                assertEquals(toList(traversable).toList(), result)
+            }
+        } finally {
+            pool.shutdown()
+        }
+    }
+
+    @Test fun parallelForEach() {
+        val traversable = buildRange(maxSize)
+        val count = AtomicInteger()
+        val sum = AtomicLong()
+        traversable.parallelForEach(Function<Int, Unit> { count.incrementAndGet(); sum.addAndGet(it!!.toLong()) }, ForkJoinPool.commonPool(), 8)
+        assertEquals(maxSize, count.get())
+        assertEquals(maxSize.toLong() * (maxSize + 1) / 2, sum.get())
+    }
+
     @Test fun toSet() {
         assertEquals(build(1, 1, 2, 2).toSet(), HashSet.factory<Int>().newBuilder().addAll(1, 2).build())
     }
@@ -135,6 +222,45 @@ abstract class AbstractTraversableTest() {
         assertEquals(traversable.javaClass.simpleName + "(" + toList(traversable).joinToString(", ") + ")", traversable.toString())
     }
 
+    @Test fun primitiveFolds() {
+        val size = Math.min(maxSize, 1000)
+        val traversable = build(*(1..size).toList().toTypedArray())
+        val expected = toList(traversable)
+
+        assertEquals(expected.fold(7) { acc, e -> acc * 31 + e }, traversable.foldInt(7, IntFold { acc, e -> acc * 31 + e!! }))
+        assertEquals(expected.fold(7L) { acc, e -> acc * 31 + e }, traversable.foldLong(7L, LongFold { acc, e -> acc * 31 + e!! }))
+        assertEquals(expected.fold(0.5) { acc, e -> acc / 2 + e }, traversable.foldDouble(0.5, DoubleFold { acc, e -> acc / 2 + e!! }))
+        assertEquals(3, build<Int>().foldInt(3, IntFold { acc, e -> acc + e!! }))
+    }
+
+    @Test fun primitiveSums() {
+        val size = Math.min(maxSize, 1000)
+        val traversable = build(*(1..size).toList().toTypedArray())
+        assertEquals(size * (size + 1) / 2, traversable.sumInt(IntFunction { it!! }))
+        assertEquals(size.toLong() * Int.MAX_VALUE, traversable.sumLong(LongFunction { Int.MAX_VALUE.toLong() }))
+        assertEquals(size * 0.5, traversable.sumDouble(DoubleFunction { 0.5 }))
+        assertEquals(0, build<Int>().sumInt(IntFunction { it!! }))
+    }
+
+    @Test fun primitiveMaxAndMin() {
+        val traversable = build(3, -7, 11, 5)
+        assertEquals(11, traversable.maxInt(IntFunction { it!! }))
+        assertEquals(-7, traversable.minInt(IntFunction { it!! }))
+        assertEquals(7L, traversable.maxLong(LongFunction { -it!!.toLong() }))
+        assertEquals(-11L, traversable.minLong(LongFunction { -it!!.toLong() }))
+        assertEquals(5.5, traversable.maxDouble(DoubleFunction { it!! / 2.0 }))
+        assertEquals(-3.5, traversable.minDouble(DoubleFunction { it!! / 2.0 }))
+        assertEquals(Int.MIN_VALUE, build(Int.MIN_VALUE).maxInt(IntFunction { it!! }))
+    }
+
+    @Test(expected = NoSuchElementException::class) fun maxOfEmpty() {
+        build<Int>().maxInt(IntFunction { it!! })
+    }
+
+    @Test(expected = NoSuchElementException::class) fun minOfEmpty() {
+        build<Int>().minLong(LongFunction { it!!.toLong() })
+    }
+
     @Test fun hashCodes() {
         assertEquals(build(1, 2, 3).hashCode(), build(1, 2, 3).hashCode())
         assertFalse(build(1, 2, 3).hashCode() == build(2, 3, 4).hashCode())
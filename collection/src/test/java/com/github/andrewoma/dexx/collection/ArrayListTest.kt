@@ -22,9 +22,93 @@
 
 package com.github.andrewoma.dexx.collection
 
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
 class ArrayListTest() : AbstractListTest() {
 
     override fun <T> factory(): BuilderFactory<T, out List<T>> {
         return ArrayList.factory()
     }
-}
\ No newline at end of file
+
+    @Test fun sorted() {
+        val list = ArrayList.factory<Int>().newBuilder().addAll(3, 1, 4, 1, 5, 9, 2, 6).build()
+        assertEquals(listOf(1, 1, 2, 3, 4, 5, 6, 9), list.sorted(null).toArray().toList())
+        assertEquals(listOf(1, 1, 2, 3, 4, 5, 6, 9), list.sortedParallel(null, 2).toArray().toList())
+        assertEquals(listOf(3, 1, 4, 1, 5, 9, 2, 6), list.toArray().toList())
+    }
+
+    @Test fun appendSharesCapacityWithLatestVersionOnly() {
+        var list = ArrayList.empty<Int>()
+        val versions = arrayListOf<ArrayList<Int>>()
+        for (i in 0..99) {
+            versions.add(list)
+            list = list.append(i)
+        }
+        assertEquals((0..99).toList(), list.toArray().toList())
+
+        // Appending to older versions must copy rather than overwrite slots claimed by newer ones
+        val branch = versions[50].append(-1).append(-2)
+        assertEquals((0..49).toList() + listOf(-1, -2), branch.toArray().toList())
+        assertEquals((0..99).toList(), list.toArray().toList())
+        for (i in 0..99) {
+            assertEquals(i, versions[i].size())
+            assertEquals((0..i - 1).toList(), versions[i].toArray().toList())
+        }
+    }
+
+    @Test(expected = IndexOutOfBoundsException::class) fun getBeyondSizeWithSpareCapacity() {
+        ArrayList.empty<Int>().append(1).append(2)[2]
+    }
+
+    private fun arrayList(size: Int): ArrayList<Int> = ArrayList.factory<Int>().newBuilder().addAll((0..size - 1).toList()).build()
+
+    @Test fun slicesAreViews() {
+        val list = arrayList(100)
+        var tail = list
+        for (i in 0..98) {
+            tail = tail.tail()
+            assertEquals(i + 1, tail.first())
+            assertEquals(99, tail.last())
+            assertEquals(99 - i, tail.size())
+            assertEquals((i + 1..99).toList(), tail.toArray().toList())
+        }
+
+        val range = list.drop(10).take(50).range(5, true, 20, false)
+        assertEquals((15..29).toList(), range.toArray().toList())
+        assertEquals((15..29).toList(), range.asList())
+        assertEquals(17, range[2])
+        assertEquals(arrayList(100).drop(15).take(15), range)
+    }
+
+    @Test fun sliceModifications() {
+        val slice = arrayList(100).drop(10).take(80)
+        assertEquals((10..89).toList() + listOf(-1), slice.append(-1).toArray().toList())
+        assertEquals(listOf(-1) + (10..89).toList(), slice.prepend(-1).toArray().toList())
+        assertEquals(listOf(-1) + (11..89).toList(), slice.set(0, -1).toArray().toList())
+        assertEquals((10..89).toList(), slice.toArray().toList())
+    }
+
+    @Test(expected = IndexOutOfBoundsException::class) fun getBeforeSliceStart() {
+        arrayList(100).drop(10)[-1]
+    }
+
+    @Test fun appendToSliceAtEndOfSharedArray() {
+        var list = ArrayList.empty<Int>()
+        for (i in 0..99) {
+            list = list.append(i)
+        }
+        val slice = list.drop(50)
+        assertEquals((50..99).toList() + listOf(100), slice.append(100).toArray().toList())
+        assertEquals((0..99).toList() + listOf(-1), list.append(-1).toArray().toList())
+        assertEquals((50..99).toList() + listOf(100), slice.append(100).toArray().toList())
+    }
+
+    @Test fun compact() {
+        val list = arrayList(100)
+        assertTrue(list === list.compact())
+        assertEquals(list.drop(10).take(50), list.drop(10).take(50).compact())
+        assertTrue(ArrayList.empty<Int>() === list.take(0).compact())
+    }
+}
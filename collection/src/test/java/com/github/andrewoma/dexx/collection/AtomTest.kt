@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import java.util.concurrent.CountDownLatch
+import kotlin.concurrent.thread
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class AtomTest {
+    private fun <T> f(f: (T) -> T) = object : Function<T, T> {
+        override fun invoke(parameter: T) = f(parameter)
+    }
+
+    private val atoms = listOf({ v: Map<Int, Int> -> Atom(v) }, { v: Map<Int, Int> -> Atom.combining(v) })
+
+    @Test fun swap() {
+        for (atom in atoms.map { it(HashMap.empty()) }) {
+            assertEquals(Maps.of(1, 1), atom.swap(f { it.put(1, 1) }))
+            assertEquals(Maps.of(1, 1, 2, 2), atom.swap(f { it.put(2, 2) }))
+            assertEquals(Maps.of(1, 1, 2, 2), atom.get())
+            assertEquals(2, atom.metrics.updates)
+        }
+    }
+
+    @Test fun compareAndSet() {
+        for (atom in atoms.map { it(HashMap.empty()) }) {
+            val value = atom.get()
+            assertTrue(atom.compareAndSet(value, value.put(1, 1)))
+            assertFalse(atom.compareAndSet(value, value.put(2, 2)))
+            assertEquals(Maps.of(1, 1), atom.get())
+            atom.set(HashMap.empty())
+            assertEquals(0, atom.get().size())
+        }
+    }
+
+    @Test fun failedUpdates() {
+        for (atom in atoms.map { it(Maps.of(1, 1)) }) {
+            assertFailsWith<IllegalStateException> { atom.swap(f { throw IllegalStateException() }) }
+            assertEquals(Maps.of(1, 1), atom.get())
+            assertEquals(0, atom.metrics.updates)
+        }
+    }
+
+    @Test fun concurrentSwaps() {
+        for (atom in atoms.map { it(HashMap.empty()) }) {
+            val start = CountDownLatch(1)
+            val threads = (0 until 8).map { t ->
+                thread {
+                    start.await()
+                    for (i in 0 until 2000) {
+                        try {
+                            atom.swap(f { m ->
+                                if (i % 100 == 0) throw IllegalStateException()
+                                m.put(-1, (m[-1] ?: 0) + 1).put(t * 10000 + i, i)
+                            })
+                        } catch (e: IllegalStateException) {
+                            assertEquals(0, i % 100)
+                        }
+                    }
+                }
+            }
+            start.countDown()
+            threads.forEach { it.join() }
+
+            val expected = 8 * 2000 - 8 * 20
+            assertEquals(expected, atom.get()[-1])
+            assertEquals(expected + 1, atom.get().size())
+            assertEquals(expected.toLong(), atom.metrics.updates)
+        }
+    }
+
+    @Test fun combiningBatches() {
+        val atom = Atom.combining(0)
+        val threads = (0 until 8).map {
+            thread {
+                for (i in 0 until 5000) {
+                    atom.swap(f { it + 1 })
+                }
+            }
+        }
+        threads.forEach { it.join() }
+        assertEquals(40000, atom.get())
+        assertEquals(40000, atom.metrics.updates)
+        assertTrue(atom.metrics.batches in 1..40000)
+    }
+}
@@ -22,7 +22,7 @@
 
 package com.github.andrewoma.dexx.collection
 
-class CollidingKey(val hashCode: Int, val key: Int) : Comparable<CollidingKey> {
+class CollidingKey(val hashCode: Int, val key: Int) : Comparable<CollidingKey>, java.io.Serializable {
 
     override fun hashCode() = hashCode
 
@@ -22,9 +22,52 @@
 
 package com.github.andrewoma.dexx.collection
 
+import org.junit.Test
+import java.util.Spliterator
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
 class ConsListTest() : AbstractListTest() {
 
     override fun <T> factory(): BuilderFactory<T, out List<T>> {
         return ConsList.factory()
     }
-}
\ No newline at end of file
+
+    @Test fun sizeIsTracked() {
+        var list = ConsList.empty<Int>()
+        for (i in 1..100) {
+            list = list.prepend(i)
+            assertEquals(i, list.size())
+        }
+        assertEquals(50, list.drop(50).size())
+        assertEquals(50, list.take(50).size())
+        assertEquals(100, list.set(99, 0).size())
+        assertEquals(101, list.append(0).size())
+    }
+
+    @Test fun boundsChecked() {
+        val list = ConsList.empty<Int>().prepend(2).prepend(1)
+        assertFailsWith(IndexOutOfBoundsException::class) { list[2] }
+        assertFailsWith(IndexOutOfBoundsException::class) { list[-1] }
+        assertFailsWith(IndexOutOfBoundsException::class) { list.set(2, 0) }
+        assertFailsWith(IndexOutOfBoundsException::class) { list.set(-1, 0) }
+    }
+
+    @Test fun notEqualToDifferentLength() {
+        val list = ConsList.empty<Int>().prepend(2).prepend(1)
+        assertFalse(list.equals(list.tail()))
+        assertFalse(list.equals(list.prepend(0)))
+    }
+
+    @Test fun spliteratorSplitsInBatches() {
+        val list = ConsList.factory<Int>().newBuilder().addAll(1..5000).build()
+        val spliterator = list.spliterator()
+        assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED or Spliterator.SIZED or Spliterator.SUBSIZED or Spliterator.IMMUTABLE))
+        val prefix = spliterator.trySplit()!!
+        assertEquals(1024L, prefix.exactSizeIfKnown)
+        assertEquals(5000L - 1024, spliterator.exactSizeIfKnown)
+        assertEquals((1..5000).sum(), list.parallelStream().mapToInt { it }.sum())
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CountDownLatch
+import kotlin.concurrent.thread
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class CopyOnWriteHashMapTest {
+    private val maps = listOf({ CopyOnWriteHashMap<Int, String>() }, { CopyOnWriteHashMap<Int, String>(5) })
+
+    @Test fun operations() {
+        for (map in maps.map { it() }) {
+            val expected = ConcurrentHashMap<Int, String>()
+            for (i in 0 until 200) {
+                assertEquals(expected.put(i % 50, "$i"), map.put(i % 50, "$i"))
+                assertEquals(expected.putIfAbsent(i % 70, "a$i"), map.putIfAbsent(i % 70, "a$i"))
+                assertEquals(expected.remove(i % 30), map.remove(i % 30))
+                assertEquals(expected.replace(i % 40, "r$i"), map.replace(i % 40, "r$i"))
+                assertEquals(expected.replace(i % 45, "${i - 1}", "x$i"), map.replace(i % 45, "${i - 1}", "x$i"))
+                assertEquals(expected.remove(i % 35, "x${i - 2}"), map.remove(i % 35, "x${i - 2}"))
+                assertEquals<kotlin.collections.Map<Int, String>>(expected, map)
+            }
+            assertEquals(expected.size, map.size)
+            assertEquals(expected.keys, map.keys)
+            assertEquals(expected.hashCode(), map.hashCode())
+            map.clear()
+            assertTrue(map.isEmpty())
+        }
+    }
+
+    @Test fun nulls() {
+        val map = CopyOnWriteHashMap<Int?, String?>()
+        val javaMap: MutableMap<Int?, String?> = map
+        assertFailsWith<NullPointerException> { javaMap.put(null, "a") }
+        assertFailsWith<NullPointerException> { javaMap.put(1, null) }
+        assertFailsWith<NullPointerException> { map[null] }
+        assertNull(map[1])
+        assertFalse(map.remove(1, null))
+    }
+
+    @Test fun snapshots() {
+        for (map in maps.map { it() }) {
+            for (i in 1..100) map[i] = "$i"
+            val snapshot = map.snapshot()
+            map.remove(1)
+            map[101] = "101"
+            assertEquals((1..100).fold(HashMap.empty<Int, String>()) { m, i -> m.put(i, "$i") }, snapshot)
+            assertEquals("1", snapshot[1])
+            assertEquals(100, snapshot.size())
+            assertEquals(map.snapshot().put(1, "1").remove(101), snapshot)
+            assertEquals(map, map.snapshot().asMap())
+        }
+    }
+
+    @Test fun views() {
+        for (map in maps.map { it() }) {
+            for (i in 1..10) map[i] = "$i"
+            val iterator = map.entries.iterator()
+            val first = iterator.next()
+            map[11] = "11"
+            iterator.remove()
+            assertFalse(map.containsKey(first.key))
+            assertEquals(10, map.size)
+            val key = if (first.key == 2) 3 else 2
+            assertFalse(map.entries.remove(java.util.AbstractMap.SimpleEntry(key, "x")))
+            assertTrue(map.entries.remove(java.util.AbstractMap.SimpleEntry(key, "$key")))
+            assertFalse(map.containsKey(key))
+            assertEquals(9, map.size)
+            map.keys.removeIf { it > 5 }
+            assertTrue(map.keys.all { it <= 5 })
+            assertEquals(map.keys.size, map.values.size)
+        }
+    }
+
+    @Test fun exhaustedIterators() {
+        for (map in maps.map { it() }) {
+            for (i in 1..10) map[i] = "$i"
+            for (iterator in listOf(map.snapshot().iterator(), map.entries.iterator())) {
+                for (i in 1..10) iterator.next()
+                assertFalse(iterator.hasNext())
+                assertFalse(iterator.hasNext())
+                assertFailsWith<NoSuchElementException> { iterator.next() }
+            }
+        }
+    }
+
+    @Test fun entrySetValueWritesThrough() {
+        for (map in maps.map { it() }) {
+            for (i in 1..10) map[i] = "$i"
+            val entry = map.entries.first { it.key == 5 }
+            assertEquals("5", entry.setValue("five"))
+            assertEquals("five", entry.value)
+            assertEquals("five", map[5])
+            assertEquals(10, map.size)
+        }
+    }
+
+    @Test fun concurrentWrites() {
+        for (map in maps.map { it() }) {
+            val start = CountDownLatch(1)
+            val threads = (0 until 8).map { t ->
+                thread {
+                    start.await()
+                    for (i in 0 until 2000) {
+                        map[t * 10000 + i] = "$i"
+                        map.merge(-1, "x") { a, b -> a + b }
+                        if (i % 2 == 0) map.remove(t * 10000 + i)
+                    }
+                }
+            }
+            start.countDown()
+            threads.forEach { it.join() }
+            assertEquals(8 * 1000 + 1, map.size)
+            assertEquals(8 * 2000, map[-1]!!.length)
+        }
+    }
+}
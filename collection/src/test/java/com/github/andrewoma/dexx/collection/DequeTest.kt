@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class DequeTest() : AbstractListTest() {
+
+    override fun <T> factory(): BuilderFactory<T, out List<T>> {
+        return Deque.factory()
+    }
+
+    private fun Deque<Int>.elements() = toArray().toList()
+
+    @Test fun appendAndPrepend() {
+        var deque = Deque.empty<Int>()
+        val expected = arrayListOf<Int>()
+        for (i in 1..100) {
+            deque = if (i % 3 == 0) deque.prepend(i) else deque.append(i)
+            if (i % 3 == 0) expected.add(0, i) else expected.add(i)
+
+            assertEquals(expected.size, deque.size())
+            assertEquals(expected.first(), deque.first())
+            assertEquals(expected.last(), deque.last())
+        }
+        assertEquals(expected, deque.elements())
+    }
+
+    @Test fun fifo() {
+        var deque = Deque.empty<Int>()
+        for (i in 1..100) {
+            deque = deque.append(i)
+        }
+        for (i in 1..100) {
+            assertEquals(i, deque.first())
+            assertEquals(101 - i, deque.size())
+            deque = deque.tail()
+        }
+        assertTrue(deque.isEmpty)
+        assertNull(deque.first())
+        assertTrue(deque.tail().isEmpty)
+    }
+
+    @Test fun init() {
+        var deque = Deque.empty<Int>()
+        for (i in 1..100) {
+            deque = deque.prepend(i)
+        }
+        for (i in 1..100) {
+            assertEquals(i, deque.last())
+            deque = deque.init()
+        }
+        assertTrue(deque.isEmpty)
+        assertNull(deque.last())
+        assertTrue(deque.init().isEmpty)
+    }
+
+    @Test fun getAndSetAcrossFrontAndRear() {
+        var deque = Deque.empty<Int>()
+        for (i in 0..49) {
+            deque = deque.append(i)
+        }
+        for (i in 0..49) {
+            assertEquals(i, deque[i])
+            assertEquals((0..49).map { if (it == i) -1 else it }, deque.set(i, -1).elements())
+        }
+    }
+
+    @Test fun takeAndDrop() {
+        var deque = Deque.empty<Int>()
+        for (i in 0..49) {
+            deque = deque.append(i)
+        }
+        for (i in 0..50) {
+            assertEquals((0..49).take(i), deque.take(i).elements())
+            assertEquals((0..49).drop(i), deque.drop(i).elements())
+            assertEquals(Math.min(i, 50), deque.take(i).size())
+        }
+    }
+
+    @Test fun linkedLists() {
+        assertEquals(LinkedLists.of(1, 2, 3), LinkedLists.emptyDeque<Int>().append(2).append(3).prepend(1))
+        assertEquals(LinkedLists.of(1, 2, 3), LinkedLists.dequeBuilder<Int>().addAll(1, 2, 3).build())
+        assertTrue(LinkedLists.dequeFactory<Int>().newBuilder().build() is Deque<*>)
+    }
+}
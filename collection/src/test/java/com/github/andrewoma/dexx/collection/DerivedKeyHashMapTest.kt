@@ -26,7 +26,9 @@ import com.github.andrewoma.dexx.collection.internal.base.AbstractMap
 import com.github.andrewoma.dexx.collection.internal.builder.AbstractSelfBuilder
 import org.junit.Test
 import java.util.*
+import java.util.stream.Collectors
 import kotlin.test.assertEquals
+import kotlin.test.assertTrue
 
 /**
  *
@@ -128,4 +130,12 @@ class DerivedKeyHashMapTest : AbstractMapTest(supportsNullValues = false) {
         override fun equals(other: Any?): Boolean = other is ClassForIdentityKey && other.key == key
         override fun hashCode(): Int = key.hashCode()
     }
+
+    @Test fun spliteratorReturnsDerivedPairs() {
+        var map = DerivedKeyHashMap<Int, String> { it.length }
+        for (i in 1..100) map = map.put(i, "x".repeat(i))
+        val pairs = map.parallelStream().collect(Collectors.toList<Pair<Int, String>>())
+        assertEquals(map.iterator().asSequence().toList(), pairs)
+        assertTrue(map.spliterator().hasCharacteristics(Spliterator.SIZED or Spliterator.SUBSIZED or Spliterator.DISTINCT))
+    }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import java.util.stream.Collector
+import java.util.stream.IntStream
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class DexxCollectorsTest {
+    private fun ints(size: Int) = IntStream.range(0, size).boxed()
+
+    @Test fun toVector() {
+        val expected = Vector.factory<Int>().newBuilder().addAll((0..9999).toList()).build()
+        assertEquals(expected, ints(10000).collect(DexxCollectors.toVector<Int>()))
+        assertEquals(expected, ints(10000).parallel().collect(DexxCollectors.toVector<Int>()))
+        assertEquals(Vector.empty<Int>(), ints(0).collect(DexxCollectors.toVector<Int>()))
+    }
+
+    @Test fun toVectorCombinesInOrder() {
+        val collector = DexxCollectors.toVector<Int>()
+        val expected = Vector.factory<Int>().newBuilder().addAll((0..99).toList()).build()
+        assertEquals(expected, combine(collector, 0..36, 37..99))
+        assertEquals(expected, combine(collector, 0..63, 64..99))
+        assertEquals(expected, combine(collector, IntRange.EMPTY, 0..99))
+    }
+
+    @Test fun toHashSet() {
+        val expected = HashSet.factory<Int>().newBuilder().addAll((0..9999).toList()).build()
+        assertEquals(expected, ints(10000).parallel().collect(DexxCollectors.toHashSet<Int>()))
+        assertEquals(expected, ints(10000).parallel().map { it }.collect(DexxCollectors.toHashSet<Int>()))
+        assertEquals(expected, combine(DexxCollectors.toHashSet<Int>(), 0..6000, 3000..9999))
+    }
+
+    @Test fun unionWithCollisions() {
+        val left = setOf(CollidingKey(1, 1), CollidingKey(1, 2), CollidingKey(2, 3), CollidingKey(33, 5))
+        val right = setOf(CollidingKey(1, 2), CollidingKey(1, 4), CollidingKey(2, 3), CollidingKey(65, 6))
+        val union = build(left).union(build(right))
+        assertEquals(left + right, union.asSet())
+        assertEquals((left + right).size, union.size())
+        assertEquals(union, build(right).union(build(left)))
+        assertEquals(build(left), build(left).union(HashSet.empty()))
+        assertEquals(build(left), HashSet.empty<CollidingKey>().union(build(left)))
+    }
+
+    @Test fun unionSharesNodes() {
+        val left = build((0..999).toSet())
+        val union = left.union(build((1000..1999).toSet()))
+        assertEquals((0..1999).toSet(), union.asSet())
+        assertEquals(2000, union.size())
+        for (i in 0..1999) assertTrue(union.contains(i))
+    }
+
+    @Test fun toHashMap() {
+        val map = ints(10000).parallel().collect(DexxCollectors.toHashMap<Int, Int, String>(
+                Function { it }, Function { it.toString() }))
+        assertEquals(10000, map.size())
+        for (i in 0..9999) assertEquals(i.toString(), map[i])
+    }
+
+    @Test fun toHashMapMerges() {
+        val collector = DexxCollectors.toHashMap<Int, Int, Int>(Function { it % 100 }, Function { 1 }, Fold { a, b -> a + b })
+        val map = ints(10000).parallel().collect(collector)
+        assertEquals(100, map.size())
+        for (i in 0..99) assertEquals(100, map[i])
+    }
+
+    @Test fun toHashMapMergesInEncounterOrder() {
+        val collector = DexxCollectors.toHashMap<Int, Int, String>(Function { it % 10 }, Function { it.toString() }, Fold { a, b -> "$a,$b" })
+        val map = combine(collector, 0..14, 15..29)
+        assertEquals("0,10,20", map[0])
+        assertEquals("5,15,25", map[5])
+        assertEquals("0", combine(DexxCollectors.toHashMap<Int, Int, String>(Function { it }, Function { it.toString() }), 0..0, IntRange.EMPTY)[0])
+    }
+
+    @Test fun toHashMapReplacesInEncounterOrder() {
+        val collector = DexxCollectors.toHashMap<Int, Int, Int>(Function { it % 10 }, Function { it })
+        for (split in listOf(5, 15, 25)) {
+            val map = combine(collector, 0..split - 1, split..29)
+            assertEquals(10, map.size())
+            for (i in 0..9) assertEquals(i + 20, map[i])
+        }
+        val map = ints(10000).parallel().collect(collector)
+        for (i in 0..9) assertEquals(i + 9990, map[i])
+    }
+
+    @Test fun accumulateAfterCombine() {
+        val map = accumulateAfterCombine(DexxCollectors.toHashMap<Int, Int, Int>(Function { it % 10 }, Function { it }))
+        for (i in 0..4) assertEquals(i + 20, map[i])
+        for (i in 5..9) assertEquals(i + 10, map[i])
+        val set = accumulateAfterCombine(DexxCollectors.toHashSet<Int>())
+        assertEquals((0..24).toSet(), set.asSet())
+    }
+
+    @Test fun toTreeMap() {
+        val map = ints(10000).parallel().collect(DexxCollectors.toTreeMap<Int, Int, Int>(Function { it }, Function { it * 2 }))
+        assertEquals((0..9999).toList(), map.keys().toList())
+        assertEquals((0..9999).map { it * 2 }, map.values().toList())
+    }
+
+    @Test fun toTreeMapMergesInEncounterOrder() {
+        val collector = DexxCollectors.toTreeMap<Int, Int, String>(Function { it % 10 }, Function { it.toString() },
+                Fold { a, b -> "$a,$b" }, reverseOrder())
+        for (split in listOf(5, 15, 25)) {
+            val map = combine(collector, 0..split - 1, split..29)
+            assertEquals((9 downTo 0).toList(), map.keys().toList())
+            assertEquals("3,13,23", map[3])
+        }
+    }
+
+    @Test fun toTreeMapWithNullValues() {
+        // Keys mapped to null are present, so later values for them are merged rather than treated as new keys
+        val collector = DexxCollectors.toTreeMap<Int, Int, String?>(Function { it % 10 }, Function { if (it % 10 == 3) null else it.toString() },
+                Fold { a, b -> "$a,$b" }, null)
+        for (split in listOf(5, 15, 25)) {
+            val map = combine(collector, 0..split - 1, split..29)
+            assertEquals(10, map.size())
+            assertEquals("null,null,null", map[3])
+            assertEquals("4,14,24", map[4])
+        }
+
+        val replacing = DexxCollectors.toTreeMap<Int, Int, String?>(Function { it % 10 }, Function { if (it < 20) null else it.toString() })
+        for (split in listOf(5, 15, 25)) {
+            val map = combine(replacing, 0..split - 1, split..29)
+            assertEquals((0..9).toList(), map.keys().toList())
+            assertEquals((20..29).map { it.toString() }, map.values().toList())
+        }
+        val nulls = combine(replacing, 0..14, 15..19)
+        assertEquals(10, nulls.size())
+        assertTrue(nulls.containsKey(3))
+        assertNull(nulls[3])
+    }
+
+    @Test fun groupingBy() {
+        val groups = ints(10000).parallel().collect(DexxCollectors.groupingBy<Int, Int>(Function { it % 7 }))
+        assertEquals(7, groups.size())
+        for (i in 0..6) {
+            assertEquals((i..9999 step 7).toList(), groups[i]!!.toList())
+        }
+    }
+
+    @Test fun groupingByWithDownstream() {
+        val groups = ints(1000).parallel().collect(DexxCollectors.groupingBy(Function<Int, Boolean> { it % 2 == 0 }, DexxCollectors.toHashSet<Int>()))
+        assertEquals((0..999 step 2).toSet(), groups[true]!!.asSet())
+        assertEquals((1..999 step 2).toSet(), groups[false]!!.asSet())
+    }
+
+    private fun <T> build(elements: kotlin.collections.Set<T>): HashSet<T> = HashSet.factory<T>().newBuilder().addAll(elements as kotlin.collections.Iterable<T>).build()
+
+    private fun <A, R> accumulateAfterCombine(collector: Collector<Int, A, R>): R {
+        val left = collector.supplier().get()
+        (0..9).forEach { collector.accumulator().accept(left, it) }
+        val right = collector.supplier().get()
+        (10..19).forEach { collector.accumulator().accept(right, it) }
+        val combined = collector.combiner().apply(left, right)
+        (20..24).forEach { collector.accumulator().accept(combined, it) }
+        return collector.finisher().apply(combined)
+    }
+
+    private fun <A, R> combine(collector: Collector<Int, A, R>, left: IntRange, right: IntRange): R {
+        val l = collector.supplier().get()
+        left.forEach { collector.accumulator().accept(l, it) }
+        val r = collector.supplier().get()
+        right.forEach { collector.accumulator().accept(r, it) }
+        return collector.finisher().apply(collector.combiner().apply(l, r))
+    }
+}
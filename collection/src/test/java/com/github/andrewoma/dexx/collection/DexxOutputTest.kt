@@ -0,0 +1,280 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.DataInput
+import java.io.DataInputStream
+import java.io.DataOutput
+import java.io.DataOutputStream
+import java.io.EOFException
+import java.io.StreamCorruptedException
+import java.nio.ByteBuffer
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class DexxOutputTest {
+    private val ints = ElementCodecs.integers()
+    private val strings = ElementCodecs.strings()
+
+    private val collidingKeys = object : ElementCodec<CollidingKey> {
+        override fun write(out: DataOutput, element: CollidingKey) {
+            out.writeInt(element.hashCode)
+            out.writeInt(element.key)
+        }
+
+        override fun read(input: DataInput) = CollidingKey(input.readInt(), input.readInt())
+    }
+
+    private fun write(f: (DexxOutput) -> Unit): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        f(DexxOutput(DataOutputStream(bytes)))
+        return bytes.toByteArray()
+    }
+
+    private fun input(bytes: ByteArray) = DexxInput(DataInputStream(ByteArrayInputStream(bytes)))
+
+    private fun <E> roundTrip(list: List<E>, codec: ElementCodec<E>): List<E> {
+        val actual = input(write { it.writeList(list, codec) }).readList(codec)
+        assertEquals(list, actual)
+        return actual
+    }
+
+    private fun <E> roundTrip(set: Set<E>, codec: ElementCodec<E>): Set<E> {
+        val actual = input(write { it.writeSet(set, codec) }).readSet(codec)
+        assertEquals(set, actual)
+        return actual
+    }
+
+    private fun <K, V> roundTrip(map: Map<K, V>, keyCodec: ElementCodec<K>, valueCodec: ElementCodec<V>): Map<K, V> {
+        val actual = input(write { it.writeMap(map, keyCodec, valueCodec) }).readMap(keyCodec, valueCodec)
+        assertEquals(map, actual)
+        return actual
+    }
+
+    private fun hashMap(range: IntRange) = range.fold(HashMap.empty<Int, String>()) { m, i -> m.put(i, i.toString()) }
+
+    private fun treeMap(range: IntRange) = range.fold(TreeMap<Int, String>()) { m, i -> m.put(i, i.toString()) }
+
+    private fun vector(range: IntRange) = range.fold(Vector.empty<Int>()) { v, i -> v.append(i) }
+
+    @Test fun hashMaps() {
+        for (size in listOf(0, 1, 2, 31, 32, 33, 1000, 5000)) {
+            val actual = roundTrip(hashMap(1..size), ints, strings)
+            assertEquals(hashMap(1..size + 1), actual.put(size + 1, (size + 1).toString()))
+            assertEquals(hashMap(2..size), actual.remove(1))
+        }
+    }
+
+    @Test fun hashMapsWithCollisions() {
+        val map = (1..500).fold(HashMap.empty<CollidingKey, String>()) { m, i -> m.put(CollidingKey(i % 7, i), i.toString()) }
+        val actual = roundTrip(map, collidingKeys, strings)
+        assertEquals("8", actual[CollidingKey(1, 8)])
+        assertEquals(map.remove(CollidingKey(1, 8)), actual.remove(CollidingKey(1, 8)))
+    }
+
+    @Test fun hashSets() {
+        for (size in listOf(0, 1, 33, 2000)) {
+            val set = (1..size).fold(HashSet.empty<Int>()) { s, i -> s.add(i) }
+            val actual = roundTrip(set, ints)
+            assertEquals(set.add(-1), actual.add(-1))
+            assertEquals(set.remove(1), actual.remove(1))
+        }
+        val colliding = (1..100).fold(HashSet.empty<CollidingKey>()) { s, i -> s.add(CollidingKey(i % 3, i)) }
+        assertEquals(colliding.remove(CollidingKey(1, 1)), roundTrip(colliding, collidingKeys).remove(CollidingKey(1, 1)))
+    }
+
+    @Test fun treeMaps() {
+        for (size in listOf(0, 1, 2, 100, 3000)) {
+            val actual = roundTrip(treeMap(1..size), ints, strings) as SortedMap<Int, String>
+            assertEquals((1..size).toList(), actual.keys().toList())
+            assertEquals(treeMap(0..size), actual.put(0, "0"))
+            assertEquals(treeMap(2..size), actual.remove(1))
+        }
+    }
+
+    @Test fun treeMapWithComparator() {
+        val reversed = compareByDescending<Int> { it }
+        val map = (1..100).fold(TreeMap<Int, String>(reversed, null)) { m, i -> m.put(i, i.toString()) }
+        val actual = input(write { it.writeMap(map, ints, strings) }).readSortedMap(reversed, ints, strings)
+        assertEquals(map, actual)
+        assertEquals((100 downTo 1).toList(), actual.keys().toList())
+        assertEquals(99, actual.put(0, "0").remove(100).first()?.component1())
+    }
+
+    @Test fun treeSets() {
+        for (size in listOf(0, 1, 100)) {
+            val set = (1..size).fold(TreeSet<Int>()) { s, i -> s.add(i) }
+            val actual = input(write { it.writeSet(set, ints) }).readSortedSet(null, ints)
+            assertEquals(set, actual)
+            assertEquals((1..size).toList(), actual.toList())
+            assertEquals(set.add(0), actual.add(0))
+        }
+    }
+
+    @Test fun vectors() {
+        for (size in listOf(0, 1, 32, 33, 1024, 1025, 40000)) {
+            val actual = roundTrip(vector(1..size), ints) as Vector<Int>
+            assertEquals(vector(1..size + 1), actual.append(size + 1))
+            assertEquals(vector(0..size), actual.prepend(0))
+        }
+    }
+
+    @Test fun slicedAndUpdatedVectors() {
+        val vector = vector(1..5000)
+        roundTrip(vector.drop(100), ints)
+        roundTrip(vector.take(1100).drop(1000), ints)
+        roundTrip(vector.range(1500, true, 1502, false), ints)
+        val updated = vector.set(2000, -1).set(10, -2)
+        assertEquals(-1, roundTrip(updated, ints)[2000])
+    }
+
+    @Test fun consLists() {
+        roundTrip(ConsList.empty<Int>(), ints)
+        roundTrip((1..1000).fold(ConsList.empty<Int>()) { l, i -> l.prepend(i) }, ints)
+    }
+
+    @Test fun elementWise() {
+        assertEquals(ArrayList<Int>().append(1).append(2), roundTrip(ArrayList<Int>().append(1).append(2), ints))
+        assertEquals(Maps.of(1, "a", 2, "b"), roundTrip(Maps.of(1, "a", 2, "b"), ints, strings))
+        assertEquals(IndexedLists.of(1, 2, 3), roundTrip(IndexedLists.of(1, 2, 3), ints))
+        val derived = TreeMap<Int, String>(null, object : KeyFunction<Int, String> {
+            override fun key(value: String) = value.toInt()
+        }).put(1, "1").put(2, "2")
+        assertEquals(treeMap(1..2), input(write { it.writeMap(derived, ints, strings) }).readMap(ints, strings))
+    }
+
+    @Test fun elementWiseSorted() {
+        val bytes = write {
+            it.writeMap(hashMap(1..50), ints, strings)
+            it.writeSet(Sets.of(3, 1, 2), ints)
+        }
+        val input = input(bytes)
+        assertEquals((1..50).toList(), input.readSortedMap(null, ints, strings).keys().toList())
+        assertEquals(listOf(1, 2, 3), input.readSortedSet(null, ints).toList())
+    }
+
+    @Test fun sharedNodesAreWrittenOnce() {
+        val map = hashMap(1..10000)
+        val vector = vector(1..10000)
+        val tree = treeMap(1..10000)
+        val writeOriginals = { output: DexxOutput ->
+            output.writeMap(map, ints, strings)
+            output.writeList(vector, ints)
+            output.writeMap(tree, ints, strings)
+        }
+        val originals = write(writeOriginals)
+        val updated = write {
+            writeOriginals(it)
+            it.writeMap(map.put(1, "x"), ints, strings)
+            it.writeList(vector.set(1, -1), ints)
+            it.writeMap(tree.put(1, "x"), ints, strings)
+        }
+        assertTrue(updated.size - originals.size < originals.size / 100, "${updated.size - originals.size} bytes for updated collections")
+
+        val input = input(updated)
+        assertEquals(map, input.readMap(ints, strings))
+        assertEquals(vector, input.readList(ints))
+        assertEquals(tree, input.readMap(ints, strings))
+        assertEquals(map.put(1, "x"), input.readMap(ints, strings))
+        assertEquals(vector.set(1, -1), input.readList(ints))
+        assertEquals(tree.put(1, "x"), input.readMap(ints, strings))
+    }
+
+    @Test fun sharedNodesAreReadOnce() {
+        val list = (1..100).fold(ConsList.empty<Int>()) { l, i -> l.prepend(i) }
+        val input = input(write {
+            it.writeList(list, ints)
+            it.writeList(list.prepend(0), ints)
+            it.writeList(list.tail(), ints)
+        })
+        val first = input.readList(ints)
+        assertTrue(input.readList(ints).tail() === first)
+        assertTrue(input.readList(ints) === first.tail())
+    }
+
+    @Test fun byteBuffers() {
+        val buffer = ByteBuffer.allocate(100000)
+        val output = DexxOutput(buffer)
+        output.writeMap(hashMap(1..1000), ints, strings)
+        output.writeList(vector(1..1000), ints)
+        buffer.flip()
+
+        val input = DexxInput(buffer)
+        assertEquals(hashMap(1..1000), input.readMap(ints, strings))
+        assertEquals(vector(1..1000), input.readList(ints))
+        assertFalse(buffer.hasRemaining())
+    }
+
+    @Test fun nullableElements() {
+        val codec = ElementCodecs.nullable(strings)
+        val list = Vector.empty<String?>().append("a").append(null).append("b")
+        roundTrip(list, codec)
+        roundTrip(HashMap.empty<Int, String?>().put(1, null).put(2, "2"), ints, codec)
+    }
+
+    @Test fun primitiveCodecs() {
+        roundTrip(Vector.empty<Long>().append(Long.MIN_VALUE).append(1L), ElementCodecs.longs())
+        roundTrip(Vector.empty<Double>().append(Double.NaN).append(1.5), ElementCodecs.doubles())
+        roundTrip(Vector.empty<Boolean>().append(true).append(false), ElementCodecs.booleans())
+        roundTrip(Vector.empty<String>().append("").append("é中"), strings)
+    }
+
+    @Test fun wrongCollectionType() {
+        assertFailsWith<StreamCorruptedException> {
+            input(write { it.writeList(vector(1..3), ints) }).readMap(ints, strings)
+        }
+    }
+
+    @Test fun truncatedInput() {
+        val bytes = write { it.writeMap(hashMap(1..100), ints, strings) }
+        assertFailsWith<EOFException> {
+            input(bytes.copyOf(bytes.size / 2)).readMap(ints, strings)
+        }
+    }
+
+    @Test fun corruptSizes() {
+        val maxVarInt = byteArrayOf(0xff.toByte(), 0xff.toByte(), 0xff.toByte(), 0xff.toByte(), 0x07)
+        val negativeVarInt = byteArrayOf(0xff.toByte(), 0xff.toByte(), 0xff.toByte(), 0xff.toByte(), 0x0f)
+        assertFailsWith<StreamCorruptedException> {
+            input(byteArrayOf(DexxOutput.LIST_ELEMENTS.toByte()) + negativeVarInt).readList(ints)
+        }
+        // A huge size fails when the elements run out rather than allocating up front
+        assertFailsWith<EOFException> {
+            input(byteArrayOf(DexxOutput.LIST_ELEMENTS.toByte()) + maxVarInt).readList(ints)
+        }
+        assertFailsWith<EOFException> {
+            input(byteArrayOf(DexxOutput.MAP_ENTRIES.toByte()) + maxVarInt).readMap(ints, ints)
+        }
+        assertFailsWith<EOFException> {
+            strings.read(DataInputStream(ByteArrayInputStream(byteArrayOf(0x7f, -1, -1, -1, 'a'.toByte()))))
+        }
+        assertFailsWith<StreamCorruptedException> {
+            strings.read(DataInputStream(ByteArrayInputStream(byteArrayOf(-1, -1, -1, -1))))
+        }
+    }
+}
@@ -0,0 +1,57 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class FingerTreeListTest() : AbstractListTest() {
+
+    override fun <T> factory(): BuilderFactory<T, out List<T>> {
+        return FingerTreeList.factory()
+    }
+
+    private fun list(range: IntRange) = FingerTreeList.factory<Int>().newBuilder().addAll(range.toList()).build()
+
+    @Test fun getAndSet() {
+        val list = list(0..499)
+        for (i in 0..499) {
+            assertEquals(i, list[i])
+            val updated = list.set(i, -1)
+            assertEquals(-1, updated[i])
+            assertEquals(500, updated.size())
+            assertEquals(list.take(i), updated.take(i))
+            assertEquals(list.drop(i + 1), updated.drop(i + 1))
+        }
+        assertFailsWith(IndexOutOfBoundsException::class) { list[500] }
+        assertFailsWith(IndexOutOfBoundsException::class) { list[-1] }
+    }
+
+    @Test fun concatAndSlice() {
+        val list = list(0..99).concat(list(100..249))
+        assertEquals((0..249).toList(), list.toArray().toList())
+        assertEquals((50..149).toList(), list.range(50, true, 150, false).toArray().toList())
+        assertEquals((0..248).toList(), list.init().toArray().toList())
+    }
+}
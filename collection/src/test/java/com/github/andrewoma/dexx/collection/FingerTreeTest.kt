@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import java.util.Random
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class FingerTreeTest {
+    // Measures the sum of the elements, as used for byte offset lookups
+    val sum = object : Measure<Int, Long> {
+        override fun measure(element: Int) = element.toLong()
+        override fun zero() = 0L
+        override fun combine(left: Long, right: Long) = left + right
+    }
+
+    fun FingerTree<Int, Long>.elements() = toArray().toList()
+
+    fun tree(elements: kotlin.collections.Iterable<Int>): FingerTree<Int, Long> {
+        var tree = FingerTree.empty(sum)
+        for (e in elements) {
+            tree = tree.append(e)
+        }
+        return tree
+    }
+
+    @Test fun empty() {
+        val tree = FingerTree.empty(sum)
+        assertTrue(tree.isEmpty)
+        assertEquals(0L, tree.measure())
+        assertNull(tree.first())
+        assertNull(tree.last())
+        assertTrue(tree.tail().isEmpty)
+        assertTrue(tree.init().isEmpty)
+        assertEquals(listOf<Int>(), tree.elements())
+    }
+
+    @Test fun pushAndPopBothEnds() {
+        var tree = FingerTree.empty(sum)
+        val expected = arrayListOf<Int>()
+        for (i in 1..500) {
+            if (i % 2 == 0) {
+                tree = tree.append(i)
+                expected.add(i)
+            } else {
+                tree = tree.prepend(i)
+                expected.add(0, i)
+            }
+            assertEquals(expected.sum().toLong(), tree.measure())
+            assertEquals(expected.first(), tree.first())
+            assertEquals(expected.last(), tree.last())
+        }
+        assertEquals(expected, tree.elements())
+
+        while (!expected.isEmpty()) {
+            if (expected.size % 3 == 0) {
+                tree = tree.init()
+                expected.removeAt(expected.size - 1)
+            } else {
+                tree = tree.tail()
+                expected.removeAt(0)
+            }
+            assertEquals(expected.sum().toLong(), tree.measure())
+            assertEquals(expected, tree.elements())
+        }
+        assertTrue(tree.isEmpty)
+    }
+
+    @Test fun concat() {
+        for (leftSize in listOf(0, 1, 2, 5, 9, 30, 100)) {
+            for (rightSize in listOf(0, 1, 3, 8, 20, 200)) {
+                val left = (1..leftSize).toList()
+                val right = (1000..999 + rightSize).toList()
+                val tree = tree(left).concat(tree(right))
+                assertEquals(left + right, tree.elements())
+                assertEquals((left + right).sum().toLong(), tree.measure())
+            }
+        }
+    }
+
+    @Test fun split() {
+        val elements = (1..300).toList()
+        val tree = tree(elements)
+        for (limit in listOf(0L, 1L, 2L, 3L, 100L, 5050L, 5051L, 45150L)) {
+            val split = tree.split(Predicate<Long> { it > limit })
+            var total = 0L
+            val expectedLeft = elements.takeWhile { total += it; total <= limit }
+            assertEquals(expectedLeft, split.component1().elements())
+            assertEquals(elements.drop(expectedLeft.size), split.component2().elements())
+            assertEquals(expectedLeft.sum().toLong(), split.component1().measure())
+        }
+
+        val never = tree.split(Predicate<Long> { false })
+        assertEquals(elements, never.component1().elements())
+        assertTrue(never.component2().isEmpty)
+    }
+
+    @Test fun lookup() {
+        val elements = (1..1000).toList()
+        val tree = tree(elements)
+        var offset = 0L
+        for (e in elements) {
+            val start = offset
+            assertEquals(e, tree.lookup(Predicate<Long> { it > start }))
+            offset += e
+        }
+        assertNull(tree.lookup(Predicate<Long> { it > offset }))
+    }
+
+    @Test fun randomOperations() {
+        val random = Random(42)
+        var tree = FingerTree.empty(sum)
+        var expected = listOf<Int>()
+        for (i in 1..2000) {
+            when (random.nextInt(5)) {
+                0 -> { tree = tree.append(i); expected = expected + i }
+                1 -> { tree = tree.prepend(i); expected = listOf(i) + expected }
+                2 -> { tree = tree.tail(); expected = expected.drop(1) }
+                3 -> {
+                    val limit = random.nextInt(Math.max(1, expected.sum()))
+                    val split = tree.split(Predicate<Long> { it > limit })
+                    tree = split.component2().concat(split.component1())
+                    var total = 0L
+                    val left = expected.takeWhile { total += it; total <= limit }
+                    expected = expected.drop(left.size) + left
+                }
+                else -> { tree = tree.concat(tree(listOf(i, i + 1))); expected = expected + listOf(i, i + 1) }
+            }
+            assertEquals(expected.sum().toLong(), tree.measure())
+        }
+        assertEquals(expected, tree.elements())
+    }
+}
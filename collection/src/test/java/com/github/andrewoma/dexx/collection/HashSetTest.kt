@@ -23,7 +23,10 @@
 package com.github.andrewoma.dexx.collection
 
 import org.junit.Test
+import java.util.Spliterator
 import kotlin.test.assertEquals
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
 
 class HashSetTest() : AbstractSetTest() {
 
@@ -37,4 +40,18 @@ class HashSetTest() : AbstractSetTest() {
         val sets = build(build(1, 2, 3), build(1, 2, 3), build(2, 3), build(4, 5, 6))
         assertEquals(3, sets.size())
     }
-}
\ No newline at end of file
+
+    @Test fun spliteratorSplitsByTrieNode() {
+        val set = HashSet.factory<Int>().newBuilder().addAll(1..1000).build()
+        val spliterator = set.spliterator()
+        val prefix = spliterator.trySplit()!!
+        assertEquals(1000L, prefix.exactSizeIfKnown + spliterator.exactSizeIfKnown)
+        assertTrue(prefix.estimateSize() > 100 && spliterator.estimateSize() > 100)
+    }
+
+    @Test fun spliteratorCharacteristics() {
+        val spliterator = HashSet.factory<Int>().newBuilder().addAll(1..100).build().spliterator()
+        assertTrue(spliterator.hasCharacteristics(Spliterator.DISTINCT or Spliterator.SIZED or Spliterator.SUBSIZED or Spliterator.IMMUTABLE or Spliterator.NONNULL))
+        assertFalse(spliterator.hasCharacteristics(Spliterator.ORDERED))
+    }
+}
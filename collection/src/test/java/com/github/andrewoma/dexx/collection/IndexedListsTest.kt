@@ -73,4 +73,15 @@ class IndexedListsTest {
     @Test fun builder() {
         assertEquals(build(1, 2, 3), IndexedLists.builder<Int>().addAll(1, 2, 3).build())
     }
-}
\ No newline at end of file
+
+    @Test fun copyOfLargeCollection() {
+        for (size in listOf(4, 5, 32, 33, 1025, 40000)) {
+            val source = (0 until size).toList()
+            val actual = IndexedLists.copyOf(source)
+            assertEquals(size, actual.size())
+            assertEquals(source, actual.toList())
+            assertEquals(source, IndexedLists.copyOf(source.toTypedArray()).toList())
+            assertEquals(source + -1, actual.append(-1).toList())
+        }
+    }
+}
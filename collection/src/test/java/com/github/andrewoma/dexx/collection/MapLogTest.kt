@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.After
+import org.junit.Test
+import java.io.File
+import java.io.IOException
+import java.io.RandomAccessFile
+import java.io.StreamCorruptedException
+import java.util.Collections
+import kotlin.concurrent.thread
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertTrue
+
+class MapLogTest {
+    private val ints = ElementCodecs.integers()
+    private val strings = ElementCodecs.strings()
+    private val file = File.createTempFile("dexx", ".log")
+
+    @After fun tearDown() {
+        file.delete()
+    }
+
+    private fun open() = MapLog.open(file, ints, strings)
+
+    private fun appendAll(log: MapLog<Int, String, Map<Int, String>>, range: IntRange): Map<Int, String> {
+        for (i in range) {
+            log.append(log.latest().put(i, i.toString()))
+        }
+        return log.latest()
+    }
+
+    @Test fun empty() {
+        open().use { assertEquals(HashMap.empty<Int, String>(), it.latest()) }
+        open().use { assertEquals(HashMap.empty<Int, String>(), it.latest()) }
+    }
+
+    @Test fun reopen() {
+        val first = open().use { appendAll(it, 1..100) }
+        val second = open().use {
+            assertEquals(first, it.latest())
+            appendAll(it, 101..200).remove(5).also { v -> it.append(v) }
+        }
+        open().use { assertEquals(second, it.latest()) }
+    }
+
+    @Test fun sorted() {
+        val expected = MapLog.openSorted(file, Collections.reverseOrder(), ints, strings).use {
+            for (i in 1..50) {
+                it.append(it.latest().put(i, i.toString()))
+            }
+            it.latest()
+        }
+        MapLog.openSorted(file, Collections.reverseOrder(), ints, strings).use {
+            assertEquals(expected, it.latest())
+            assertEquals((50 downTo 1).toList(), it.latest().keys().toList())
+            it.append(it.latest().put(51, "51"))
+            assertEquals(51, it.latest().first()?.component1())
+        }
+    }
+
+    @Test fun appendsWriteChangedNodes() {
+        open().use {
+            it.append((1..10000).fold(HashMap.empty<Int, String>()) { m, i -> m.put(i, i.toString()) })
+            val size = it.size()
+            it.append(it.latest().put(1, "x"))
+            assertTrue(it.size() - size < size / 100, "${it.size() - size} bytes appended")
+        }
+    }
+
+    @Test fun truncatedFrame() {
+        val expected = open().use { appendAll(it, 1..10) }
+        val length = file.length()
+        open().use { it.append(it.latest().put(11, "11")) }
+        RandomAccessFile(file, "rw").use { it.setLength(file.length() - 3) }
+        open().use {
+            assertEquals(expected, it.latest())
+            assertEquals(length, file.length())
+            it.append(it.latest().put(12, "12"))
+        }
+        open().use { assertEquals(expected.put(12, "12"), it.latest()) }
+    }
+
+    @Test fun corruptFrame() {
+        val expected = open().use { appendAll(it, 1..10) }
+        open().use { it.append(it.latest().put(11, "11")) }
+        RandomAccessFile(file, "rw").use {
+            it.seek(file.length() - 1)
+            val b = it.read()
+            it.seek(file.length() - 1)
+            it.write(b xor 0xff)
+        }
+        open().use { assertEquals(expected, it.latest()) }
+    }
+
+    @Test fun zeroFilledTail() {
+        val expected = open().use { appendAll(it, 1..10) }
+        RandomAccessFile(file, "rw").use { it.setLength(file.length() + 4096) }
+        open().use { assertEquals(expected, it.latest()) }
+    }
+
+    @Test fun compact() {
+        open().use {
+            appendAll(it, 1..500)
+            val size = it.size()
+            it.compact()
+            assertTrue(it.size() < size / 5)
+            assertFalse(File(file.path + ".compact").exists())
+            appendAll(it, 501..600)
+        }
+        open().use {
+            assertEquals((1..600).fold(HashMap.empty<Int, String>()) { m, i -> m.put(i, i.toString()) }, it.latest())
+        }
+    }
+
+    @Test fun concurrentAppendsAndCompaction() {
+        val base = (1..1000).fold(HashMap.empty<Int, String>()) { m, i -> m.put(i, i.toString()) }
+        val log = open()
+        log.append(base)
+        val appenders = (1..8).map { t ->
+            thread {
+                for (i in 1..200) {
+                    log.append(base.put(t, "$t-$i").remove(i))
+                }
+            }
+        }
+        val compactor = thread {
+            for (i in 1..5) {
+                log.compact()
+            }
+        }
+        appenders.forEach { it.join() }
+        compactor.join()
+        val latest = log.latest()
+        log.close()
+        open().use { assertEquals(latest, it.latest()) }
+    }
+
+    @Test fun closed() {
+        val log = open()
+        log.close()
+        assertFailsWith<IOException> { log.append(HashMap.empty()) }
+    }
+
+    @Test fun notALog() {
+        file.writeBytes(ByteArray(100) { 1 })
+        assertFailsWith<StreamCorruptedException> { open() }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.After
+import org.junit.Test
+import java.io.DataInput
+import java.io.DataOutput
+import java.io.File
+import java.io.StreamCorruptedException
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertFalse
+import kotlin.test.assertNull
+import kotlin.test.assertSame
+import kotlin.test.assertTrue
+
+class MappedMapsTest {
+    private val ints = ElementCodecs.integers()
+    private val strings = ElementCodecs.strings()
+    private val file = File.createTempFile("dexx", ".map")
+
+    @After fun tearDown() {
+        file.delete()
+    }
+
+    private fun hashMap(range: IntProgression) = range.fold(HashMap.empty<Int, String>()) { m, i -> m.put(i, i.toString()) }
+
+    private fun treeMap(range: IntProgression, comparator: Comparator<Int>? = null) =
+            range.fold(TreeMap<Int, String>(comparator, null)) { m, i -> m.put(i, i.toString()) }
+
+    private fun mapped(map: Map<Int, String>): Map<Int, String> {
+        MappedMaps.write(file, map, ints, strings)
+        return MappedMaps.open(file, ints, strings)
+    }
+
+    private fun mappedSorted(map: SortedMap<Int, String>): SortedMap<Int, String> {
+        MappedMaps.writeSorted(file, map, ints, strings)
+        return MappedMaps.openSorted(file, map.comparator(), ints, strings)
+    }
+
+    @Test fun hashed() {
+        for (size in listOf(0, 1, 2, 1000)) {
+            val map = hashMap(1..size)
+            val mapped = mapped(map)
+            assertEquals(map, mapped)
+            assertEquals(size, mapped.size())
+            for (i in 0..size + 1) {
+                assertEquals(map[i], mapped[i])
+                assertEquals(map.containsKey(i), mapped.containsKey(i))
+            }
+        }
+    }
+
+    @Test fun hashedCollisions() {
+        val codec = object : ElementCodec<CollidingKey> {
+            override fun write(out: DataOutput, element: CollidingKey) {
+                out.writeInt(element.hashCode)
+                out.writeInt(element.key)
+            }
+
+            override fun read(input: DataInput) = CollidingKey(input.readInt(), input.readInt())
+        }
+        val map = (1..300).fold(HashMap.empty<CollidingKey, String>()) { m, i -> m.put(CollidingKey(i % 5, i), i.toString()) }
+        MappedMaps.write(file, map, codec, strings)
+        val mapped = MappedMaps.open(file, codec, strings)
+        assertEquals(map, mapped)
+        assertEquals("42", mapped[CollidingKey(2, 42)])
+        assertNull(mapped[CollidingKey(2, 301)])
+    }
+
+    @Test fun nullValues() {
+        val codec = ElementCodecs.nullable(strings)
+        MappedMaps.write(file, HashMap.empty<Int, String?>().put(1, null).put(2, "2"), ints, codec)
+        val mapped = MappedMaps.open(file, ints, codec)
+        assertTrue(mapped.containsKey(1))
+        assertNull(mapped[1])
+        assertEquals("2", mapped[2])
+        assertFalse(mapped.containsKey(3))
+    }
+
+    @Test fun sorted() {
+        for (size in listOf(0, 1, 2, 1000)) {
+            val map = treeMap(1..size * 2 step 2)
+            val mapped = mappedSorted(map)
+            assertEquals(map, mapped)
+            assertEquals(map.keys().toList(), mapped.keys().toList())
+            assertEquals(map.first(), mapped.first())
+            assertEquals(map.last(), mapped.last())
+            for (i in 0..size * 2 + 1) {
+                assertEquals(map[i], mapped[i])
+                assertEquals(map.containsKey(i), mapped.containsKey(i))
+            }
+        }
+    }
+
+    @Test fun sortedWithComparator() {
+        val map = treeMap(1..100, compareByDescending { it })
+        val mapped = mappedSorted(map)
+        assertEquals((100 downTo 1).toList(), mapped.keys().toList())
+        assertEquals("50", mapped[50])
+        assertEquals(map.range(60, true, 40, false), mapped.range(60, true, 40, false))
+    }
+
+    @Test fun sortedViews() {
+        val map = treeMap(1..200 step 2)
+        val mapped = mappedSorted(map)
+        for (from in listOf(0, 1, 2, 50, 51, 199, 200)) {
+            for (inclusive in listOf(true, false)) {
+                assertEquals(map.from(from, inclusive), mapped.from(from, inclusive))
+                assertEquals(map.to(from, inclusive), mapped.to(from, inclusive))
+                for (to in listOf(from, from + 1, from + 20, 300)) {
+                    val expected = map.range(from, inclusive, to, !inclusive)
+                    val actual = mapped.range(from, inclusive, to, !inclusive)
+                    assertEquals(expected, actual)
+                    assertEquals(expected.size(), actual.size())
+                    assertEquals(expected.first(), actual.first())
+                }
+            }
+        }
+        for (n in listOf(-1, 0, 1, 50, 100, 101)) {
+            assertEquals(map.take(n), mapped.take(n))
+            assertEquals(map.drop(n), mapped.drop(n))
+        }
+        assertEquals(map.drop(10).take(5).keys().toList(), mapped.drop(10).take(5).keys().toList())
+        assertEquals(map.range(11, true, 31, false).asSortedMap().tailMap(21), mapped.range(11, true, 31, false).asSortedMap().tailMap(21))
+    }
+
+    @Test fun updatesCopy() {
+        val mapped = mapped(hashMap(1..3))
+        assertEquals(hashMap(1..4), mapped.put(4, "4"))
+        assertEquals(hashMap(2..3), mapped.remove(1))
+        assertSame(mapped, mapped.remove(5))
+        assertEquals(hashMap(1..3), mapped)
+
+        val sorted = mappedSorted(treeMap(1..10)).range(3, true, 6, true)
+        val put = sorted.put(1, "1")
+        assertEquals(listOf(1, 3, 4, 5, 6), put.keys().toList())
+        assertEquals(listOf(3, 5, 6), sorted.remove(4).keys().toList())
+        assertSame(sorted, sorted.remove(1))
+        assertEquals(listOf(3, 4, 5, 6), sorted.keys().toList())
+    }
+
+    @Test fun asMap() {
+        val mapped = mapped(hashMap(1..10)).asMap()
+        assertEquals("5", mapped[5])
+        assertEquals((1..10).toSet(), mapped.keys)
+    }
+
+    @Test fun invalidFiles() {
+        MappedMaps.write(file, hashMap(1..3), ints, strings)
+        assertFailsWith<StreamCorruptedException> { MappedMaps.openSorted(file, null, ints, strings) }
+        file.writeBytes(ByteArray(20))
+        assertFailsWith<StreamCorruptedException> { MappedMaps.open(file, ints, strings) }
+    }
+}
@@ -66,4 +66,47 @@ class MapsTest {
     @Test fun builder() {
         assertEquals(build(1 to "a", 2 to "b"), Maps.builder<Int, String>().addAll(Pair(1, "a"), Pair(2, "b")).build())
     }
-}
\ No newline at end of file
+
+    @Test fun copyOfJavaMap() {
+        val source = java.util.concurrent.ConcurrentHashMap<Int, String>()
+        var expected: Map<Int, String> = HashMap.empty()
+        for (i in 1..1000) {
+            source.put(i, i.toString())
+            expected = expected.put(i, i.toString())
+        }
+        assertEquals(expected, Maps.copyOf(source))
+        assertEquals(Maps.of<Int, String>(), Maps.copyOf(java.util.HashMap<Int, String>()))
+    }
+
+    @Test fun copyOfCollidingKeysKeepsLastValue() {
+        val pairs = (0..999).map { Pair(CollidingKey(it % 300 % 7, it % 300), it) }
+        var expected: Map<CollidingKey, Int> = HashMap.empty()
+        for (pair in pairs) {
+            expected = expected.put(pair.component1(), pair.component2())
+        }
+        val actual = Maps.copyOf(pairs)
+        assertEquals(expected, actual)
+        assertEquals(300, actual.size())
+        assertEquals(999, actual[CollidingKey(999 % 300 % 7, 999 % 300)])
+
+        // The bulk built trie must support further updates
+        var updated = actual
+        for (pair in pairs) {
+            updated = updated.remove(pair.component1())
+        }
+        assertEquals(0, updated.size())
+    }
+
+    @Test fun builderWithRepeatedKeysFlushesAcrossBatches() {
+        // Enough adds to flush the builder's buffer several times, with later values replacing earlier ones
+        val builder = HashMap.factory<Int, Int>().newBuilder()
+        val expected = java.util.HashMap<Int, Int>()
+        for (i in 0..49999) {
+            builder.add(Pair(i * 7 % 3000, i))
+            expected.put(i * 7 % 3000, i)
+        }
+        val actual = builder.build()
+        assertEquals(3000, actual.size())
+        assertEquals(expected, actual.asMap())
+    }
+}
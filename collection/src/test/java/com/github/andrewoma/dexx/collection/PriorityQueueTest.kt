@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import java.util.Random
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class PriorityQueueTest {
+    @Test fun empty() {
+        val queue = PriorityQueue.empty<Int>()
+        assertTrue(queue.isEmpty)
+        assertNull(queue.first())
+        assertTrue(queue.removeFirst().isEmpty)
+    }
+
+    @Test fun removesInPriorityOrder() {
+        val random = Random(1)
+        var queue = PriorityQueue.empty<Int>()
+        val expected = java.util.PriorityQueue<Int>()
+        for (i in 1..1000) {
+            val value = random.nextInt(100)
+            queue = queue.insert(value)
+            expected.add(value)
+            if (i % 3 == 0) {
+                assertEquals(expected.poll(), queue.first())
+                queue = queue.removeFirst()
+            }
+            assertEquals(expected.size, queue.size())
+        }
+        while (!expected.isEmpty()) {
+            assertEquals(expected.poll(), queue.first())
+            queue = queue.removeFirst()
+        }
+        assertTrue(queue.isEmpty)
+    }
+
+    @Test fun comparatorAndStability() {
+        val byFirst = java.util.Comparator<Pair<Int, String>> { p1, p2 -> p1.component1() - p2.component1() }
+        var queue = PriorityQueue.empty(byFirst)
+        queue = queue.insert(Pair(2, "a")).insert(Pair(1, "b")).insert(Pair(2, "c")).insert(Pair(1, "d"))
+
+        val order = arrayListOf<String>()
+        while (!queue.isEmpty) {
+            order.add(queue.first()!!.component2())
+            queue = queue.removeFirst()
+        }
+        assertEquals(listOf("b", "d", "a", "c"), order)
+    }
+
+    @Test fun merge() {
+        val q1 = PriorityQueue.empty<Int>().insert(5).insert(1)
+        val q2 = PriorityQueue.empty<Int>().insert(3).insert(0)
+        val merged = q1.merge(q2)
+        assertEquals(4, merged.size())
+        assertEquals(0, merged.first())
+        assertEquals(1, merged.removeFirst().first())
+        assertEquals(1, q1.first())
+    }
+}
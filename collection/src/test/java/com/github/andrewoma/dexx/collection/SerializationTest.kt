@@ -0,0 +1,168 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.IOException
+import java.io.InvalidObjectException
+import java.io.ObjectInputStream
+import java.io.ObjectOutputStream
+import java.io.Serializable
+import java.util.Collections
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class SerializationTest {
+    object LengthKey : KeyFunction<Int, String>, Serializable {
+        override fun key(value: String) = value.length
+    }
+
+    private fun serialize(value: Any): ByteArray {
+        val bytes = ByteArrayOutputStream()
+        ObjectOutputStream(bytes).use { it.writeObject(value) }
+        return bytes.toByteArray()
+    }
+
+    @Suppress("UNCHECKED_CAST")
+    private fun <T : Any> roundTrip(value: T): T {
+        val actual = ObjectInputStream(ByteArrayInputStream(serialize(value))).readObject() as T
+        assertEquals(value, actual)
+        assertEquals(value.javaClass, actual.javaClass)
+        return actual
+    }
+
+    private val sizes = listOf(0, 1, 5, 33, 1100)
+
+    @Test fun hashMaps() {
+        for (size in sizes) {
+            val actual = roundTrip((1..size).fold(HashMap.empty<Int, String>()) { m, i -> m.put(i, i.toString()) })
+            assertEquals(size, actual.size())
+            assertEquals(actual.remove(1).put(-1, "-1"), actual.put(-1, "-1").remove(1))
+        }
+        val colliding = (1..100).fold(HashMap.empty<CollidingKey, Int>()) { m, i -> m.put(CollidingKey(i % 3, i), i) }
+        assertEquals(colliding.remove(CollidingKey(1, 1)), roundTrip(colliding).remove(CollidingKey(1, 1)))
+    }
+
+    @Test fun derivedKeyHashMaps() {
+        val map = (1..20).fold(DerivedKeyHashMap(LengthKey)) { m, i -> m.put(i, "x".repeat(i)) }
+        assertEquals("xxx", roundTrip(map)[3])
+    }
+
+    @Test fun hashSets() {
+        for (size in sizes) {
+            roundTrip((1..size).fold(HashSet.empty<Int>()) { s, i -> s.add(i) })
+        }
+    }
+
+    @Test fun treeMaps() {
+        for (size in sizes) {
+            val map = (1..size).fold(TreeMap<Int, String>()) { m, i -> m.put(i, i.toString()) }
+            val actual = roundTrip(map)
+            assertEquals(map.keys().toList(), actual.keys().toList())
+            assertEquals(map.put(0, "0"), actual.put(0, "0"))
+        }
+        val reversed = (1..100).fold(TreeMap<Int, String>(Collections.reverseOrder(), null)) { m, i -> m.put(i, i.toString()) }
+        assertEquals((100 downTo 1).toList(), roundTrip(reversed).keys().toList())
+    }
+
+    @Test fun derivedKeyTreeMaps() {
+        val map = (1..20).fold(TreeMap<Int, String>(null, LengthKey)) { m, i -> m.put(i, "x".repeat(i)) }
+        val bytes = serialize(map)
+        @Suppress("UNCHECKED_CAST")
+        val actual = ObjectInputStream(ByteArrayInputStream(bytes)).readObject() as TreeMap<Int, String>
+        assertEquals((1..20).toList(), actual.keys().toList())
+        assertEquals("xxx", actual[3])
+        assertEquals("xxxxxx", actual.put(6, "xxxxxx")[6])
+    }
+
+    @Test fun treeSets() {
+        for (size in sizes) {
+            val set = (1..size).fold(TreeSet<Int>(Collections.reverseOrder())) { s, i -> s.add(i) }
+            val actual = roundTrip(set)
+            assertEquals(set.toList(), actual.toList())
+            assertEquals(set.add(0).toList(), actual.add(0).toList())
+        }
+    }
+
+    @Test fun lists() {
+        for (size in sizes) {
+            val range = 1..size
+            roundTrip(range.fold(Vector.empty<Int>()) { v, i -> v.append(i) })
+            roundTrip(range.fold(ArrayList.empty<Int>()) { l, i -> l.append(i) })
+            roundTrip(range.fold(FingerTreeList.empty<Int>()) { l, i -> l.append(i) })
+            roundTrip(range.fold(ConsList.empty<Int>()) { l, i -> l.prepend(i) })
+            roundTrip(range.fold(Deque.empty<Int>()) { l, i -> l.append(i) })
+        }
+        roundTrip(Vector.empty<Int?>().append(null).append(1))
+        for (size in 0..4) {
+            roundTrip(IndexedLists.copyOf((1..size).toList()))
+        }
+    }
+
+    @Test fun priorityQueues() {
+        val queue = listOf(5, 3, 8, 1).fold(PriorityQueue.empty<Int>(Collections.reverseOrder())) { q, i -> q.insert(i) }
+        @Suppress("UNCHECKED_CAST")
+        val actual = ObjectInputStream(ByteArrayInputStream(serialize(queue))).readObject() as PriorityQueue<Int>
+        assertEquals(4, actual.size())
+        assertEquals(8, actual.first())
+        assertEquals(5, actual.removeFirst().first())
+    }
+
+    @Test fun pairs() {
+        roundTrip(Pair(1, "a"))
+        roundTrip(Pair(null, Vector.empty<Int>().append(1)))
+    }
+
+    @Test fun nested() {
+        roundTrip(HashMap.empty<String, Vector<Pair<Int, String>>>().put("a", Vector.empty<Pair<Int, String>>().append(Pair(1, "b"))))
+    }
+
+    @Test fun entriesNoLargerThanJavaHashMap() {
+        val map = (1..1000).fold(HashMap.empty<Int, String>()) { m, i -> m.put(i, i.toString()) }
+        val entriesSize = serialize(map).size - serialize(HashMap.empty<Int, String>()).size
+        val javaEntriesSize = serialize(java.util.HashMap(map.asMap())).size - serialize(java.util.HashMap<Int, String>()).size
+        assertTrue(entriesSize <= javaEntriesSize)
+    }
+
+    private fun withSize(bytes: ByteArray, kind: Byte, size: Int, newSize: Int): ByteArray {
+        val expected = byteArrayOf(kind, 0, 0, 0, size.toByte())
+        val index = (0..bytes.size - expected.size).first { i -> expected.indices.all { bytes[i + it] == expected[it] } }
+        val patched = bytes.copyOf()
+        for (i in 0..3) patched[index + 1 + i] = (newSize ushr (24 - 8 * i)).toByte()
+        return patched
+    }
+
+    @Test fun corruptSizes() {
+        val bytes = serialize((1..3).fold(Vector.empty<Int>()) { v, i -> v.append(i) })
+        assertFailsWith<InvalidObjectException> {
+            ObjectInputStream(ByteArrayInputStream(withSize(bytes, 6, 3, -1))).readObject()
+        }
+        // A huge size fails when the elements run out rather than allocating up front
+        assertFailsWith<IOException> {
+            ObjectInputStream(ByteArrayInputStream(withSize(bytes, 6, 3, Int.MAX_VALUE))).readObject()
+        }
+    }
+}
@@ -73,4 +73,39 @@ class SetsTest {
     @Test fun builder() {
         assertEquals(build(1, 2, 3), Sets.builder<Int>().addAll(1, 2, 3).build())
     }
-}
\ No newline at end of file
+
+    @Test fun copyOfLargeCollection() {
+        val source = (0..9999).map { it * 31 }
+        var expected: Set<Int> = HashSet.empty()
+        for (e in source) {
+            expected = expected.add(e)
+        }
+        val actual = Sets.copyOf(source + source)
+        assertEquals(expected, actual)
+        assertEquals(10000, actual.size())
+        for (e in source) {
+            assertEquals(true, actual.contains(e))
+        }
+        assertEquals(false, actual.contains(1))
+    }
+
+    @Test fun copyOfCollidingElements() {
+        val source = (0..99).map { CollidingKey(it % 3, it) }
+        val actual = Sets.copyOf(source.toTypedArray())
+        assertEquals(100, actual.size())
+        var removed = actual
+        for (e in source) {
+            assertEquals(true, removed.contains(e))
+            removed = removed.remove(e)
+        }
+        assertEquals(0, removed.size())
+    }
+
+    @Test fun builderWithRepeatedElementsFlushesAcrossBatches() {
+        val builder = HashSet.factory<Int>().newBuilder()
+        for (i in 0..49999) {
+            builder.add(i * 7 % 3000)
+        }
+        assertEquals((0..2999).toSet(), builder.build().asSet())
+    }
+}
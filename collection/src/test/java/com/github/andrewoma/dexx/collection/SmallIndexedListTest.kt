@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertTrue
+
+class SmallIndexedListTest() : AbstractListTest() {
+
+    override fun <T> factory(): BuilderFactory<T, out List<T>> {
+        return IndexedLists.factory()
+    }
+
+    private fun vector(vararg ts: Int): Vector<Int> = Vector.factory<Int>().newBuilder().addAll(ts.toList()).build()
+
+    @Test fun smallListsAreNotVectors() {
+        var list = IndexedLists.of<Int>()
+        for (i in 1..4) {
+            assertTrue(list is SmallIndexedList<*>)
+            list = list.append(i)
+        }
+        assertTrue(list is SmallIndexedList<*>)
+        assertTrue(list.append(5) is Vector<*>)
+        assertTrue(list.prepend(5) is Vector<*>)
+        assertTrue(IndexedLists.builder<Int>().addAll(1, 2, 3, 4).build() is SmallIndexedList<*>)
+        assertTrue(IndexedLists.builder<Int>().addAll(1, 2, 3, 4, 5).build() is Vector<*>)
+        assertTrue(vector(1, 2, 3).toIndexedList() is SmallIndexedList<*>)
+    }
+
+    @Test fun promotion() {
+        val list = IndexedLists.of(1, 2, 3, 4)
+        assertEquals(vector(1, 2, 3, 4, 5), list.append(5))
+        assertEquals(vector(0, 1, 2, 3, 4), list.prepend(0))
+        assertEquals(vector(1, 2, 3, 4, 5, 6), IndexedLists.builder<Int>().addAll(1, 2, 3, 4, 5, 6).build())
+    }
+
+    @Test fun getByIndex() {
+        val list = IndexedLists.of(1, 2, 3, 4)
+        for (i in 0..3) {
+            assertEquals(i + 1, list[i])
+            assertEquals(i + 1, list.take(i + 1)[i])
+        }
+        assertFailsWith(IndexOutOfBoundsException::class) { list[4] }
+        assertFailsWith(IndexOutOfBoundsException::class) { list[-1] }
+        assertFailsWith(IndexOutOfBoundsException::class) { IndexedLists.of<Int>()[0] }
+    }
+
+    @Test fun setByIndex() {
+        for (size in 1..4) {
+            val list = IndexedLists.builder<Int>().addAll((1..size).toList()).build()
+            for (i in 0..size - 1) {
+                val expected = (1..size).toMutableList()
+                expected[i] = 0
+                assertEquals(vector(*expected.toIntArray()), list.set(i, 0))
+            }
+            assertFailsWith(IndexOutOfBoundsException::class) { list.set(size, 0) }
+        }
+    }
+
+    @Test fun equalsVector() {
+        for (size in 0..4) {
+            val elements = (1..size).toList()
+            val list = IndexedLists.builder<Int>().addAll(elements).build()
+            assertEquals(vector(*elements.toIntArray()), list)
+            assertEquals(list, vector(*elements.toIntArray()))
+            assertEquals(vector(*elements.toIntArray()).hashCode(), list.hashCode())
+        }
+    }
+}
@@ -111,4 +111,67 @@ class SortedMapsTest {
     @Test fun builderWithComparator() {
         assertEquals(build(c, 1 to "a", 2 to "b"), SortedMaps.builder<Int, String>(c).addAll(Pair(1, "a"), Pair(2, "b")).build())
     }
-}
\ No newline at end of file
+
+    @Test fun copyOfSortedMap() {
+        val source = java.util.TreeMap<Int, String>()
+        for (i in 0..999) source.put(i * 7 % 1000, i.toString())
+
+        val actual = SortedMaps.copyOf(source)
+        assertEquals(source.keys.toList(), actual.keys().toList())
+        assertEquals(source.values.toList(), actual.values().toList())
+        assertEquals(source.size, actual.size())
+        assertEquals("1", actual[7])
+
+        // A reversed source has to be sorted again
+        val reversed = java.util.TreeMap<Int, String>(c)
+        reversed.putAll(source)
+        assertEquals(source.keys.toList(), SortedMaps.copyOf(reversed).keys().toList())
+        assertEquals(reversed.keys.toList(), SortedMaps.copyOf(c, source).keys().toList())
+        assertEquals(reversed.keys.toList(), SortedMaps.copyOf(c, reversed).keys().toList())
+    }
+
+    @Test fun copyOfSortedMapSupportsUpdates() {
+        val source = java.util.TreeMap<Int, Int>()
+        for (size in listOf(0, 1, 2, 3, 4, 5, 31, 32, 33, 100)) {
+            source.clear()
+            for (i in 0 until size) source.put(i, i)
+
+            var actual = SortedMaps.copyOf(source)
+            val expected = java.util.TreeMap(source)
+            for (i in 0 until size * 2) {
+                val key = (i * 13) % (size + 5)
+                if (i % 3 == 0) {
+                    actual = actual.remove(key)
+                    expected.remove(key)
+                } else {
+                    actual = actual.put(key, -i)
+                    expected.put(key, -i)
+                }
+                assertEquals(expected.entries.map { it.key to it.value }, actual.map { it.component1() to it.component2() }.toList())
+            }
+        }
+    }
+
+    @Test fun copyOfUnsortedKeepsLastValue() {
+        val pairs = (0..999).map { Pair(it * 37 % 100, it) }
+        var expected: SortedMap<Int, Int> = TreeMap()
+        for (pair in pairs) {
+            expected = expected.put(pair.component1(), pair.component2())
+        }
+        assertEquals(expected, SortedMaps.copyOf(pairs))
+        assertEquals(expected.keys().toList(), SortedMaps.copyOf(pairs.toTypedArray()).keys().toList())
+    }
+
+    @Test fun builderWithRepeatedKeysFlushesAcrossBatches() {
+        // Enough adds to flush the builder's buffer several times, with later values replacing earlier ones
+        val builder = TreeMap.factory<Int, Int>(c, null).newBuilder()
+        val expected = java.util.TreeMap<Int, Int>(c)
+        for (i in 0..49999) {
+            builder.add(Pair(i * 7 % 3000, i))
+            expected.put(i * 7 % 3000, i)
+        }
+        val actual = builder.build()
+        assertEquals(3000, actual.size())
+        assertEquals(expected.toList(), actual.asSortedMap().toList())
+    }
+}
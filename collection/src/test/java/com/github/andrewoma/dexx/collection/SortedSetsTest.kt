@@ -116,4 +116,38 @@ class SortedSetsTest {
     @Test fun builderWithComparator() {
         assertEquals(build(c, 1, 2, 3), SortedSets.builder(c).addAll(1, 2, 3).build())
     }
-}
\ No newline at end of file
+
+    @Test fun copyOfSortedSet() {
+        val source = java.util.TreeSet<Int>()
+        for (i in 0..999) source.add(i * 7 % 1000)
+
+        assertEquals(source.toList(), SortedSets.copyOf(source).toList())
+        assertEquals(source.reversed(), SortedSets.copyOf(c, source).toList())
+
+        val reversed = java.util.TreeSet<Int>(c)
+        reversed.addAll(source)
+        assertEquals(source.toList(), SortedSets.copyOf(reversed).toList())
+        assertEquals(reversed.toList(), SortedSets.copyOf(c, reversed).toList())
+
+        var set = SortedSets.copyOf(source)
+        for (i in 0..999) {
+            assertEquals(true, set.contains(i))
+            set = set.remove(i)
+        }
+        assertEquals(0, set.size())
+    }
+
+    @Test fun copyOfWithDuplicates() {
+        val source = (0..999).map { it % 10 }
+        assertEquals((0..9).toList(), SortedSets.copyOf(source).toList())
+        assertEquals((9 downTo 0).toList(), SortedSets.copyOf(c, source.toTypedArray()).toList())
+    }
+
+    @Test fun builderWithRepeatedElementsFlushesAcrossBatches() {
+        val builder = TreeSet.factory(c).newBuilder()
+        for (i in 0..49999) {
+            builder.add(i * 7 % 3000)
+        }
+        assertEquals((2999 downTo 0).toList(), builder.build().toList())
+    }
+}
@@ -28,11 +28,13 @@ import org.jetbrains.annotations.NotNull;
 import org.junit.Before;
 import org.junit.Test;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * toArray() seems difficult to call via Kotlin, so fall back to Java
@@ -54,7 +56,9 @@ public class ToArrayTest {
                 SortedSets.builder(comparator),
                 IndexedLists.<Pair<Integer, Integer>>builder(),
                 Maps.<Integer, Integer>builder(),
-                SortedMaps.<Integer, Integer>builder()
+                SortedMaps.<Integer, Integer>builder(),
+                LinkedLists.<Pair<Integer, Integer>>builder(),
+                ArrayList.<Pair<Integer, Integer>>factory().newBuilder()
         );
 
         for (Builder<Pair<Integer, Integer>, ? extends Iterable<Pair<Integer, Integer>>> builder : builders) {
@@ -83,7 +87,7 @@ public class ToArrayTest {
 
     private void assertArraySequence(Pair<Integer, Integer>[] objects, int size) {
         assertEquals(size, objects.length);
-        ArrayList<Pair<Integer, Integer>> pairs = Lists.newArrayList(objects);
+        java.util.ArrayList<Pair<Integer, Integer>> pairs = Lists.newArrayList(objects);
         Collections.sort(pairs, comparator);
 
         int i = 1;
@@ -111,4 +115,23 @@ public class ToArrayTest {
             assertArraySequence(objects, collection.size());
         }
     }
+
+    @Test
+    public void testToArrayWithLargerArray() {
+        for (Iterable<Pair<Integer, Integer>> collection : collections) {
+            @SuppressWarnings("unchecked")
+            Pair<Integer, Integer>[] array = new Pair[collection.size() + 2];
+            Pair<Integer, Integer>[] objects = collection.toArray(array);
+            assertSame(array, objects);
+            assertArraySequence(Arrays.copyOf(objects, collection.size()), collection.size());
+        }
+    }
+
+    @Test
+    public void testKnownSize() {
+        for (Iterable<Pair<Integer, Integer>> collection : collections) {
+            int knownSize = collection.knownSize();
+            assertTrue(knownSize == -1 || knownSize == collection.size());
+        }
+    }
 }
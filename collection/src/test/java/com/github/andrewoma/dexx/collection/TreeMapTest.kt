@@ -24,7 +24,9 @@ package com.github.andrewoma.dexx.collection
 
 import org.junit.Test
 import java.util.*
+import java.util.stream.Collectors
 import kotlin.test.assertEquals
+import kotlin.test.assertTrue
 
 /**
  *
@@ -68,4 +70,12 @@ class TreeMapTest : AbstractSortedMapTest() {
             assertEquals(map.drop(from).take(to - from), map.slice(from, to))
         }
     }
+
+    @Test fun spliteratorIsSortedByKey() {
+        val map = TreeMap.factory<Int, String>(null, null).newBuilder().addAll((1..100).map { Pair(101 - it, it.toString()) }).build()
+        val spliterator = map.spliterator()
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SORTED or Spliterator.SIZED or Spliterator.SUBSIZED or Spliterator.NONNULL))
+        assertTrue(spliterator.comparator.compare(Pair(1, "b"), Pair(2, "a")) < 0)
+        assertEquals((1..100).toList(), map.stream().map { it.component1() }.collect(Collectors.toList<Int>()))
+    }
 }
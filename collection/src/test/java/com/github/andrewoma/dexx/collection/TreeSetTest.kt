@@ -22,9 +22,61 @@
 
 package com.github.andrewoma.dexx.collection
 
+import org.junit.Test
+import java.util.Collections
+import java.util.Spliterator
+import java.util.stream.Collectors
+import kotlin.test.assertEquals
+import kotlin.test.assertTrue
+
 class TreeSetTest() : AbstractSortedSetTest() {
 
     override fun <T> factory(): BuilderFactory<T, out Iterable<T>> {
         return TreeSet.factory<T>(null)
     }
-}
\ No newline at end of file
+
+    @Test fun spliteratorSplitsAtRoot() {
+        val set = TreeSet.factory<Int>(null).newBuilder().addAll(1..1000).build()
+        val spliterator = set.spliterator()
+        assertEquals(1000L, spliterator.exactSizeIfKnown)
+        val prefix = spliterator.trySplit()!!
+        val first = arrayListOf<Int>()
+        prefix.forEachRemaining { first.add(it) }
+        assertEquals((1..first.size).toList(), first)
+        assertTrue(first.size > 250 && first.size < 750)
+    }
+
+    private fun assertExactSizes(spliterator: Spliterator<Int>, depth: Int): Int {
+        val size = spliterator.exactSizeIfKnown
+        val prefix = if (depth > 0) spliterator.trySplit() else null
+        var count = if (prefix == null) 0 else assertExactSizes(prefix, depth - 1)
+        count += if (prefix == null) 0 else assertExactSizes(spliterator, depth - 1)
+        if (prefix == null) spliterator.forEachRemaining { count++ }
+        assertEquals(size, count.toLong())
+        return count
+    }
+
+    @Test fun spliteratorSizesAreExactAfterSplits() {
+        val set = TreeSet.factory<Int>(null).newBuilder().addAll(1..1000).build()
+        assertEquals(1000, assertExactSizes(set.spliterator(), 6))
+
+        // Splitting before the size is counted, after some elements have been taken
+        for (advance in listOf(0, 1, 5)) {
+            val spliterator = set.spliterator()
+            for (i in 1..advance) spliterator.tryAdvance { }
+            val prefix = spliterator.trySplit()!!
+            assertTrue(prefix.hasCharacteristics(Spliterator.SIZED or Spliterator.SUBSIZED))
+            assertEquals(1000L - advance, prefix.exactSizeIfKnown + spliterator.exactSizeIfKnown)
+            assertEquals(1000 - advance, assertExactSizes(prefix, 3) + assertExactSizes(spliterator, 3))
+        }
+    }
+
+    @Test fun spliteratorCharacteristics() {
+        val comparator = Collections.reverseOrder<Int>()
+        val set = TreeSet.factory<Int>(comparator).newBuilder().addAll(1..100).build()
+        val spliterator = set.spliterator()
+        assertTrue(spliterator.hasCharacteristics(Spliterator.ORDERED or Spliterator.SORTED or Spliterator.DISTINCT or Spliterator.SIZED or Spliterator.SUBSIZED))
+        assertEquals(comparator, spliterator.comparator)
+        assertEquals((100 downTo 1).toList(), set.parallelStream().collect(Collectors.toList<Int>()))
+    }
+}
@@ -25,6 +25,8 @@ package com.github.andrewoma.dexx.collection
 import com.github.andrewoma.dexx.TestMode
 import org.junit.Test
 import java.math.BigDecimal
+import java.util.Random
+import java.util.Spliterator
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertTrue
@@ -145,4 +147,130 @@ class VectorTest() : AbstractListTest() {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Test fun spliteratorSplitsOnBlockBoundaries() {
+        for (size in sizes()) {
+            val vector = sequence(size) as Vector<Int>
+            val spliterator = vector.spliterator()
+            assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED or Spliterator.SUBSIZED or Spliterator.ORDERED or Spliterator.IMMUTABLE))
+            assertEquals(size.toLong(), spliterator.exactSizeIfKnown)
+
+            val prefix = spliterator.trySplit()
+            if (size <= 32) {
+                assertEquals(null, prefix)
+            } else {
+                assertEquals(0L, prefix!!.estimateSize() % 32)
+                assertEquals(size.toLong(), prefix.estimateSize() + spliterator.estimateSize())
+
+                var i = 0
+                prefix.forEachRemaining { assertEquals(i++, it) }
+                spliterator.forEachRemaining { assertEquals(i++, it) }
+                assertEquals(size, i)
+            }
+        }
+    }
+
+    @Test fun spliteratorSplitAfterAdvance() {
+        val vector = sequence(1000).drop(10) as Vector<Int>
+        val spliterator = vector.spliterator()
+        var i = 10
+        for (j in 1..50) {
+            spliterator.tryAdvance { assertEquals(i++, it) }
+        }
+
+        val prefix = spliterator.trySplit()!!
+        prefix.forEachRemaining { assertEquals(i++, it) }
+        while (spliterator.tryAdvance { assertEquals(i++, it) }) {
+        }
+        assertEquals(1000, i)
+    }
+
+    @Test fun spliteratorDoesNotSplitSmallRanges() {
+        val vector = sequence(100) as Vector<Int>
+        for (drop in listOf(0, 31, 32, 63, 99)) {
+            for (take in 0..1) {
+                assertEquals(null, vector.drop(drop).take(take).spliterator().trySplit())
+            }
+        }
+
+        val spliterator = vector.spliterator()
+        spliterator.forEachRemaining { }
+        assertEquals(null, spliterator.trySplit())
+
+        for (size in listOf(64, 1024)) {
+            val exhausted = sequence(size).spliterator()
+            while (exhausted.tryAdvance { }) {
+            }
+            assertEquals(null, exhausted.trySplit())
+        }
+    }
+
+    @Test fun parallelStream() {
+        for (size in sizes()) {
+            val vector = sequence(size) as Vector<Int>
+            val expected = size.toLong() * (size - 1) / 2
+            assertEquals(expected, vector.parallelStream().mapToLong { it.toLong() }.sum())
+            assertEquals(expected, vector.stream().mapToLong { it.toLong() }.sum())
+        }
+    }
+
+    @Test fun streamOfSlice() {
+        val vector = (sequence(100) as Vector<Int>).range(10, true, 80, false)
+        assertEquals((10..79).toList(), vector.parallelStream().collect(java.util.stream.Collectors.toList()))
+    }
+
+    private fun shuffled(size: Int): Vector<Int> {
+        val random = Random(size.toLong())
+        val builder = Vector.factory<Int>().newBuilder()
+        for (i in 1..size) {
+            builder.add(random.nextInt(size / 2 + 1))
+        }
+        return builder.build()
+    }
+
+    @Test fun sorted() {
+        for (size in sizes()) {
+            val vector = shuffled(size)
+            val expected = vector.toArray().sortedBy { it as Int }
+
+            assertEquals(expected, vector.sorted(null).toArray().toList())
+            assertEquals(expected.reversed(), vector.sorted(java.util.Collections.reverseOrder()).toArray().toList())
+            assertEquals(expected, vector.sortedParallel(null, 7).toArray().toList())
+            assertEquals(expected, vector.sortedParallel(null).toArray().toList())
+        }
+    }
+
+    @Test fun sortedSlice() {
+        val vector = shuffled(1000).drop(33).take(900)
+        val expected = vector.toArray().sortedBy { it as Int }
+
+        assertEquals(expected, vector.sorted(null).toArray().toList())
+        assertEquals(expected, vector.sortedParallel(null, 16).toArray().toList())
+    }
+
+    @Test fun sortedParallelIsStable() {
+        val builder = Vector.factory<Pair<Int, Int>>().newBuilder()
+        for (i in 1..10000) {
+            builder.add(Pair(i % 10, i))
+        }
+        val sorted = builder.build().sortedParallel(java.util.Comparator<Pair<Int, Int>> { p1, p2 -> p1.component1() - p2.component1() }, 100)
+
+        var previous: Pair<Int, Int>? = null
+        for (pair in sorted) {
+            if (previous != null && previous.component1() == pair.component1()) {
+                assertTrue(previous.component2() < pair.component2())
+            }
+            previous = pair
+        }
+        assertEquals(10000, sorted.size())
+    }
+
+    @Test fun sortedEmpty() {
+        assertTrue(Vector.empty<Int>().sorted(null).isEmpty)
+        assertTrue(Vector.empty<Int>().sortedParallel(null, 1).isEmpty)
+    }
+
+    @Test(expected = IllegalArgumentException::class) fun sortedParallelInvalidThreshold() {
+        Vector.empty<Int>().sortedParallel(null, 0)
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import java.util.concurrent.atomic.AtomicBoolean
+import kotlin.concurrent.thread
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertNull
+import kotlin.test.assertTrue
+
+class VersionedStoreTest {
+    private fun store(history: Int) = VersionedStore<SortedMap<Int, Int>>(TreeMap(), history)
+
+    @Test fun commits() {
+        val store = store(3)
+        assertEquals(0, store.version())
+        assertEquals(1, store.commit(store.get().put(1, 1)))
+        assertEquals(2, store.update(object : Function<SortedMap<Int, Int>, SortedMap<Int, Int>> {
+            override fun invoke(parameter: SortedMap<Int, Int>) = parameter.put(2, 2)
+        }))
+        assertEquals(SortedMaps.of(1, 1, 2, 2), store.get())
+        assertEquals(SortedMaps.of(1, 1), store.asOf(1))
+        assertEquals(TreeMap<Int, Int>(), store.asOf(0))
+        assertNull(store.asOf(3))
+    }
+
+    @Test fun boundedHistory() {
+        val store = store(3)
+        for (i in 1..10) {
+            store.commit(store.get().put(i, i))
+        }
+        assertEquals(3, store.retained())
+        assertNull(store.asOf(7))
+        assertEquals(8, store.asOf(8)?.size())
+        assertNull(store.pin(7))
+        assertFailsWith<IllegalArgumentException> { store(0) }
+    }
+
+    @Test fun pinnedVersionsAreRetained() {
+        val store = store(2)
+        store.commit(store.get().put(1, 1))
+        val pinned = store.pin()
+        val again = store.pin(1)!!
+        for (i in 2..10) {
+            store.commit(store.get().put(i, i))
+        }
+        assertEquals(1, pinned.version())
+        assertEquals(SortedMaps.of(1, 1), pinned.get())
+        assertEquals(SortedMaps.of(1, 1), store.asOf(1))
+        assertEquals(3, store.retained())
+
+        pinned.close()
+        pinned.close()
+        assertEquals(SortedMaps.of(1, 1), store.asOf(1))
+        again.close()
+        assertNull(store.asOf(1))
+        assertEquals(2, store.retained())
+    }
+
+    @Test fun pinnedLatest() {
+        val store = store(1)
+        store.pin().use {
+            assertEquals(0, it.version())
+            store.commit(store.get().put(1, 1))
+            assertEquals(0, it.get().size())
+        }
+        assertEquals(1, store.retained())
+        assertEquals(1, store.pin().use { it.version() })
+    }
+
+    @Test fun consistentSnapshots() {
+        // The writer moves quantities between keys, so every consistent snapshot has the same total
+        val store = VersionedStore<Map<Int, Int>>((0 until 100).fold(HashMap.empty<Int, Int>()) { m, i -> m.put(i, 100) }, 5)
+        val done = AtomicBoolean()
+        val failures = AtomicBoolean()
+        val readers = (0 until 4).map {
+            thread {
+                while (!done.get()) {
+                    store.pin().use { snapshot ->
+                        if (snapshot.get().values().sumBy { it } != 10000) failures.set(true)
+                        if (store.asOf(snapshot.version()) !== snapshot.get()) failures.set(true)
+                    }
+                }
+            }
+        }
+        for (i in 0 until 5000) {
+            val from = i % 100
+            val to = (i * 7 + 3) % 100
+            store.update(object : Function<Map<Int, Int>, Map<Int, Int>> {
+                override fun invoke(parameter: Map<Int, Int>): Map<Int, Int> {
+                    val moved = parameter.put(from, parameter[from]!! - 1)
+                    return moved.put(to, moved[to]!! + 1)
+                }
+            })
+        }
+        done.set(true)
+        readers.forEach { it.join() }
+        assertTrue(!failures.get())
+        assertEquals(5000, store.version())
+        assertEquals(5, store.retained())
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection
+
+import org.junit.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertNull
+
+class ViewTest {
+    private fun vector(range: IntRange): Vector<Int> = Vector.factory<Int>().newBuilder().addAll(range.toList()).build()
+
+    private fun <E> View<E>.list() = toIndexedList().toArray().toList()
+
+    @Test fun mapAndFilter() {
+        val view = vector(1..10).view()
+                .filter(Predicate<Int> { it % 2 == 0 })
+                .map(Function<Int, String> { "#$it" })
+        assertEquals(listOf("#2", "#4", "#6", "#8", "#10"), view.list())
+        assertEquals(5, view.count())
+        assertEquals("#2", view.first())
+    }
+
+    @Test fun flatMap() {
+        val view = vector(1..3).view().flatMap(Function<Int, Traversable<Int>> { vector(1..it) })
+        assertEquals(listOf(1, 1, 2, 1, 2, 3), view.list())
+        assertEquals(listOf(1, 1, 2), view.take(3).list())
+    }
+
+    @Test fun flatMapWithInnerShortCircuit() {
+        val view = vector(1..3).view().flatMap(Function<Int, Traversable<Int>> { vector(1..10).view().take(it).toIndexedList() })
+        assertEquals(listOf(1, 1, 2, 1, 2, 3), view.list())
+
+        val inner = vector(1..3).view().flatMap(Function<Int, Traversable<Int>> { vector(1..it) })
+                .takeWhile(Predicate<Int> { it < 3 })
+        assertEquals(listOf(1, 1, 2, 1, 2), inner.list())
+    }
+
+    @Test fun takeAndDrop() {
+        val view = vector(1..10).view()
+        assertEquals(listOf(1, 2, 3), view.take(3).list())
+        assertEquals(listOf<Int>(), view.take(0).list())
+        assertEquals(listOf(8, 9, 10), view.drop(7).list())
+        assertEquals(listOf<Int>(), view.drop(20).list())
+        assertEquals(listOf(4, 5), view.drop(3).take(2).list())
+    }
+
+    @Test fun takeWhileAndDropWhile() {
+        val view = vector(1..10).view()
+        assertEquals(listOf(1, 2, 3), view.takeWhile(Predicate<Int> { it < 4 }).list())
+        assertEquals(listOf(4, 5, 6, 7, 8, 9, 10), view.dropWhile(Predicate<Int> { it < 4 }).list())
+        assertEquals(listOf(1, 2, 3, 4), view.dropWhile(Predicate<Int> { it > 4 }).take(4).list())
+    }
+
+    @Test fun zipWithIndex() {
+        val view = vector(1..3).view().map(Function<Int, String> { "$it" }).zipWithIndex()
+        assertEquals(listOf(Pair("1", 0), Pair("2", 1), Pair("3", 2)), view.list())
+    }
+
+    @Test fun fold() {
+        assertEquals(55L, vector(1..10).view().fold(0L, Fold<Long, Int> { acc, e -> acc + e }))
+        assertEquals(0L, Vector.empty<Int>().view().fold(0L, Fold<Long, Int> { acc, e -> acc + e }))
+    }
+
+    @Test fun terminalOnEmpty() {
+        assertNull(Vector.empty<Int>().view().first())
+        assertEquals(0, Vector.empty<Int>().view().count())
+    }
+
+    @Test fun shortCircuitsSource() {
+        val visited = arrayListOf<Int>()
+        val first = vector(1..1000).view()
+                .map(Function<Int, Int> { visited.add(it); it * 2 })
+                .filter(Predicate<Int> { it > 10 })
+                .first()
+        assertEquals(12, first)
+        assertEquals((1..6).toList(), visited)
+    }
+
+    @Test fun to() {
+        val set = vector(1..10).view().map(Function<Int, Int> { it % 3 }).to(Sets.builder<Int>())
+        assertEquals(Sets.of(0, 1, 2), set)
+    }
+
+    @Test fun otherSources() {
+        assertEquals(listOf(2, 4, 6), Sets.of(1, 2, 3).view().map(Function<Int, Int> { it * 2 }).to(SortedSets.builder<Int>()).toArray().toList())
+        assertEquals(3, LinkedLists.of(1, 2, 3).view().count())
+        assertEquals(listOf(1, 2), SortedSets.of(3, 1, 2).view().take(2).list())
+    }
+}
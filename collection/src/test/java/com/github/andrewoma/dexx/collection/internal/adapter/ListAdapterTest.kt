@@ -24,6 +24,7 @@ package com.github.andrewoma.dexx.collection.internal.adapter
 
 import com.github.andrewoma.dexx.collection.IndexedLists
 import org.junit.Test
+import java.util.stream.Collectors
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertTrue
@@ -105,4 +106,18 @@ open class ListAdapterTest {
     @Test(expected = UnsupportedOperationException::class) fun clear() {
         list().clear()
     }
-}
\ No newline at end of file
+
+    @Test fun equalsDifferentLengths() {
+        assertFalse(list(1, 2, 3).equals(listOf(1, 2)))
+        assertFalse(list(1, 2).equals(listOf(1, 2, 3)))
+        assertFalse(list(1, 2, 3).equals(listOf(1, 2, 4)))
+        assertFalse(list(1, 2, 3).equals(setOf(1, 2, 3)))
+    }
+
+    @Test fun forEachAndStream() {
+        val actual = arrayListOf<Int>()
+        list(1, 2, 3).forEach { actual.add(it) }
+        assertEquals(listOf(1, 2, 3), actual)
+        assertEquals(listOf(1, 2, 3), list(1, 2, 3).stream().collect(Collectors.toList()))
+    }
+}
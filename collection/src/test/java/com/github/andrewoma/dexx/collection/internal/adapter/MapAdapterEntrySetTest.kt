@@ -148,4 +148,15 @@ open class MapAdapterEntrySetTest {
     @Test(expected = UnsupportedOperationException::class) fun clear() {
         map().clear()
     }
-}
\ No newline at end of file
+
+    @Test fun containsLooksUpValue() {
+        val set = map(1 to 1, 2 to 2)
+        assertFalse(set.contains(e(1 to 2)))
+        assertFalse((set as Set<Any>).contains(""))
+        val withNull = Maps.of<Int, Int?>(1, null).asMap().entries as Set<Any>
+        assertTrue(withNull.contains(java.util.AbstractMap.SimpleEntry<Int, Int?>(1, null)))
+        assertFalse(withNull.contains(java.util.AbstractMap.SimpleEntry<Int, Int?>(1, 2)))
+        val withoutNull = Maps.of<Int, Int?>(1, 2).asMap().entries as Set<Any>
+        assertFalse(withoutNull.contains(java.util.AbstractMap.SimpleEntry<Int, Int?>(1, null)))
+    }
+}
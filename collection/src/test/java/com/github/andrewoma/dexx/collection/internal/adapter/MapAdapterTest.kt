@@ -23,10 +23,14 @@
 package com.github.andrewoma.dexx.collection.internal.adapter
 
 import com.github.andrewoma.dexx.collection.HashMap
+import com.github.andrewoma.dexx.collection.TreeMap
 import org.junit.Test
+import java.util.Spliterator
+import java.util.stream.Collectors
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertNull
+import kotlin.test.assertSame
 import kotlin.test.assertTrue
 import com.github.andrewoma.dexx.collection.Pair as DPair
 
@@ -95,4 +99,71 @@ open class MapAdapterTest {
     @Test(expected = UnsupportedOperationException::class) fun clear() {
         map().clear()
     }
-}
\ No newline at end of file
+
+    @Test fun getOrDefault() {
+        val map = map(1 to 10, 2 to 20)
+        assertEquals(10, map.getOrDefault(1, 99))
+        assertEquals(99, map.getOrDefault(3, 99))
+        @Suppress("UNCHECKED_CAST")
+        val anyMap = map as MutableMap<Any?, Int>
+        assertEquals(99, anyMap.getOrDefault("a", 99))
+        assertEquals(99, anyMap.getOrDefault(null, 99))
+    }
+
+    @Test fun keysOfOtherTypes() {
+        @Suppress("UNCHECKED_CAST")
+        val map = map(1 to 10, 2 to 20) as MutableMap<Any?, Int>
+        assertFalse(map.containsKey("a"))
+        assertFalse(map.containsKey(null))
+        assertNull(map["a"])
+        assertNull(map[null])
+    }
+
+    @Test fun nullKeysAllowedByComparator() {
+        val comparator: Comparator<Int?> = Comparator.nullsFirst(Comparator.naturalOrder<Int>())
+        val map: MutableMap<Int?, Int> = TreeMap.factory<Int?, Int>(comparator, null).newBuilder()
+                .add(DPair(null, 1)).add(DPair(2, 20)).build().asMap()
+        assertTrue(map.containsKey(null))
+        assertEquals(1, map[null])
+        assertEquals(1, map.getOrDefault(null, 99))
+        assertTrue(map.entries.contains(java.util.AbstractMap.SimpleImmutableEntry<Int?, Int>(null, 1)))
+        assertTrue(map.keys.contains(null))
+    }
+
+    @Test fun forEach() {
+        val actual = java.util.HashMap<Int, Int>()
+        map(1 to 10, 2 to 20, 3 to 30).forEach { k, v -> actual.put(k, v) }
+        assertEquals(mapOf(1 to 10, 2 to 20, 3 to 30), actual)
+    }
+
+    @Test fun viewsAreCached() {
+        val map = map(1 to 10, 2 to 20)
+        assertSame(map.keys, map.keys)
+        assertSame(map.values, map.values)
+        assertSame(map.entries, map.entries)
+    }
+
+    @Test fun viewSpliterators() {
+        val size = 1000
+        val map = map(*(1..size).map { it to it * 10 }.toTypedArray())
+        assertEquals((1..size).sum(), map.keys.parallelStream().mapToInt { it }.sum())
+        assertEquals((1..size).sum() * 10, map.values.parallelStream().mapToInt { it }.sum())
+        assertEquals(map.keys.toSet(), map.entries.parallelStream().map { it.key }.collect(Collectors.toSet()))
+        assertTrue(map.keys.spliterator().hasCharacteristics(Spliterator.DISTINCT))
+        assertFalse(map.values.spliterator().hasCharacteristics(Spliterator.DISTINCT))
+        assertEquals(size.toLong(), map.entries.spliterator().exactSizeIfKnown)
+    }
+
+    @Test fun viewForEach() {
+        val map = map(1 to 10, 2 to 20, 3 to 30)
+        val keys = arrayListOf<Int>()
+        map.keys.forEach { keys.add(it) }
+        val values = arrayListOf<Int>()
+        map.values.forEach { values.add(it) }
+        val entries = arrayListOf<kotlin.Pair<Int, Int>>()
+        map.entries.forEach { entries.add(it.key to it.value) }
+        assertEquals(listOf(1, 2, 3), keys.sorted())
+        assertEquals(listOf(10, 20, 30), values.sorted())
+        assertEquals(listOf(1 to 10, 2 to 20, 3 to 30), entries.sortedBy { it.first })
+    }
+}
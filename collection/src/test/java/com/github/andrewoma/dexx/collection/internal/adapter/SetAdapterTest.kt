@@ -23,7 +23,9 @@
 package com.github.andrewoma.dexx.collection.internal.adapter
 
 import com.github.andrewoma.dexx.collection.Sets
+import com.github.andrewoma.dexx.collection.TreeSet
 import org.junit.Test
+import java.util.Spliterator
 import kotlin.test.assertEquals
 import kotlin.test.assertFalse
 import kotlin.test.assertTrue
@@ -57,6 +59,13 @@ open class SetAdapterTest {
         assertFalse(set.contains(4))
     }
 
+    @Test fun containsNullAllowedByComparator() {
+        val comparator: Comparator<Int?> = Comparator.nullsFirst(Comparator.naturalOrder<Int>())
+        val set: MutableSet<Int?> = TreeSet<Int?>(comparator).add(null).add(1).asSet()
+        assertTrue(set.contains(null))
+        assertFalse(set.contains(2))
+    }
+
     @Test fun toArray() {
         val ints = set(1, 2, 3).toTypedArray()
         assertEquals(ints.sortedBy { it }, listOf(1, 2, 3))
@@ -99,4 +108,23 @@ open class SetAdapterTest {
     @Test(expected = UnsupportedOperationException::class) fun clear() {
         set().clear()
     }
-}
\ No newline at end of file
+
+    @Test fun containsOtherTypes() {
+        @Suppress("UNCHECKED_CAST")
+        val set = set(1, 2, 3) as MutableSet<Any?>
+        assertFalse(set.contains("a"))
+        assertFalse(set.contains(null))
+    }
+
+    @Test fun forEach() {
+        val actual = arrayListOf<Int>()
+        set(1, 2, 3).forEach { actual.add(it) }
+        assertEquals(listOf(1, 2, 3), actual.sorted())
+    }
+
+    @Test fun stream() {
+        val set = set(*(1..1000).toList().toIntArray())
+        assertEquals((1..1000).sum(), set.parallelStream().mapToInt { it }.sum())
+        assertTrue(set.spliterator().hasCharacteristics(Spliterator.DISTINCT))
+    }
+}
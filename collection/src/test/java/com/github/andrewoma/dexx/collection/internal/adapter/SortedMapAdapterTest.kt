@@ -26,6 +26,8 @@ import com.github.andrewoma.dexx.collection.TreeMap
 import org.junit.Test
 import java.util.*
 import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.fail
 import com.github.andrewoma.dexx.collection.Pair as DPair
 
 
@@ -123,4 +125,94 @@ open class SortedMapAdapterTest : MapAdapterTest() {
         assertEquals(listOf(7, 4, 3, 2, 1), actual)
         assertEquals(c, map.comparator())
     }
-}
\ No newline at end of file
+
+    @Test fun nestedWindows() {
+        val values = (1..100).map { (it * 37 % 101) to it }.toTypedArray()
+        val actual = map(*values)
+        val expected = jmap(*values)
+
+        for (from in listOf(0, 1, 10, 50, 100)) {
+            for (to in listOf(from, from + 1, 60, 101)) {
+                if (to < from) continue
+                val sub = actual.subMap(from, to)
+                val jsub = expected.subMap(from, to)
+                assertEquals(jsub, sub)
+                assertEquals(jsub.size, sub.size)
+                assertEquals(jsub.keys.toList(), sub.keys.toList())
+                assertEquals(jsub.values.toList(), sub.values.toList())
+                assertEquals(jsub.headMap(to), sub.headMap(to))
+                if (from < to) {
+                    assertEquals(jsub.tailMap(from), sub.tailMap(from))
+                    assertEquals(jsub.subMap(from, from), sub.subMap(from, from))
+                } else {
+                    assertFailsWith(IllegalArgumentException::class) { sub.tailMap(from) }
+                }
+                if (jsub.isNotEmpty()) {
+                    assertEquals(jsub.firstKey(), sub.firstKey())
+                    assertEquals(jsub.lastKey(), sub.lastKey())
+                    assertEquals(jsub.tailMap(jsub.lastKey()), sub.tailMap(sub.lastKey()))
+                }
+            }
+        }
+    }
+
+    @Test fun windowLookups() {
+        val sub = map(1 to 1, 2 to 2, 3 to 3, 4 to 4).subMap(2, 4)
+        assertEquals(false, sub.containsKey(1))
+        assertEquals(true, sub.containsKey(2))
+        assertEquals(false, sub.containsKey(4))
+        assertEquals(null, sub[4])
+        assertEquals(3, sub[3])
+        assertEquals(false, (sub as Map<Any, Int>).containsKey("a"))
+        assertEquals(false, sub.entries.contains(AbstractMap.SimpleEntry(1, 1)))
+        assertEquals(true, sub.entries.contains(AbstractMap.SimpleEntry(2, 2)))
+    }
+
+    @Test fun windowOutOfRange() {
+        val sub = map(1 to 1, 2 to 2, 3 to 3).subMap(1, 3)
+        for (f in listOf({ sub.subMap(0, 2) }, { sub.headMap(4) }, { sub.tailMap(0) })) {
+            try {
+                f()
+                fail()
+            } catch (e: IllegalArgumentException) {
+            }
+        }
+        assertEquals(jmap(1 to 1, 2 to 2), sub.headMap(3))
+    }
+
+    @Test fun windowNullBoundsAllowedByComparator() {
+        val comparator: Comparator<Int?> = Comparator.nullsFirst(Comparator.naturalOrder<Int>())
+        val map: SortedMap<Int?, Int> = TreeMap.factory<Int?, Int>(comparator, null).newBuilder()
+                .add(DPair(null, 0)).add(DPair(1, 1)).add(DPair(2, 2)).build().asSortedMap()
+        val jmap = java.util.TreeMap<Int?, Int>(comparator)
+        jmap.putAll(map)
+
+        assertEquals(jmap.tailMap(null), map.tailMap(null))
+        assertEquals(jmap.headMap(null), map.headMap(null))
+        assertEquals(jmap.subMap(null, 2), map.subMap(null, 2))
+
+        val sub = map.subMap(null, 2)
+        assertEquals(null, sub.firstKey())
+        assertEquals(true, sub.containsKey(null))
+        assertEquals(0, sub[null])
+        assertEquals(0, sub.headMap(null).size)
+        assertEquals(listOf(null, 1), sub.tailMap(null).keys.toList())
+        assertEquals(listOf(1), map.headMap(2).tailMap(1).keys.toList())
+    }
+
+    @Test fun windowNullBoundsRejectedByNaturalOrdering() {
+        val map = map(1 to 1, 2 to 2)
+        assertFailsWith(NullPointerException::class) { map.headMap(null) }
+        assertFailsWith(NullPointerException::class) { map.tailMap(null) }
+        assertFailsWith(NullPointerException::class) { map.subMap(1, null) }
+        assertEquals(false, map.headMap(2).containsKey(null))
+    }
+
+    @Test(expected = NoSuchElementException::class) fun emptyWindowFirstKey() {
+        map(1 to 1, 2 to 2, 3 to 3).subMap(2, 2).firstKey()
+    }
+
+    @Test(expected = UnsupportedOperationException::class) fun windowPut() {
+        map(1 to 1, 2 to 2).headMap(2).put(1, 1)
+    }
+}
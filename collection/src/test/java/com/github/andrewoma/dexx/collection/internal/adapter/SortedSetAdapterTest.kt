@@ -27,6 +27,7 @@ import com.github.andrewoma.dexx.collection.TreeSet
 import org.junit.Test
 import java.util.*
 import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
 
 class SortedSetAdapterTest : SetAdapterTest() {
 
@@ -110,4 +111,72 @@ class SortedSetAdapterTest : SetAdapterTest() {
         assertEquals(listOf(7, 4, 3, 2, 1), set.toList())
         assertEquals(c, set.comparator())
     }
-}
\ No newline at end of file
+
+    @Test fun nestedWindows() {
+        val values = (1..100).map { it * 37 % 101 }.toIntArray()
+        val actual = set(*values)
+        val expected = jset(*values)
+
+        for (from in listOf(0, 1, 10, 50, 100)) {
+            for (to in listOf(from, from + 1, 60, 101)) {
+                if (to < from) continue
+                val sub = actual.subSet(from, to)
+                val jsub = expected.subSet(from, to)
+                assertEquals(jsub, sub)
+                assertEquals(jsub.size, sub.size)
+                assertEquals(jsub.toList(), sub.toList())
+                assertEquals(jsub.headSet(to), sub.headSet(to))
+                if (from < to) {
+                    assertEquals(jsub.tailSet(from), sub.tailSet(from))
+                } else {
+                    assertFailsWith(IllegalArgumentException::class) { sub.tailSet(from) }
+                }
+                if (jsub.isNotEmpty()) {
+                    assertEquals(jsub.first(), sub.first())
+                    assertEquals(jsub.last(), sub.last())
+                    assertEquals(jsub.subSet(jsub.first(), jsub.last()), sub.subSet(sub.first(), sub.last()))
+                }
+            }
+        }
+    }
+
+    @Test fun windowContains() {
+        val sub = set(1, 2, 3, 4).subSet(2, 4)
+        assertEquals(false, sub.contains(1))
+        assertEquals(true, sub.contains(3))
+        assertEquals(false, sub.contains(4))
+        assertEquals(false, (sub as Set<Any>).contains("a"))
+    }
+
+    @Test fun windowNullBoundsAllowedByComparator() {
+        val comparator: Comparator<Int?> = Comparator.nullsFirst(Comparator.naturalOrder<Int>())
+        val set: SortedSet<Int?> = TreeSet.factory<Int?>(comparator).newBuilder().add(null).add(1).add(2).build().asSortedSet()
+        val jset = java.util.TreeSet<Int?>(comparator)
+        jset.addAll(set)
+
+        assertEquals(jset.tailSet(null), set.tailSet(null))
+        assertEquals(jset.headSet(null), set.headSet(null))
+        assertEquals(jset.subSet(null, 2), set.subSet(null, 2))
+
+        val sub = set.subSet(null, 2)
+        assertEquals(null, sub.first())
+        assertEquals(true, sub.contains(null))
+        assertEquals(0, sub.headSet(null).size)
+        assertEquals(listOf(null, 1), sub.tailSet(null).toList())
+    }
+
+    @Test fun windowNullBoundsRejectedByNaturalOrdering() {
+        val set = set(1, 2)
+        assertFailsWith(NullPointerException::class) { set.headSet(null) }
+        assertFailsWith(NullPointerException::class) { set.tailSet(null) }
+        assertEquals(false, set.headSet(2).contains(null))
+    }
+
+    @Test(expected = IllegalArgumentException::class) fun windowOutOfRange() {
+        set(1, 2, 3).subSet(1, 3).tailSet(0)
+    }
+
+    @Test(expected = NoSuchElementException::class) fun emptyWindowLast() {
+        set(1, 2, 3).tailSet(4).last()
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.performance
+
+import com.github.andrewoma.dexx.collection.CopyOnWriteHashMap
+import com.github.andrewoma.dexx.collection.performance.PerformanceMeasurement.Result
+import org.junit.Test
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.atomic.AtomicLong
+import kotlin.concurrent.thread
+import kotlin.system.measureNanoTime
+
+/**
+ * Compares CopyOnWriteHashMap with ConcurrentHashMap under concurrent reads and writes, and the cost of
+ * a snapshot against copying a ConcurrentHashMap.
+ */
+open class ConcurrentMapPerformanceTest : PerformanceMeasurement {
+    val size = 100000
+    val operations = 1000000
+
+    @Test fun mostlyReads() {
+        if (disabled()) return
+        compareThreads("10% writes", 10)
+    }
+
+    @Test fun mostlyWrites() {
+        if (disabled()) return
+        compareThreads("90% writes", 90)
+    }
+
+    @Test fun snapshot() {
+        if (disabled()) return
+        val keys = uniqueRandomInts(size)
+        val java = ConcurrentHashMap<Int, Int>()
+        val dexx = CopyOnWriteHashMap<Int, Int>(16)
+        for (key in keys) {
+            java[key] = key
+            dexx[key] = key
+        }
+
+        val snapshots = 100
+        val javaResult = time(10) {
+            var result = 0L
+            Result(measureNanoTime { repeat(snapshots) { result += HashMap(java).size } }, result)
+        }
+        val dexxResult = time(10) {
+            var result = 0L
+            Result(measureNanoTime { repeat(snapshots) { result += dexx.snapshot().size() } }, result)
+        }
+        compare("Snapshot of $size entries", snapshots, javaResult, dexxResult)
+    }
+
+    fun compareThreads(description: String, writePercent: Int) {
+        val keys = uniqueRandomInts(size)
+        val accesses = randomAccesses(operations, keys, true)
+        val stripes = Runtime.getRuntime().availableProcessors() * 4
+
+        var threads = 1
+        while (threads <= Runtime.getRuntime().availableProcessors()) {
+            val java = time(5) { run(ConcurrentHashMap(), keys, accesses, threads, writePercent) }
+            val single = time(5) { run(CopyOnWriteHashMap(), keys, accesses, threads, writePercent) }
+            val striped = time(5) { run(CopyOnWriteHashMap(stripes), keys, accesses, threads, writePercent) }
+            compare("ConcurrentMap $description with $threads threads", operations, java, single)
+            compare("ConcurrentMap $description with $threads threads and $stripes stripes", operations, java, striped)
+            threads *= 2
+        }
+    }
+
+    // Each thread performs an equal share of the accesses, writing the key for writePercent of them and reading
+    // it otherwise. The result counts the accesses made, as the values read depend on the interleaving.
+    fun run(map: ConcurrentMap<Int, Int>, keys: IntArray, accesses: IntArray, threads: Int, writePercent: Int): Result {
+        for (key in keys) map[key] = key
+
+        val start = CountDownLatch(1)
+        val count = AtomicLong()
+        val workers = (0 until threads).map { t ->
+            thread {
+                start.await()
+                var local = 0L
+                var i = t
+                while (i < accesses.size) {
+                    val key = accesses[i]
+                    if (i % 100 < writePercent) map[key] = i else map[key]
+                    local++
+                    i += threads
+                }
+                count.addAndGet(local)
+            }
+        }
+        val duration = measureNanoTime {
+            start.countDown()
+            workers.forEach { it.join() }
+        }
+        return Result(duration, count.get())
+    }
+}
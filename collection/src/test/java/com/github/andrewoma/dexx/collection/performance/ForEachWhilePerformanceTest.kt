@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.performance
+
+import com.github.andrewoma.dexx.collection.Function
+import com.github.andrewoma.dexx.collection.HashSet
+import com.github.andrewoma.dexx.collection.Traversable
+import com.github.andrewoma.dexx.collection.TreeSet
+import com.github.andrewoma.dexx.collection.Vector
+import com.github.andrewoma.dexx.collection.internal.base.Break
+import com.github.andrewoma.dexx.collection.performance.PerformanceMeasurement.Result
+import org.junit.Test
+import kotlin.system.measureNanoTime
+import kotlin.test.assertEquals
+
+/**
+ * Compares short-circuiting via forEach and a thrown Break (the previous idiom) with forEachWhile.
+ */
+open class ForEachWhilePerformanceTest : PerformanceMeasurement {
+
+    @Test fun vector() {
+        earlyExit("Vector", Vector.factory<Int>().newBuilder().addAll(0..99999).build())
+    }
+
+    @Test fun hashSet() {
+        earlyExit("HashSet", HashSet.factory<Int>().newBuilder().addAll(0..99999).build())
+    }
+
+    @Test fun treeSet() {
+        earlyExit("TreeSet", TreeSet.factory<Int>(null).newBuilder().addAll(0..99999).build())
+    }
+
+    fun earlyExit(description: String, traversable: Traversable<Int>) {
+        if (disabled()) return
+
+        for (stopAfter in listOf(1, 10, 1000, 100000)) {
+            val operations = Math.max(10, 1000000 / stopAfter)
+            val iterations = 10
+            val thrown = time(iterations) { withBreak(traversable, stopAfter, operations) }
+            val returned = time(iterations) { withForEachWhile(traversable, stopAfter, operations) }
+            assertEquals(thrown.result, returned.result)
+
+            fun nanoPerOp(nanoDuration: Long) = nanoDuration.toDouble() / operations.toDouble()
+            println("BENCHMARK: $description: stop after $stopAfter elements: Break: ${nanoPerOp(thrown.nanoDuration)}ns/op " +
+                    "forEachWhile: ${nanoPerOp(returned.nanoDuration)}ns/op. " +
+                    "forEachWhile is ${"%.2f".format(thrown.nanoDuration.toDouble() / returned.nanoDuration.toDouble())} times faster")
+        }
+    }
+
+    fun withBreak(traversable: Traversable<Int>, stopAfter: Int, operations: Int): Result {
+        var result = 0L
+        val duration = measureNanoTime {
+            repeat(operations) {
+                var count = 0
+                try {
+                    traversable.forEach(Function<Int, Unit> {
+                        result += it!!
+                        if (++count >= stopAfter) throw Break.instance
+                    })
+                } catch (e: Break) {
+                }
+            }
+        }
+        return Result(duration, result)
+    }
+
+    fun withForEachWhile(traversable: Traversable<Int>, stopAfter: Int, operations: Int): Result {
+        var result = 0L
+        val duration = measureNanoTime {
+            repeat(operations) {
+                var count = 0
+                traversable.forEachWhile {
+                    result += it!!
+                    ++count < stopAfter
+                }
+            }
+        }
+        return Result(duration, result)
+    }
+}
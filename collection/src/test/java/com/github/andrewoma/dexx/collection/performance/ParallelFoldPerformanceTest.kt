@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.performance
+
+import com.github.andrewoma.dexx.collection.Fold
+import com.github.andrewoma.dexx.collection.HashMap
+import com.github.andrewoma.dexx.collection.Pair
+import com.github.andrewoma.dexx.collection.Traversable
+import com.github.andrewoma.dexx.collection.TreeMap
+import com.github.andrewoma.dexx.collection.Vector
+import com.github.andrewoma.dexx.collection.internal.parallel.ParallelFold
+import com.github.andrewoma.dexx.collection.performance.PerformanceMeasurement.Result
+import org.junit.Test
+import java.util.concurrent.ForkJoinPool
+import kotlin.system.measureNanoTime
+
+/**
+ * Measures how parallelFold scales from 1 thread up to the number of available processors.
+ */
+open class ParallelFoldPerformanceTest : PerformanceMeasurement {
+    val size = 1000000
+
+    @Test fun vector() {
+        if (disabled()) return
+        scaling("Vector", Vector.factory<Int>().newBuilder().addAll(randomInts(size).asList()).build()) { it.toLong() }
+    }
+
+    @Test fun hashMap() {
+        if (disabled()) return
+        val builder = HashMap.factory<Int, Int>().newBuilder()
+        for (i in randomInts(size)) builder.add(Pair(i, i))
+        scaling("HashMap", builder.build()) { it.component2()!!.toLong() }
+    }
+
+    @Test fun treeMap() {
+        if (disabled()) return
+        val builder = TreeMap.factory<Int, Int>(null, null).newBuilder()
+        for (i in randomInts(size)) builder.add(Pair(i, i))
+        scaling("TreeMap", builder.build()) { it.component2()!!.toLong() }
+    }
+
+    fun <E> scaling(description: String, traversable: Traversable<E>, value: (E) -> Long) {
+        val accumulator = Fold<Long, E> { acc, e -> acc!! + work(value(e!!)) }
+        val combiner = Fold<Long, Long> { l, r -> l!! + r!! }
+
+        var single = 0L
+        var threads = 1
+        while (threads <= Runtime.getRuntime().availableProcessors()) {
+            val pool = ForkJoinPool(threads)
+            try {
+                val result = time(10) {
+                    var result = 0L
+                    val duration = measureNanoTime {
+                        result = traversable.parallelFold(0L, accumulator, combiner, pool, ParallelFold.DEFAULT_THRESHOLD)
+                    }
+                    Result(duration, result)
+                }
+                if (threads == 1) single = result.nanoDuration
+                println("BENCHMARK: $description: parallelFold over ${traversable.size()} elements with $threads threads: " +
+                        "${result.nanoDuration / 1000000}ms. Speed up: ${"%.2f".format(single.toDouble() / result.nanoDuration)}")
+            } finally {
+                pool.shutdown()
+            }
+            threads *= 2
+        }
+    }
+
+    // Simulates a modest amount of work per element so that traversal isn't the only cost
+    private fun work(value: Long): Long {
+        var result = value
+        for (i in 1..20) result = result xor (result shl 13) xor (result ushr 7)
+        return result
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014 Andrew O'Malley
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+
+package com.github.andrewoma.dexx.collection.performance
+
+import com.github.andrewoma.dexx.collection.Fold
+import com.github.andrewoma.dexx.collection.HashSet
+import com.github.andrewoma.dexx.collection.LongFunction
+import com.github.andrewoma.dexx.collection.Traversable
+import com.github.andrewoma.dexx.collection.TreeSet
+import com.github.andrewoma.dexx.collection.Vector
+import com.github.andrewoma.dexx.collection.performance.PerformanceMeasurement.Result
+import org.junit.Test
+import kotlin.system.measureNanoTime
+import kotlin.test.assertEquals
+
+/**
+ * Compares summing via a generic fold (boxing the accumulator on every element) with sumLong.
+ */
+open class PrimitiveFoldPerformanceTest : PerformanceMeasurement {
+
+    @Test fun vector() {
+        sum("Vector", Vector.factory<Int>().newBuilder().addAll(0..999999).build())
+    }
+
+    @Test fun hashSet() {
+        sum("HashSet", HashSet.factory<Int>().newBuilder().addAll(0..999999).build())
+    }
+
+    @Test fun treeSet() {
+        sum("TreeSet", TreeSet.factory<Int>(null).newBuilder().addAll(0..999999).build())
+    }
+
+    fun sum(description: String, traversable: Traversable<Int>) {
+        if (disabled()) return
+
+        val operations = 10
+        val iterations = 10
+        val boxed = time(iterations) { withFold(traversable, operations) }
+        val primitive = time(iterations) { withSumLong(traversable, operations) }
+        assertEquals(boxed.result, primitive.result)
+
+        fun milliPerOp(nanoDuration: Long) = nanoDuration.toDouble() / operations.toDouble() / 1000000.0
+        println("BENCHMARK: $description: sum of 1M elements: fold: ${"%.2f".format(milliPerOp(boxed.nanoDuration))}ms/op " +
+                "sumLong: ${"%.2f".format(milliPerOp(primitive.nanoDuration))}ms/op. " +
+                "sumLong is ${"%.2f".format(boxed.nanoDuration.toDouble() / primitive.nanoDuration.toDouble())} times faster")
+    }
+
+    fun withFold(traversable: Traversable<Int>, operations: Int): Result {
+        var result = 0L
+        val duration = measureNanoTime {
+            repeat(operations) {
+                result += traversable.view().fold(0L, Fold<Long, Int> { acc, e -> acc!! + e!! })!!
+            }
+        }
+        return Result(duration, result)
+    }
+
+    fun withSumLong(traversable: Traversable<Int>, operations: Int): Result {
+        var result = 0L
+        val duration = measureNanoTime {
+            repeat(operations) {
+                result += traversable.sumLong(LongFunction { it!!.toLong() })
+            }
+        }
+        return Result(duration, result)
+    }
+}